@@ -4,8 +4,10 @@ import java.awt.*;
 import java.awt.event.*;
 import java.sql.*;
 import javax.swing.table.DefaultTableModel;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.prefs.Preferences;
 
 public class AdminDashboard extends JFrame {
@@ -14,7 +16,9 @@ public class AdminDashboard extends JFrame {
     private JTabbedPane tabbedPane;
     private boolean darkMode;
     private JToggleButton darkModeToggle;
+    private final ExecutorService worker; // report generation, off the EDT
     private static final Preferences prefs = Preferences.userNodeForPackage(User.class);
+    private static final String ALL_USERS = "SELECT id, name, username, role, active FROM users";
     
     // Colors from User class for consistent theming
     private static final Color LIGHT_BG = new Color(240, 240, 240);
@@ -30,10 +34,31 @@ public class AdminDashboard extends JFrame {
     
     public AdminDashboard(boolean darkMode) {
         this.darkMode = darkMode;
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "admin-reports");
+            t.setDaemon(true);
+            return t;
+        });
         
         setTitle("Admin Dashboard");
         setSize(800, 600);
         setLayout(new BorderLayout());
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                WriteBehindQueue.get().flush();
+            }
+
+            @Override
+            public void windowClosed(WindowEvent e) {
+                worker.shutdown();
+            }
+        });
+
+        // Admin sessions run the periodic move of old returned loans into the archive
+        LoanArchiver.get();
+
+        setJMenuBar(createDiagnosticsMenuBar());
 
         // Top panel for dark mode toggle
         JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -42,7 +67,7 @@ public class AdminDashboard extends JFrame {
         darkModeToggle.addActionListener(e -> {
             this.darkMode = darkModeToggle.isSelected();
             // Save preference
-            prefs.putBoolean("darkMode", this.darkMode);
+            WriteBehindQueue.get().enqueuePreference(prefs, "darkMode", this.darkMode);
             // Apply theme
             applyTheme(getContentPane());
             // Refresh UI
@@ -71,6 +96,7 @@ public class AdminDashboard extends JFrame {
         // Logout button at bottom
         JButton logoutBtn = new JButton("Logout");
         logoutBtn.addActionListener(e -> {
+            WriteBehindQueue.get().flush();
             dispose();
             new LoginScreen();
         });
@@ -193,18 +219,8 @@ public class AdminDashboard extends JFrame {
         JTable userTable = new JTable(userModel);
         
         // Load all users
-        try (Connection conn = DBConnection.getConnection()) {
-            String query = "SELECT id, name, username, role, active FROM users";
-            ResultSet rs = conn.createStatement().executeQuery(query);
-            while (rs.next()) {
-                userModel.addRow(new Object[]{
-                    rs.getInt("id"),
-                    rs.getString("name"),
-                    rs.getString("username"),
-                    rs.getString("role"),
-                    rs.getBoolean("active") ? "Active" : "Inactive"
-                });
-            }
+        try {
+            showUsers(userModel, QueryCache.get().rows(ALL_USERS));
         } catch (Exception ex) {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this, "Error loading users: " + ex.getMessage());
@@ -222,19 +238,8 @@ public class AdminDashboard extends JFrame {
             
             if (searchText.isEmpty()) {
                 // Reload all users if search is empty
-                userModel.setRowCount(0);
-                try (Connection conn = DBConnection.getConnection()) {
-                    String query = "SELECT id, name, username, role, active FROM users";
-                    ResultSet rs = conn.createStatement().executeQuery(query);
-                    while (rs.next()) {
-                        userModel.addRow(new Object[]{
-                            rs.getInt("id"),
-                            rs.getString("name"),
-                            rs.getString("username"),
-                            rs.getString("role"),
-                            rs.getBoolean("active") ? "Active" : "Inactive"
-                        });
-                    }
+                try {
+                    showUsers(userModel, QueryCache.get().rows(ALL_USERS));
                 } catch (Exception ex) {
                     ex.printStackTrace();
                     JOptionPane.showMessageDialog(this, "Error loading users: " + ex.getMessage());
@@ -242,31 +247,16 @@ public class AdminDashboard extends JFrame {
                 return;
             }
             
-            try (Connection conn = DBConnection.getConnection()) {
+            try {
                 String query;
                 if (type.equals("Name")) {
-                    query = "SELECT id, name, username, role, active FROM users WHERE name LIKE ?";
+                    query = ALL_USERS + " WHERE name LIKE ?";
                 } else if (type.equals("Username")) {
-                    query = "SELECT id, name, username, role, active FROM users WHERE username LIKE ?";
+                    query = ALL_USERS + " WHERE username LIKE ?";
                 } else {
-                    query = "SELECT id, name, username, role, active FROM users WHERE role LIKE ?";
-                }
-                
-                PreparedStatement stmt = conn.prepareStatement(query);
-                stmt.setString(1, "%" + searchText + "%");
-                
-                ResultSet rs = stmt.executeQuery();
-                userModel.setRowCount(0); // Clear existing rows
-                
-                while (rs.next()) {
-                    userModel.addRow(new Object[]{
-                        rs.getInt("id"),
-                        rs.getString("name"),
-                        rs.getString("username"),
-                        rs.getString("role"),
-                        rs.getBoolean("active") ? "Active" : "Inactive"
-                    });
+                    query = ALL_USERS + " WHERE role LIKE ?";
                 }
+                showUsers(userModel, QueryCache.get().rows(query, "%" + searchText + "%"));
             } catch (Exception ex) {
                 ex.printStackTrace();
                 JOptionPane.showMessageDialog(this, "Error searching users: " + ex.getMessage());
@@ -290,11 +280,7 @@ public class AdminDashboard extends JFrame {
         
         // Report selection
         JPanel reportSelectionPanel = new JPanel();
-        JComboBox<String> reportType = new JComboBox<>(new String[]{
-            "User Activity Summary", 
-            "Librarian Activity", 
-            "User Status Distribution"
-        });
+        JComboBox<String> reportType = new JComboBox<>(AdminReports.REPORTS);
         JButton generateBtn = new JButton("Generate Report");
         reportSelectionPanel.add(new JLabel("Select Report:"));
         reportSelectionPanel.add(reportType);
@@ -305,28 +291,36 @@ public class AdminDashboard extends JFrame {
         reportArea.setEditable(false);
         JScrollPane reportScrollPane = new JScrollPane(reportArea);
         
+        // Generated on the worker: the first loan history report after start-up
+        // reads every loan into LoanHistoryStore
         generateBtn.addActionListener(e -> {
             String selectedReport = (String) reportType.getSelectedItem();
-            String reportContent = "";
-            
-            try (Connection conn = DBConnection.getConnection()) {
-                switch (selectedReport) {
-                    case "User Activity Summary":
-                        reportContent = generateUserActivityReport(conn);
-                        break;
-                    case "Librarian Activity":
-                        reportContent = generateLibrarianActivityReport(conn);
-                        break;
-                    case "User Status Distribution":
-                        reportContent = generateStatusDistributionReport(conn);
-                        break;
+            generateBtn.setEnabled(false);
+            reportArea.setText(selectedReport + ":\n\nGenerating...");
+            worker.execute(() -> {
+                String reportContent;
+                DashboardActionEvent action = DashboardActionEvent.begin("Admin", "report");
+                try {
+                    // Repeated clicks are served from the cache until a write touches the report's tables
+                    reportContent = QueryCache.get().compute("report:" + selectedReport, AdminReports.tablesOf(selectedReport), () -> {
+                        try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.REPORT)) {
+                            return AdminReports.generate(conn, selectedReport);
+                        }
+                    });
+                    action.succeeded((int) reportContent.lines().count());
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    reportContent = "Error generating report: " + ex.getMessage();
+                } finally {
+                    action.finish();
                 }
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                reportContent = "Error generating report: " + ex.getMessage();
-            }
-            
-            reportArea.setText(selectedReport + ":\n\n" + reportContent);
+
+                String text = selectedReport + ":\n\n" + reportContent;
+                SwingUtilities.invokeLater(() -> {
+                    reportArea.setText(text);
+                    generateBtn.setEnabled(true);
+                });
+            });
         });
         
         panel.add(reportSelectionPanel, BorderLayout.NORTH);
@@ -335,107 +329,94 @@ public class AdminDashboard extends JFrame {
         return panel;
     }
 
-    private String generateUserActivityReport(Connection conn) throws SQLException {
-        StringBuilder report = new StringBuilder();
-        
-        // Total users
-        Statement stmt = conn.createStatement();
-        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users");
-        rs.next();
-        int totalUsers = rs.getInt(1);
-        
-        // Active users
-        rs = stmt.executeQuery("SELECT COUNT(*) FROM users WHERE active=TRUE");
-        rs.next();
-        int activeUsers = rs.getInt(1);
-        
-        // Inactive users
-        int inactiveUsers = totalUsers - activeUsers;
-        
-        // By role
-        rs = stmt.executeQuery("SELECT role, COUNT(*) FROM users GROUP BY role");
-        Map<String, Integer> roleCounts = new HashMap<>();
-        while (rs.next()) {
-            roleCounts.put(rs.getString(1), rs.getInt(2));
-        }
-        
-        report.append("Total Users: ").append(totalUsers).append("\n");
-        report.append("Active Users: ").append(activeUsers).append("\n");
-        report.append("Inactive Users: ").append(inactiveUsers).append("\n\n");
-        report.append("Users by Role:\n");
-        for (Map.Entry<String, Integer> entry : roleCounts.entrySet()) {
-            report.append("- ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+    private static void showUsers(DefaultTableModel model, List<Object[]> rows) {
+        model.setRowCount(0);
+        for (Object[] row : rows) {
+            model.addRow(new Object[]{ row[0], row[1], row[2], row[3], statusOf(row[4]) });
         }
-        
-        return report.toString();
     }
 
-    private String generateLibrarianActivityReport(Connection conn) throws SQLException {
-        StringBuilder report = new StringBuilder();
-        
-        // Librarian counts
-        Statement stmt = conn.createStatement();
-        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users WHERE role='Librarian'");
-        rs.next();
-        int totalLibrarians = rs.getInt(1);
-        
-        rs = stmt.executeQuery("SELECT COUNT(*) FROM users WHERE role='Librarian' AND active=TRUE");
-        rs.next();
-        int activeLibrarians = rs.getInt(1);
-        
-        report.append("Total Librarians: ").append(totalLibrarians).append("\n");
-        report.append("Active Librarians: ").append(activeLibrarians).append("\n");
-        report.append("Inactive Librarians: ").append(totalLibrarians - activeLibrarians).append("\n\n");
-        
-        // List of librarians
-        rs = stmt.executeQuery("SELECT name, username, active FROM users WHERE role='Librarian'");
-        report.append("Librarian Details:\n");
-        while (rs.next()) {
-            report.append("- ").append(rs.getString("name")).append(" (")
-                  .append(rs.getString("username")).append("): ")
-                  .append(rs.getBoolean("active") ? "Active" : "Inactive").append("\n");
-        }
-        
-        return report.toString();
+    private static String statusOf(Object active) {
+        boolean on = active instanceof Boolean ? (Boolean) active : ((Number) active).intValue() != 0;
+        return on ? "Active" : "Inactive";
     }
 
-    private String generateStatusDistributionReport(Connection conn) throws SQLException {
-        StringBuilder report = new StringBuilder();
-        
-        // Status distribution
-        Statement stmt = conn.createStatement();
-        ResultSet rs = stmt.executeQuery("SELECT active, COUNT(*) FROM users GROUP BY active");
-        
-        report.append("User Status Distribution:\n");
-        while (rs.next()) {
-            report.append("- ").append(rs.getBoolean(1) ? "Active" : "Inactive")
-                  .append(": ").append(rs.getInt(2)).append(" users\n");
+    // Starts and stops an in-process Flight Recorder recording of the desk
+    // events (DashboardActionEvent, EdtStallEvent) for "the screen froze" reports
+    private JMenuBar createDiagnosticsMenuBar() {
+        JMenuBar menuBar = new JMenuBar();
+        JMenu menu = new JMenu("Diagnostics");
+        JMenuItem startItem = new JMenuItem("Start Flight Recording");
+        JMenuItem stopItem = new JMenuItem("Stop and Save Recording...");
+        startItem.setEnabled(!FlightRecording.isRunning());
+        stopItem.setEnabled(FlightRecording.isRunning());
+
+        startItem.addActionListener(e -> {
+            try {
+                FlightRecording.start();
+                startItem.setEnabled(false);
+                stopItem.setEnabled(true);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(this, "Error starting recording: " + ex.getMessage());
+            }
+        });
+        stopItem.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("library-desk-" + System.currentTimeMillis() + ".jfr"));
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            try {
+                FlightRecording.stop(chooser.getSelectedFile().toPath());
+                startItem.setEnabled(true);
+                stopItem.setEnabled(false);
+                JOptionPane.showMessageDialog(this, "Recording saved to " + chooser.getSelectedFile());
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(this, "Error saving recording: " + ex.getMessage());
+            }
+        });
+
+        // Circulation queued while the database was unreachable (see OperationQueue)
+        JMenuItem queueItem = new JMenuItem("Offline Queue...");
+        queueItem.addActionListener(e -> showOfflineQueue());
+
+        menu.add(startItem);
+        menu.add(stopItem);
+        menu.addSeparator();
+        menu.add(queueItem);
+        menuBar.add(menu);
+        return menuBar;
+    }
+
+    private void showOfflineQueue() {
+        OperationQueue queue = OperationQueue.get();
+        StringBuilder text = new StringBuilder(queue.summary()).append("\n");
+        List<OperationQueue.Operation> pending = queue.getPending();
+        if (!pending.isEmpty()) {
+            text.append("\nWaiting to be applied:\n");
+            for (OperationQueue.Operation op : pending) {
+                text.append("  ").append(op.day).append("  ").append(op.describe())
+                    .append(" (").append(op.actor).append(")\n");
+            }
         }
-        
-        // Status by role
-        rs = stmt.executeQuery("SELECT role, active, COUNT(*) FROM users GROUP BY role, active");
-        report.append("\nStatus by Role:\n");
-        while (rs.next()) {
-            report.append("- ").append(rs.getString("role")).append(" (")
-                  .append(rs.getBoolean("active") ? "Active" : "Inactive")
-                  .append("): ").append(rs.getInt(3)).append(" users\n");
+        List<OperationQueue.Result> conflicts = queue.getConflicts();
+        if (!conflicts.isEmpty()) {
+            text.append("\nConflicts:\n");
+            for (OperationQueue.Result result : conflicts) {
+                text.append("  ").append(result.op.day).append("  ").append(result.describe()).append("\n");
+            }
         }
-        
-        return report.toString();
+        JTextArea area = new JTextArea(text.toString(), 15, 70);
+        area.setEditable(false);
+        JOptionPane.showMessageDialog(this, new JScrollPane(area), "Offline Queue", JOptionPane.INFORMATION_MESSAGE);
     }
 
     private void loadLibrarians() {
         tableModel.setRowCount(0);
-        try (Connection conn = DBConnection.getConnection()) {
+        try {
             String query = "SELECT id, name, username, active FROM users WHERE role='Librarian'";
-            ResultSet rs = conn.createStatement().executeQuery(query);
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getInt("id"),
-                    rs.getString("name"),
-                    rs.getString("username"),
-                    rs.getBoolean("active") ? "Active" : "Inactive"
-                });
+            for (Object[] row : QueryCache.get().rows(query)) {
+                tableModel.addRow(new Object[]{ row[0], row[1], row[2], statusOf(row[3]) });
             }
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -474,6 +455,7 @@ public class AdminDashboard extends JFrame {
                 stmt.setString(2, usernameField.getText());
                 stmt.setString(3, String.valueOf(passwordField.getPassword()));
                 stmt.executeUpdate();
+                QueryCache.get().invalidate("users");
                 loadLibrarians();
                 JOptionPane.showMessageDialog(this, "Librarian added successfully!");
             } catch (Exception ex) {
@@ -502,6 +484,7 @@ public class AdminDashboard extends JFrame {
             PreparedStatement stmt = conn.prepareStatement(sql);
             stmt.setInt(1, id);
             stmt.executeUpdate();
+            QueryCache.get().invalidate("users");
             loadLibrarians();
             JOptionPane.showMessageDialog(this, "Librarian deleted successfully!");
         } catch (Exception ex) {
@@ -527,6 +510,7 @@ public class AdminDashboard extends JFrame {
             stmt.setBoolean(1, newStatus);
             stmt.setInt(2, id);
             stmt.executeUpdate();
+            QueryCache.get().invalidate("users");
             loadLibrarians();
             JOptionPane.showMessageDialog(this, "Librarian status updated!");
         } catch (Exception ex) {
@@ -0,0 +1,208 @@
+// AdminReports.java
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Text reports shown on the Admin Reports tab. Kept free of Swing so the
+// workload generator can run them too.
+public class AdminReports {
+    public static final String[] REPORTS = {
+        "User Activity Summary",
+        "Librarian Activity",
+        "User Status Distribution",
+        "Loan History Analytics",
+        "Popular Titles"
+    };
+
+    public static String generate(Connection conn, String report) throws SQLException {
+        switch (report) {
+            case "User Activity Summary":
+                return generateUserActivityReport(conn);
+            case "Librarian Activity":
+                return generateLibrarianActivityReport(conn);
+            case "User Status Distribution":
+                return generateStatusDistributionReport(conn);
+            case "Loan History Analytics":
+                return generateLoanHistoryReport(conn);
+            case "Popular Titles":
+                return generatePopularityReport(conn);
+            default:
+                throw new IllegalArgumentException("Unknown report: " + report);
+        }
+    }
+
+    // Tables a report reads, used as its QueryCache tags
+    public static Set<String> tablesOf(String report) {
+        if (report.equals("Loan History Analytics") || report.equals("Popular Titles")) {
+            return Set.of("borrowed_books", "books");
+        }
+        return Set.of("users");
+    }
+
+    public static String generateUserActivityReport(Connection conn) throws SQLException {
+        StringBuilder report = new StringBuilder();
+        
+        // Total users
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users");
+        rs.next();
+        int totalUsers = rs.getInt(1);
+        
+        // Active users
+        rs = stmt.executeQuery("SELECT COUNT(*) FROM users WHERE active=TRUE");
+        rs.next();
+        int activeUsers = rs.getInt(1);
+        
+        // Inactive users
+        int inactiveUsers = totalUsers - activeUsers;
+        
+        // By role
+        rs = stmt.executeQuery("SELECT role, COUNT(*) FROM users GROUP BY role");
+        Map<String, Integer> roleCounts = new HashMap<>();
+        while (rs.next()) {
+            roleCounts.put(rs.getString(1), rs.getInt(2));
+        }
+        
+        report.append("Total Users: ").append(totalUsers).append("\n");
+        report.append("Active Users: ").append(activeUsers).append("\n");
+        report.append("Inactive Users: ").append(inactiveUsers).append("\n\n");
+        report.append("Users by Role:\n");
+        for (Map.Entry<String, Integer> entry : roleCounts.entrySet()) {
+            report.append("- ").append(entry.getKey()).append(": ").append(entry.getValue()).append("\n");
+        }
+        
+        return report.toString();
+    }
+
+    public static String generateLibrarianActivityReport(Connection conn) throws SQLException {
+        StringBuilder report = new StringBuilder();
+        
+        // Librarian counts
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM users WHERE role='Librarian'");
+        rs.next();
+        int totalLibrarians = rs.getInt(1);
+        
+        rs = stmt.executeQuery("SELECT COUNT(*) FROM users WHERE role='Librarian' AND active=TRUE");
+        rs.next();
+        int activeLibrarians = rs.getInt(1);
+        
+        report.append("Total Librarians: ").append(totalLibrarians).append("\n");
+        report.append("Active Librarians: ").append(activeLibrarians).append("\n");
+        report.append("Inactive Librarians: ").append(totalLibrarians - activeLibrarians).append("\n\n");
+        
+        // List of librarians
+        rs = stmt.executeQuery("SELECT name, username, active FROM users WHERE role='Librarian'");
+        report.append("Librarian Details:\n");
+        while (rs.next()) {
+            report.append("- ").append(rs.getString("name")).append(" (")
+                  .append(rs.getString("username")).append("): ")
+                  .append(rs.getBoolean("active") ? "Active" : "Inactive").append("\n");
+        }
+        
+        return report.toString();
+    }
+
+    public static String generateStatusDistributionReport(Connection conn) throws SQLException {
+        StringBuilder report = new StringBuilder();
+        
+        // Status distribution
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("SELECT active, COUNT(*) FROM users GROUP BY active");
+        
+        report.append("User Status Distribution:\n");
+        while (rs.next()) {
+            report.append("- ").append(rs.getBoolean(1) ? "Active" : "Inactive")
+                  .append(": ").append(rs.getInt(2)).append(" users\n");
+        }
+        
+        // Status by role
+        rs = stmt.executeQuery("SELECT role, active, COUNT(*) FROM users GROUP BY role, active");
+        report.append("\nStatus by Role:\n");
+        while (rs.next()) {
+            report.append("- ").append(rs.getString("role")).append(" (")
+                  .append(rs.getBoolean("active") ? "Active" : "Inactive")
+                  .append("): ").append(rs.getInt(3)).append(" users\n");
+        }
+        
+        return report.toString();
+    }
+
+    // Computed over LoanHistoryStore; only loans added, renewed or returned
+    // since the last run are read from the database
+    public static String generateLoanHistoryReport(Connection conn) throws SQLException {
+        LoanHistoryStore store = LoanHistoryStore.get();
+        long start = System.nanoTime();
+        store.sync(conn);
+        long synced = System.nanoTime();
+
+        StringBuilder report = new StringBuilder();
+        report.append("Total Loans: ").append(store.size()).append("\n");
+        report.append("Students Who Borrowed: ").append(store.countDistinctStudents()).append("\n");
+        report.append("Open Loans: ").append(store.countOpen()).append("\n");
+        report.append("Overdue Loans: ").append(store.countOverdue(LocalDate.now())).append("\n");
+        report.append("Late Returns: ").append(store.countLateReturns()).append("\n");
+        report.append(String.format("Fines Charged: Rs. %.2f%n%n", store.totalFines()));
+
+        report.append("Most Borrowed Titles:\n");
+        for (LoanHistoryStore.TitleCount title : store.topTitles(10)) {
+            report.append("- ").append(title.title).append(": ").append(title.loans).append(" loans\n");
+        }
+
+        report.append("\nLoans per Month:\n");
+        for (Map.Entry<YearMonth, Integer> month : store.loansByMonth(YearMonth.now(), 12).entrySet()) {
+            report.append("- ").append(month.getKey()).append(": ").append(month.getValue()).append("\n");
+        }
+
+        long done = System.nanoTime();
+        report.append(String.format("%nSync %d ms, aggregation %d ms, store size %.1f MB%n",
+            (synced - start) / 1_000_000, (done - synced) / 1_000_000, store.estimateBytes() / 1e6));
+        return report.toString();
+    }
+
+    // Served from PopularityTracker's sketches; only the titles are read
+    public static String generatePopularityReport(Connection conn) throws SQLException {
+        PopularityTracker tracker = PopularityTracker.get();
+        StringBuilder report = new StringBuilder();
+        for (String window : PopularityTracker.WINDOWS) {
+            List<PopularityTracker.Entry> top = tracker.top(window, 10);
+            Map<Integer, String> titles = titlesOf(conn, top);
+            report.append(window).append(":\n");
+            if (top.isEmpty()) {
+                report.append("- No loans yet\n");
+            }
+            for (PopularityTracker.Entry entry : top) {
+                report.append("- ").append(titles.getOrDefault(entry.bookId, "Book " + entry.bookId))
+                      .append(": ").append(entry.loans).append(" loans, ~")
+                      .append(entry.borrowers).append(" borrowers\n");
+            }
+            report.append("\n");
+        }
+        report.append(String.format("Counts are sketch estimates (never low); sketches use %.1f MB%n",
+            tracker.estimateBytes() / 1e6));
+        return report.toString();
+    }
+
+    private static Map<Integer, String> titlesOf(Connection conn, List<PopularityTracker.Entry> entries) throws SQLException {
+        Map<Integer, String> titles = new HashMap<>();
+        if (entries.isEmpty()) {
+            return titles;
+        }
+        PreparedStatement stmt = conn.prepareStatement(
+            "SELECT id, title FROM books WHERE id IN (" + String.join(",", Collections.nCopies(entries.size(), "?")) + ")"
+        );
+        for (int i = 0; i < entries.size(); i++) {
+            stmt.setInt(i + 1, entries.get(i).bookId);
+        }
+        ResultSet rs = stmt.executeQuery();
+        while (rs.next()) {
+            titles.put(rs.getInt(1), rs.getString(2));
+        }
+        return titles;
+    }
+}
@@ -0,0 +1,243 @@
+// AdmissionController.java
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Client-side admission control in front of the shared database. Every
+// operation belongs to a class with its own token bucket (rate per second
+// and burst), so a flood of browse reads cannot use up the budget of
+// circulation writes. Classes are also ranked: when the connection pool is
+// congested (recent wait above SHED_WAIT_MS) reports are refused at once,
+// reads are refused past twice that, and writes are never shed. A refused
+// call gets SQLTransientConnectionException, which callers already report
+// as a database error, and can simply be retried.
+//
+// BATCH is for the desk's own background jobs (scanners, rebuilds, startup
+// loads). Nobody is waiting on them and a refusal would leave a view empty
+// until the next run, so instead of being refused they wait, for a token and
+// for congestion to clear, up to their max wait.
+//
+// coalesce() collapses identical read-only queries: callers arriving while
+// one is in flight, or within COALESCE_MS after it finished, share its result.
+public class AdmissionController {
+    public enum OpClass {
+        WRITE(50, 50, 5000),
+        READ(20, 40, 2000),
+        REPORT(1, 2, 0),
+        BATCH(2, 4, 60_000);
+
+        final double defaultRate;
+        final int defaultBurst;
+        final long defaultMaxWaitMs;
+
+        OpClass(double rate, int burst, long maxWaitMs) {
+            this.defaultRate = rate;
+            this.defaultBurst = burst;
+            this.defaultMaxWaitMs = maxWaitMs;
+        }
+    }
+
+    private static final long SHED_WAIT_MS = Long.getLong("library.admission.shedWaitMs", 200);
+    private static final long COALESCE_MS = Long.getLong("library.admission.coalesceMs", 1000);
+    private static final AdmissionController instance = new AdmissionController();
+
+    private final Map<OpClass, Bucket> buckets = new ConcurrentHashMap<>();
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    // Token bucket with per-class counters
+    private static class Bucket {
+        final OpClass opClass;
+        final double ratePerMs;
+        final int burst;
+        final long maxWaitMs;
+        double tokens;
+        long lastRefill = System.nanoTime();
+        final AtomicLong admitted = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong queued = new AtomicLong();
+
+        Bucket(OpClass opClass) {
+            String prefix = "library.admission." + opClass.name().toLowerCase() + ".";
+            this.opClass = opClass;
+            this.ratePerMs = Double.parseDouble(System.getProperty(prefix + "rate", String.valueOf(opClass.defaultRate))) / 1000;
+            this.burst = Integer.getInteger(prefix + "burst", opClass.defaultBurst);
+            this.maxWaitMs = Long.getLong(prefix + "maxWaitMs", opClass.defaultMaxWaitMs);
+            this.tokens = burst;
+        }
+
+        // Takes a token, or returns how many ms until one is available
+        synchronized long tryTake() {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - lastRefill) / 1_000_000.0 * ratePerMs);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / ratePerMs);
+        }
+    }
+
+    private static class Flight {
+        final CompletableFuture<Object> result = new CompletableFuture<>();
+        volatile long completedAt;
+    }
+
+    private AdmissionController() {
+        for (OpClass opClass : OpClass.values()) {
+            buckets.put(opClass, new Bucket(opClass));
+        }
+    }
+
+    public static AdmissionController get() {
+        return instance;
+    }
+
+    // Blocks for a token up to the class's max wait; throws when refused
+    public void admit(OpClass opClass) throws SQLException {
+        Bucket bucket = buckets.get(opClass);
+        long deadline = System.currentTimeMillis() + bucket.maxWaitMs;
+        if (opClass == OpClass.BATCH) {
+            awaitUncongested(bucket, deadline);
+        } else if (shouldShed(opClass)) {
+            bucket.rejected.incrementAndGet();
+            throw new SQLTransientConnectionException("Library database is busy, please try again shortly");
+        }
+
+        long wait = bucket.tryTake();
+        if (wait == 0) {
+            bucket.admitted.incrementAndGet();
+            return;
+        }
+        bucket.queued.incrementAndGet();
+        try {
+            while (wait > 0) {
+                if (System.currentTimeMillis() + wait > deadline) {
+                    bucket.rejected.incrementAndGet();
+                    throw new SQLTransientConnectionException("Too many " + opClass.name().toLowerCase()
+                        + " requests, please try again shortly");
+                }
+                Thread.sleep(wait);
+                wait = bucket.tryTake();
+            }
+            bucket.admitted.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for admission", e);
+        } finally {
+            bucket.queued.decrementAndGet();
+        }
+    }
+
+    // Batch work backs off while the pool is congested rather than being shed
+    private static void awaitUncongested(Bucket bucket, long deadline) throws SQLException {
+        while (DBConnection.getPool().getRecentWaitMillis() > SHED_WAIT_MS) {
+            if (System.currentTimeMillis() + SHED_WAIT_MS > deadline) {
+                bucket.rejected.incrementAndGet();
+                throw new SQLTransientConnectionException("Library database is busy, please try again shortly");
+            }
+            bucket.queued.incrementAndGet();
+            try {
+                Thread.sleep(SHED_WAIT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted waiting for admission", e);
+            } finally {
+                bucket.queued.decrementAndGet();
+            }
+        }
+    }
+
+    private static boolean shouldShed(OpClass opClass) {
+        double wait = DBConnection.getPool().getRecentWaitMillis();
+        switch (opClass) {
+            case REPORT: return wait > SHED_WAIT_MS;
+            case READ: return wait > 2 * SHED_WAIT_MS;
+            default: return false;
+        }
+    }
+
+    // Runs the query unless an identical one (same key) is in flight or just
+    // finished, in which case its result is shared. Results must not be mutated.
+    @SuppressWarnings("unchecked")
+    public <T> T coalesce(String key, Callable<T> query) throws SQLException {
+        while (true) {
+            Flight flight = flights.get(key);
+            if (flight != null) {
+                boolean fresh = !flight.result.isDone()
+                    || System.currentTimeMillis() - flight.completedAt < COALESCE_MS;
+                if (fresh && !flight.result.isCompletedExceptionally()) {
+                    coalesced.incrementAndGet();
+                    return (T) await(flight);
+                }
+                flights.remove(key, flight);
+                continue;
+            }
+
+            Flight mine = new Flight();
+            if (flights.putIfAbsent(key, mine) != null) {
+                continue; // somebody else started it first
+            }
+            try {
+                T value = query.call();
+                mine.completedAt = System.currentTimeMillis();
+                mine.result.complete(value);
+                return value;
+            } catch (Exception ex) {
+                flights.remove(key, mine);
+                mine.result.completeExceptionally(ex);
+                if (ex instanceof SQLException) throw (SQLException) ex;
+                throw new SQLException(ex);
+            }
+        }
+    }
+
+    private static Object await(Flight flight) throws SQLException {
+        try {
+            return flight.result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a shared query", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            throw new SQLException(cause);
+        }
+    }
+
+    // ---- Metrics ----
+
+    public long getAdmitted(OpClass opClass) {
+        return buckets.get(opClass).admitted.get();
+    }
+
+    public long getRejected(OpClass opClass) {
+        return buckets.get(opClass).rejected.get();
+    }
+
+    // Callers currently waiting for a token
+    public long getQueued(OpClass opClass) {
+        return buckets.get(opClass).queued.get();
+    }
+
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (OpClass opClass : OpClass.values()) {
+            sb.append(String.format("%s admitted=%d rejected=%d queued=%d, ", opClass,
+                getAdmitted(opClass), getRejected(opClass), getQueued(opClass)));
+        }
+        return sb.append("coalesced=").append(getCoalesced())
+                 .append(String.format(", pool wait %.1f ms", DBConnection.getPool().getRecentWaitMillis()))
+                 .toString();
+    }
+}
@@ -0,0 +1,159 @@
+// AvailabilityIndex.java
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Process-wide set of the titles with at least one copy on the shelf, as a
+// RoaringBitmap of book ids. "Is it available", "how many titles are
+// available" and "which of these are available" (wishlist against shelf)
+// are answered from memory instead of a query.
+//
+// Kept current from ChangeFeed, which carries this process's circulation
+// changes and every other desk's; each event has the title's copy counters
+// after the change. A full reconcile from books runs at a fixed period and
+// replays the events that arrived while it was reading.
+public class AvailabilityIndex {
+    private static final long RECONCILE_MINUTES = Long.getLong("library.availability.reconcileMinutes", 10);
+    private static final AvailabilityIndex instance = new AvailabilityIndex();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService scheduler;
+
+    // Guarded by lock
+    private RoaringBitmap available = new RoaringBitmap();
+    private List<CirculationEvent> sinceReconcile; // events seen while a reconcile is running
+    private boolean ready;
+
+    private AvailabilityIndex() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "availability-reconcile");
+            t.setDaemon(true);
+            return t;
+        });
+        ChangeFeed.get().addListener(this::apply);
+        scheduler.scheduleWithFixedDelay(this::runReconcile, 0, RECONCILE_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public static AvailabilityIndex get() {
+        return instance;
+    }
+
+    // False until the first reconcile has finished; callers fall back to their own data
+    public boolean isReady() {
+        lock.readLock().lock();
+        try {
+            return ready;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isAvailable(int bookId) {
+        lock.readLock().lock();
+        try {
+            return available.contains(bookId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of titles with a copy on the shelf
+    public int availableCount() {
+        lock.readLock().lock();
+        try {
+            return available.getCardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The given titles that have a copy on the shelf, ascending
+    public int[] availableOf(List<Integer> bookIds) {
+        RoaringBitmap wanted = RoaringBitmap.of(bookIds.stream().mapToInt(Integer::intValue).toArray());
+        lock.readLock().lock();
+        try {
+            return RoaringBitmap.and(wanted, available).toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Runs on the change-feed thread
+    private void apply(CirculationEvent event) {
+        // A late-filled gap must not undo a newer change to the same title
+        if (!ChangeFeed.get().isCurrent(event)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            set(available, event);
+            if (sinceReconcile != null) {
+                sinceReconcile.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void set(RoaringBitmap bitmap, CirculationEvent event) {
+        if (event.getType() != CirculationEvent.Type.DELETE_TITLE && event.getAvailableCopies() > 0) {
+            bitmap.add(event.getBookId());
+        } else {
+            bitmap.remove(event.getBookId());
+        }
+    }
+
+    public void reconcileNow() {
+        scheduler.execute(this::runReconcile);
+    }
+
+    private void runReconcile() {
+        lock.writeLock().lock();
+        try {
+            sinceReconcile = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        RoaringBitmap loaded = null;
+        try {
+            loaded = load();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (loaded != null) {
+                // Changes that committed after our read
+                for (CirculationEvent event : sinceReconcile) {
+                    set(loaded, event);
+                }
+                available = loaded;
+                ready = true;
+            }
+            sinceReconcile = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static RoaringBitmap load() throws SQLException {
+        // One index-only query, and the index is useless until it has run once
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.READ)) {
+            // Covered by idx_books_available
+            PreparedStatement stmt = conn.prepareStatement("SELECT id FROM books WHERE available_copies > 0");
+            stmt.setFetchSize(1000);
+            ResultSet rs = stmt.executeQuery();
+            RoaringBitmap bitmap = new RoaringBitmap();
+            while (rs.next()) {
+                bitmap.add(rs.getInt(1));
+            }
+            return bitmap;
+        }
+    }
+}
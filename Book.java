@@ -0,0 +1,33 @@
+// Book.java
+public class Book {
+    private final int id;
+    private final String title;
+    private final String author;
+    private final String genre;
+    private final int availableCopies;
+    private final int totalCopies;
+
+    public Book(int id, String title, String author, String genre, int availableCopies, int totalCopies) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.genre = genre;
+        this.availableCopies = availableCopies;
+        this.totalCopies = totalCopies;
+    }
+
+    public int getId() { return id; }
+    public String getTitle() { return title; }
+    public String getAuthor() { return author; }
+    public String getGenre() { return genre; }
+    public int getAvailableCopies() { return availableCopies; }
+    public int getTotalCopies() { return totalCopies; }
+
+    public boolean isAvailable() {
+        return availableCopies > 0;
+    }
+
+    public Book withAvailableCopies(int copies) {
+        return new Book(id, title, author, genre, copies, totalCopies);
+    }
+}
@@ -0,0 +1,305 @@
+// BookInventory.java
+import java.sql.*;
+import java.time.LocalDate;
+
+// Title/copy inventory. A row in books is a title and every physical copy is a
+// row in book_copies. books.available_copies is changed in the same transaction
+// as the copy and the loan record, and isAvailable follows it.
+//
+// Every write locks the title row with SELECT ... FOR UPDATE and bumps
+// books.version, and the counter update is guarded by the version it read, so
+// two clients can never both take the last copy. Callers in this process go
+// through CirculationCoordinator, which serializes work on the same book.
+//
+// Each change also writes its CirculationEvent to the outbox in the same
+// transaction and publishes it to EventJournal after the commit.
+public class BookInventory {
+    public static final int LOAN_DAYS = 14;
+    public static final double FINE_PER_DAY = 5; // Rs. 5 per day
+
+    // Adds a new title with the given number of copies, returns the book id
+    public static int addTitle(Connection conn, String title, String author, String genre, int copies) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO books (title, author, genre, isAvailable, total_copies, available_copies) VALUES (?, ?, ?, ?, ?, ?)",
+                Statement.RETURN_GENERATED_KEYS
+            );
+            stmt.setString(1, title);
+            stmt.setString(2, author);
+            stmt.setString(3, genre);
+            stmt.setBoolean(4, copies > 0);
+            stmt.setInt(5, copies);
+            stmt.setInt(6, copies);
+            stmt.executeUpdate();
+
+            ResultSet keys = stmt.getGeneratedKeys();
+            keys.next();
+            int bookId = keys.getInt(1);
+            insertCopies(conn, bookId, copies);
+            CirculationEvent event = EventJournal.record(conn, CirculationEvent.Type.ADD_TITLE, 0, bookId, 0, null, 0);
+
+            conn.commit();
+            EventJournal.get().publish(event);
+            return bookId;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Adds more copies of an existing title
+    public static void addCopies(Connection conn, int bookId, int copies) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE books SET total_copies = total_copies + ?, available_copies = available_copies + ?, " +
+                "isAvailable = TRUE, version = version + 1 WHERE id=?"
+            );
+            stmt.setInt(1, copies);
+            stmt.setInt(2, copies);
+            stmt.setInt(3, bookId);
+            if (stmt.executeUpdate() == 0) {
+                throw new SQLException("No book with id " + bookId);
+            }
+            insertCopies(conn, bookId, copies);
+            CirculationEvent event = EventJournal.record(conn, CirculationEvent.Type.ADD_COPIES, 0, bookId, 0, null, 0);
+            conn.commit();
+            EventJournal.get().publish(event);
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void insertCopies(Connection conn, int bookId, int copies) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement("INSERT INTO book_copies (book_id, isAvailable) VALUES (?, TRUE)");
+        for (int i = 0; i < copies; i++) {
+            stmt.setInt(1, bookId);
+            stmt.addBatch();
+        }
+        stmt.executeBatch();
+    }
+
+    // Issues one free copy of the title to the student.
+    // Returns the copy id, or -1 when no copy is available.
+    public static int issueCopy(Connection conn, int studentId, int bookId, LocalDate today, LocalDate dueDate) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            // Lock the title row and remember the version we saw
+            int version = lockTitle(conn, bookId);
+            if (version < 0) {
+                conn.rollback();
+                return -1;
+            }
+
+            PreparedStatement claim = conn.prepareStatement(
+                "UPDATE books SET available_copies = available_copies - 1, isAvailable = (available_copies > 0), " +
+                "version = version + 1 WHERE id=? AND version=? AND available_copies > 0"
+            );
+            claim.setInt(1, bookId);
+            claim.setInt(2, version);
+            if (claim.executeUpdate() == 0) {
+                conn.rollback();
+                return -1;
+            }
+
+            PreparedStatement pick = conn.prepareStatement(
+                "SELECT id FROM book_copies WHERE book_id=? AND isAvailable=TRUE LIMIT 1 FOR UPDATE"
+            );
+            pick.setInt(1, bookId);
+            ResultSet rs = pick.executeQuery();
+            if (!rs.next()) {
+                // Counter and copies disagree - leave everything as it was
+                conn.rollback();
+                return -1;
+            }
+            int copyId = rs.getInt("id");
+
+            PreparedStatement updateCopy = conn.prepareStatement("UPDATE book_copies SET isAvailable=FALSE WHERE id=?");
+            updateCopy.setInt(1, copyId);
+            updateCopy.executeUpdate();
+
+            PreparedStatement loan = conn.prepareStatement(
+                "INSERT INTO borrowed_books (student_id, book_id, copy_id, borrow_date, due_date) VALUES (?, ?, ?, ?, ?)"
+            );
+            loan.setInt(1, studentId);
+            loan.setInt(2, bookId);
+            loan.setInt(3, copyId);
+            loan.setDate(4, Date.valueOf(today));
+            loan.setDate(5, Date.valueOf(dueDate));
+            loan.executeUpdate();
+            CirculationEvent event = EventJournal.record(conn, CirculationEvent.Type.ISSUE, studentId, bookId, copyId, dueDate, 0);
+
+            conn.commit();
+            EventJournal.get().publish(event);
+            return copyId;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Returns the student's open loan of the title.
+    // Returns the fine charged, or -1 when there is no open loan.
+    public static double returnCopy(Connection conn, int studentId, int bookId, LocalDate today) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            if (lockTitle(conn, bookId) < 0) {
+                conn.rollback();
+                return -1;
+            }
+
+            PreparedStatement find = conn.prepareStatement(
+                "SELECT id, copy_id, due_date FROM borrowed_books " +
+                "WHERE student_id=? AND book_id=? AND return_date IS NULL LIMIT 1 FOR UPDATE"
+            );
+            find.setInt(1, studentId);
+            find.setInt(2, bookId);
+            ResultSet rs = find.executeQuery();
+            if (!rs.next()) {
+                conn.rollback();
+                return -1;
+            }
+            int loanId = rs.getInt("id");
+            int copyId = rs.getInt("copy_id");
+            boolean hasCopy = !rs.wasNull();
+            LocalDate due = rs.getDate("due_date").toLocalDate();
+
+            long daysLate = today.toEpochDay() - due.toEpochDay();
+            double fine = daysLate > 0 ? daysLate * FINE_PER_DAY : 0;
+
+            PreparedStatement close = conn.prepareStatement(
+                "UPDATE borrowed_books SET return_date=?, fine=? WHERE id=?"
+            );
+            close.setDate(1, Date.valueOf(today));
+            close.setDouble(2, fine);
+            close.setInt(3, loanId);
+            close.executeUpdate();
+
+            if (hasCopy) {
+                PreparedStatement updateCopy = conn.prepareStatement("UPDATE book_copies SET isAvailable=TRUE WHERE id=?");
+                updateCopy.setInt(1, copyId);
+                updateCopy.executeUpdate();
+            }
+
+            PreparedStatement release = conn.prepareStatement(
+                "UPDATE books SET available_copies = LEAST(available_copies + 1, total_copies), isAvailable = TRUE, " +
+                "version = version + 1 WHERE id=?"
+            );
+            release.setInt(1, bookId);
+            release.executeUpdate();
+            CirculationEvent event = EventJournal.record(conn, CirculationEvent.Type.RETURN, studentId, bookId,
+                hasCopy ? copyId : 0, null, fine);
+
+            conn.commit();
+            EventJournal.get().publish(event);
+            return fine;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Moves the due date of the student's open loan.
+    // Returns false when there is no open loan, or when another student holds a
+    // copy and none is left on the shelf.
+    public static boolean renewLoan(Connection conn, int studentId, int bookId, LocalDate newDueDate) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            if (lockTitle(conn, bookId) < 0) {
+                conn.rollback();
+                return false;
+            }
+
+            PreparedStatement check = conn.prepareStatement(
+                "SELECT bb.id FROM borrowed_books bb JOIN books b ON b.id = bb.book_id " +
+                "WHERE bb.book_id=? AND bb.return_date IS NULL AND bb.student_id != ? AND b.available_copies = 0 LIMIT 1"
+            );
+            check.setInt(1, bookId);
+            check.setInt(2, studentId);
+            if (check.executeQuery().next()) {
+                conn.rollback();
+                return false;
+            }
+
+            PreparedStatement stmt = conn.prepareStatement(
+                "UPDATE borrowed_books SET due_date=? WHERE student_id=? AND book_id=? AND return_date IS NULL"
+            );
+            stmt.setDate(1, Date.valueOf(newDueDate));
+            stmt.setInt(2, studentId);
+            stmt.setInt(3, bookId);
+            if (stmt.executeUpdate() == 0) {
+                conn.rollback();
+                return false;
+            }
+            CirculationEvent event = EventJournal.record(conn, CirculationEvent.Type.RENEW, studentId, bookId, 0, newDueDate, 0);
+
+            conn.commit();
+            EventJournal.get().publish(event);
+            return true;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Deletes the title and its copies.
+    // Returns false when a copy is still on loan or the title does not exist.
+    public static boolean deleteTitle(Connection conn, int bookId) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            if (lockTitle(conn, bookId) < 0) {
+                conn.rollback();
+                return false;
+            }
+
+            PreparedStatement check = conn.prepareStatement(
+                "SELECT id FROM borrowed_books WHERE book_id=? AND return_date IS NULL LIMIT 1"
+            );
+            check.setInt(1, bookId);
+            if (check.executeQuery().next()) {
+                conn.rollback();
+                return false;
+            }
+
+            PreparedStatement stmt = conn.prepareStatement("DELETE FROM books WHERE id=?");
+            stmt.setInt(1, bookId);
+            stmt.executeUpdate();
+            CirculationEvent event = EventJournal.record(conn, CirculationEvent.Type.DELETE_TITLE, 0, bookId, 0, null, 0);
+
+            conn.commit();
+            EventJournal.get().publish(event);
+            return true;
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    // Row-locks the title for the rest of the transaction, returns its version or -1
+    private static int lockTitle(Connection conn, int bookId) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement("SELECT version FROM books WHERE id=? FOR UPDATE");
+        stmt.setInt(1, bookId);
+        ResultSet rs = stmt.executeQuery();
+        return rs.next() ? rs.getInt("version") : -1;
+    }
+}
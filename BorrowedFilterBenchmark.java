@@ -0,0 +1,128 @@
+// BorrowedFilterBenchmark.java
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import javax.swing.table.TableRowSorter;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Times one keystroke in the borrowed-books search of StudentDashboard: the
+// query is typed a character at a time and the table re-filtered after each.
+// "regex" is how the dashboard used to do it (a new TableRowSorter and a
+// case-insensitive regexFilter per keystroke, the status as a second filter);
+// "compiled" is BorrowedLoanFilter on one sorter. Needs no database or display.
+//
+// Usage:
+//   java BorrowedFilterBenchmark [--rows 100000] [--query "the history"] [--status ALL] [--rounds 5]
+public class BorrowedFilterBenchmark {
+    private static final String[] WORDS = { "the", "history", "of", "modern", "java", "garden", "river",
+        "silent", "night", "physics", "art", "war", "data", "city", "ocean", "mind" };
+    private static final String[] COLUMNS = { "Book ID", "Title", "Author", "Borrow Date", "Due Date", "Status", "Fine" };
+
+    private final DefaultTableModel model = new DefaultTableModel(COLUMNS, 0);
+    private final JTable table = new JTable(model);
+    private final List<Loan> loans = new ArrayList<>();
+
+    public BorrowedFilterBenchmark(int rows) {
+        Random random = new Random(42);
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < rows; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " "
+                + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            LocalDate borrowed = today.minusDays(random.nextInt(400));
+            LocalDate due = borrowed.plusDays(14);
+            boolean returned = random.nextInt(4) > 0;
+            Loan loan = new Loan(i, title, "Author " + random.nextInt(2000), borrowed, due,
+                returned ? due.minusDays(random.nextInt(10)) : null, returned ? 0 : random.nextInt(50));
+            loans.add(loan);
+            model.addRow(new Object[] { loan.getBookId(), loan.getTitle(), loan.getAuthor(),
+                Date.valueOf(loan.getBorrowDate()), Date.valueOf(loan.getDueDate()), loan.getStatus(), loan.getFine() });
+        }
+    }
+
+    // The filter as the dashboard built it before BorrowedLoanFilter
+    private void regexKeystroke(String searchText, String status) {
+        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(model);
+        table.setRowSorter(sorter);
+        List<RowFilter<Object, Object>> filters = new ArrayList<>();
+        if (!searchText.isEmpty()) {
+            filters.add(RowFilter.regexFilter("(?i)" + searchText));
+        }
+        if (!"All".equals(status)) {
+            if ("Overdue".equals(status)) {
+                filters.add(new RowFilter<Object, Object>() {
+                    public boolean include(Entry<? extends Object, ? extends Object> entry) {
+                        return "Borrowed".equals(entry.getValue(5))
+                            && LocalDate.now().isAfter(((Date) entry.getValue(4)).toLocalDate());
+                    }
+                });
+            } else {
+                filters.add(RowFilter.regexFilter("^" + status + "$", 5));
+            }
+        }
+        sorter.setRowFilter(filters.isEmpty() ? null : RowFilter.andFilter(filters));
+    }
+
+    // Milliseconds per keystroke while typing query
+    private double[] type(String query, BorrowedLoanFilter.Status status, boolean compiled) throws Exception {
+        double[] times = new double[query.length()];
+        BorrowedLoanFilter filter = new BorrowedLoanFilter();
+        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(model);
+        SwingUtilities.invokeAndWait(() -> {
+            filter.index(loans);
+            table.setRowSorter(compiled ? sorter : null);
+        });
+        String statusName = status.name().charAt(0) + status.name().substring(1).toLowerCase();
+        for (int i = 1; i <= query.length(); i++) {
+            String text = query.substring(0, i);
+            long start = System.nanoTime();
+            SwingUtilities.invokeAndWait(() -> {
+                if (compiled) {
+                    filter.compile(text, status);
+                    sorter.setRowFilter(filter.isEmpty() ? null : filter);
+                } else {
+                    regexKeystroke(text.toLowerCase(), statusName);
+                }
+            });
+            times[i - 1] = (System.nanoTime() - start) / 1e6;
+        }
+        return times;
+    }
+
+    private static String describe(String name, double[] times, int visible) {
+        double[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return String.format("%-9s mean=%7.2fms p50=%7.2fms max=%7.2fms  (%d rows shown at the end)",
+            name, Arrays.stream(sorted).average().orElse(0), sorted[sorted.length / 2], sorted[sorted.length - 1], visible);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int rows = 100_000;
+        String query = "the history";
+        BorrowedLoanFilter.Status status = BorrowedLoanFilter.Status.ALL;
+        int rounds = 5;
+        for (int i = 0; i + 1 < args.length; i++) {
+            switch (args[i]) {
+                case "--rows": rows = Integer.parseInt(args[++i]); break;
+                case "--query": query = args[++i]; break;
+                case "--status": status = BorrowedLoanFilter.Status.valueOf(args[++i].toUpperCase()); break;
+                case "--rounds": rounds = Integer.parseInt(args[++i]); break;
+                default: break;
+            }
+        }
+        BorrowedFilterBenchmark benchmark = new BorrowedFilterBenchmark(rows);
+        System.out.printf("%d rows, typing \"%s\", status %s, %d rounds after one warm-up%n", rows, query, status, rounds);
+        benchmark.type(query, status, false);
+        benchmark.type(query, status, true);
+        for (int round = 1; round <= rounds; round++) {
+            double[] regex = benchmark.type(query, status, false);
+            System.out.println(describe("regex", regex, benchmark.table.getRowCount()));
+            double[] compiled = benchmark.type(query, status, true);
+            System.out.println(describe("compiled", compiled, benchmark.table.getRowCount()));
+        }
+        System.exit(0);
+    }
+}
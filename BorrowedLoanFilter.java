@@ -0,0 +1,77 @@
+// BorrowedLoanFilter.java
+import java.time.LocalDate;
+import java.util.List;
+import javax.swing.RowFilter;
+import javax.swing.table.TableModel;
+
+// Row filter of the student's borrowed-books table. It is installed once on the
+// table's sorter and recompiled when the search text or the status choice
+// changes, so typing does not build a sorter or regex per key.
+//
+// index() caches what the filter needs for each model row when the table is
+// loaded: the row's cells lowercased into one string (literal substring match,
+// no regex), the due date as an epoch day and the loan status. include() then
+// compares ints and does one indexOf per row.
+public class BorrowedLoanFilter extends RowFilter<TableModel, Integer> {
+    public enum Status { ALL, BORROWED, RETURNED, OVERDUE }
+
+    private static final char SEPARATOR = '\u0000'; // keeps matches inside one cell
+
+    private String[] text = new String[0];
+    private int[] dueDay = new int[0];
+    private boolean[] returned = new boolean[0];
+
+    private String needle = "";
+    private Status status = Status.ALL;
+    private long today;
+
+    // Row i of the table model shows loans.get(i)
+    public void index(List<Loan> loans) {
+        int n = loans.size();
+        text = new String[n];
+        dueDay = new int[n];
+        returned = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            Loan loan = loans.get(i);
+            text[i] = (loan.getBookId() + "" + SEPARATOR + loan.getTitle() + SEPARATOR + loan.getAuthor() + SEPARATOR
+                + loan.getBorrowDate() + SEPARATOR + loan.getDueDate() + SEPARATOR + loan.getStatus() + SEPARATOR
+                + loan.getFine()).toLowerCase();
+            dueDay[i] = (int) loan.getDueDate().toEpochDay();
+            returned[i] = loan.isReturned();
+        }
+        today = LocalDate.now().toEpochDay();
+    }
+
+    public void compile(String search, Status status) {
+        this.needle = search == null ? "" : search.trim().toLowerCase();
+        this.status = status;
+        this.today = LocalDate.now().toEpochDay();
+    }
+
+    // True when every row passes and the sorter can skip filtering
+    public boolean isEmpty() {
+        return needle.isEmpty() && status == Status.ALL;
+    }
+
+    @Override
+    public boolean include(Entry<? extends TableModel, ? extends Integer> entry) {
+        int row = entry.getIdentifier();
+        if (row >= text.length) {
+            return true; // added after the last index(); shown until the next load
+        }
+        switch (status) {
+            case BORROWED:
+                if (returned[row]) return false;
+                break;
+            case RETURNED:
+                if (!returned[row]) return false;
+                break;
+            case OVERDUE:
+                if (returned[row] || dueDay[row] >= today) return false;
+                break;
+            default:
+                break;
+        }
+        return needle.isEmpty() || text[row].indexOf(needle) >= 0;
+    }
+}
@@ -0,0 +1,221 @@
+// CatalogSnapshot.java
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The catalog as a local binary file, so a dashboard can show it before the
+// database has answered. Layout (big-endian):
+//
+//   header   magic, version, source (hash of the database URL), count,
+//            highWaterMark (outbox seq the contents are current to), savedAt
+//   records  count x RECORD bytes: id, available, total, then offset and
+//            length of title, author and genre in the string heap (-1 = null)
+//   heap     the UTF-8 bytes of every distinct string, once
+//
+// open() maps the file read-only; records are read in place and strings are
+// decoded on access. Authors and genres repeat, so each is decoded once and
+// shared by every record that points at it. The file has two slots and a
+// write goes to the slot this process did not map, because a mapped file
+// cannot be replaced everywhere (Windows); open() takes the newest valid slot.
+public class CatalogSnapshot {
+    private static final int MAGIC = 0x4C434154; // "LCAT"
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+    private static final int RECORD = 36;
+    private static final Path FILE = Paths.get(System.getProperty("library.catalog.snapshot",
+        Paths.get(System.getProperty("user.home"), ".library", "catalog.snapshot").toString()));
+
+    private static volatile int mappedSlot = -1;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final long highWaterMark;
+    private final long savedAt;
+    private final int heapStart;
+    private final Map<Integer, String> shared = new ConcurrentHashMap<>(); // heap offset -> decoded author/genre
+
+    private CatalogSnapshot(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(12);
+        this.highWaterMark = buffer.getLong(16);
+        this.savedAt = buffer.getLong(24);
+        this.heapStart = HEADER + count * RECORD;
+    }
+
+    // The newest valid snapshot of this database, or null when there is none
+    public static CatalogSnapshot open() {
+        CatalogSnapshot newest = null;
+        int slot = -1;
+        for (int i = 0; i < 2; i++) {
+            CatalogSnapshot snapshot = map(slotFile(i));
+            if (snapshot != null && (newest == null || snapshot.savedAt > newest.savedAt)) {
+                newest = snapshot;
+                slot = i;
+            }
+        }
+        mappedSlot = slot;
+        return newest;
+    }
+
+    private static CatalogSnapshot map(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER || size > Integer.MAX_VALUE) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || buffer.getInt(8) != source()
+                    || HEADER + (long) buffer.getInt(12) * RECORD > size) {
+                return null;
+            }
+            return new CatalogSnapshot(buffer);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public int getId(int i) {
+        return buffer.getInt(HEADER + i * RECORD);
+    }
+
+    public int getAvailableCopies(int i) {
+        return buffer.getInt(HEADER + i * RECORD + 4);
+    }
+
+    public int getTotalCopies(int i) {
+        return buffer.getInt(HEADER + i * RECORD + 8);
+    }
+
+    public String getTitle(int i) {
+        int field = HEADER + i * RECORD + 12;
+        int offset = buffer.getInt(field);
+        return offset < 0 ? null : decode(offset, buffer.getInt(field + 4));
+    }
+
+    public String getAuthor(int i) {
+        return sharedString(HEADER + i * RECORD + 20);
+    }
+
+    public String getGenre(int i) {
+        return sharedString(HEADER + i * RECORD + 28);
+    }
+
+    public Book getBook(int i) {
+        return new Book(getId(i), getTitle(i), getAuthor(i), getGenre(i), getAvailableCopies(i), getTotalCopies(i));
+    }
+
+    // Every title, in snapshot (title) order
+    public List<Book> books() {
+        List<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            books.add(getBook(i));
+        }
+        return books;
+    }
+
+    // Titles with a copy on the shelf, as LibraryService.getAvailableBooks() lists them
+    public List<Book> availableBooks() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (getAvailableCopies(i) > 0) {
+                books.add(getBook(i));
+            }
+        }
+        return books;
+    }
+
+    private String sharedString(int field) {
+        int offset = buffer.getInt(field);
+        if (offset < 0) {
+            return null;
+        }
+        String value = shared.get(offset);
+        if (value == null) {
+            value = decode(offset, buffer.getInt(field + 4));
+            shared.put(offset, value);
+        }
+        return value;
+    }
+
+    private String decode(int offset, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(heapStart + offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Writes the catalog as of highWaterMark, in the given order
+    public static void write(List<Book> books, long highWaterMark) throws IOException {
+        int count = books.size();
+        ByteBuffer records = ByteBuffer.allocate(HEADER + count * RECORD);
+        records.putInt(MAGIC).putInt(VERSION).putInt(source()).putInt(count)
+            .putLong(highWaterMark).putLong(System.currentTimeMillis());
+        ByteBuffer heap = ByteBuffer.allocate(1 << 16);
+        Map<String, Integer> written = new HashMap<>();
+        for (Book book : books) {
+            records.putInt(book.getId()).putInt(book.getAvailableCopies()).putInt(book.getTotalCopies());
+            for (String value : new String[]{book.getTitle(), book.getAuthor(), book.getGenre()}) {
+                if (value == null) {
+                    records.putInt(-1).putInt(0);
+                    continue;
+                }
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                Integer offset = written.get(value);
+                if (offset == null) {
+                    if (heap.remaining() < bytes.length) {
+                        heap = ByteBuffer.allocate(Math.max(heap.capacity() * 2, heap.position() + bytes.length))
+                            .put(heap.flip());
+                    }
+                    offset = heap.position();
+                    written.put(value, offset);
+                    heap.put(bytes);
+                }
+                records.putInt(offset).putInt(bytes.length);
+            }
+        }
+
+        // Never the slot this process has mapped; the rename makes the new slot appear whole
+        int slot = mappedSlot == 0 ? 1 : 0;
+        Path target = slotFile(slot);
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            out.write(records.array());
+            out.write(heap.array(), 0, heap.position());
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static Path slotFile(int slot) {
+        return FILE.resolveSibling(FILE.getFileName() + "." + slot);
+    }
+
+    // A snapshot of another database is never used
+    private static int source() {
+        return DBConnection.getUrl().hashCode();
+    }
+}
@@ -0,0 +1,229 @@
+// CatalogSync.java
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Warm start for the catalog tables. At startup the dashboards show the
+// CatalogSnapshot written by the previous run, then ask for a reconcile: the
+// titles touched in the outbox since the snapshot's high-water mark are read
+// again from books and handed back as a Delta, and a new snapshot is written.
+// Without a snapshot, or when too much has changed, the catalog is read in
+// full instead.
+//
+// The mark and the catalog are read in one REPEATABLE READ snapshot. Outbox
+// seqs become visible in commit order, not seq order, so each delta starts
+// OVERLAP seqs below the mark to pick up transactions that committed late.
+// Reconciles run one at a time on a background thread; one that fails is
+// retried after RETRY_MS, doubling up to MAX_RETRY_MS, until it succeeds.
+public class CatalogSync {
+    private static final int MAX_DELTA = Integer.getInteger("library.catalog.maxDelta", 20000);
+    private static final int OVERLAP = 1000;
+    private static final int IN_CHUNK = 1000;
+    private static final long RETRY_MS = 5000;
+    private static final long MAX_RETRY_MS = 10 * 60_000;
+    private static final String BOOK_COLUMNS = "id, title, author, genre, available_copies, total_copies";
+    private static final CatalogSync instance = new CatalogSync();
+
+    private final ScheduledExecutorService worker;
+    private final CatalogSnapshot startup;
+
+    // Only touched on the worker thread
+    private List<Book> catalog;  // as of mark, in title order
+    private long mark;
+
+    // What changed since the snapshot, current as of highWaterMark
+    public static class Delta {
+        public final long highWaterMark;
+        public final List<Book> changed;
+        public final Set<Integer> deleted;
+        public final List<Book> all; // the whole catalog when it was read in full, else null
+
+        Delta(long highWaterMark, List<Book> changed, Set<Integer> deleted, List<Book> all) {
+            this.highWaterMark = highWaterMark;
+            this.changed = changed;
+            this.deleted = deleted;
+            this.all = all;
+        }
+
+        // False when the change feed has already delivered a later change to the title
+        public boolean isCurrent(Book book) {
+            return ChangeFeed.get().isCurrent(book.getId(), highWaterMark);
+        }
+    }
+
+    private CatalogSync() {
+        worker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "catalog-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        startup = CatalogSnapshot.open();
+    }
+
+    public static CatalogSync get() {
+        return instance;
+    }
+
+    // The snapshot found at startup, or null when there was none
+    public CatalogSnapshot getSnapshot() {
+        return startup;
+    }
+
+    // Brings the catalog up to date and writes a new snapshot. The listener,
+    // if any, gets the delta on the sync thread.
+    public void reconcile(Consumer<Delta> listener) {
+        reconcile(listener, null);
+    }
+
+    // As above; failureListener, if any, hears of each failed attempt before
+    // it is retried
+    public void reconcile(Consumer<Delta> listener, Consumer<Exception> failureListener) {
+        worker.execute(() -> attempt(listener, failureListener, RETRY_MS));
+    }
+
+    private void attempt(Consumer<Delta> listener, Consumer<Exception> failureListener, long retryMs) {
+        Delta delta;
+        try {
+            delta = runReconcile();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            if (failureListener != null) {
+                failureListener.accept(ex);
+            }
+            worker.schedule(() -> attempt(listener, failureListener, Math.min(retryMs * 2, MAX_RETRY_MS)),
+                retryMs, TimeUnit.MILLISECONDS);
+            return;
+        }
+        if (listener != null) {
+            try {
+                listener.accept(delta);
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    private Delta runReconcile() throws Exception {
+        if (catalog == null && startup != null) {
+            catalog = startup.books();
+            mark = startup.getHighWaterMark();
+        }
+        Delta delta = catalog == null ? null : readChanges(mark);
+        if (delta == null) {
+            delta = readAll();
+            catalog = delta.all;
+        } else {
+            catalog = merge(catalog, delta);
+        }
+        mark = delta.highWaterMark;
+        CatalogSnapshot.write(catalog, mark);
+        return delta;
+    }
+
+    // Titles touched since the mark, or null when a full read is cheaper
+    private static Delta readChanges(long since) throws SQLException {
+        // Background batch work: waits out congestion instead of being shed
+        try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.BATCH)) {
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                long now = maxSeq(conn);
+                if (now < since) {
+                    return null; // not the outbox the snapshot was taken from
+                }
+                PreparedStatement stmt = conn.prepareStatement(
+                    "SELECT DISTINCT book_id FROM circulation_events WHERE seq > ? AND seq <= ?"
+                );
+                stmt.setLong(1, since - OVERLAP);
+                stmt.setLong(2, now);
+                ResultSet rs = stmt.executeQuery();
+                List<Integer> ids = new ArrayList<>();
+                while (rs.next()) {
+                    ids.add(rs.getInt(1));
+                    if (ids.size() > MAX_DELTA) {
+                        return null;
+                    }
+                }
+
+                List<Book> changed = new ArrayList<>();
+                Set<Integer> deleted = new HashSet<>(ids);
+                for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+                    List<Integer> chunk = ids.subList(from, Math.min(from + IN_CHUNK, ids.size()));
+                    String placeholders = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                    PreparedStatement books = conn.prepareStatement(
+                        "SELECT " + BOOK_COLUMNS + " FROM books WHERE id IN (" + placeholders + ")"
+                    );
+                    for (int i = 0; i < chunk.size(); i++) {
+                        books.setInt(i + 1, chunk.get(i));
+                    }
+                    for (Book book : readBooks(books.executeQuery())) {
+                        changed.add(book);
+                        deleted.remove(book.getId());
+                    }
+                }
+                return new Delta(now, changed, deleted, null);
+            } finally {
+                conn.commit();
+            }
+        }
+    }
+
+    private static Delta readAll() throws SQLException {
+        try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.BATCH)) {
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            try {
+                long now = maxSeq(conn);
+                Statement stmt = conn.createStatement();
+                stmt.setFetchSize(1000);
+                List<Book> all = readBooks(stmt.executeQuery("SELECT " + BOOK_COLUMNS + " FROM books ORDER BY title"));
+                return new Delta(now, Collections.emptyList(), Collections.emptySet(), all);
+            } finally {
+                conn.commit();
+            }
+        }
+    }
+
+    private static long maxSeq(Connection conn) throws SQLException {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT IFNULL(MAX(seq), 0) FROM circulation_events");
+        rs.next();
+        return rs.getLong(1);
+    }
+
+    private static List<Book> readBooks(ResultSet rs) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        while (rs.next()) {
+            books.add(new Book(rs.getInt("id"), rs.getString("title"), rs.getString("author"),
+                rs.getString("genre"), rs.getInt("available_copies"), rs.getInt("total_copies")));
+        }
+        return books;
+    }
+
+    // The catalog with the delta applied; new titles keep the list in title order
+    private static List<Book> merge(List<Book> catalog, Delta delta) {
+        Map<Integer, Book> changed = new HashMap<>();
+        for (Book book : delta.changed) {
+            changed.put(book.getId(), book);
+        }
+        List<Book> merged = new ArrayList<>(catalog.size() + changed.size());
+        for (Book book : catalog) {
+            if (delta.deleted.contains(book.getId())) continue;
+            Book update = changed.remove(book.getId());
+            merged.add(update != null ? update : book);
+        }
+        if (!changed.isEmpty()) {
+            merged.addAll(changed.values());
+            merged.sort((a, b) -> a.getTitle().compareToIgnoreCase(b.getTitle()));
+        }
+        return merged;
+    }
+}
@@ -0,0 +1,180 @@
+// ChangeFeed.java
+import java.sql.*;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Keeps open dashboards in step with changes made at other desks. Every desk
+// tails the circulation_events outbox (see EventJournal) by sequence number
+// every POLL_MS, and changes made in this process arrive straight from the
+// journal, so a change shows up everywhere within one poll interval.
+//
+// Sequence numbers are assigned at insert but become visible at commit, so a
+// lower seq can appear after a higher one. Holes below the highest seq seen
+// are re-checked until they show up or GAP_TIMEOUT_MS passes (a rolled-back
+// transaction leaves a hole for good). Each event is delivered once, on the
+// feed thread; listeners move to the EDT themselves.
+public class ChangeFeed {
+    private static final long POLL_MS = Long.getLong("library.coherence.pollMs", 500);
+    private static final long GAP_TIMEOUT_MS = Long.getLong("library.coherence.gapTimeoutMs", 30000);
+    private static final int BATCH = 1000;
+    private static final int MAX_GAP_CHECK = 500;
+    private static final ChangeFeed instance = new ChangeFeed();
+
+    private final List<Consumer<CirculationEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final Map<Integer, Long> latestByBook = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService feed;
+
+    // Only touched on the feed thread
+    private long maxSeen = -1;                                // highest seq read from the outbox
+    private final TreeMap<Long, Long> gaps = new TreeMap<>(); // missing seq -> when first missed
+    private final TreeSet<Long> deliveredLocally = new TreeSet<>();
+
+    private ChangeFeed() {
+        feed = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "change-feed");
+            t.setDaemon(true);
+            return t;
+        });
+        EventJournal.get().subscribe(event -> feed.execute(() -> onLocal(event)));
+        feed.scheduleWithFixedDelay(this::poll, 0, POLL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static ChangeFeed get() {
+        return instance;
+    }
+
+    public void addListener(Consumer<CirculationEvent> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<CirculationEvent> listener) {
+        listeners.remove(listener);
+    }
+
+    // True when no later event for the same title has been delivered, i.e.
+    // the copy counters in this event are the newest known
+    public boolean isCurrent(CirculationEvent event) {
+        return isCurrent(event.getBookId(), event.getSeq());
+    }
+
+    // Same for state of the title read as of outbox position seq
+    public boolean isCurrent(int bookId, long seq) {
+        Long latest = latestByBook.get(bookId);
+        return latest == null || seq >= latest;
+    }
+
+    private void onLocal(CirculationEvent event) {
+        long seq = event.getSeq();
+        if (maxSeen >= 0 && seq <= maxSeen) {
+            // Already read from the outbox unless it was one of the holes
+            if (gaps.remove(seq) != null) {
+                deliver(event);
+            }
+            return;
+        }
+        deliveredLocally.add(seq);
+        deliver(event);
+    }
+
+    private void poll() {
+        // Straight from the primary's pool: the outbox must not be read from a
+        // replica, and a poll is not a write for ReplicaRouter's stickiness
+        try (Connection conn = DBConnection.getPool().getConnection()) {
+            if (maxSeen < 0) {
+                // Start at the current end; dashboards load their state themselves
+                ResultSet rs = conn.createStatement().executeQuery("SELECT COALESCE(MAX(seq), 0) FROM circulation_events");
+                rs.next();
+                maxSeen = rs.getLong(1);
+                deliveredLocally.headSet(maxSeen, true).clear();
+                return;
+            }
+            recheckGaps(conn);
+            readNew(conn);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private void readNew(Connection conn) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(
+            "SELECT * FROM circulation_events WHERE seq > ? ORDER BY seq LIMIT " + BATCH
+        );
+        stmt.setLong(1, maxSeen);
+        ResultSet rs = stmt.executeQuery();
+        long now = System.currentTimeMillis();
+        while (rs.next()) {
+            CirculationEvent event = read(rs);
+            long seq = event.getSeq();
+            // A large jump is an auto-increment skip, not transactions in flight
+            if (seq - maxSeen <= BATCH) {
+                for (long missing = maxSeen + 1; missing < seq; missing++) {
+                    gaps.put(missing, now);
+                }
+            }
+            maxSeen = seq;
+            if (!deliveredLocally.remove(seq)) {
+                deliver(event);
+            }
+        }
+        deliveredLocally.headSet(maxSeen, true).clear();
+    }
+
+    private void recheckGaps(Connection conn) throws SQLException {
+        long now = System.currentTimeMillis();
+        gaps.values().removeIf(firstMissed -> now - firstMissed > GAP_TIMEOUT_MS);
+        if (gaps.isEmpty()) return;
+
+        StringBuilder in = new StringBuilder();
+        int n = 0;
+        for (long seq : gaps.keySet()) {
+            if (n++ == MAX_GAP_CHECK) break;
+            in.append(n == 1 ? "" : ",").append(seq);
+        }
+        ResultSet rs = conn.createStatement().executeQuery(
+            "SELECT * FROM circulation_events WHERE seq IN (" + in + ") ORDER BY seq"
+        );
+        while (rs.next()) {
+            CirculationEvent event = read(rs);
+            if (gaps.remove(event.getSeq()) != null) {
+                deliver(event);
+            }
+        }
+    }
+
+    private void deliver(CirculationEvent event) {
+        latestByBook.merge(event.getBookId(), event.getSeq(), Math::max);
+        for (Consumer<CirculationEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    private static CirculationEvent read(ResultSet rs) throws SQLException {
+        Date due = rs.getDate("due_date");
+        Timestamp created = rs.getTimestamp("created_at");
+        return new CirculationEvent(
+            rs.getLong("seq"),
+            CirculationEvent.Type.valueOf(rs.getString("type")),
+            rs.getInt("student_id"),
+            rs.getInt("book_id"),
+            rs.getInt("copy_id"),
+            rs.getInt("available_copies"),
+            rs.getInt("total_copies"),
+            due == null ? null : due.toLocalDate(),
+            rs.getDouble("fine"),
+            rs.getString("actor"),
+            created == null ? 0 : created.getTime()
+        );
+    }
+}
@@ -0,0 +1,156 @@
+// CirculationCoordinator.java
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Single entry point for issue, return and renew from every desk in this process.
+// Work on the same book is serialized on one of a fixed set of striped locks,
+// so unrelated books still run in parallel. Across processes the row lock and
+// version check in BookInventory take over. Admission is checked before
+// taking the lock, so a throttled caller never holds up others on the stripe.
+//
+// When no connection can be had at all an UnreachableException is thrown;
+// nothing was sent, so LibraryService can queue the operation in
+// OperationQueue. replay() applies a queued operation exactly once.
+public class CirculationCoordinator {
+    private static final int STRIPES = 64; // power of two
+    private static final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    static {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    // The database could not be reached when opening a connection
+    public static class UnreachableException extends SQLNonTransientConnectionException {
+        UnreachableException(SQLException cause) {
+            super("Library database is unreachable", cause.getSQLState(), cause);
+        }
+    }
+
+    private static ReentrantLock lockFor(int bookId) {
+        // Spread sequential ids over the stripes
+        int h = bookId * 0x9E3779B9;
+        return locks[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+
+    // Returns the due date, or null when no copy is available
+    public static LocalDate issue(int studentId, int bookId) throws SQLException {
+        AdmissionController.get().admit(AdmissionController.OpClass.WRITE);
+        ReentrantLock lock = lockFor(bookId);
+        lock.lock();
+        try (Connection conn = open()) {
+            LocalDate today = LocalDate.now();
+            LocalDate dueDate = today.plusDays(BookInventory.LOAN_DAYS);
+            return BookInventory.issueCopy(conn, studentId, bookId, today, dueDate) < 0 ? null : dueDate;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns the fine charged, or -1 when the student has no open loan of the book
+    public static double returnBook(int studentId, int bookId) throws SQLException {
+        AdmissionController.get().admit(AdmissionController.OpClass.WRITE);
+        ReentrantLock lock = lockFor(bookId);
+        lock.lock();
+        try (Connection conn = open()) {
+            return BookInventory.returnCopy(conn, studentId, bookId, LocalDate.now());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns the new due date, or null when the loan cannot be renewed
+    public static LocalDate renew(int studentId, int bookId) throws SQLException {
+        AdmissionController.get().admit(AdmissionController.OpClass.WRITE);
+        ReentrantLock lock = lockFor(bookId);
+        lock.lock();
+        try (Connection conn = open()) {
+            LocalDate newDueDate = LocalDate.now().plusDays(BookInventory.LOAN_DAYS);
+            return BookInventory.renewLoan(conn, studentId, bookId, newDueDate) ? newDueDate : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Applies an operation OperationQueue recorded while the database was
+    // unreachable, dated as the desk took it. Its id goes into
+    // processed_operations in the same transaction as the change, so a second
+    // replay of the same operation changes nothing. A refusal (no copy left,
+    // no open loan) is recorded as CONFLICT and committed on its own.
+    public static OperationQueue.Outcome replay(OperationQueue.Operation op) throws SQLException {
+        AdmissionController.get().admit(AdmissionController.OpClass.WRITE);
+        ReentrantLock lock = lockFor(op.bookId);
+        lock.lock();
+        try (Connection conn = open()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!markProcessed(conn, op, OperationQueue.Outcome.APPLIED)) {
+                    conn.rollback();
+                    return OperationQueue.Outcome.ALREADY_APPLIED;
+                }
+                // BookInventory commits the marker with its change, or rolls both back
+                boolean applied;
+                LocalDate dueDate = op.day.plusDays(BookInventory.LOAN_DAYS);
+                switch (op.type) {
+                    case ISSUE:
+                        applied = BookInventory.issueCopy(conn, op.studentId, op.bookId, op.day, dueDate) >= 0;
+                        break;
+                    case RETURN:
+                        applied = BookInventory.returnCopy(conn, op.studentId, op.bookId, op.day) >= 0;
+                        break;
+                    default:
+                        applied = BookInventory.renewLoan(conn, op.studentId, op.bookId, dueDate);
+                }
+                if (applied) {
+                    return OperationQueue.Outcome.APPLIED;
+                }
+                markProcessed(conn, op, OperationQueue.Outcome.CONFLICT);
+                conn.commit();
+                return OperationQueue.Outcome.CONFLICT;
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns false when the operation id is already recorded
+    private static boolean markProcessed(Connection conn, OperationQueue.Operation op, OperationQueue.Outcome outcome) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(
+            "INSERT INTO processed_operations (op_id, type, student_id, book_id, result) VALUES (?, ?, ?, ?, ?)"
+        );
+        stmt.setString(1, op.id);
+        stmt.setString(2, op.type.name());
+        stmt.setInt(3, op.studentId);
+        stmt.setInt(4, op.bookId);
+        stmt.setString(5, outcome.name());
+        try {
+            stmt.executeUpdate();
+            return true;
+        } catch (SQLIntegrityConstraintViolationException ex) {
+            return false;
+        }
+    }
+
+    // Unlike DBConnection.getConnection() this never returns null; admission
+    // was already checked by the caller
+    private static Connection open() throws SQLException {
+        ReplicaRouter.get().noteWrite();
+        try {
+            return DBConnection.getPool().getConnection();
+        } catch (SQLException ex) {
+            // Class 08 is a connection exception: the driver could not connect
+            String state = ex.getSQLState();
+            if (state != null && state.startsWith("08")) {
+                throw new UnreachableException(ex);
+            }
+            throw ex;
+        }
+    }
+}
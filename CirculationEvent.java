@@ -0,0 +1,86 @@
+// CirculationEvent.java
+import java.time.LocalDate;
+
+// One committed change to the catalog or to a loan, as recorded in the
+// circulation_events outbox. seq is assigned by the database and grows with
+// every event. Fields that do not apply to the type are 0 (ids) or null.
+public class CirculationEvent {
+    public enum Type { ISSUE, RETURN, RENEW, ADD_TITLE, ADD_COPIES, DELETE_TITLE }
+
+    private final long seq;
+    private final Type type;
+    private final int studentId;
+    private final int bookId;
+    private final int copyId;
+    private final int availableCopies; // after the change
+    private final int totalCopies;
+    private final LocalDate dueDate;   // ISSUE and RENEW
+    private final double fine;         // RETURN
+    private final String actor;
+    private final long timeMillis;
+
+    public CirculationEvent(long seq, Type type, int studentId, int bookId, int copyId, int availableCopies,
+                            int totalCopies, LocalDate dueDate, double fine, String actor, long timeMillis) {
+        this.seq = seq;
+        this.type = type;
+        this.studentId = studentId;
+        this.bookId = bookId;
+        this.copyId = copyId;
+        this.availableCopies = availableCopies;
+        this.totalCopies = totalCopies;
+        this.dueDate = dueDate;
+        this.fine = fine;
+        this.actor = actor;
+        this.timeMillis = timeMillis;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getStudentId() {
+        return studentId;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public int getCopyId() {
+        return copyId;
+    }
+
+    public int getAvailableCopies() {
+        return availableCopies;
+    }
+
+    public int getTotalCopies() {
+        return totalCopies;
+    }
+
+    public LocalDate getDueDate() {
+        return dueDate;
+    }
+
+    public double getFine() {
+        return fine;
+    }
+
+    public String getActor() {
+        return actor;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + seq + " " + type + " book=" + bookId + (studentId != 0 ? " student=" + studentId : "")
+            + " available=" + availableCopies + "/" + totalCopies + " by " + actor;
+    }
+}
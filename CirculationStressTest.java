@@ -0,0 +1,238 @@
+// CirculationStressTest.java
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Concurrency check for CirculationCoordinator and BookInventory. Each of
+// --clients threads is one student issuing and returning a small set of
+// scarce titles as fast as it can, so most issues race for the last copy.
+// Afterwards the database must agree exactly with what the clients saw:
+//
+//   - no title has available_copies below 0 or above total_copies
+//   - available_copies + open loans = total_copies (no oversell)
+//   - unavailable book_copies rows = open loans
+//   - the open loans are exactly the ones the clients hold (no lost return,
+//     no loan a client was told failed)
+//
+// Run it against a scratch database; it adds its own students and titles and
+// removes them afterwards unless --keep is given. Exits 1 on any violation.
+//
+// Usage:
+//   java -Dlibrary.db.url=jdbc:mysql://localhost/library_stress CirculationStressTest \
+//        [--clients 64] [--titles 16] [--copies 3] [--seconds 30] [--keep]
+public class CirculationStressTest {
+    private static final String PREFIX = "stress_" + System.currentTimeMillis() + "_";
+
+    private final int clients;
+    private final int titles;
+    private final int copies;
+    private final long seconds;
+
+    private final List<Integer> studentIds = new ArrayList<>();
+    private final List<Integer> bookIds = new ArrayList<>();
+    private final AtomicLong issued = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong returned = new AtomicLong();
+    private final AtomicLong lostReturns = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public CirculationStressTest(Map<String, String> options) {
+        clients = Integer.parseInt(options.getOrDefault("clients", "64"));
+        titles = Integer.parseInt(options.getOrDefault("titles", "16"));
+        copies = Integer.parseInt(options.getOrDefault("copies", "3"));
+        seconds = Long.parseLong(options.getOrDefault("seconds", "30"));
+    }
+
+    private void setUp() throws SQLException {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.WRITE)) {
+            PreparedStatement user = conn.prepareStatement(
+                "INSERT INTO users (name, username, password, role, active) VALUES (?, ?, 'stress', 'Student', TRUE)",
+                Statement.RETURN_GENERATED_KEYS
+            );
+            for (int i = 0; i < clients; i++) {
+                user.setString(1, "Stress Student " + i);
+                user.setString(2, PREFIX + i);
+                user.executeUpdate();
+                ResultSet keys = user.getGeneratedKeys();
+                keys.next();
+                studentIds.add(keys.getInt(1));
+            }
+            for (int i = 0; i < titles; i++) {
+                bookIds.add(BookInventory.addTitle(conn, PREFIX + "title_" + i, "Stress", "Stress", copies));
+            }
+        }
+    }
+
+    // One student; returns the titles it holds at the end
+    private Set<Integer> client(int studentId, long deadline) {
+        Set<Integer> held = new HashSet<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (System.nanoTime() < deadline) {
+            int bookId = bookIds.get(random.nextInt(bookIds.size()));
+            try {
+                if (held.contains(bookId)) {
+                    if (CirculationCoordinator.returnBook(studentId, bookId) < 0) {
+                        // The loan we were given is gone
+                        lostReturns.incrementAndGet();
+                    } else {
+                        returned.incrementAndGet();
+                    }
+                    held.remove(bookId);
+                } else if (CirculationCoordinator.issue(studentId, bookId) != null) {
+                    issued.incrementAndGet();
+                    held.add(bookId);
+                } else {
+                    refused.incrementAndGet();
+                }
+            } catch (SQLException ex) {
+                // A write whose outcome is unknown would make the check below
+                // meaningless, so count it and stop this client
+                ex.printStackTrace();
+                errors.incrementAndGet();
+                break;
+            }
+        }
+        return held;
+    }
+
+    private List<String> verify(Map<Integer, Set<Integer>> heldByStudent) throws SQLException {
+        List<String> violations = new ArrayList<>();
+        Map<Integer, Set<Integer>> openByStudent = new HashMap<>();
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.READ)) {
+            PreparedStatement titleStmt = conn.prepareStatement(
+                "SELECT b.available_copies, b.total_copies, " +
+                "(SELECT COUNT(*) FROM borrowed_books bb WHERE bb.book_id = b.id AND bb.return_date IS NULL), " +
+                "(SELECT COUNT(*) FROM book_copies c WHERE c.book_id = b.id AND c.isAvailable = FALSE) " +
+                "FROM books b WHERE b.id = ?"
+            );
+            for (int bookId : bookIds) {
+                titleStmt.setInt(1, bookId);
+                ResultSet rs = titleStmt.executeQuery();
+                rs.next();
+                int available = rs.getInt(1);
+                int total = rs.getInt(2);
+                int open = rs.getInt(3);
+                int lent = rs.getInt(4);
+                if (available < 0 || available > total) {
+                    violations.add("book " + bookId + ": available_copies " + available + " of " + total);
+                }
+                if (available + open != total) {
+                    violations.add("book " + bookId + ": " + available + " available + " + open + " open loans != " + total);
+                }
+                if (lent != open) {
+                    violations.add("book " + bookId + ": " + lent + " copies out but " + open + " open loans");
+                }
+            }
+
+            PreparedStatement loanStmt = conn.prepareStatement(
+                "SELECT book_id FROM borrowed_books WHERE student_id = ? AND return_date IS NULL"
+            );
+            for (int studentId : studentIds) {
+                loanStmt.setInt(1, studentId);
+                ResultSet rs = loanStmt.executeQuery();
+                Set<Integer> open = new HashSet<>();
+                while (rs.next()) {
+                    if (!open.add(rs.getInt(1))) {
+                        violations.add("student " + studentId + " has two open loans of book " + rs.getInt(1));
+                    }
+                }
+                openByStudent.put(studentId, open);
+            }
+        }
+        for (int studentId : studentIds) {
+            Set<Integer> held = heldByStudent.getOrDefault(studentId, new HashSet<>());
+            if (!held.equals(openByStudent.get(studentId))) {
+                violations.add("student " + studentId + " holds " + held + " but the database has "
+                    + openByStudent.get(studentId));
+            }
+        }
+        return violations;
+    }
+
+    private void tearDown() throws SQLException {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.WRITE)) {
+            PreparedStatement loans = conn.prepareStatement("DELETE FROM borrowed_books WHERE student_id = ?");
+            for (int studentId : studentIds) {
+                loans.setInt(1, studentId);
+                loans.executeUpdate();
+            }
+            PreparedStatement books = conn.prepareStatement("DELETE FROM books WHERE id = ?");
+            for (int bookId : bookIds) {
+                books.setInt(1, bookId);
+                books.executeUpdate();
+            }
+            PreparedStatement users = conn.prepareStatement("DELETE FROM users WHERE username LIKE ?");
+            users.setString(1, PREFIX + "%");
+            users.executeUpdate();
+        }
+    }
+
+    public boolean run(boolean keep) throws Exception {
+        setUp();
+        System.out.printf("%d clients, %d titles x %d copies, %d s%n", clients, titles, copies, seconds);
+
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Map<Integer, Future<Set<Integer>>> futures = new HashMap<>();
+        for (int studentId : studentIds) {
+            futures.put(studentId, pool.submit(() -> client(studentId, deadline)));
+        }
+        Map<Integer, Set<Integer>> held = new HashMap<>();
+        for (Map.Entry<Integer, Future<Set<Integer>>> entry : futures.entrySet()) {
+            held.put(entry.getKey(), entry.getValue().get());
+        }
+        pool.shutdown();
+
+        long open = held.values().stream().mapToLong(Set::size).sum();
+        System.out.printf("issued=%d refused (no copy)=%d returned=%d still open=%d lost returns=%d errors=%d%n",
+            issued.get(), refused.get(), returned.get(), open, lostReturns.get(), errors.get());
+
+        List<String> violations = verify(held);
+        if (issued.get() - returned.get() != open) {
+            violations.add("issued - returned = " + (issued.get() - returned.get()) + " but clients hold " + open);
+        }
+        if (lostReturns.get() > 0) {
+            violations.add(lostReturns.get() + " returns found no open loan");
+        }
+        if (errors.get() > 0) {
+            violations.add(errors.get() + " operations failed with a database error");
+        }
+        violations.forEach(v -> System.out.println("VIOLATION: " + v));
+        System.out.println(violations.isEmpty() ? "PASS" : "FAIL (" + violations.size() + " violations)");
+
+        if (!keep) {
+            tearDown();
+        }
+        return violations.isEmpty();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) continue;
+            String key = args[i].substring(2);
+            boolean flag = i + 1 >= args.length || args[i + 1].startsWith("--");
+            options.put(key, flag ? "true" : args[++i]);
+        }
+        // The clients are the load here: don't let admission or the pool
+        // timeout turn contention into errors (set before either class loads)
+        System.setProperty("library.admission.write.rate",
+            System.getProperty("library.admission.write.rate", "1000000"));
+        System.setProperty("library.admission.write.burst",
+            System.getProperty("library.admission.write.burst", "1000000"));
+        System.setProperty("library.db.poolTimeoutMs", System.getProperty("library.db.poolTimeoutMs", "60000"));
+
+        boolean passed = new CirculationStressTest(options).run(options.containsKey("keep"));
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,319 @@
+// ColumnarTableModel.java
+import java.lang.reflect.Array;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntFunction;
+import javax.swing.table.AbstractTableModel;
+
+// Read-only table model that keeps each column in one primitive array instead
+// of an Object[] per row: ids and counts as int[], fines as double[], dates as
+// epoch days in an int[]. Text that repeats (authors, genres, statuses) is a
+// DICTIONARY column of int codes into a StringDictionary, so each value is
+// stored once; text that is mostly unique (titles) is kept as a String[].
+// Cells are boxed only when the table asks for them, which is the visible rows.
+//
+// load() fills the columns straight from a ResultSet: the column indexes are
+// resolved once and each row is read with the typed getters, so no Object[]
+// or Integer is made per row. Small changes (a title added or updated from the
+// change feed) go through addRow/setInt/removeRow.
+//
+// A bulk fill can also leave text columns to putLazy(): each cell is read
+// from the source (a mapped CatalogSnapshot, say) the first time it is asked
+// for, so only the rows the table shows are ever decoded.
+public class ColumnarTableModel extends AbstractTableModel {
+    public enum Type { INT, LONG, DOUBLE, STRING, DICTIONARY, DATE }
+
+    public static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int PENDING = Integer.MIN_VALUE; // DICTIONARY code of a cell not read yet
+
+    private final String[] names;
+    private final Type[] types;
+    private final Object[] columns; // int[], long[], double[] or String[] per column
+    private StringDictionary dictionary = new StringDictionary(); // replaced with the contents
+    private int rowCount;
+    private final List<IntFunction<String>> sources; // per column, null unless putLazy()
+    private int[] sourceRow = new int[0];             // source row of each model row, -1 for none
+
+    public ColumnarTableModel(String[] names, Type[] types) {
+        this.names = names.clone();
+        this.types = types.clone();
+        this.columns = new Object[types.length];
+        this.sources = new ArrayList<>(Collections.nCopies(types.length, null));
+        allocate(16);
+    }
+
+    // Replaces the contents with every row of rs. labels[i] is the result
+    // column read into model column i. Fires one table change.
+    public void load(ResultSet rs, String... labels) throws SQLException {
+        int[] source = new int[labels.length];
+        for (int c = 0; c < labels.length; c++) {
+            source[c] = rs.findColumn(labels[c]);
+        }
+        rowCount = 0;
+        dictionary = new StringDictionary();
+        Collections.fill(sources, null);
+        while (rs.next()) {
+            ensureCapacity(rowCount + 1);
+            int row = rowCount++;
+            for (int c = 0; c < source.length; c++) {
+                read(rs, source[c], c, row);
+            }
+        }
+        fireTableDataChanged();
+    }
+
+    private void read(ResultSet rs, int index, int c, int row) throws SQLException {
+        switch (types[c]) {
+            case INT:
+                ((int[]) columns[c])[row] = rs.getInt(index);
+                break;
+            case LONG:
+                ((long[]) columns[c])[row] = rs.getLong(index);
+                break;
+            case DOUBLE:
+                ((double[]) columns[c])[row] = rs.getDouble(index);
+                break;
+            case STRING:
+                ((String[]) columns[c])[row] = rs.getString(index);
+                break;
+            case DICTIONARY:
+                ((int[]) columns[c])[row] = dictionary.encode(rs.getString(index));
+                break;
+            case DATE:
+                Date date = rs.getDate(index);
+                ((int[]) columns[c])[row] = date == null ? NO_DATE : (int) date.toLocalDate().toEpochDay();
+                break;
+        }
+    }
+
+    // Bulk fill without an event per row: reset(rows), put every cell (or
+    // putLazy a text column), then fireTableDataChanged()
+    public void reset(int rows) {
+        rowCount = 0;
+        dictionary = new StringDictionary();
+        allocate(Math.max(rows, 16));
+        rowCount = rows;
+    }
+
+    public void putInt(int row, int column, int value) {
+        ((int[]) columns[column])[row] = value;
+    }
+
+    public void putString(int row, int column, String value) {
+        store(row, column, value);
+    }
+
+    // Fills a STRING or DICTIONARY column of every row after reset(): the cell
+    // of row r is source.apply(r), read when the cell is first asked for
+    public void putLazy(int column, IntFunction<String> source) {
+        sources.set(column, source);
+        if (types[column] == Type.DICTIONARY) {
+            Arrays.fill((int[]) columns[column], 0, rowCount, PENDING);
+        }
+        for (int row = 0; row < rowCount; row++) {
+            sourceRow[row] = row;
+        }
+    }
+
+    public void clear() {
+        rowCount = 0;
+        dictionary = new StringDictionary();
+        allocate(16);
+        fireTableDataChanged();
+    }
+
+    // Appends one row; values are in column order, dates as LocalDate
+    public void addRow(Object... values) {
+        ensureCapacity(rowCount + 1);
+        int row = rowCount++;
+        sourceRow[row] = -1;
+        for (int c = 0; c < values.length; c++) {
+            store(row, c, values[c]);
+        }
+        fireTableRowsInserted(row, row);
+    }
+
+    public void removeRow(int row) {
+        for (Object column : columns) {
+            System.arraycopy(column, row + 1, column, row, rowCount - row - 1);
+        }
+        System.arraycopy(sourceRow, row + 1, sourceRow, row, rowCount - row - 1);
+        rowCount--;
+        for (Object column : columns) {
+            if (column instanceof String[]) {
+                ((String[]) column)[rowCount] = null;
+            }
+        }
+        fireTableRowsDeleted(row, row);
+    }
+
+    // First row whose INT column holds value, or -1
+    public int findRow(int column, int value) {
+        int[] data = (int[]) columns[column];
+        for (int row = 0; row < rowCount; row++) {
+            if (data[row] == value) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    public int getInt(int row, int column) {
+        return ((int[]) columns[column])[row];
+    }
+
+    public void setInt(int row, int column, int value) {
+        ((int[]) columns[column])[row] = value;
+        fireTableCellUpdated(row, column);
+    }
+
+    public double getDouble(int row, int column) {
+        return ((double[]) columns[column])[row];
+    }
+
+    public String getString(int row, int column) {
+        IntFunction<String> source = sources.get(column);
+        if (types[column] == Type.STRING) {
+            String[] data = (String[]) columns[column];
+            if (data[row] == null && source != null && sourceRow[row] >= 0) {
+                data[row] = source.apply(sourceRow[row]);
+            }
+            return data[row];
+        }
+        int[] codes = (int[]) columns[column];
+        if (codes[row] == PENDING) {
+            codes[row] = dictionary.encode(source.apply(sourceRow[row]));
+        }
+        return dictionary.decode(codes[row]);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return names.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return names[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        switch (types[column]) {
+            case INT:
+                return Integer.class;
+            case LONG:
+                return Long.class;
+            case DOUBLE:
+                return Double.class;
+            case DATE:
+                return LocalDate.class;
+            default:
+                return String.class;
+        }
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        switch (types[column]) {
+            case INT:
+                return ((int[]) columns[column])[row];
+            case LONG:
+                return ((long[]) columns[column])[row];
+            case DOUBLE:
+                return ((double[]) columns[column])[row];
+            case DATE:
+                int day = ((int[]) columns[column])[row];
+                return day == NO_DATE ? null : LocalDate.ofEpochDay(day);
+            default:
+                return getString(row, column);
+        }
+    }
+
+    // Heap used by the columns, their strings and the dictionary
+    public long estimateBytes() {
+        long bytes = dictionary.estimateBytes();
+        for (Object column : columns) {
+            int capacity = Array.getLength(column);
+            if (column instanceof String[]) {
+                bytes += 16 + (long) capacity * 4;
+                for (String value : (String[]) column) {
+                    if (value != null) bytes += 40 + value.length();
+                }
+            } else {
+                bytes += 16 + (long) capacity * (column instanceof int[] ? Integer.BYTES : Long.BYTES);
+            }
+        }
+        return bytes;
+    }
+
+    private void store(int row, int c, Object value) {
+        switch (types[c]) {
+            case INT:
+                ((int[]) columns[c])[row] = ((Number) value).intValue();
+                break;
+            case LONG:
+                ((long[]) columns[c])[row] = ((Number) value).longValue();
+                break;
+            case DOUBLE:
+                ((double[]) columns[c])[row] = ((Number) value).doubleValue();
+                break;
+            case STRING:
+                ((String[]) columns[c])[row] = (String) value;
+                break;
+            case DICTIONARY:
+                ((int[]) columns[c])[row] = dictionary.encode((String) value);
+                break;
+            case DATE:
+                ((int[]) columns[c])[row] = value == null ? NO_DATE : (int) ((LocalDate) value).toEpochDay();
+                break;
+        }
+    }
+
+    private void ensureCapacity(int rows) {
+        int capacity = columns.length == 0 ? 0 : Array.getLength(columns[0]);
+        if (rows > capacity) {
+            for (int c = 0; c < columns.length; c++) {
+                columns[c] = grow(columns[c], Math.max(rows, capacity * 2));
+            }
+            sourceRow = Arrays.copyOf(sourceRow, Math.max(rows, capacity * 2));
+        }
+    }
+
+    private static Object grow(Object array, int capacity) {
+        if (array instanceof long[]) return Arrays.copyOf((long[]) array, capacity);
+        if (array instanceof double[]) return Arrays.copyOf((double[]) array, capacity);
+        if (array instanceof String[]) return Arrays.copyOf((String[]) array, capacity);
+        return Arrays.copyOf((int[]) array, capacity);
+    }
+
+    private void allocate(int capacity) {
+        Collections.fill(sources, null);
+        sourceRow = new int[capacity];
+        for (int c = 0; c < types.length; c++) {
+            switch (types[c]) {
+                case LONG:
+                    columns[c] = new long[capacity];
+                    break;
+                case DOUBLE:
+                    columns[c] = new double[capacity];
+                    break;
+                case STRING:
+                    columns[c] = new String[capacity];
+                    break;
+                default:
+                    columns[c] = new int[capacity];
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+// ConnectionPool.java
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Small bounded JDBC pool. Callers keep using try-with-resources: close() on the
+// handed-out connection closes its statements and puts the physical connection
+// back instead of disconnecting.
+public class ConnectionPool {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+    private final ArrayDeque<Connection> idle = new ArrayDeque<>();
+
+    private final AtomicLong acquired = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    // Exponentially weighted wait of recent acquisitions; guarded by this
+    private double recentWaitMillis;
+    private long recentWaitAt = System.nanoTime();
+    private static final double RECENT_HALF_LIFE_MS = 1000;
+
+    // Per-thread total of time spent waiting for and holding connections,
+    // read by DashboardActionEvent as an action's database time
+    private static final ThreadLocal<long[]> threadDbNanos = ThreadLocal.withInitial(() -> new long[1]);
+
+    public ConnectionPool(String url, String user, String password, int maxSize, long timeoutMillis) {
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.timeoutMillis = timeoutMillis;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                recordWait(System.nanoTime() - start);
+                threadDbNanos.get()[0] += System.nanoTime() - start;
+                throw new SQLTransientConnectionException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted waiting for a database connection", e);
+        }
+        long waited = System.nanoTime() - start;
+        totalWaitNanos.addAndGet(waited);
+        recordWait(waited);
+        acquired.incrementAndGet();
+
+        try {
+            Connection raw;
+            while ((raw = pollIdle()) != null) {
+                if (raw.isValid(1)) {
+                    return wrap(raw, start);
+                }
+                closeQuietly(raw);
+            }
+            return wrap(DriverManager.getConnection(url, user, password), start);
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private synchronized Connection pollIdle() {
+        return idle.pollFirst();
+    }
+
+    private void release(Connection raw, List<Statement> statements) {
+        for (Statement stmt : statements) {
+            try {
+                stmt.close();
+            } catch (SQLException ignored) {
+            }
+        }
+        try {
+            if (!raw.isClosed()) {
+                if (!raw.getAutoCommit()) {
+                    raw.rollback();
+                    raw.setAutoCommit(true);
+                }
+                synchronized (this) {
+                    idle.addFirst(raw);
+                }
+            }
+        } catch (SQLException e) {
+            closeQuietly(raw);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private Connection wrap(Connection raw, long requestedAt) {
+        List<Statement> statements = new ArrayList<>();
+        long[] dbNanos = threadDbNanos.get();
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class},
+            new InvocationHandler() {
+                private boolean closed;
+
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    switch (method.getName()) {
+                        case "close":
+                            if (!closed) {
+                                closed = true;
+                                dbNanos[0] += System.nanoTime() - requestedAt;
+                                release(raw, statements);
+                            }
+                            return null;
+                        case "isClosed":
+                            return closed || raw.isClosed();
+                        case "unwrap":
+                        case "isWrapperFor":
+                        case "equals":
+                        case "hashCode":
+                        case "toString":
+                            break;
+                        default:
+                            if (closed) {
+                                throw new SQLException("Connection is closed");
+                            }
+                    }
+                    try {
+                        Object result = method.invoke(raw, args);
+                        // Statements are tracked so returning the connection frees them
+                        if (result instanceof Statement) {
+                            statements.add((Statement) result);
+                        }
+                        return result;
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            });
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    public static long threadDbNanos() {
+        return threadDbNanos.get()[0];
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getInUse() {
+        return maxSize - permits.availablePermits();
+    }
+
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    // Average time callers spent waiting for a connection, in milliseconds
+    public double getAverageWaitMillis() {
+        long count = acquired.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / count;
+    }
+
+    private synchronized void recordWait(long nanos) {
+        recentWaitMillis = decayedWait() * 0.8 + nanos / 1_000_000.0 * 0.2;
+        recentWaitAt = System.nanoTime();
+    }
+
+    // Halves every RECENT_HALF_LIFE_MS without new samples, so an idle pool
+    // reads as uncongested again
+    private double decayedWait() {
+        double elapsedMs = (System.nanoTime() - recentWaitAt) / 1_000_000.0;
+        return recentWaitMillis * Math.pow(0.5, elapsedMs / RECENT_HALF_LIFE_MS);
+    }
+
+    // Recent time callers spent waiting for a connection, in milliseconds
+    public synchronized double getRecentWaitMillis() {
+        return decayedWait();
+    }
+}
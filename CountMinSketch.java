@@ -0,0 +1,69 @@
+// CountMinSketch.java
+import java.util.Arrays;
+
+// Count-Min sketch over int keys: DEPTH rows of width counters, each row with
+// its own hash. estimate() is the smallest of the key's counters, which never
+// undercounts and overcounts by at most 2N/width with probability
+// 1 - 2^-DEPTH, N being the total added. Fixed memory whatever N is.
+//
+// Not thread-safe; PopularityTracker guards its instances.
+public class CountMinSketch {
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final int[][] counts;
+    private final int mask;
+
+    // width is rounded up to a power of two
+    public CountMinSketch(int width) {
+        int w = Integer.highestOneBit(Math.max(16, width - 1)) << 1;
+        counts = new int[DEPTH][w];
+        mask = w - 1;
+    }
+
+    private int index(int row, int key) {
+        int h = (key ^ SEEDS[row]) * 0x9E3779B1;
+        h ^= h >>> 15;
+        h *= SEEDS[(row + 1) % DEPTH] | 1;
+        return (h ^ (h >>> 13)) & mask;
+    }
+
+    public void add(int key, int count) {
+        for (int row = 0; row < DEPTH; row++) {
+            counts[row][index(row, key)] += count;
+        }
+    }
+
+    public int estimate(int key) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            min = Math.min(min, counts[row][index(row, key)]);
+        }
+        return min;
+    }
+
+    // Estimate of the key over several sketches of the same width, as if
+    // everything had been added to one (row-wise sums, then the minimum)
+    public static int estimate(CountMinSketch[] sketches, int key) {
+        int min = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = sketches[0].index(row, key);
+            int sum = 0;
+            for (CountMinSketch sketch : sketches) {
+                sum += sketch.counts[row][index];
+            }
+            min = Math.min(min, sum);
+        }
+        return min;
+    }
+
+    public void clear() {
+        for (int[] row : counts) {
+            Arrays.fill(row, 0);
+        }
+    }
+
+    public long estimateBytes() {
+        return (long) DEPTH * counts[0].length * 4;
+    }
+}
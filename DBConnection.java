@@ -2,16 +2,63 @@
 import java.sql.*;
 
 public class DBConnection {
-    private static final String URL = "jdbc:mysql://localhost/library_db";
-    private static final String USER = "root";
-    private static final String PASSWORD = "krish";
+    // Overridable with -Dlibrary.db.url=... etc. to point at a local or test database
+    private static final String URL = System.getProperty("library.db.url", "jdbc:mysql://localhost/library_db");
+    private static final String USER = System.getProperty("library.db.user", "root");
+    private static final String PASSWORD = System.getProperty("library.db.password", "krish");
+    private static final int POOL_SIZE = Integer.getInteger("library.db.poolSize", 10);
+    private static final long POOL_TIMEOUT_MS = Long.getLong("library.db.poolTimeoutMs", 5000);
 
+    // Shared by every dashboard and service call in this process
+    private static final ConnectionPool pool = new ConnectionPool(URL, USER, PASSWORD, POOL_SIZE, POOL_TIMEOUT_MS);
+
+    // Unclassified callers may write, so they count as writes for replica stickiness
     public static Connection getConnection() {
+        ReplicaRouter.get().noteWrite();
         try {
-            return DriverManager.getConnection(URL, USER, PASSWORD);
+            return pool.getConnection();
         } catch (SQLException e) {
             e.printStackTrace();
             return null;
         }
     }
-}
\ No newline at end of file
+
+    // Admits the call through AdmissionController first. Unlike getConnection()
+    // this throws instead of returning null, so a refusal reaches the caller.
+    public static Connection getConnection(AdmissionController.OpClass opClass) throws SQLException {
+        AdmissionController.get().admit(opClass);
+        if (opClass == AdmissionController.OpClass.WRITE) {
+            ReplicaRouter.get().noteWrite();
+        }
+        return pool.getConnection();
+    }
+
+    // For read-only browse and report queries that can tolerate a replica
+    // being up to library.db.replicaMaxLagMs behind. Falls back to the
+    // primary when no replica qualifies (see ReplicaRouter) or the chosen
+    // one refuses a connection.
+    public static Connection getReadConnection(AdmissionController.OpClass opClass) throws SQLException {
+        AdmissionController.get().admit(opClass);
+        ReplicaRouter.Replica replica = ReplicaRouter.get().pick();
+        if (replica != null) {
+            try {
+                return replica.pool.getConnection();
+            } catch (SQLException ex) {
+                ReplicaRouter.get().markDown(replica);
+            }
+        }
+        return pool.getConnection();
+    }
+
+    static ConnectionPool newPool(String url, int size) {
+        return new ConnectionPool(url, USER, PASSWORD, size, POOL_TIMEOUT_MS);
+    }
+
+    public static ConnectionPool getPool() {
+        return pool;
+    }
+
+    public static String getUrl() {
+        return URL;
+    }
+}
@@ -0,0 +1,62 @@
+// DashboardActionEvent.java
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Flight Recorder event for one desk action (issue, return, renew, a table
+// load, a report, login). The event's duration is the whole action; dbTime is
+// the part spent waiting for and holding pooled connections on this thread
+// (see ConnectionPool.threadDbNanos), so a slow action can be told apart
+// from a slow database. Costs next to nothing while no recording is running.
+//
+//     DashboardActionEvent action = DashboardActionEvent.begin("Student", "issue");
+//     try { ...; action.succeeded(1); } finally { action.finish(); }
+@Name("library.DashboardAction")
+@Label("Dashboard Action")
+@Category({"Library", "Dashboard"})
+@Description("A desk action with its row count and database time")
+@StackTrace(false)
+public class DashboardActionEvent extends Event {
+    @Label("Dashboard")
+    String dashboard;
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Database Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long dbTime;
+
+    @Label("Succeeded")
+    boolean succeeded;
+
+    private transient long dbStart;
+
+    public static DashboardActionEvent begin(String dashboard, String operation) {
+        DashboardActionEvent event = new DashboardActionEvent();
+        event.dashboard = dashboard;
+        event.operation = operation;
+        event.dbStart = ConnectionPool.threadDbNanos();
+        event.begin();
+        return event;
+    }
+
+    public void succeeded(int rows) {
+        this.rows = rows;
+        this.succeeded = true;
+    }
+
+    public void finish() {
+        if (shouldCommit()) {
+            dbTime = ConnectionPool.threadDbNanos() - dbStart;
+            commit();
+        }
+    }
+}
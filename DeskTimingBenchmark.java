@@ -0,0 +1,265 @@
+// DeskTimingBenchmark.java
+import javax.swing.*;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.awt.Component;
+import java.awt.Container;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Times the librarian's scan-to-issue path: a real ScannerPanel gets --scans
+// scans (student id, book id, Enter in the book field, as a barcode scanner
+// types them), one every --intervalMs or back to back when it is 0, and the
+// benchmark measures
+//
+//   - the EDT time of each scan, which is how long the next scan must wait
+//   - the time from each scan to its line in the recent list (back to back
+//     this includes the wait behind earlier scans)
+//   - the scans per minute the desk completes, from first scan to last result
+//
+// By default the database is a fake JDBC driver that answers every statement
+// after --dbMs, so the figures are the desk's own cost plus a known latency
+// per statement. With --db the library.db.url database is used instead; the
+// scans then issue real loans (--students x --books ids from 1).
+//
+// The modal confirmation the desk used before StatusBar held the EDT until the
+// operator dismissed it, so its time per scan was the EDT time below plus the
+// operator's reaction time, and the transaction itself ran on the EDT too.
+// That part is human time and is not simulated here.
+//
+// Usage:
+//   java DeskTimingBenchmark [--scans 500] [--intervalMs 0] [--dbMs 2] [--students 50] [--books 500] [--db]
+public class DeskTimingBenchmark {
+    private static volatile long dbNanos;
+    private static long intervalMs;
+
+    public static void main(String[] args) throws Exception {
+        int scans = 500;
+        long dbMs = 2;
+        int students = 50;
+        int books = 500;
+        boolean fromDb = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--scans": scans = Integer.parseInt(args[++i]); break;
+                case "--intervalMs": intervalMs = Long.parseLong(args[++i]); break;
+                case "--dbMs": dbMs = Long.parseLong(args[++i]); break;
+                case "--students": students = Integer.parseInt(args[++i]); break;
+                case "--books": books = Integer.parseInt(args[++i]); break;
+                case "--db": fromDb = true; break;
+                default: break;
+            }
+        }
+        if (!fromDb) {
+            // Before DBConnection or EventJournal load
+            System.setProperty("library.db.url", "jdbc:fake:desk");
+            System.setProperty("library.journal.dir", Files.createTempDirectory("desk-timing").toString());
+            dbNanos = TimeUnit.MILLISECONDS.toNanos(dbMs);
+            DriverManager.registerDriver(driver());
+        }
+
+        StatusBar statusBar = new StatusBar();
+        ScannerPanel[] holder = new ScannerPanel[1];
+        SwingUtilities.invokeAndWait(() -> holder[0] = new ScannerPanel(statusBar, bookId -> -1));
+        ScannerPanel panel = holder[0];
+        List<JTextField> fields = new ArrayList<>();
+        SwingUtilities.invokeAndWait(() -> collectFields(panel, fields));
+        JTextField studentField = fields.get(0);
+        JTextField bookField = fields.get(1);
+        ListModel<?> recent = recentList(panel).getModel();
+
+        System.out.printf("%d scans %s, %s%n", scans,
+            intervalMs > 0 ? "one every " + intervalMs + " ms" : "back to back", fromDb
+            ? "database " + DBConnection.getUrl()
+            : "fake database answering each statement after " + dbMs + " ms");
+        run(studentField, bookField, recent, Math.min(scans, 50), students, books, false); // warm-up
+        run(studentField, bookField, recent, scans, students, books, true);
+        panel.shutdown();
+        System.exit(0);
+    }
+
+    private static void run(JTextField studentField, JTextField bookField, ListModel<?> recent, int scans,
+                            int students, int books, boolean report) throws Exception {
+        long[] edt = new long[scans];
+        long[] scannedAt = new long[scans];
+        long[] resultAt = new long[scans];
+        int[] results = { 0 };
+        CountDownLatch done = new CountDownLatch(scans);
+        // Results are added in scan order (one worker thread); the recent list is capped, so count adds
+        ListDataListener listener = new ListDataListener() {
+            public void intervalAdded(ListDataEvent e) {
+                if (results[0] < scans) {
+                    resultAt[results[0]++] = System.nanoTime();
+                    done.countDown();
+                }
+            }
+            public void intervalRemoved(ListDataEvent e) {
+            }
+            public void contentsChanged(ListDataEvent e) {
+            }
+        };
+        SwingUtilities.invokeAndWait(() -> recent.addListDataListener(listener));
+
+        for (int i = 0; i < scans; i++) {
+            int scan = i;
+            SwingUtilities.invokeAndWait(() -> {
+                long start = System.nanoTime();
+                scannedAt[scan] = start;
+                studentField.setText(String.valueOf(1 + scan % students));
+                bookField.setText(String.valueOf(1 + scan % books));
+                bookField.postActionEvent();
+                edt[scan] = System.nanoTime() - start;
+            });
+            if (intervalMs > 0) {
+                long next = scannedAt[scan] + TimeUnit.MILLISECONDS.toNanos(intervalMs);
+                TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+            }
+        }
+        boolean finished = done.await(10, TimeUnit.MINUTES);
+        SwingUtilities.invokeAndWait(() -> recent.removeListDataListener(listener));
+        if (!report) {
+            return;
+        }
+        if (!finished) {
+            System.out.println("Only " + results[0] + " of " + scans + " scans completed");
+            return;
+        }
+
+        long[] latency = new long[scans];
+        for (int i = 0; i < scans; i++) {
+            latency[i] = resultAt[i] - scannedAt[i];
+        }
+        double minutes = (resultAt[scans - 1] - scannedAt[0]) / 60e9;
+        System.out.println(describe("EDT/scan", edt));
+        System.out.println(describe("to result", latency));
+        System.out.printf("%.0f scans/min completed (%d scans in %.1f s)%n", scans / minutes, scans, minutes * 60);
+    }
+
+    private static String describe(String name, long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return String.format("%-10s mean=%8.3fms p50=%8.3fms p95=%8.3fms max=%8.3fms",
+            name, Arrays.stream(sorted).average().orElse(0) / 1e6, sorted[sorted.length / 2] / 1e6,
+            sorted[(int) (sorted.length * 0.95)] / 1e6, sorted[sorted.length - 1] / 1e6);
+    }
+
+    // The student and book fields, in layout order
+    private static void collectFields(Container container, List<JTextField> fields) {
+        for (Component child : container.getComponents()) {
+            if (child instanceof JTextField) {
+                fields.add((JTextField) child);
+            } else if (child instanceof Container) {
+                collectFields((Container) child, fields);
+            }
+        }
+    }
+
+    private static JList<?> recentList(Container container) {
+        for (Component child : container.getComponents()) {
+            if (child instanceof JList) {
+                return (JList<?>) child;
+            }
+            if (child instanceof Container) {
+                JList<?> list = recentList((Container) child);
+                if (list != null) {
+                    return list;
+                }
+            }
+        }
+        return null;
+    }
+
+    // ---- The fake driver: every statement succeeds after dbNanos ----
+
+    private static Object proxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(DeskTimingBenchmark.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Driver driver() {
+        return (Driver) proxy(Driver.class, (p, m, a) -> {
+            switch (m.getName()) {
+                case "acceptsURL":
+                    return ((String) a[0]).startsWith("jdbc:fake:");
+                case "connect":
+                    return ((String) a[0]).startsWith("jdbc:fake:") ? connection() : null;
+                case "getMajorVersion":
+                case "getMinorVersion":
+                    return 1;
+                case "getPropertyInfo":
+                    return new DriverPropertyInfo[0];
+                default:
+                    return m.getReturnType() == boolean.class ? false : null;
+            }
+        });
+    }
+
+    private static Connection connection() {
+        return (Connection) proxy(Connection.class, (p, m, a) -> {
+            switch (m.getName()) {
+                case "prepareStatement":
+                case "createStatement":
+                    return statement();
+                case "getAutoCommit":
+                case "isValid":
+                    return true;
+                default:
+                    return m.getReturnType() == boolean.class ? false : null;
+            }
+        });
+    }
+
+    private static PreparedStatement statement() {
+        return (PreparedStatement) proxy(PreparedStatement.class, (p, m, a) -> {
+            switch (m.getName()) {
+                case "executeQuery":
+                    pause();
+                    return row();
+                case "executeUpdate":
+                    pause();
+                    return 1;
+                case "execute":
+                    pause();
+                    return false;
+                case "executeBatch":
+                    pause();
+                    return new int[0];
+                case "getGeneratedKeys":
+                    return row();
+                default:
+                    return m.getReturnType() == boolean.class ? false : null;
+            }
+        });
+    }
+
+    private static void pause() throws InterruptedException {
+        if (dbNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(dbNanos);
+        }
+    }
+
+    // One row in which every column reads as 1, "" or today
+    private static ResultSet row() {
+        int[] left = { 1 };
+        return (ResultSet) proxy(ResultSet.class, (p, m, a) -> {
+            switch (m.getName()) {
+                case "next": return left[0]-- > 0;
+                case "getInt": return 1;
+                case "getLong": return 1L;
+                case "getDouble": return 0.0;
+                case "getBoolean": return true;
+                case "getString": return "";
+                case "getDate": return new Date(System.currentTimeMillis());
+                case "getTimestamp": return new Timestamp(System.currentTimeMillis());
+                case "findColumn": return 1;
+                default: return m.getReturnType() == boolean.class ? false : null;
+            }
+        });
+    }
+}
@@ -0,0 +1,27 @@
+// EdtStallEvent.java
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Flight Recorder event for one sample of a blocked event dispatch thread,
+// committed by EdtWatchdog. The stack is the EDT's, not the watchdog's.
+@Name("library.EdtStall")
+@Label("EDT Stall")
+@Category({"Library", "Dashboard"})
+@Description("The Swing event thread has not run queued work for longer than the threshold")
+@StackTrace(false)
+public class EdtStallEvent extends Event {
+    @Label("Blocked For")
+    @Timespan(Timespan.MILLISECONDS)
+    long blocked;
+
+    @Label("EDT State")
+    String state;
+
+    @Label("EDT Stack")
+    String stack;
+}
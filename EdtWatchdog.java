@@ -0,0 +1,77 @@
+// EdtWatchdog.java
+import java.awt.EventQueue;
+
+// Detects a frozen desk. A daemon thread posts a no-op to the Swing event
+// queue every SAMPLE_MS and waits for it to run. While it has not run for
+// longer than STALL_MS the EDT's stack is sampled once per STALL_MS into an
+// EdtStallEvent, and when the EDT frees up one line with the total time and
+// the frame it was stuck in goes to stderr.
+public class EdtWatchdog {
+    private static final long SAMPLE_MS = Long.getLong("library.edt.sampleMs", 100);
+    private static final long STALL_MS = Long.getLong("library.edt.stallMs", 500);
+    private static final int MAX_FRAMES = 40;
+
+    private static volatile Thread edt;
+    private static volatile long handledSeq;
+    private static boolean started;
+
+    public static synchronized void start() {
+        if (started) return;
+        started = true;
+        Thread t = new Thread(EdtWatchdog::watch, "edt-watchdog");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private static void watch() {
+        long seq = 0;
+        while (true) {
+            try {
+                long posted = System.nanoTime();
+                long mySeq = ++seq;
+                EventQueue.invokeLater(() -> {
+                    edt = Thread.currentThread();
+                    handledSeq = mySeq;
+                });
+
+                long nextSample = STALL_MS;
+                String stuckIn = null;
+                Thread.sleep(SAMPLE_MS);
+                while (handledSeq != mySeq) {
+                    long blocked = (System.nanoTime() - posted) / 1_000_000;
+                    Thread thread = edt;
+                    if (blocked >= nextSample && thread != null) {
+                        StackTraceElement[] frames = thread.getStackTrace();
+                        if (frames.length > 0) stuckIn = frames[0].toString();
+                        EdtStallEvent event = new EdtStallEvent();
+                        event.blocked = blocked;
+                        event.state = thread.getState().name();
+                        event.stack = format(frames);
+                        event.commit();
+                        nextSample += STALL_MS;
+                    }
+                    Thread.sleep(SAMPLE_MS);
+                }
+                if (stuckIn != null) {
+                    long blocked = (System.nanoTime() - posted) / 1_000_000;
+                    System.err.println("EDT blocked for " + blocked + " ms at " + stuckIn);
+                }
+            } catch (InterruptedException ex) {
+                return;
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    private static String format(StackTraceElement[] frames) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(frames.length, MAX_FRAMES); i++) {
+            sb.append("at ").append(frames[i]).append('\n');
+        }
+        if (frames.length > MAX_FRAMES) {
+            sb.append("... ").append(frames.length - MAX_FRAMES).append(" more\n");
+        }
+        return sb.toString();
+    }
+}
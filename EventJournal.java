@@ -0,0 +1,366 @@
+// EventJournal.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Append-only record of every circulation and catalog change.
+//
+// record() inserts the event into the circulation_events outbox inside the
+// caller's transaction, so the event exists exactly when the change does and
+// the database assigns its sequence number. Once the caller has committed it
+// calls publish(), which appends the event to a local log and hands it to
+// in-process subscribers on one dispatcher thread, in publish order.
+//
+// The local log is a series of memory-mapped segment files named after the
+// first sequence number they hold. Each record is
+//   [int length][int crc32][payload]
+// and a zero length marks the end of a segment. Records are written to the
+// page cache; segments are forced to disk when they roll and at shutdown.
+// The outbox table stays the durable copy other processes read, so only the
+// newest library.journal.retainSegments segments are kept.
+//
+// Each process writes its own log. The journal directory is held with an
+// exclusive file lock; a second process on the machine (another desk, the
+// HTTP server, LoadGenerator) takes the first free desk-N subdirectory
+// instead, so a restarted process finds its own log again.
+public class EventJournal {
+    private static final Path ROOT = Paths.get(System.getProperty("library.journal.dir",
+        System.getProperty("user.home") + "/.library/journal"));
+    private static final int SEGMENT_BYTES = Integer.getInteger("library.journal.segmentBytes", 16 << 20);
+    private static final int RETAIN_SEGMENTS = Math.max(1, Integer.getInteger("library.journal.retainSegments", 8));
+    private static final int MAX_DIRS = 64;
+    private static final int HEADER_BYTES = 8;
+    private static final EventJournal instance = new EventJournal();
+
+    private static volatile String defaultActor = "system";
+    private static final ThreadLocal<String> threadActor = new ThreadLocal<>();
+
+    private final List<Consumer<CirculationEvent>> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService dispatcher;
+
+    private Path dir;            // null when no journal directory could be locked
+    private FileLock dirLock;    // held for the life of the process
+
+    // Guarded by this
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long lastSeq;
+
+    private EventJournal() {
+        dispatcher = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "event-journal");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            lockDirectory();
+            if (dir != null) {
+                openLastSegment();
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(this::force, "event-journal-sync"));
+    }
+
+    public static EventJournal get() {
+        return instance;
+    }
+
+    // ---- Actor ----
+
+    // Who the events of this process are attributed to, e.g. "Librarian:alice"
+    public static void setDefaultActor(String actor) {
+        defaultActor = actor;
+    }
+
+    // Overrides the actor for the current thread (one HTTP request, say)
+    public static void setThreadActor(String actor) {
+        if (actor == null) {
+            threadActor.remove();
+        } else {
+            threadActor.set(actor);
+        }
+    }
+
+    public static String currentActor() {
+        String actor = threadActor.get();
+        return actor != null ? actor : defaultActor;
+    }
+
+    // ---- Writing ----
+
+    // Inserts the event into the outbox as part of the caller's open transaction.
+    // The title's copy counters are read back so the event carries the state
+    // after the change.
+    public static CirculationEvent record(Connection conn, CirculationEvent.Type type, int studentId, int bookId,
+                                          int copyId, LocalDate dueDate, double fine) throws SQLException {
+        int available = 0;
+        int total = 0;
+        PreparedStatement counters = conn.prepareStatement(
+            "SELECT available_copies, total_copies FROM books WHERE id=?"
+        );
+        counters.setInt(1, bookId);
+        ResultSet rs = counters.executeQuery();
+        if (rs.next()) {
+            available = rs.getInt(1);
+            total = rs.getInt(2);
+        }
+
+        String actor = currentActor();
+        PreparedStatement stmt = conn.prepareStatement(
+            "INSERT INTO circulation_events (type, student_id, book_id, copy_id, available_copies, total_copies, " +
+            "due_date, fine, actor) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+            Statement.RETURN_GENERATED_KEYS
+        );
+        stmt.setString(1, type.name());
+        setId(stmt, 2, studentId);
+        stmt.setInt(3, bookId);
+        setId(stmt, 4, copyId);
+        stmt.setInt(5, available);
+        stmt.setInt(6, total);
+        stmt.setDate(7, dueDate == null ? null : Date.valueOf(dueDate));
+        stmt.setDouble(8, fine);
+        stmt.setString(9, actor);
+        stmt.executeUpdate();
+
+        ResultSet keys = stmt.getGeneratedKeys();
+        keys.next();
+        return new CirculationEvent(keys.getLong(1), type, studentId, bookId, copyId, available, total,
+            dueDate, fine, actor, System.currentTimeMillis());
+    }
+
+    private static void setId(PreparedStatement stmt, int index, int id) throws SQLException {
+        if (id > 0) {
+            stmt.setInt(index, id);
+        } else {
+            stmt.setNull(index, Types.INTEGER);
+        }
+    }
+
+    // Called after the transaction that recorded the event has committed
+    public synchronized void publish(CirculationEvent event) {
+        try {
+            append(event);
+        } catch (IOException ex) {
+            // The outbox row is already committed; the local copy is best effort
+            ex.printStackTrace();
+        }
+        lastSeq = Math.max(lastSeq, event.getSeq());
+        dispatcher.execute(() -> {
+            for (Consumer<CirculationEvent> subscriber : subscribers) {
+                try {
+                    subscriber.accept(event);
+                } catch (RuntimeException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
+    }
+
+    public synchronized long getLastSeq() {
+        return lastSeq;
+    }
+
+    // ---- Subscribing ----
+
+    // Receives every event published from now on, on the dispatcher thread
+    public void subscribe(Consumer<CirculationEvent> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<CirculationEvent> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    // Reads back events after the given sequence number from the local log,
+    // oldest segment first, on the calling thread
+    public synchronized void replay(long afterSeq, Consumer<CirculationEvent> consumer) throws IOException {
+        for (Path path : segments()) {
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                CirculationEvent event;
+                while ((event = readRecord(buf)) != null) {
+                    if (event.getSeq() > afterSeq) {
+                        consumer.accept(event);
+                    }
+                }
+            }
+        }
+    }
+
+    // ---- Segment files ----
+
+    // The root directory, or the first desk-N under it no other process holds
+    private void lockDirectory() throws IOException {
+        for (int n = 0; n <= MAX_DIRS; n++) {
+            Path candidate = n == 0 ? ROOT : ROOT.resolve("desk-" + n);
+            Files.createDirectories(candidate);
+            FileChannel lockChannel = FileChannel.open(candidate.resolve(".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = lockChannel.tryLock();
+            if (lock != null) {
+                dir = candidate;
+                dirLock = lock;
+                return;
+            }
+            lockChannel.close();
+        }
+        System.err.println("EventJournal: no free journal directory under " + ROOT + "; local log disabled");
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        if (dir == null) {
+            return paths;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "events-*.log")) {
+            for (Path path : files) {
+                paths.add(path);
+            }
+        }
+        Collections.sort(paths); // zero-padded names sort by first seq
+        return paths;
+    }
+
+    private void openLastSegment() throws IOException {
+        List<Path> paths = segments();
+        if (paths.isEmpty()) {
+            return;
+        }
+        map(paths.get(paths.size() - 1));
+        CirculationEvent event;
+        while ((event = readRecord(segment)) != null) {
+            lastSeq = Math.max(lastSeq, event.getSeq());
+        }
+    }
+
+    private void map(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+    }
+
+    private void roll(long firstSeq) throws IOException {
+        force();
+        if (channel != null) {
+            channel.close();
+        }
+        map(dir.resolve(String.format("events-%020d.log", firstSeq)));
+        deleteOldSegments();
+    }
+
+    // Keeps the newest RETAIN_SEGMENTS, the one being written included. A file
+    // that cannot be deleted yet (still mapped, on Windows) is tried at the
+    // next roll.
+    private void deleteOldSegments() throws IOException {
+        List<Path> paths = segments();
+        for (int i = 0; i < paths.size() - RETAIN_SEGMENTS; i++) {
+            try {
+                Files.deleteIfExists(paths.get(i));
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    private synchronized void force() {
+        if (segment != null) {
+            segment.force();
+        }
+    }
+
+    private void append(CirculationEvent event) throws IOException {
+        if (dir == null) {
+            return;
+        }
+        byte[] payload = encode(event);
+        if (segment == null || segment.remaining() < HEADER_BYTES + payload.length) {
+            roll(event.getSeq());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        // Length goes in last, so a torn write reads as the end of the segment
+        int start = segment.position();
+        segment.position(start + 4);
+        segment.putInt((int) crc.getValue());
+        segment.put(payload);
+        int end = segment.position();
+        segment.putInt(start, payload.length);
+        segment.position(end);
+    }
+
+    private static byte[] encode(CirculationEvent event) {
+        byte[] actor = event.getActor() == null ? new byte[0] : event.getActor().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(8 + 1 + 4 * 6 + 8 + 8 + 2 + actor.length);
+        buf.putLong(event.getSeq());
+        buf.put((byte) event.getType().ordinal());
+        buf.putInt(event.getStudentId());
+        buf.putInt(event.getBookId());
+        buf.putInt(event.getCopyId());
+        buf.putInt(event.getAvailableCopies());
+        buf.putInt(event.getTotalCopies());
+        buf.putInt(event.getDueDate() == null ? Integer.MIN_VALUE : (int) event.getDueDate().toEpochDay());
+        buf.putDouble(event.getFine());
+        buf.putLong(event.getTimeMillis());
+        buf.putShort((short) actor.length);
+        buf.put(actor);
+        return buf.array();
+    }
+
+    // Reads the record at the buffer's position, or returns null at the end
+    // of the segment (zero length, truncated or failed checksum)
+    private static CirculationEvent readRecord(MappedByteBuffer buf) {
+        if (buf.remaining() < HEADER_BYTES) return null;
+        int start = buf.position();
+        int length = buf.getInt();
+        int checksum = buf.getInt();
+        if (length <= 0 || length > buf.remaining()) {
+            buf.position(start);
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buf.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            buf.position(start);
+            return null;
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        long seq = in.getLong();
+        CirculationEvent.Type type = CirculationEvent.Type.values()[in.get()];
+        int studentId = in.getInt();
+        int bookId = in.getInt();
+        int copyId = in.getInt();
+        int available = in.getInt();
+        int total = in.getInt();
+        int dueDay = in.getInt();
+        double fine = in.getDouble();
+        long time = in.getLong();
+        byte[] actor = new byte[in.getShort()];
+        in.get(actor);
+        return new CirculationEvent(seq, type, studentId, bookId, copyId, available, total,
+            dueDay == Integer.MIN_VALUE ? null : LocalDate.ofEpochDay(dueDay), fine,
+            new String(actor, StandardCharsets.UTF_8), time);
+    }
+}
@@ -0,0 +1,39 @@
+// FlightRecording.java
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+// One in-process Flight Recorder recording, started and stopped from the
+// Admin dashboard's Diagnostics menu. Uses the JDK's low-overhead "default"
+// settings plus every library.* event, so it can stay on during desk hours.
+public class FlightRecording {
+    private static Recording recording;
+
+    public static synchronized boolean isRunning() {
+        return recording != null;
+    }
+
+    public static synchronized void start() throws IOException, ParseException {
+        if (recording != null) return;
+        Recording r = new Recording(Configuration.getConfiguration("default"));
+        r.setName("library-desk");
+        r.enable(DashboardActionEvent.class);
+        r.enable(EdtStallEvent.class);
+        r.start();
+        recording = r;
+    }
+
+    // Stops the recording and writes it to file
+    public static synchronized void stop(Path file) throws IOException {
+        if (recording == null) return;
+        try {
+            recording.stop();
+            recording.dump(file);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+}
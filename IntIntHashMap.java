@@ -0,0 +1,98 @@
+// IntIntHashMap.java
+import java.util.Arrays;
+
+// Open-addressing int -> int map with linear probing, no boxing.
+// Key 0 is reserved as the empty marker, which is fine for database ids.
+public class IntIntHashMap {
+    public interface Visitor {
+        void visit(int key, int value);
+    }
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+
+    public IntIntHashMap() {
+        this(8);
+    }
+
+    public IntIntHashMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+    }
+
+    private static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int slot(int key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    public int get(int key) {
+        return keys[slot(key)] == key ? values[slot(key)] : 0;
+    }
+
+    public boolean containsKey(int key) {
+        return keys[slot(key)] == key;
+    }
+
+    public void put(int key, int value) {
+        if (key == 0) throw new IllegalArgumentException("key 0 is reserved");
+        int i = slot(key);
+        if (keys[i] == 0) {
+            keys[i] = key;
+            if (++size * 2 > keys.length) {
+                values[i] = value;
+                grow();
+                return;
+            }
+        }
+        values[i] = value;
+    }
+
+    // Adds delta to the value (0 when absent) and returns the new value
+    public int addTo(int key, int delta) {
+        int value = get(key) + delta;
+        put(key, value);
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                visitor.visit(keys[i], values[i]);
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        size = 0;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+// IntObjectHashMap.java
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+// Open-addressing int -> object map with linear probing, no boxed keys.
+// Key 0 is reserved as the empty marker, which is fine for database ids.
+public class IntObjectHashMap<V> {
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    public IntObjectHashMap() {
+        this(16);
+    }
+
+    public IntObjectHashMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new Object[capacity];
+    }
+
+    private int slot(int key) {
+        int mask = keys.length - 1;
+        int h = key * 0x9E3779B9;
+        int i = (h ^ (h >>> 16)) & mask;
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        int i = slot(key);
+        return keys[i] == key ? (V) values[i] : null;
+    }
+
+    public void put(int key, V value) {
+        if (key == 0) throw new IllegalArgumentException("key 0 is reserved");
+        int i = slot(key);
+        if (keys[i] == 0) {
+            keys[i] = key;
+            values[i] = value;
+            if (++size * 2 > keys.length) {
+                grow();
+            }
+            return;
+        }
+        values[i] = value;
+    }
+
+    public V computeIfAbsent(int key, IntFunction<V> factory) {
+        V value = get(key);
+        if (value == null) {
+            value = factory.apply(key);
+            put(key, value);
+        }
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEachValue(Consumer<V> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                consumer.accept((V) values[i]);
+            }
+        }
+    }
+
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        for (int key : keys) {
+            if (key != 0) result[n++] = key;
+        }
+        return result;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+// LatencyHistogram.java
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear latency histogram in the style of HdrHistogram: 64 linear
+// sub-buckets per power of two, so every recorded value keeps about two
+// significant digits. Values are microseconds. Recording is lock-free.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 6;
+    private static final int SUB_COUNT = 1 << SUB_BITS; // 64
+    private static final int BUCKETS = SUB_COUNT * 59;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void recordMicros(long micros) {
+        counts.incrementAndGet(indexOf(Math.max(0, micros)));
+    }
+
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return SUB_COUNT * (shift + 1) + (int) ((value >>> shift) - SUB_COUNT);
+    }
+
+    // Largest value that falls in the bucket
+    private static long highestValueAt(int index) {
+        if (index < 2 * SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long mantissa = index % SUB_COUNT + SUB_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    // percentile in 0..100
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return highestValueAt(i);
+            }
+        }
+        return highestValueAt(BUCKETS - 1);
+    }
+
+    public long getMax() {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts.get(i) > 0) return highestValueAt(i);
+        }
+        return 0;
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = other.counts.get(i);
+            if (c > 0) counts.addAndGet(i, c);
+        }
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    // One line: count, p50, p90, p99, p99.9, max in milliseconds
+    public String summary() {
+        return String.format("n=%d p50=%.2fms p90=%.2fms p99=%.2fms p99.9=%.2fms max=%.2fms",
+            getCount(),
+            getValueAtPercentile(50) / 1000.0,
+            getValueAtPercentile(90) / 1000.0,
+            getValueAtPercentile(99) / 1000.0,
+            getValueAtPercentile(99.9) / 1000.0,
+            getMax() / 1000.0);
+    }
+}
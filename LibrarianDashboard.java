@@ -3,14 +3,30 @@ import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.sql.*;
-import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 // LibrarianDashboard.java - With Dark Mode Support
 public class LibrarianDashboard extends JFrame {
     private JTable bookTable;
-    private DefaultTableModel tableModel;
+    private ColumnarTableModel tableModel;
     private boolean darkMode;
     private JToggleButton darkModeToggle;
+    private DefaultTableModel overdueModel;
+    private JLabel overdueSummary;
+    private Consumer<List<OverdueScanner.StudentDigest>> overdueListener;
+    private Consumer<CirculationEvent> changeListener;
+    private final StatusBar statusBar = new StatusBar();
+    private ScannerPanel scannerPanel;
+    private final ExecutorService worker; // database reads for the catalog table, off the EDT
+    private List<CirculationEvent> heldChanges; // changes that arrived during the first full load
+    private DashboardActionEvent loadAction;    // the catalog load in progress
     
     // Colors from User class for consistent theming
     private static final Color LIGHT_BG = new Color(240, 240, 240);
@@ -26,23 +42,45 @@ public class LibrarianDashboard extends JFrame {
     
     public LibrarianDashboard(boolean darkMode) {
         this.darkMode = darkMode;
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "librarian-catalog");
+            t.setDaemon(true);
+            return t;
+        });
         
         setTitle("Librarian Dashboard - Manage Books");
         setSize(800, 500);
         setLayout(new BorderLayout());
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                WriteBehindQueue.get().flush();
+            }
 
-        String[] columns = {"ID", "Title", "Author", "Available"};
-        tableModel = new DefaultTableModel(columns, 0) {
             @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
+            public void windowClosed(WindowEvent e) {
+                OverdueScanner.get().removeListener(overdueListener);
+                ChangeFeed.get().removeListener(changeListener);
+                scannerPanel.shutdown();
+                worker.shutdown();
             }
-        };
+        });
+
+        tableModel = newCatalogModel();
         bookTable = new JTable(tableModel);
         loadBooks();
 
+        // Changes from this and other desks patch the affected row only
+        changeListener = event -> {
+            if (ChangeFeed.get().isCurrent(event)) {
+                SwingUtilities.invokeLater(() -> applyChange(event));
+            }
+        };
+        ChangeFeed.get().addListener(changeListener);
+
         JPanel btnPanel = new JPanel(new FlowLayout());
         JButton addBtn = new JButton("Add Book");
+        JButton addCopiesBtn = new JButton("Add Copies");
         JButton deleteBtn = new JButton("Delete Book");
         JButton issueBtn = new JButton("Issue Book");
         JButton returnBtn = new JButton("Return Book");
@@ -59,20 +97,33 @@ public class LibrarianDashboard extends JFrame {
         });
         
         btnPanel.add(addBtn);
+        btnPanel.add(addCopiesBtn);
         btnPanel.add(deleteBtn);
         btnPanel.add(issueBtn);
         btnPanel.add(returnBtn);
         btnPanel.add(darkModeToggle);
         btnPanel.add(logoutBtn);
 
-        add(new JScrollPane(bookTable), BorderLayout.CENTER);
-        add(btnPanel, BorderLayout.SOUTH);
+        JTabbedPane tabbedPane = new JTabbedPane();
+        tabbedPane.addTab("Books", new JScrollPane(bookTable));
+        tabbedPane.addTab("Overdue", createOverduePanel());
+        add(tabbedPane, BorderLayout.CENTER);
+
+        // Issue and return go through the scanner strip, checked against this table
+        scannerPanel = new ScannerPanel(statusBar, this::cachedAvailability);
+        add(scannerPanel, BorderLayout.NORTH);
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(btnPanel, BorderLayout.CENTER);
+        southPanel.add(statusBar, BorderLayout.SOUTH);
+        add(southPanel, BorderLayout.SOUTH);
 
         addBtn.addActionListener(e -> addBook());
+        addCopiesBtn.addActionListener(e -> addCopies());
         deleteBtn.addActionListener(e -> deleteBook());
-        issueBtn.addActionListener(e -> issueBook());
-        returnBtn.addActionListener(e -> returnBook());
+        issueBtn.addActionListener(e -> scannerPanel.focus(true));
+        returnBtn.addActionListener(e -> scannerPanel.focus(false));
         logoutBtn.addActionListener(e -> {
+            WriteBehindQueue.get().flush();
             dispose();
             new LoginScreen();
         });
@@ -132,31 +183,234 @@ public class LibrarianDashboard extends JFrame {
         }
     }
 
-    private void loadBooks() {
-        tableModel.setRowCount(0);
-        try (Connection conn = DBConnection.getConnection()) {
-            String query = "SELECT * FROM books ORDER BY title";
-            ResultSet rs = conn.createStatement().executeQuery(query);
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getBoolean("isAvailable") ? "Yes" : "No"
+    private JPanel createOverduePanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+
+        String[] columns = {"Student ID", "Student", "Book ID", "Title", "Due Date", "Days Late", "Fine (Rs.)"};
+        overdueModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+        JTable overdueTable = new JTable(overdueModel);
+        panel.add(new JScrollPane(overdueTable), BorderLayout.CENTER);
+
+        JPanel topPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        overdueSummary = new JLabel("Scanning...");
+        JButton scanBtn = new JButton("Scan Now");
+        scanBtn.addActionListener(e -> {
+            overdueSummary.setText("Scanning...");
+            OverdueScanner.get().scanNow();
+        });
+        topPanel.add(scanBtn);
+        topPanel.add(overdueSummary);
+        panel.add(topPanel, BorderLayout.NORTH);
+
+        // The scanner runs in the background; results are applied on the EDT
+        overdueListener = digests -> SwingUtilities.invokeLater(() -> showOverdue(digests));
+        OverdueScanner.get().addListener(overdueListener);
+        showOverdue(OverdueScanner.get().getLatest());
+
+        return panel;
+    }
+
+    private void showOverdue(List<OverdueScanner.StudentDigest> digests) {
+        overdueModel.setRowCount(0);
+        int loans = 0;
+        double fines = 0;
+        for (OverdueScanner.StudentDigest digest : digests) {
+            for (OverdueScanner.OverdueLoan loan : digest.loans) {
+                overdueModel.addRow(new Object[]{
+                    digest.studentId,
+                    digest.studentName,
+                    loan.bookId,
+                    loan.title,
+                    loan.dueDate,
+                    loan.daysLate,
+                    loan.getFine()
                 });
+                loans++;
+            }
+            fines += digest.getTotalFine();
+        }
+        overdueSummary.setText(String.format("%d overdue loans across %d students, Rs. %.2f in fines so far",
+            loans, digests.size(), fines));
+    }
+
+    // Last run's snapshot first, then what changed since it. Without a snapshot
+    // the reconcile reads the whole catalog, and that read fills the table;
+    // changes arriving meanwhile are held until it has. A failed attempt is
+    // retried by CatalogSync. The action event ends when the table is up to
+    // date or an attempt fails; its dbTime stays 0, the reads being made on
+    // the sync thread.
+    private void loadBooks() {
+        loadAction = DashboardActionEvent.begin("Librarian", "loadBooks");
+        CatalogSnapshot snapshot = CatalogSync.get().getSnapshot();
+        if (snapshot != null) {
+            showSnapshot(snapshot);
+            statusBar.info("Catalog loaded from the local snapshot, checking for changes...");
+        } else {
+            heldChanges = new ArrayList<>();
+            statusBar.info("Loading the catalog...");
+        }
+        CatalogSync.get().reconcile(
+            delta -> SwingUtilities.invokeLater(() -> applyCatalog(delta)),
+            ex -> SwingUtilities.invokeLater(() -> catalogFailed(ex)));
+    }
+
+    private void catalogFailed(Exception ex) {
+        loadAction.finish();
+        loadAction = DashboardActionEvent.begin("Librarian", "loadBooks");
+        statusBar.error("Error loading books, retrying: " + ex.getMessage());
+    }
+
+    // The whole catalog is held here, so it is stored by column rather than as boxed rows
+    private static ColumnarTableModel newCatalogModel() {
+        return new ColumnarTableModel(
+            new String[]{"ID", "Title", "Author", "Available", "Total"},
+            new ColumnarTableModel.Type[]{ColumnarTableModel.Type.INT, ColumnarTableModel.Type.STRING,
+                ColumnarTableModel.Type.DICTIONARY, ColumnarTableModel.Type.INT, ColumnarTableModel.Type.INT});
+    }
+
+    // Changes held during the full read, unless a later one for the title came since
+    private void applyHeldChanges() {
+        List<CirculationEvent> held = heldChanges;
+        heldChanges = null;
+        for (CirculationEvent event : held) {
+            if (ChangeFeed.get().isCurrent(event)) {
+                applyChange(event);
+            }
+        }
+    }
+
+    // Only the numbers are copied; titles and authors stay in the mapped file
+    // until a row is shown
+    private void showSnapshot(CatalogSnapshot snapshot) {
+        int rows = snapshot.size();
+        tableModel.reset(rows);
+        for (int i = 0; i < rows; i++) {
+            tableModel.putInt(i, 0, snapshot.getId(i));
+            tableModel.putInt(i, 3, snapshot.getAvailableCopies(i));
+            tableModel.putInt(i, 4, snapshot.getTotalCopies(i));
+        }
+        tableModel.putLazy(1, snapshot::getTitle);
+        tableModel.putLazy(2, snapshot::getAuthor);
+        tableModel.fireTableDataChanged();
+    }
+
+    // Fills the table from a full read, or patches the snapshot rows with what
+    // changed since it was written
+    private void applyCatalog(CatalogSync.Delta delta) {
+        if (delta.all != null) {
+            // Counters the change feed has already moved past the read are kept
+            Map<Integer, int[]> newer = new HashMap<>();
+            for (Book book : delta.all) {
+                int row = delta.isCurrent(book) ? -1 : tableModel.findRow(0, book.getId());
+                if (row >= 0) {
+                    newer.put(book.getId(), new int[]{ tableModel.getInt(row, 3), tableModel.getInt(row, 4) });
+                }
+            }
+            tableModel.reset(delta.all.size());
+            for (int i = 0; i < delta.all.size(); i++) {
+                Book book = delta.all.get(i);
+                int[] counts = newer.get(book.getId());
+                tableModel.putInt(i, 0, book.getId());
+                tableModel.putString(i, 1, book.getTitle());
+                tableModel.putString(i, 2, book.getAuthor());
+                tableModel.putInt(i, 3, counts != null ? counts[0] : book.getAvailableCopies());
+                tableModel.putInt(i, 4, counts != null ? counts[1] : book.getTotalCopies());
+            }
+            tableModel.fireTableDataChanged();
+        }
+        Map<Integer, Integer> rowOf = new HashMap<>();
+        if (!delta.changed.isEmpty() || !delta.deleted.isEmpty()) {
+            for (int row = 0; row < tableModel.getRowCount(); row++) {
+                rowOf.put(tableModel.getInt(row, 0), row);
+            }
+        }
+        for (Book book : delta.changed) {
+            if (!delta.isCurrent(book)) continue;
+            Integer row = rowOf.get(book.getId());
+            if (row == null) {
+                tableModel.addRow(book.getId(), book.getTitle(), book.getAuthor(),
+                    book.getAvailableCopies(), book.getTotalCopies());
+            } else {
+                tableModel.setInt(row, 3, book.getAvailableCopies());
+                tableModel.setInt(row, 4, book.getTotalCopies());
+            }
+        }
+        // Bottom up, so the rows still to remove keep their index
+        List<Integer> removed = new ArrayList<>();
+        for (int bookId : delta.deleted) {
+            Integer row = rowOf.get(bookId);
+            if (row != null) removed.add(row);
+        }
+        removed.sort(Collections.reverseOrder());
+        for (int row : removed) {
+            tableModel.removeRow(row);
+        }
+        if (heldChanges != null) {
+            applyHeldChanges();
+        }
+        statusBar.info("Catalog is up to date.");
+        loadAction.succeeded(tableModel.getRowCount());
+        loadAction.finish();
+    }
+
+    // Copies left according to the table, or -1 when the title is not listed
+    private int cachedAvailability(int bookId) {
+        int row = tableModel.findRow(0, bookId);
+        return row < 0 ? -1 : tableModel.getInt(row, 3);
+    }
+
+    private void applyChange(CirculationEvent event) {
+        if (heldChanges != null) {
+            heldChanges.add(event);
+            return;
+        }
+        int bookId = event.getBookId();
+        int row = tableModel.findRow(0, bookId);
+
+        if (event.getType() == CirculationEvent.Type.DELETE_TITLE) {
+            if (row >= 0) tableModel.removeRow(row);
+        } else if (row >= 0) {
+            tableModel.setInt(row, 3, event.getAvailableCopies());
+            tableModel.setInt(row, 4, event.getTotalCopies());
+        } else {
+            // A title added at another desk; read on the worker, added on the EDT
+            worker.execute(() -> {
+                try {
+                    List<Book> books = LibraryService.getBooks(Collections.singletonList(bookId));
+                    SwingUtilities.invokeLater(() -> addTitles(event, books));
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            });
+        }
+    }
+
+    // Skipped when a later event for the title arrived meanwhile; it is applied on its own
+    private void addTitles(CirculationEvent event, List<Book> books) {
+        if (!ChangeFeed.get().isCurrent(event)) {
+            return;
+        }
+        for (Book book : books) {
+            if (tableModel.findRow(0, book.getId()) < 0) {
+                tableModel.addRow(book.getId(), book.getTitle(), book.getAuthor(),
+                    book.getAvailableCopies(), book.getTotalCopies());
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error loading books: " + ex.getMessage());
         }
     }
 
     private void addBook() {
         JTextField titleField = new JTextField();
         JTextField authorField = new JTextField();
-        JPanel panel = new JPanel(new GridLayout(2, 2));
+        JTextField copiesField = new JTextField("1");
+        JPanel panel = new JPanel(new GridLayout(3, 2));
         panel.add(new JLabel("Title:")); panel.add(titleField);
         panel.add(new JLabel("Author:")); panel.add(authorField);
+        panel.add(new JLabel("Copies:")); panel.add(copiesField);
         
         // Apply theme to dialog components
         applyTheme(panel);
@@ -164,29 +418,66 @@ public class LibrarianDashboard extends JFrame {
         int result = JOptionPane.showConfirmDialog(this, panel, "Add Book", JOptionPane.OK_CANCEL_OPTION);
         if (result == JOptionPane.OK_OPTION) {
             if (titleField.getText().isEmpty()) {
-                JOptionPane.showMessageDialog(this, "Title is required!");
+                statusBar.warn("Title is required!");
                 return;
             }
             
-            try (Connection conn = DBConnection.getConnection()) {
-                String sql = "INSERT INTO books (title, author, isAvailable) VALUES (?, ?, TRUE)";
-                PreparedStatement stmt = conn.prepareStatement(sql);
-                stmt.setString(1, titleField.getText());
-                stmt.setString(2, authorField.getText());
-                stmt.executeUpdate();
-                loadBooks();
-                JOptionPane.showMessageDialog(this, "Book added successfully!");
+            DashboardActionEvent action = DashboardActionEvent.begin("Librarian", "addBook");
+            try {
+                int copies = Integer.parseInt(copiesField.getText().trim());
+                if (copies < 1) {
+                    statusBar.warn("At least one copy is required!");
+                    return;
+                }
+                LibraryService.addBook(titleField.getText(), authorField.getText(), null, copies);
+                action.succeeded(1);
+                statusBar.info("Book added.");
+            } catch (NumberFormatException ex) {
+                statusBar.warn("Please enter a valid number of copies");
             } catch (Exception ex) {
                 ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "Error adding book: " + ex.getMessage());
+                statusBar.error("Error adding book: " + ex.getMessage());
+            } finally {
+                action.finish();
             }
         }
     }
 
+    private void addCopies() {
+        int row = bookTable.getSelectedRow();
+        if (row == -1) {
+            statusBar.warn("Please select a book to add copies to.");
+            return;
+        }
+
+        String input = JOptionPane.showInputDialog(this, "Number of copies to add:", "1");
+        if (input == null) return;
+
+        int id = tableModel.getInt(row, 0);
+        DashboardActionEvent action = DashboardActionEvent.begin("Librarian", "addCopies");
+        try {
+            int copies = Integer.parseInt(input.trim());
+            if (copies < 1) {
+                statusBar.warn("At least one copy is required!");
+                return;
+            }
+            LibraryService.addCopies(id, copies);
+            action.succeeded(1);
+            statusBar.info(copies + " copies added to book " + id + ".");
+        } catch (NumberFormatException ex) {
+            statusBar.warn("Please enter a valid number of copies");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            statusBar.error("Error adding copies: " + ex.getMessage());
+        } finally {
+            action.finish();
+        }
+    }
+
     private void deleteBook() {
         int row = bookTable.getSelectedRow();
         if (row == -1) {
-            JOptionPane.showMessageDialog(this, "Please select a book to delete.");
+            statusBar.warn("Please select a book to delete.");
             return;
         }
         
@@ -196,156 +487,20 @@ public class LibrarianDashboard extends JFrame {
         
         if (confirm != JOptionPane.YES_OPTION) return;
         
-        int id = (int) tableModel.getValueAt(row, 0);
-        try (Connection conn = DBConnection.getConnection()) {
-            String checkSql = "SELECT * FROM borrowed_books WHERE book_id=? AND return_date IS NULL";
-            PreparedStatement checkStmt = conn.prepareStatement(checkSql);
-            checkStmt.setInt(1, id);
-            ResultSet rs = checkStmt.executeQuery();
-            
-            if (rs.next()) {
-                JOptionPane.showMessageDialog(this, "Cannot delete book that is currently borrowed!");
+        int id = tableModel.getInt(row, 0);
+        DashboardActionEvent action = DashboardActionEvent.begin("Librarian", "deleteBook");
+        try {
+            if (!LibraryService.deleteBook(id)) {
+                statusBar.warn("Cannot delete book that is currently borrowed!");
                 return;
             }
-            
-            String sql = "DELETE FROM books WHERE id=?";
-            PreparedStatement stmt = conn.prepareStatement(sql);
-            stmt.setInt(1, id);
-            stmt.executeUpdate();
-            loadBooks();
-            JOptionPane.showMessageDialog(this, "Book deleted successfully!");
+            action.succeeded(1);
+            statusBar.info("Book " + id + " deleted.");
         } catch (Exception ex) {
             ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error deleting book: " + ex.getMessage());
-        }
-    }
-
-    private void issueBook() {
-        JTextField studentIdField = new JTextField();
-        JTextField bookIdField = new JTextField();
-        JPanel panel = new JPanel(new GridLayout(2, 2));
-        panel.add(new JLabel("Student ID:")); panel.add(studentIdField);
-        panel.add(new JLabel("Book ID:")); panel.add(bookIdField);
-        
-        // Apply theme to dialog components
-        applyTheme(panel);
-
-        int result = JOptionPane.showConfirmDialog(this, panel, "Issue Book", JOptionPane.OK_CANCEL_OPTION);
-        if (result == JOptionPane.OK_OPTION) {
-            try {
-                int studentId = Integer.parseInt(studentIdField.getText());
-                int bookId = Integer.parseInt(bookIdField.getText());
-                
-                try (Connection conn = DBConnection.getConnection()) {
-                    String studentCheck = "SELECT * FROM users WHERE id=? AND role='Student' AND active=1";
-                    PreparedStatement studentStmt = conn.prepareStatement(studentCheck);
-                    studentStmt.setInt(1, studentId);
-                    ResultSet studentRs = studentStmt.executeQuery();
-                    
-                    if (!studentRs.next()) {
-                        JOptionPane.showMessageDialog(this, "Invalid student ID or student not active!");
-                        return;
-                    }
-                    
-                    String bookCheck = "SELECT * FROM books WHERE id=? AND isAvailable=TRUE";
-                    PreparedStatement bookStmt = conn.prepareStatement(bookCheck);
-                    bookStmt.setInt(1, bookId);
-                    ResultSet bookRs = bookStmt.executeQuery();
-                    
-                    if (!bookRs.next()) {
-                        JOptionPane.showMessageDialog(this, "Invalid book ID or book not available!");
-                        return;
-                    }
-                    
-                    LocalDate today = LocalDate.now();
-                    LocalDate dueDate = today.plusDays(14);
-
-                    PreparedStatement stmt = conn.prepareStatement(
-                        "INSERT INTO borrowed_books (student_id, book_id, borrow_date, due_date) VALUES (?, ?, ?, ?)"
-                    );
-                    stmt.setInt(1, studentId);
-                    stmt.setInt(2, bookId);
-                    stmt.setDate(3, Date.valueOf(today));
-                    stmt.setDate(4, Date.valueOf(dueDate));
-                    stmt.executeUpdate();
-
-                    PreparedStatement updateBook = conn.prepareStatement("UPDATE books SET isAvailable=FALSE WHERE id=?");
-                    updateBook.setInt(1, bookId);
-                    updateBook.executeUpdate();
-
-                    loadBooks();
-                    JOptionPane.showMessageDialog(this, "Book issued successfully! Due date: " + dueDate);
-                }
-            } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(this, "Please enter valid IDs (numbers only)");
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "Error issuing book: " + ex.getMessage());
-            }
-        }
-    }
-
-    private void returnBook() {
-        JTextField studentIdField = new JTextField();
-        JTextField bookIdField = new JTextField();
-        JPanel panel = new JPanel(new GridLayout(2, 2));
-        panel.add(new JLabel("Student ID:")); panel.add(studentIdField);
-        panel.add(new JLabel("Book ID:")); panel.add(bookIdField);
-        
-        // Apply theme to dialog components
-        applyTheme(panel);
-
-        int result = JOptionPane.showConfirmDialog(this, panel, "Return Book", JOptionPane.OK_CANCEL_OPTION);
-        if (result == JOptionPane.OK_OPTION) {
-            try {
-                int studentId = Integer.parseInt(studentIdField.getText());
-                int bookId = Integer.parseInt(bookIdField.getText());
-                
-                try (Connection conn = DBConnection.getConnection()) {
-                    LocalDate today = LocalDate.now();
-
-                    PreparedStatement getRecord = conn.prepareStatement(
-                        "SELECT due_date FROM borrowed_books WHERE student_id=? AND book_id=? AND return_date IS NULL"
-                    );
-                    getRecord.setInt(1, studentId);
-                    getRecord.setInt(2, bookId);
-                    ResultSet rs = getRecord.executeQuery();
-
-                    if (rs.next()) {
-                        Date due = rs.getDate("due_date");
-                        long daysLate = (today.toEpochDay() - due.toLocalDate().toEpochDay());
-                        double fine = daysLate > 0 ? daysLate * 5 : 0;
-
-                        PreparedStatement returnStmt = conn.prepareStatement(
-                            "UPDATE borrowed_books SET return_date=?, fine=? WHERE student_id=? AND book_id=? AND return_date IS NULL"
-                        );
-                        returnStmt.setDate(1, Date.valueOf(today));
-                        returnStmt.setDouble(2, fine);
-                        returnStmt.setInt(3, studentId);
-                        returnStmt.setInt(4, bookId);
-                        returnStmt.executeUpdate();
-
-                        PreparedStatement updateBook = conn.prepareStatement("UPDATE books SET isAvailable=TRUE WHERE id=?");
-                        updateBook.setInt(1, bookId);
-                        updateBook.executeUpdate();
-
-                        loadBooks();
-                        if (fine > 0) {
-                            JOptionPane.showMessageDialog(this, 
-                                String.format("Book returned successfully! Fine: Rs. %.2f", fine));
-                        } else {
-                            JOptionPane.showMessageDialog(this, "Book returned successfully with no fine.");
-                        }
-                    } else {
-                        JOptionPane.showMessageDialog(this, "No active borrowing record found for this student and book.");
-                    }
-                }
-            } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(this, "Please enter valid IDs (numbers only)");
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "Error returning book: " + ex.getMessage());
-            }
+            statusBar.error("Error deleting book: " + ex.getMessage());
+        } finally {
+            action.finish();
         }
     }
 }
\ No newline at end of file
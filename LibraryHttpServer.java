@@ -0,0 +1,344 @@
+// LibraryHttpServer.java
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Embedded HTTP/JSON front end for LibraryService, so kiosks and scanners can
+// share one backend and its connection pool instead of each running a dashboard.
+//
+//   POST /login     username, password, role -> token
+//   POST /logout
+//   GET  /books     available titles
+//   GET  /loans     student
+//   POST /issue     student, book
+//   POST /return    student, book
+//   POST /renew     student, book
+//   GET  /wishlist  student
+//   POST /wishlist  student, book, action=add|remove
+//
+// Parameters come from the query string or a form-encoded body. Every call
+// except /login needs the token from /login in an "Authorization: Bearer"
+// header; a token expires after SESSION_MINUTES without use. A student may
+// only act on their own id (student defaults to it); librarians and admins
+// name the student. The server listens on loopback unless library.http.host
+// says otherwise.
+// When the database is unreachable /issue, /return and /renew answer 202 with
+// the id of the operation OperationQueue saved; it is applied once the
+// database is back, so the client must not resend it.
+// Usage: java LibraryHttpServer [port]
+public class LibraryHttpServer {
+    private static final String HOST = System.getProperty("library.http.host", "127.0.0.1");
+    private static final long SESSION_MINUTES = Long.getLong("library.http.sessionMinutes", 480);
+    private static final Set<String> ROLES = Set.of("Admin", "Librarian", "Student");
+
+    private final HttpServer server;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    private static class Session {
+        final int userId;
+        final String role;
+        volatile long expiresAt;
+
+        Session(int userId, String role) {
+            this.userId = userId;
+            this.role = role;
+            touch();
+        }
+
+        void touch() {
+            expiresAt = System.currentTimeMillis() + SESSION_MINUTES * 60_000;
+        }
+    }
+
+    public LibraryHttpServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(HOST, port), 0);
+        server.setExecutor(createExecutor());
+
+        server.createContext("/login", ex -> handle(ex, "POST", false, (params, session) -> {
+            String role = param(params, "role");
+            if (!ROLES.contains(role)) {
+                throw new IllegalArgumentException("Invalid parameter: role");
+            }
+            User user = LibraryService.login(param(params, "username"), param(params, "password"), role);
+            if (user == null) {
+                return new Response(401, error("Invalid credentials or user not active."));
+            }
+            long now = System.currentTimeMillis();
+            sessions.values().removeIf(s -> s.expiresAt < now);
+            String token = newToken();
+            sessions.put(token, new Session(user.id, role));
+            return ok("{\"id\":" + user.id + ",\"name\":" + quote(user.name) + ",\"role\":" + quote(role)
+                + ",\"token\":" + quote(token) + "}");
+        }));
+
+        server.createContext("/logout", ex -> handle(ex, "POST", true, (params, session) -> {
+            sessions.remove(token(ex));
+            return ok("{}");
+        }));
+
+        server.createContext("/books", ex -> handle(ex, "GET", true, (params, session) -> {
+            StringBuilder json = new StringBuilder("[");
+            for (Book book : LibraryService.getAvailableBooks()) {
+                if (json.length() > 1) json.append(',');
+                json.append("{\"id\":").append(book.getId())
+                    .append(",\"title\":").append(quote(book.getTitle()))
+                    .append(",\"author\":").append(quote(book.getAuthor()))
+                    .append(",\"genre\":").append(quote(book.getGenre()))
+                    .append(",\"availableCopies\":").append(book.getAvailableCopies())
+                    .append('}');
+            }
+            return ok(json.append(']').toString());
+        }));
+
+        server.createContext("/loans", ex -> handle(ex, "GET", true, (params, session) -> {
+            StringBuilder json = new StringBuilder("[");
+            for (Loan loan : LibraryService.getLoans(studentParam(params, session))) {
+                if (json.length() > 1) json.append(',');
+                json.append("{\"bookId\":").append(loan.getBookId())
+                    .append(",\"title\":").append(quote(loan.getTitle()))
+                    .append(",\"borrowDate\":").append(quote(String.valueOf(loan.getBorrowDate())))
+                    .append(",\"dueDate\":").append(quote(String.valueOf(loan.getDueDate())))
+                    .append(",\"status\":").append(quote(loan.getStatus()))
+                    .append(",\"fine\":").append(loan.getFine())
+                    .append('}');
+            }
+            return ok(json.append(']').toString());
+        }));
+
+        server.createContext("/issue", ex -> handle(ex, "POST", true, (params, session) -> {
+            LocalDate dueDate = LibraryService.issueBook(studentParam(params, session), intParam(params, "book"));
+            if (dueDate == null) {
+                return new Response(409, error("No copies of this book are currently available."));
+            }
+            return ok("{\"dueDate\":" + quote(dueDate.toString()) + "}");
+        }));
+
+        server.createContext("/return", ex -> handle(ex, "POST", true, (params, session) -> {
+            double fine = LibraryService.returnBook(studentParam(params, session), intParam(params, "book"));
+            if (fine < 0) {
+                return new Response(404, error("No active borrowing record found for this student and book."));
+            }
+            return ok("{\"fine\":" + fine + "}");
+        }));
+
+        server.createContext("/renew", ex -> handle(ex, "POST", true, (params, session) -> {
+            LocalDate dueDate = LibraryService.renewBook(studentParam(params, session), intParam(params, "book"));
+            if (dueDate == null) {
+                return new Response(409, error("This loan cannot be renewed."));
+            }
+            return ok("{\"dueDate\":" + quote(dueDate.toString()) + "}");
+        }));
+
+        server.createContext("/wishlist", ex -> {
+            if ("GET".equals(ex.getRequestMethod())) {
+                handle(ex, "GET", true, (params, session) ->
+                    ok(LibraryService.getWishlist(studentParam(params, session)).toString()));
+                return;
+            }
+            handle(ex, "POST", true, (params, session) -> {
+                int studentId = studentParam(params, session);
+                int bookId = intParam(params, "book");
+                boolean changed = "remove".equals(params.get("action"))
+                    ? LibraryService.removeFromWishlist(studentId, bookId)
+                    : LibraryService.addToWishlist(studentId, bookId);
+                return ok("{\"changed\":" + changed + "}");
+            });
+        });
+    }
+
+    // One virtual thread per request when the JDK has them (21+), otherwise a
+    // pool a little larger than the connection pool so requests queue on the
+    // pool rather than on the socket.
+    private static ExecutorService createExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(DBConnection.getPool().getMaxSize() * 2);
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(1);
+    }
+
+    private interface Handler {
+        Response apply(Map<String, String> params, Session session) throws SQLException;
+    }
+
+    private static class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static Response ok(String body) {
+        return new Response(200, body);
+    }
+
+    private void handle(HttpExchange ex, String method, boolean authenticated, Handler handler) throws IOException {
+        Response response;
+        EventJournal.setThreadActor("http:" + ex.getRemoteAddress().getAddress().getHostAddress());
+        try {
+            Session session = authenticated ? session(ex) : null;
+            if (!method.equals(ex.getRequestMethod())) {
+                response = new Response(405, error("Method not allowed"));
+            } else if (authenticated && session == null) {
+                response = new Response(401, error("Log in first (Authorization: Bearer <token>)."));
+            } else {
+                if (session != null) {
+                    EventJournal.setThreadActor("http:" + session.role + ":" + session.userId);
+                }
+                response = handler.apply(readParams(ex), session);
+            }
+        } catch (IllegalArgumentException e) {
+            response = new Response(400, error(e.getMessage()));
+        } catch (SecurityException e) {
+            response = new Response(403, error(e.getMessage()));
+        } catch (OperationQueue.QueuedException e) {
+            response = new Response(202, "{\"queued\":true,\"opId\":" + quote(e.op.id)
+                + ",\"message\":" + quote(e.getMessage()) + "}");
+        } catch (SQLException | RuntimeException e) {
+            e.printStackTrace();
+            response = new Response(500, error("Database error: " + e.getMessage()));
+        } finally {
+            EventJournal.setThreadActor(null);
+        }
+
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> readParams(HttpExchange ex) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        parseForm(ex.getRequestURI().getRawQuery(), params);
+        try (InputStream in = ex.getRequestBody()) {
+            parseForm(new String(in.readAllBytes(), StandardCharsets.UTF_8), params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) return;
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                       URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[24];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static String token(HttpExchange ex) {
+        String header = ex.getRequestHeaders().getFirst("Authorization");
+        return header != null && header.startsWith("Bearer ") ? header.substring(7).trim() : null;
+    }
+
+    // The caller's live session, or null
+    private Session session(HttpExchange ex) {
+        String token = token(ex);
+        Session session = token == null ? null : sessions.get(token);
+        if (session == null) {
+            return null;
+        }
+        if (session.expiresAt < System.currentTimeMillis()) {
+            sessions.remove(token, session);
+            return null;
+        }
+        session.touch();
+        return session;
+    }
+
+    // The student the call acts on: a student's own id, or the one named by staff
+    private static int studentParam(Map<String, String> params, Session session) {
+        if (!"Student".equals(session.role)) {
+            return intParam(params, "student");
+        }
+        if (params.get("student") != null && intParam(params, "student") != session.userId) {
+            throw new SecurityException("Students can only act on their own account.");
+        }
+        return session.userId;
+    }
+
+    private static String param(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static int intParam(Map<String, String> params, String name) {
+        String value = params.get(name);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Missing or invalid parameter: " + name);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    private static String quote(String value) {
+        if (value == null) return "null";
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        new LibraryHttpServer(port).start();
+        System.out.println("Library HTTP server listening on " + HOST + ":" + port);
+    }
+}
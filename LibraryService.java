@@ -0,0 +1,374 @@
+// LibraryService.java
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// UI-independent login, catalog, circulation and wishlist operations.
+// Used by the Swing dashboards and by LibraryHttpServer, so no method here
+// touches Swing. Failures surface as SQLException for the caller to report.
+public class LibraryService {
+
+    // One page of a student's archived loans and where the next one starts
+    public static class LoanPage {
+        public final List<Loan> loans;
+        public final boolean more;         // another page follows
+        final LocalDate lastBorrowDate;    // keyset of the last row
+        final int lastId;
+
+        LoanPage(List<Loan> loans, boolean more, LocalDate lastBorrowDate, int lastId) {
+            this.loans = loans;
+            this.more = more;
+            this.lastBorrowDate = lastBorrowDate;
+            this.lastId = lastId;
+        }
+    }
+
+    // Returns the matching active user, or null when the credentials are wrong
+    public static User login(String username, String password, String role) throws SQLException {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.READ)) {
+            String query = "SELECT id, name FROM users WHERE username=? AND password=? AND role=? AND active=1";
+            PreparedStatement stmt = conn.prepareStatement(query);
+            stmt.setString(1, username);
+            stmt.setString(2, password);
+            stmt.setString(3, role);
+            ResultSet rs = stmt.executeQuery();
+            if (!rs.next()) {
+                return null;
+            }
+
+            int id = rs.getInt("id");
+            String name = rs.getString("name");
+            switch (role) {
+                case "Admin": return new Admin(id, name, username, password);
+                case "Librarian": return new Librarian(id, name, username, password);
+                default: return new Student(id, name, username, password);
+            }
+        }
+    }
+
+    // Returns false when the username is already taken
+    public static boolean register(String name, String username, String password, String role) throws SQLException {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.WRITE)) {
+            PreparedStatement checkStmt = conn.prepareStatement("SELECT id FROM users WHERE username=?");
+            checkStmt.setString(1, username);
+            if (checkStmt.executeQuery().next()) {
+                return false;
+            }
+
+            PreparedStatement insertStmt = conn.prepareStatement(
+                "INSERT INTO users (name, username, password, role, active) VALUES (?, ?, ?, ?, ?)"
+            );
+            insertStmt.setString(1, name);
+            insertStmt.setString(2, username);
+            insertStmt.setString(3, password);
+            insertStmt.setString(4, role);
+            insertStmt.setBoolean(5, true);
+            insertStmt.executeUpdate();
+            QueryCache.get().invalidate("users");
+            return true;
+        }
+    }
+
+    // ---- Catalog ----
+
+    // Catalog scans are shared between callers that ask at the same moment
+    // (a Refresh storm); the returned lists are read-only
+    public static List<Book> getAllBooks() throws SQLException {
+        return AdmissionController.get().coalesce("books:all", () -> Collections.unmodifiableList(
+            queryBooks("SELECT id, title, author, genre, available_copies, total_copies FROM books ORDER BY title")));
+    }
+
+    public static List<Book> getAvailableBooks() throws SQLException {
+        return AdmissionController.get().coalesce("books:available", () -> Collections.unmodifiableList(
+            queryBooks("SELECT id, title, author, genre, available_copies, total_copies FROM books WHERE available_copies > 0")));
+    }
+
+    public static List<Book> getBooks(List<Integer> ids) throws SQLException {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+        try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.READ)) {
+            PreparedStatement stmt = conn.prepareStatement(
+                "SELECT id, title, author, genre, available_copies, total_copies FROM books WHERE id IN (" + placeholders + ")"
+            );
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setInt(i + 1, ids.get(i));
+            }
+            return readBooks(stmt.executeQuery());
+        }
+    }
+
+    // Adds a new title with the given number of copies, returns its id
+    public static int addBook(String title, String author, String genre, int copies) throws SQLException {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.WRITE)) {
+            return BookInventory.addTitle(conn, title, author, genre, copies);
+        }
+    }
+
+    public static void addCopies(int bookId, int copies) throws SQLException {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.WRITE)) {
+            BookInventory.addCopies(conn, bookId, copies);
+        }
+    }
+
+    // Returns false when a copy of the title is still on loan
+    public static boolean deleteBook(int bookId) throws SQLException {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.WRITE)) {
+            return BookInventory.deleteTitle(conn, bookId);
+        }
+    }
+
+    private static List<Book> queryBooks(String query) throws SQLException {
+        try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.READ)) {
+            return readBooks(conn.createStatement().executeQuery(query));
+        }
+    }
+
+    private static List<Book> readBooks(ResultSet rs) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        while (rs.next()) {
+            books.add(new Book(
+                rs.getInt("id"),
+                rs.getString("title"),
+                rs.getString("author"),
+                rs.getString("genre"),
+                rs.getInt("available_copies"),
+                rs.getInt("total_copies")
+            ));
+        }
+        return books;
+    }
+
+    // ---- Circulation ----
+
+    public static boolean isActiveStudent(int studentId) throws SQLException {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.READ)) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT id FROM users WHERE id=? AND role='Student' AND active=1");
+            stmt.setInt(1, studentId);
+            return stmt.executeQuery().next();
+        }
+    }
+
+    // Newest first: open loans and recently returned ones. Older history is
+    // in the archive (see LoanArchiver and getArchivedLoans).
+    public static List<Loan> getLoans(int studentId) throws SQLException {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.READ)) {
+            String query = "SELECT b.id, b.title, b.author, bb.borrow_date, bb.due_date, bb.return_date, " +
+                           "IFNULL(bb.fine, 0) as fine " +
+                           "FROM books b JOIN borrowed_books bb ON b.id = bb.book_id " +
+                           "WHERE bb.student_id = ? ORDER BY bb.borrow_date DESC";
+            PreparedStatement stmt = conn.prepareStatement(query);
+            stmt.setInt(1, studentId);
+            return readLoans(stmt.executeQuery());
+        }
+    }
+
+    // Whether the student has any loan in the archive; one idx_archive_student probe
+    public static boolean hasArchivedLoans(int studentId) throws SQLException {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.READ)) {
+            PreparedStatement stmt = conn.prepareStatement(
+                "SELECT 1 FROM borrowed_books_archive WHERE student_id = ? LIMIT 1"
+            );
+            stmt.setInt(1, studentId);
+            return stmt.executeQuery().next();
+        }
+    }
+
+    // The page of archived loans after the given one (the first page when
+    // after is null), newest first. Keyset pagination on (borrow_date, id), as
+    // in OverdueScanner: LoanArchiver moves rows in while the student pages,
+    // and an offset would then repeat or skip loans. One extra row is read to
+    // tell whether another page follows.
+    public static LoanPage getArchivedLoans(int studentId, LoanPage after, int limit) throws SQLException {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.READ)) {
+            String query = "SELECT b.id, b.title, b.author, bb.id AS loan_id, bb.borrow_date, bb.due_date, " +
+                           "bb.return_date, IFNULL(bb.fine, 0) as fine " +
+                           "FROM borrowed_books_archive bb JOIN books b ON b.id = bb.book_id " +
+                           "WHERE bb.student_id = ? AND (bb.borrow_date < ? OR (bb.borrow_date = ? AND bb.id < ?)) " +
+                           "ORDER BY bb.borrow_date DESC, bb.id DESC LIMIT ?";
+            Date lastDate = Date.valueOf(after == null ? LocalDate.of(9999, 12, 31) : after.lastBorrowDate);
+            PreparedStatement stmt = conn.prepareStatement(query);
+            stmt.setInt(1, studentId);
+            stmt.setDate(2, lastDate);
+            stmt.setDate(3, lastDate);
+            stmt.setInt(4, after == null ? Integer.MAX_VALUE : after.lastId);
+            stmt.setInt(5, limit + 1);
+            ResultSet rs = stmt.executeQuery();
+
+            List<Loan> loans = new ArrayList<>();
+            LocalDate lastBorrowDate = null;
+            int lastId = 0;
+            while (loans.size() < limit && rs.next()) {
+                loans.add(readLoan(rs));
+                lastBorrowDate = rs.getDate("borrow_date").toLocalDate();
+                lastId = rs.getInt("loan_id");
+            }
+            boolean more = loans.size() == limit && rs.next();
+            return loans.isEmpty() ? new LoanPage(loans, false, null, 0) : new LoanPage(loans, more, lastBorrowDate, lastId);
+        }
+    }
+
+    private static List<Loan> readLoans(ResultSet rs) throws SQLException {
+        List<Loan> loans = new ArrayList<>();
+        while (rs.next()) {
+            loans.add(readLoan(rs));
+        }
+        return loans;
+    }
+
+    private static Loan readLoan(ResultSet rs) throws SQLException {
+        Date returnDate = rs.getDate("return_date");
+        return new Loan(
+            rs.getInt("id"),
+            rs.getString("title"),
+            rs.getString("author"),
+            rs.getDate("borrow_date").toLocalDate(),
+            rs.getDate("due_date").toLocalDate(),
+            returnDate == null ? null : returnDate.toLocalDate(),
+            rs.getDouble("fine")
+        );
+    }
+
+    // Returns the due date, or null when no copy is available.
+    // A successful issue also drops the title from the student's wishlist.
+    // The three circulation writes throw OperationQueue.QueuedException when
+    // the database is unreachable and the operation was queued instead.
+    public static LocalDate issueBook(int studentId, int bookId) throws SQLException {
+        OperationQueue queue = OperationQueue.get();
+        if (queue.shouldQueue()) {
+            throw queue.enqueue(OperationQueue.Type.ISSUE, studentId, bookId, null);
+        }
+        LocalDate dueDate;
+        try {
+            dueDate = CirculationCoordinator.issue(studentId, bookId);
+        } catch (CirculationCoordinator.UnreachableException ex) {
+            throw queue.enqueue(OperationQueue.Type.ISSUE, studentId, bookId, ex);
+        }
+        if (dueDate != null) {
+            removeFromWishlist(studentId, bookId);
+        }
+        return dueDate;
+    }
+
+    // Returns the fine charged, or -1 when there is no open loan
+    public static double returnBook(int studentId, int bookId) throws SQLException {
+        OperationQueue queue = OperationQueue.get();
+        if (queue.shouldQueue()) {
+            throw queue.enqueue(OperationQueue.Type.RETURN, studentId, bookId, null);
+        }
+        try {
+            return CirculationCoordinator.returnBook(studentId, bookId);
+        } catch (CirculationCoordinator.UnreachableException ex) {
+            throw queue.enqueue(OperationQueue.Type.RETURN, studentId, bookId, ex);
+        }
+    }
+
+    // Returns the new due date, or null when the loan cannot be renewed
+    public static LocalDate renewBook(int studentId, int bookId) throws SQLException {
+        OperationQueue queue = OperationQueue.get();
+        if (queue.shouldQueue()) {
+            throw queue.enqueue(OperationQueue.Type.RENEW, studentId, bookId, null);
+        }
+        try {
+            return CirculationCoordinator.renew(studentId, bookId);
+        } catch (CirculationCoordinator.UnreachableException ex) {
+            throw queue.enqueue(OperationQueue.Type.RENEW, studentId, bookId, ex);
+        }
+    }
+
+    // Used by OperationQueue to apply an operation queued while offline
+    static OperationQueue.Outcome replay(OperationQueue.Operation op) throws SQLException {
+        // The desk could not check the student while offline
+        if (op.type == OperationQueue.Type.ISSUE && !isActiveStudent(op.studentId)) {
+            return OperationQueue.Outcome.FAILED;
+        }
+        OperationQueue.Outcome outcome = CirculationCoordinator.replay(op);
+        if (outcome == OperationQueue.Outcome.APPLIED && op.type == OperationQueue.Type.ISSUE) {
+            removeFromWishlist(op.studentId, op.bookId);
+        }
+        return outcome;
+    }
+
+    // ---- Wishlist ----
+
+    // Each edit is one UPDATE of one title, so edits made at the same time by
+    // kiosks and a desk cannot overwrite each other's list. The row matches
+    // only when the list changes: the update count says whether it did.
+    private static final String WISHLIST_ADD =
+        "UPDATE users SET wishlist = CONCAT_WS(',', NULLIF(wishlist, ''), ?) " +
+        "WHERE id=? AND (wishlist IS NULL OR FIND_IN_SET(?, wishlist) = 0)";
+    private static final String WISHLIST_REMOVE =
+        "UPDATE users SET wishlist = TRIM(BOTH ',' FROM REPLACE(CONCAT(',', wishlist, ','), CONCAT(',', ?, ','), ',')) " +
+        "WHERE id=? AND FIND_IN_SET(?, wishlist) > 0";
+
+    // Write-behind keys: one per (student, title), all sharing the student's prefix
+    private static String wishlistKey(int studentId) {
+        return "wishlist:" + studentId + ":";
+    }
+
+    private static String wishlistKey(int studentId, int bookId) {
+        return wishlistKey(studentId) + bookId;
+    }
+
+    public static List<Integer> getWishlist(int studentId) throws SQLException {
+        // Queued edits must reach the table before we read it back
+        WriteBehindQueue.get().flushPrefix(wishlistKey(studentId));
+
+        List<Integer> wishlist = new ArrayList<>();
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.READ)) {
+            PreparedStatement stmt = conn.prepareStatement("SELECT wishlist FROM users WHERE id=?");
+            stmt.setInt(1, studentId);
+            ResultSet rs = stmt.executeQuery();
+            if (rs.next()) {
+                String wishlistStr = rs.getString("wishlist");
+                if (wishlistStr != null && !wishlistStr.isEmpty()) {
+                    for (String id : wishlistStr.split(",")) {
+                        if (!id.trim().isEmpty()) {
+                            wishlist.add(Integer.parseInt(id.trim()));
+                        }
+                    }
+                }
+            }
+        }
+        return wishlist;
+    }
+
+    // Written behind, for the dashboards; repeated edits of the same title
+    // collapse into the last one
+    public static void queueWishlistAdd(int studentId, int bookId) {
+        WriteBehindQueue.get().enqueueSql(wishlistKey(studentId, bookId), WISHLIST_ADD, bookId, studentId, bookId);
+    }
+
+    public static void queueWishlistRemove(int studentId, int bookId) {
+        WriteBehindQueue.get().enqueueSql(wishlistKey(studentId, bookId), WISHLIST_REMOVE, bookId, studentId, bookId);
+    }
+
+    // Returns false when the book is already on the wishlist
+    public static boolean addToWishlist(int studentId, int bookId) throws SQLException {
+        return editWishlist(WISHLIST_ADD, studentId, bookId);
+    }
+
+    // Returns false when the book was not on the wishlist
+    public static boolean removeFromWishlist(int studentId, int bookId) throws SQLException {
+        return editWishlist(WISHLIST_REMOVE, studentId, bookId);
+    }
+
+    private static boolean editWishlist(String sql, int studentId, int bookId) throws SQLException {
+        // An edit of the same title queued earlier goes first
+        WriteBehindQueue.get().flush(wishlistKey(studentId, bookId));
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.WRITE)) {
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, bookId);
+            stmt.setInt(2, studentId);
+            stmt.setInt(3, bookId);
+            if (stmt.executeUpdate() == 0) {
+                return false;
+            }
+        }
+        QueryCache.get().invalidateWrite(sql);
+        return true;
+    }
+}
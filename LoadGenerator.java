@@ -0,0 +1,434 @@
+// LoadGenerator.java
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Synthetic desk traffic for soak and capacity runs. Drives the same operations
+// as the dashboards (login, catalog browse, issue, return, renew, wishlist
+// toggles, admin reports) either in-process through LibraryService or against
+// a running LibraryHttpServer.
+//
+// Arrivals are open-loop (Poisson at --rate ops/s). Latency is measured from
+// the scheduled start, so a stalled backend shows up as queueing delay rather
+// than fewer samples. A throughput/latency line is printed every --interval,
+// and per-operation percentiles at the end. Over HTTP each load student logs
+// in once and its token is reused for that student's calls.
+//
+// Usage:
+//   java -Dlibrary.db.url=jdbc:mysql://localhost/library_load LoadGenerator \
+//        --seed --students 2000 --books 20000 --history 500000 \
+//        --rate 200 --duration 3h --interval 30s \
+//        --mix browse=40,issue=15,return=15,renew=5,wishlist=10,login=10,report=5 \
+//        [--threads 32] [--http http://localhost:8080] [--csv timeline.csv]
+public class LoadGenerator {
+    enum Operation { LOGIN, BROWSE, ISSUE, RETURN, RENEW, WISHLIST, REPORT }
+
+    private static final String STUDENT_PREFIX = "load_student_";
+    private static final String PASSWORD = "load";
+    private static final Pattern TOKEN = Pattern.compile("\"token\":\"([^\"]+)\"");
+
+    private final Map<String, String> options;
+    private final String httpBase;
+    private final EnumMap<Operation, Integer> mix = new EnumMap<>(Operation.class);
+    private int mixTotal;
+
+    private final List<Integer> studentIds = new ArrayList<>();
+    private final Map<Integer, String> usernames = new HashMap<>();
+    private final Map<Integer, String> tokens = new ConcurrentHashMap<>(); // student id -> HTTP session
+    private final List<Integer> bookIds = new ArrayList<>();
+    // Loans opened by this run, so returns and renews hit real open loans
+    private final Map<Integer, List<Integer>> openLoans = new ConcurrentHashMap<>();
+
+    private final EnumMap<Operation, LatencyHistogram> totals = new EnumMap<>(Operation.class);
+    private final LatencyHistogram interval = new LatencyHistogram();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public LoadGenerator(Map<String, String> options) {
+        this.options = options;
+        this.httpBase = options.get("http");
+        for (Operation op : Operation.values()) {
+            totals.put(op, new LatencyHistogram());
+        }
+        String mixSpec = options.getOrDefault("mix", "browse=40,issue=15,return=15,renew=5,wishlist=10,login=10,report=5");
+        for (String part : mixSpec.split(",")) {
+            String[] kv = part.split("=");
+            int weight = Integer.parseInt(kv[1].trim());
+            mix.put(Operation.valueOf(kv[0].trim().toUpperCase()), weight);
+            mixTotal += weight;
+        }
+    }
+
+    // ---- Data scale ----
+
+    private void seed() throws SQLException {
+        int students = Integer.parseInt(options.getOrDefault("students", "1000"));
+        int books = Integer.parseInt(options.getOrDefault("books", "10000"));
+        int history = Integer.parseInt(options.getOrDefault("history", "100000"));
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        System.out.printf("Seeding %d students, %d titles, %d historical loans%n", students, books, history);
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            PreparedStatement user = conn.prepareStatement(
+                "INSERT INTO users (name, username, password, role, active) VALUES (?, ?, ?, 'Student', TRUE)"
+            );
+            for (int i = 0; i < students; i++) {
+                user.setString(1, "Load Student " + i);
+                user.setString(2, STUDENT_PREFIX + i);
+                user.setString(3, PASSWORD);
+                user.addBatch();
+            }
+            user.executeBatch();
+            conn.commit();
+
+            String[] genres = {"Fiction", "Science", "History", "Engineering", "Poetry", "Reference"};
+            for (int i = 0; i < books; i++) {
+                BookInventory.addTitle(conn, "Load Title " + i, "Author " + (i % 997),
+                    genres[i % genres.length], 1 + random.nextInt(5));
+            }
+        }
+        loadIds();
+
+        try (Connection conn = DBConnection.getConnection()) {
+            conn.setAutoCommit(false);
+            PreparedStatement loan = conn.prepareStatement(
+                "INSERT INTO borrowed_books (student_id, book_id, borrow_date, due_date, return_date, fine) VALUES (?, ?, ?, ?, ?, ?)"
+            );
+            LocalDate today = LocalDate.now();
+            for (int i = 0; i < history; i++) {
+                LocalDate borrowed = today.minusDays(30 + random.nextInt(3 * 365));
+                LocalDate due = borrowed.plusDays(BookInventory.LOAN_DAYS);
+                long keptDays = random.nextInt(BookInventory.LOAN_DAYS + 10);
+                LocalDate returned = borrowed.plusDays(keptDays);
+                long late = Math.max(0, returned.toEpochDay() - due.toEpochDay());
+                loan.setInt(1, pick(studentIds));
+                loan.setInt(2, pick(bookIds));
+                loan.setDate(3, Date.valueOf(borrowed));
+                loan.setDate(4, Date.valueOf(due));
+                loan.setDate(5, Date.valueOf(returned));
+                loan.setDouble(6, late * BookInventory.FINE_PER_DAY);
+                loan.addBatch();
+                if (i % 1000 == 999) {
+                    loan.executeBatch();
+                    conn.commit();
+                }
+            }
+            loan.executeBatch();
+            conn.commit();
+        }
+    }
+
+    private void loadIds() throws SQLException {
+        studentIds.clear();
+        usernames.clear();
+        bookIds.clear();
+        try (Connection conn = DBConnection.getConnection()) {
+            ResultSet rs = conn.createStatement().executeQuery(
+                "SELECT id, username FROM users WHERE username LIKE '" + STUDENT_PREFIX + "%'"
+            );
+            while (rs.next()) {
+                studentIds.add(rs.getInt(1));
+                usernames.put(rs.getInt(1), rs.getString(2));
+            }
+            rs = conn.createStatement().executeQuery("SELECT id FROM books");
+            while (rs.next()) bookIds.add(rs.getInt(1));
+        }
+        if (studentIds.isEmpty() || bookIds.isEmpty()) {
+            throw new IllegalStateException("No load students or books found - run with --seed first");
+        }
+    }
+
+    private static int pick(List<Integer> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+
+    private Operation nextOperation() {
+        int r = ThreadLocalRandom.current().nextInt(mixTotal);
+        for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+            r -= entry.getValue();
+            if (r < 0) return entry.getKey();
+        }
+        return Operation.BROWSE;
+    }
+
+    // ---- Operations ----
+
+    private void execute(Operation op) throws Exception {
+        int studentId = pick(studentIds);
+        switch (op) {
+            case LOGIN: {
+                int index = ThreadLocalRandom.current().nextInt(studentIds.size());
+                if (httpBase != null) {
+                    http("POST", "/login", "username=" + STUDENT_PREFIX + index + "&password=" + PASSWORD + "&role=Student", null, null);
+                } else {
+                    LibraryService.login(STUDENT_PREFIX + index, PASSWORD, "Student");
+                }
+                break;
+            }
+            case BROWSE:
+                if (httpBase != null) {
+                    http("GET", "/books", null, token(studentId), null);
+                } else {
+                    LibraryService.getAvailableBooks();
+                }
+                break;
+            case ISSUE: {
+                int bookId = pick(bookIds);
+                boolean issued;
+                if (httpBase != null) {
+                    issued = http("POST", "/issue", "student=" + studentId + "&book=" + bookId, token(studentId), null) == 200;
+                } else {
+                    issued = LibraryService.issueBook(studentId, bookId) != null;
+                }
+                if (issued) {
+                    openLoans.computeIfAbsent(studentId, k -> new ArrayList<>());
+                    synchronized (openLoans.get(studentId)) {
+                        openLoans.get(studentId).add(bookId);
+                    }
+                } else {
+                    rejected.incrementAndGet();
+                }
+                break;
+            }
+            case RETURN:
+            case RENEW: {
+                int bookId = takeOpenLoan(studentId, op == Operation.RETURN);
+                if (bookId < 0) {
+                    // Nothing of ours to return - count it as a catalog browse instead
+                    execute(Operation.BROWSE);
+                    return;
+                }
+                if (httpBase != null) {
+                    http("POST", op == Operation.RETURN ? "/return" : "/renew", "student=" + studentId + "&book=" + bookId,
+                        token(studentId), null);
+                } else if (op == Operation.RETURN) {
+                    LibraryService.returnBook(studentId, bookId);
+                } else {
+                    LibraryService.renewBook(studentId, bookId);
+                }
+                break;
+            }
+            case WISHLIST: {
+                int bookId = pick(bookIds);
+                boolean remove = ThreadLocalRandom.current().nextBoolean();
+                if (httpBase != null) {
+                    http("POST", "/wishlist", "student=" + studentId + "&book=" + bookId + "&action=" + (remove ? "remove" : "add"),
+                        token(studentId), null);
+                } else if (remove) {
+                    LibraryService.removeFromWishlist(studentId, bookId);
+                } else {
+                    LibraryService.addToWishlist(studentId, bookId);
+                }
+                break;
+            }
+            case REPORT:
+                // The HTTP API has no report endpoint, so reports always run in-process
+                try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.REPORT)) {
+                    String[] reports = AdminReports.REPORTS;
+                    AdminReports.generate(conn, reports[ThreadLocalRandom.current().nextInt(reports.length)]);
+                }
+                break;
+        }
+    }
+
+    // Picks one of this run's open loans for the student; removes it when returning
+    private int takeOpenLoan(int studentId, boolean remove) {
+        List<Integer> loans = openLoans.get(studentId);
+        if (loans == null) return -1;
+        synchronized (loans) {
+            if (loans.isEmpty()) return -1;
+            int index = ThreadLocalRandom.current().nextInt(loans.size());
+            return remove ? loans.remove(index) : loans.get(index);
+        }
+    }
+
+    // The student's HTTP session token, logging in on first use
+    private String token(int studentId) throws IOException {
+        String token = tokens.get(studentId);
+        if (token == null) {
+            StringBuilder response = new StringBuilder();
+            int status = http("POST", "/login",
+                "username=" + usernames.get(studentId) + "&password=" + PASSWORD + "&role=Student", null, response);
+            Matcher m = TOKEN.matcher(response);
+            if (status != 200 || !m.find()) {
+                throw new IOException("HTTP " + status + " logging in student " + studentId);
+            }
+            token = m.group(1);
+            tokens.put(studentId, token);
+        }
+        return token;
+    }
+
+    // Returns the status; the body goes to response when one is given
+    private int http(String method, String path, String body, String token, StringBuilder response) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(httpBase + path).openConnection();
+        conn.setRequestMethod(method);
+        if (token != null) {
+            conn.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        if (body != null) {
+            conn.setDoOutput(true);
+            conn.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream out = conn.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = conn.getResponseCode();
+        try (InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream()) {
+            if (in != null) {
+                byte[] bytes = in.readAllBytes();
+                if (response != null) {
+                    response.append(new String(bytes, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        if (status >= 500) {
+            throw new IOException("HTTP " + status + " from " + path);
+        }
+        return status;
+    }
+
+    // ---- Driver ----
+
+    public void run() throws Exception {
+        if (options.containsKey("seed")) {
+            seed();
+        } else {
+            loadIds();
+        }
+
+        double rate = Double.parseDouble(options.getOrDefault("rate", "50"));
+        long durationNanos = parseDuration(options.getOrDefault("duration", "60s"));
+        long intervalNanos = parseDuration(options.getOrDefault("interval", "10s"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "32"));
+        PrintWriter csv = options.containsKey("csv") ? new PrintWriter(options.get("csv")) : null;
+        if (csv != null) {
+            csv.println("elapsed_s,ops,ops_per_s,errors,p50_ms,p99_ms,max_ms");
+        }
+
+        System.out.printf("Running %s at %.1f ops/s for %ds with %d threads (%s)%n",
+            mix, rate, durationNanos / 1_000_000_000L, threads,
+            httpBase != null ? httpBase : "in-process");
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        long nextReport = start + intervalNanos;
+        long lastErrors = 0;
+        long intended = start;
+
+        while (intended < end) {
+            // Exponential inter-arrival times give a Poisson arrival process
+            intended += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) / rate * 1_000_000_000L);
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+
+            long scheduled = intended;
+            Operation op = nextOperation();
+            workers.execute(() -> {
+                try {
+                    execute(op);
+                } catch (Exception ex) {
+                    errors.incrementAndGet();
+                }
+                long micros = (System.nanoTime() - scheduled) / 1000;
+                totals.get(op).recordMicros(micros);
+                interval.recordMicros(micros);
+            });
+
+            if (System.nanoTime() >= nextReport) {
+                long elapsed = (System.nanoTime() - start) / 1_000_000_000L;
+                long ops = interval.getCount();
+                long intervalErrors = errors.get() - lastErrors;
+                lastErrors = errors.get();
+                double seconds = intervalNanos / 1e9;
+                System.out.printf("[%6ds] %8.1f ops/s errors=%d %s%n", elapsed, ops / seconds, intervalErrors, interval.summary());
+                if (csv != null) {
+                    csv.printf("%d,%d,%.1f,%d,%.2f,%.2f,%.2f%n", elapsed, ops, ops / seconds, intervalErrors,
+                        interval.getValueAtPercentile(50) / 1000.0,
+                        interval.getValueAtPercentile(99) / 1000.0,
+                        interval.getMax() / 1000.0);
+                    csv.flush();
+                }
+                interval.reset();
+                nextReport += intervalNanos;
+            }
+        }
+
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.MINUTES);
+        WriteBehindQueue.get().flush();
+        if (csv != null) csv.close();
+
+        System.out.println();
+        System.out.println("=== Latency by operation (from scheduled start) ===");
+        LatencyHistogram all = new LatencyHistogram();
+        for (Operation op : Operation.values()) {
+            LatencyHistogram h = totals.get(op);
+            if (h.getCount() == 0) continue;
+            all.add(h);
+            System.out.printf("%-9s %s%n", op, h.summary());
+        }
+        System.out.printf("%-9s %s%n", "ALL", all.summary());
+        System.out.printf("errors=%d issues rejected (no copy)=%d%n", errors.get(), rejected.get());
+        ConnectionPool pool = DBConnection.getPool();
+        System.out.printf("pool: max=%d avg wait=%.2fms%n", pool.getMaxSize(), pool.getAverageWaitMillis());
+        System.out.println("admission: " + AdmissionController.get().summary());
+        System.out.print(ReplicaRouter.get().summary());
+    }
+
+    private static long parseDuration(String value) {
+        value = value.trim().toLowerCase();
+        long unit = 1_000_000_000L;
+        if (value.endsWith("ms")) {
+            unit = 1_000_000L;
+            value = value.substring(0, value.length() - 2);
+        } else if (value.endsWith("s")) {
+            value = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("m")) {
+            unit *= 60;
+            value = value.substring(0, value.length() - 1);
+        } else if (value.endsWith("h")) {
+            unit *= 3600;
+            value = value.substring(0, value.length() - 1);
+        }
+        return (long) (Double.parseDouble(value) * unit);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) continue;
+            String key = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(key, args[++i]);
+            } else {
+                options.put(key, "true");
+            }
+        }
+        new LoadGenerator(options).run();
+        System.exit(0);
+    }
+}
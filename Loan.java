@@ -0,0 +1,48 @@
+// Loan.java
+import java.time.LocalDate;
+
+// One borrowed_books row joined with its title
+public class Loan {
+    private final int bookId;
+    private final String title;
+    private final String author;
+    private final LocalDate borrowDate;
+    private final LocalDate dueDate;
+    private final LocalDate returnDate;
+    private final double fine;
+
+    public Loan(int bookId, String title, String author, LocalDate borrowDate, LocalDate dueDate,
+                LocalDate returnDate, double fine) {
+        this.bookId = bookId;
+        this.title = title;
+        this.author = author;
+        this.borrowDate = borrowDate;
+        this.dueDate = dueDate;
+        this.returnDate = returnDate;
+        this.fine = fine;
+    }
+
+    public int getBookId() { return bookId; }
+    public String getTitle() { return title; }
+    public String getAuthor() { return author; }
+    public LocalDate getBorrowDate() { return borrowDate; }
+    public LocalDate getDueDate() { return dueDate; }
+    public LocalDate getReturnDate() { return returnDate; }
+    public double getFine() { return fine; }
+
+    public boolean isReturned() {
+        return returnDate != null;
+    }
+
+    public String getStatus() {
+        return isReturned() ? "Returned" : "Borrowed";
+    }
+
+    public Loan withDueDate(LocalDate newDueDate) {
+        return new Loan(bookId, title, author, borrowDate, newDueDate, returnDate, fine);
+    }
+
+    public Loan returned(LocalDate date, double charged) {
+        return new Loan(bookId, title, author, borrowDate, dueDate, date, charged);
+    }
+}
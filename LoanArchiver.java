@@ -0,0 +1,149 @@
+// LoanArchiver.java
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Moves returned loans older than RETENTION_DAYS from borrowed_books into
+// borrowed_books_archive, which is partitioned by the year of return_date
+// (see schema.sql). borrowed_books then holds only open and recent loans, so
+// the "return_date IS NULL" probes at the desks stay cheap however many years
+// of history there are.
+//
+// Rows move in chunks of CHUNK_SIZE, each chunk copied and deleted in one
+// transaction, in (return_date, due_date, id) order so the scan follows
+// idx_borrowed_open_due. Ids are kept, so LoanHistoryStore and the
+// recommendation rebuild read both tables as one history. Runs on a
+// background thread at a fixed period; "java LoanArchiver" runs it once.
+public class LoanArchiver {
+    private static final long RETENTION_DAYS = Long.getLong("library.archive.retentionDays", 365);
+    private static final int CHUNK_SIZE = Integer.getInteger("library.archive.chunkSize", 1000);
+    private static final long PERIOD_HOURS = Long.getLong("library.archive.periodHours", 24);
+    private static final String COLUMNS = "id, student_id, book_id, copy_id, borrow_date, due_date, return_date, fine";
+    private static final LoanArchiver instance = new LoanArchiver();
+
+    private final ScheduledExecutorService scheduler;
+    private volatile long archived;
+
+    private LoanArchiver() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "loan-archiver");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::runArchive, 1, PERIOD_HOURS * 60, TimeUnit.MINUTES);
+    }
+
+    public static LoanArchiver get() {
+        return instance;
+    }
+
+    // Loans moved by this process since startup
+    public long getArchived() {
+        return archived;
+    }
+
+    public void archiveNow() {
+        scheduler.execute(this::runArchive);
+    }
+
+    private void runArchive() {
+        try {
+            int moved = archive(LocalDate.now().minusDays(RETENTION_DAYS));
+            archived += moved;
+            if (moved > 0) {
+                QueryCache.get().invalidate("borrowed_books");
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    // Archives loans returned before cutoff, returns the number moved
+    public static int archive(LocalDate cutoff) throws SQLException {
+        // Background batch work: waits out congestion instead of being shed
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.BATCH)) {
+            addPartitions(conn, cutoff.getYear());
+            int total = 0;
+            int moved;
+            do {
+                moved = moveChunk(conn, cutoff);
+                total += moved;
+            } while (moved == CHUNK_SIZE);
+            return total;
+        }
+    }
+
+    // Splits the catch-all partition so every year up to lastYear has its own.
+    // Years below the lowest partition share it, as VALUES LESS THAN allows.
+    private static void addPartitions(Connection conn, int lastYear) throws SQLException {
+        ResultSet rs = conn.createStatement().executeQuery(
+            "SELECT MAX(CAST(SUBSTRING(partition_name, 2) AS UNSIGNED)) FROM information_schema.partitions " +
+            "WHERE table_schema = DATABASE() AND table_name = 'borrowed_books_archive' AND partition_name != 'pmax'"
+        );
+        int year = rs.next() ? rs.getInt(1) + 1 : 1;
+        if (year == 1) {
+            rs = conn.createStatement().executeQuery(
+                "SELECT YEAR(MIN(return_date)) FROM borrowed_books WHERE return_date IS NOT NULL"
+            );
+            year = rs.next() && rs.getInt(1) > 0 ? rs.getInt(1) : lastYear;
+        }
+        for (; year <= lastYear; year++) {
+            conn.createStatement().executeUpdate(
+                "ALTER TABLE borrowed_books_archive REORGANIZE PARTITION pmax INTO (" +
+                "PARTITION p" + year + " VALUES LESS THAN (" + (year + 1) + "), " +
+                "PARTITION pmax VALUES LESS THAN MAXVALUE)"
+            );
+        }
+    }
+
+    private static int moveChunk(Connection conn, LocalDate cutoff) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            PreparedStatement pick = conn.prepareStatement(
+                "SELECT id FROM borrowed_books WHERE return_date IS NOT NULL AND return_date < ? " +
+                "ORDER BY return_date, due_date, id LIMIT ? FOR UPDATE"
+            );
+            pick.setDate(1, Date.valueOf(cutoff));
+            pick.setInt(2, CHUNK_SIZE);
+            ResultSet rs = pick.executeQuery();
+            List<Integer> ids = new ArrayList<>();
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+            if (ids.isEmpty()) {
+                conn.commit();
+                return 0;
+            }
+
+            String in = " WHERE id IN (" + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+            PreparedStatement copy = conn.prepareStatement(
+                "INSERT INTO borrowed_books_archive (" + COLUMNS + ") SELECT " + COLUMNS + " FROM borrowed_books" + in
+            );
+            PreparedStatement delete = conn.prepareStatement("DELETE FROM borrowed_books" + in);
+            for (int i = 0; i < ids.size(); i++) {
+                copy.setInt(i + 1, ids.get(i));
+                delete.setInt(i + 1, ids.get(i));
+            }
+            copy.executeUpdate();
+            delete.executeUpdate();
+            conn.commit();
+            return ids.size();
+        } catch (SQLException ex) {
+            conn.rollback();
+            throw ex;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LocalDate cutoff = LocalDate.now().minusDays(RETENTION_DAYS);
+        System.out.println("Archived " + archive(cutoff) + " loans returned before " + cutoff);
+    }
+}
@@ -0,0 +1,373 @@
+// LoanHistoryStore.java
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+// Columnar in-memory copy of borrowed_books for analytics. Each loan is one
+// index into a set of int arrays: ids, epoch-day dates, the fine in paise and
+// the title as a StringDictionary code - 32 bytes per loan instead of an
+// Object[] row of boxed values. Rows are kept in loan id order.
+//
+// sync() streams in the loans with an id above the last one seen (from
+// borrowed_books and, for a cold start, borrowed_books_archive), then
+// re-reads the loans issued, renewed or returned since the previous sync
+// (found from circulation_events), so only the change is transferred. An
+// issue can commit after a later id was read; its loan is found from the
+// ISSUE event and merged in at its place. Aggregations take
+// one Columns snapshot and loop over it without locking; sync() appends past
+// the snapshot's size, and changes to existing rows go to copies of the
+// due/return/fine columns, before it publishes a new snapshot.
+public class LoanHistoryStore {
+    public static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int OVERLAP = 1000; // seqs re-read for transactions that committed late
+    private static final String LOAN_COLUMNS = "id, student_id, book_id, borrow_date, due_date, return_date, fine";
+    private static final LoanHistoryStore instance = new LoanHistoryStore();
+
+    private final StringDictionary titles = new StringDictionary();
+    private volatile Columns columns = new Columns(1024);
+    private long lastSeq = -1;   // circulation_events seq covered by the last sync
+
+    private static class Columns {
+        int[] loanId, studentId, bookId, titleCode;
+        int[] borrowDay, dueDay, returnDay, finePaise;
+        int size;
+
+        Columns(int capacity) {
+            loanId = new int[capacity];
+            studentId = new int[capacity];
+            bookId = new int[capacity];
+            titleCode = new int[capacity];
+            borrowDay = new int[capacity];
+            dueDay = new int[capacity];
+            returnDay = new int[capacity];
+            finePaise = new int[capacity];
+        }
+
+        private Columns() {
+        }
+
+        // Same arrays, different visible size
+        Columns view(int newSize) {
+            Columns view = new Columns();
+            view.loanId = loanId;
+            view.studentId = studentId;
+            view.bookId = bookId;
+            view.titleCode = titleCode;
+            view.borrowDay = borrowDay;
+            view.dueDay = dueDay;
+            view.returnDay = returnDay;
+            view.finePaise = finePaise;
+            view.size = newSize;
+            return view;
+        }
+
+        // Same arrays, except private copies of the columns a sync may change
+        Columns forUpdate() {
+            Columns copy = view(size);
+            copy.dueDay = dueDay.clone();
+            copy.returnDay = returnDay.clone();
+            copy.finePaise = finePaise.clone();
+            return copy;
+        }
+
+        Columns grow() {
+            int capacity = loanId.length * 2;
+            Columns grown = new Columns();
+            grown.loanId = Arrays.copyOf(loanId, capacity);
+            grown.studentId = Arrays.copyOf(studentId, capacity);
+            grown.bookId = Arrays.copyOf(bookId, capacity);
+            grown.titleCode = Arrays.copyOf(titleCode, capacity);
+            grown.borrowDay = Arrays.copyOf(borrowDay, capacity);
+            grown.dueDay = Arrays.copyOf(dueDay, capacity);
+            grown.returnDay = Arrays.copyOf(returnDay, capacity);
+            grown.finePaise = Arrays.copyOf(finePaise, capacity);
+            grown.size = size;
+            return grown;
+        }
+    }
+
+    public static class TitleCount {
+        public final String title;
+        public final int loans;
+
+        TitleCount(String title, int loans) {
+            this.title = title;
+            this.loans = loans;
+        }
+    }
+
+    private LoanHistoryStore() {
+    }
+
+    public static LoanHistoryStore get() {
+        return instance;
+    }
+
+    public int size() {
+        return columns.size;
+    }
+
+    // Heap used by the columns and the title dictionary
+    public long estimateBytes() {
+        return (long) columns.loanId.length * 8 * Integer.BYTES + titles.estimateBytes();
+    }
+
+    // ---- Loading ----
+
+    // Appends new loans and applies renewals and returns since the last sync
+    public synchronized void sync(Connection conn) throws SQLException {
+        // Taken first: a change after this is picked up by the next sync
+        long seq = maxSeq(conn);
+        Columns cols = appendNewLoans(conn, columns.view(columns.size));
+        if (lastSeq >= 0) {
+            cols = insertLateLoans(conn, cols, lastSeq);
+            cols = applyChanges(conn, cols, lastSeq);
+        }
+        lastSeq = seq;
+        columns = cols;
+    }
+
+    private static long maxSeq(Connection conn) throws SQLException {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT COALESCE(MAX(seq), 0) FROM circulation_events");
+        rs.next();
+        return rs.getLong(1);
+    }
+
+    private Columns appendNewLoans(Connection conn, Columns cols) throws SQLException {
+        int lastId = cols.size == 0 ? 0 : cols.loanId[cols.size - 1];
+        PreparedStatement stmt = conn.prepareStatement(
+            "SELECT bb.id, bb.student_id, bb.book_id, b.title, bb.borrow_date, bb.due_date, bb.return_date, bb.fine " +
+            "FROM (SELECT " + LOAN_COLUMNS + " FROM borrowed_books WHERE id > ? " +
+            "UNION ALL SELECT " + LOAN_COLUMNS + " FROM borrowed_books_archive WHERE id > ?) bb " +
+            "LEFT JOIN books b ON b.id = bb.book_id ORDER BY bb.id",
+            ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY
+        );
+        stmt.setInt(1, lastId);
+        stmt.setInt(2, lastId);
+        // Tells MySQL Connector/J to stream rows instead of buffering the result
+        stmt.setFetchSize(Integer.MIN_VALUE);
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                if (cols.size == cols.loanId.length) {
+                    cols = cols.grow();
+                }
+                readLoan(rs, cols, cols.size);
+                cols.size++;
+            }
+        }
+        return cols;
+    }
+
+    // Columns 1-8 of the loan queries into row
+    private void readLoan(ResultSet rs, Columns cols, int row) throws SQLException {
+        cols.loanId[row] = rs.getInt(1);
+        cols.studentId[row] = rs.getInt(2);
+        cols.bookId[row] = rs.getInt(3);
+        cols.titleCode[row] = titles.encode(rs.getString(4));
+        cols.borrowDay[row] = epochDay(rs.getDate(5));
+        cols.dueDay[row] = epochDay(rs.getDate(6));
+        cols.returnDay[row] = epochDay(rs.getDate(7));
+        cols.finePaise[row] = (int) Math.round(rs.getDouble(8) * 100);
+    }
+
+    // Loans issued after sinceSeq that appendNewLoans passed over: AUTO_INCREMENT
+    // ids are taken in order but committed in any order, so a loan can commit
+    // after a higher id was read. Returns cols itself when there are none,
+    // otherwise a new copy with them merged in id order.
+    private Columns insertLateLoans(Connection conn, Columns cols, long sinceSeq) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(
+            "SELECT bb.id, bb.student_id, bb.book_id, b.title, bb.borrow_date, bb.due_date, bb.return_date, bb.fine " +
+            "FROM borrowed_books bb JOIN " +
+            "(SELECT DISTINCT student_id, book_id FROM circulation_events " +
+            "WHERE seq > ? AND type = 'ISSUE') e " +
+            "ON e.student_id = bb.student_id AND e.book_id = bb.book_id " +
+            "LEFT JOIN books b ON b.id = bb.book_id ORDER BY bb.id"
+        );
+        stmt.setLong(1, Math.max(0, sinceSeq - OVERLAP));
+        Columns late = new Columns(16);
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                if (Arrays.binarySearch(cols.loanId, 0, cols.size, rs.getInt(1)) >= 0) {
+                    continue;
+                }
+                if (late.size == late.loanId.length) {
+                    late = late.grow();
+                }
+                readLoan(rs, late, late.size);
+                late.size++;
+            }
+        }
+        if (late.size == 0) {
+            return cols;
+        }
+
+        // Published snapshots keep reading the old arrays, so merge into new ones
+        Columns merged = new Columns(Math.max(cols.loanId.length, cols.size + late.size));
+        int i = 0;
+        int j = 0;
+        while (i < cols.size || j < late.size) {
+            if (j == late.size || (i < cols.size && cols.loanId[i] < late.loanId[j])) {
+                copyRow(cols, i++, merged, merged.size++);
+            } else {
+                copyRow(late, j++, merged, merged.size++);
+            }
+        }
+        return merged;
+    }
+
+    private static void copyRow(Columns from, int fromRow, Columns to, int toRow) {
+        to.loanId[toRow] = from.loanId[fromRow];
+        to.studentId[toRow] = from.studentId[fromRow];
+        to.bookId[toRow] = from.bookId[fromRow];
+        to.titleCode[toRow] = from.titleCode[fromRow];
+        to.borrowDay[toRow] = from.borrowDay[fromRow];
+        to.dueDay[toRow] = from.dueDay[fromRow];
+        to.returnDay[toRow] = from.returnDay[fromRow];
+        to.finePaise[toRow] = from.finePaise[fromRow];
+    }
+
+    // Re-reads every loan of a (student, book) pair renewed or returned after
+    // sinceSeq. Returns cols itself when nothing changed, otherwise a copy.
+    private Columns applyChanges(Connection conn, Columns cols, long sinceSeq) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(
+            "SELECT bb.id, bb.due_date, bb.return_date, bb.fine FROM borrowed_books bb JOIN " +
+            "(SELECT DISTINCT student_id, book_id FROM circulation_events " +
+            "WHERE seq > ? AND type IN ('RENEW', 'RETURN')) e " +
+            "ON e.student_id = bb.student_id AND e.book_id = bb.book_id"
+        );
+        stmt.setLong(1, Math.max(0, sinceSeq - OVERLAP));
+        Columns updated = null;
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                int row = Arrays.binarySearch(cols.loanId, 0, cols.size, rs.getInt(1));
+                if (row < 0) {
+                    continue;
+                }
+                int due = epochDay(rs.getDate(2));
+                int returned = epochDay(rs.getDate(3));
+                int fine = (int) Math.round(rs.getDouble(4) * 100);
+                Columns current = updated != null ? updated : cols;
+                if (current.dueDay[row] == due && current.returnDay[row] == returned && current.finePaise[row] == fine) {
+                    continue;
+                }
+                if (updated == null) {
+                    // Published snapshots keep reading the old arrays
+                    updated = cols.forUpdate();
+                }
+                updated.dueDay[row] = due;
+                updated.returnDay[row] = returned;
+                updated.finePaise[row] = fine;
+            }
+        }
+        return updated != null ? updated : cols;
+    }
+
+    private static int epochDay(Date date) {
+        return date == null ? NO_DATE : (int) date.toLocalDate().toEpochDay();
+    }
+
+    // ---- Aggregations ----
+
+    public int countOpen() {
+        Columns cols = columns;
+        int open = 0;
+        for (int i = 0; i < cols.size; i++) {
+            if (cols.returnDay[i] == NO_DATE) open++;
+        }
+        return open;
+    }
+
+    public int countOverdue(LocalDate today) {
+        Columns cols = columns;
+        int day = (int) today.toEpochDay();
+        int overdue = 0;
+        for (int i = 0; i < cols.size; i++) {
+            if (cols.returnDay[i] == NO_DATE && cols.dueDay[i] < day) overdue++;
+        }
+        return overdue;
+    }
+
+    public long countLateReturns() {
+        Columns cols = columns;
+        return IntStream.range(0, cols.size).parallel()
+            .filter(i -> cols.returnDay[i] != NO_DATE && cols.returnDay[i] > cols.dueDay[i])
+            .count();
+    }
+
+    public double totalFines() {
+        Columns cols = columns;
+        long paise = IntStream.range(0, cols.size).parallel()
+            .mapToLong(i -> cols.finePaise[i])
+            .sum();
+        return paise / 100.0;
+    }
+
+    public int countDistinctStudents() {
+        Columns cols = columns;
+        BitSet seen = new BitSet();
+        for (int i = 0; i < cols.size; i++) {
+            seen.set(cols.studentId[i]);
+        }
+        return seen.cardinality();
+    }
+
+    // Most borrowed titles, most loans first
+    public List<TitleCount> topTitles(int limit) {
+        Columns cols = columns;
+        int[] counts = new int[titles.size()];
+        for (int i = 0; i < cols.size; i++) {
+            int code = cols.titleCode[i];
+            if (code >= 0 && code < counts.length) counts[code]++;
+        }
+
+        // Pack (count, code) so one primitive sort ranks them
+        long[] ranked = new long[counts.length];
+        for (int code = 0; code < counts.length; code++) {
+            ranked[code] = ((long) counts[code] << 32) | code;
+        }
+        Arrays.sort(ranked);
+
+        List<TitleCount> top = new ArrayList<>();
+        for (int i = ranked.length - 1; i >= 0 && top.size() < limit; i--) {
+            int count = (int) (ranked[i] >>> 32);
+            if (count == 0) break;
+            top.add(new TitleCount(titles.decode((int) ranked[i]), count));
+        }
+        return top;
+    }
+
+    // Loans started in each of the last months, oldest month first
+    public Map<YearMonth, Integer> loansByMonth(YearMonth current, int months) {
+        Columns cols = columns;
+        YearMonth first = current.minusMonths(months - 1);
+        int[] starts = new int[months + 1]; // epoch day each month begins, plus the end
+        for (int m = 0; m <= months; m++) {
+            starts[m] = (int) first.plusMonths(m).atDay(1).toEpochDay();
+        }
+        // Day offset -> month index, so the loop below is a single lookup
+        int[] monthOfDay = new int[starts[months] - starts[0]];
+        for (int m = 0; m < months; m++) {
+            Arrays.fill(monthOfDay, starts[m] - starts[0], starts[m + 1] - starts[0], m);
+        }
+        int[] counts = new int[months];
+        for (int i = 0; i < cols.size; i++) {
+            int offset = cols.borrowDay[i] - starts[0];
+            if (offset >= 0 && offset < monthOfDay.length) {
+                counts[monthOfDay[offset]]++;
+            }
+        }
+
+        Map<YearMonth, Integer> result = new LinkedHashMap<>();
+        for (int m = 0; m < months; m++) {
+            result.put(first.plusMonths(m), counts[m]);
+        }
+        return result;
+    }
+}
@@ -22,6 +22,9 @@ public class LoginScreen extends JFrame {
     private final Color DARK_BORDER = new Color(100, 100, 100);
 
     public LoginScreen() {
+        // Logs and records (EdtStallEvent) any freeze of the desk's event thread
+        EdtWatchdog.start();
+
         setTitle("Library Management System");
         setSize(450, 450); // Slightly taller to accommodate dark mode toggle
         setDefaultCloseOperation(EXIT_ON_CLOSE);
@@ -104,7 +107,7 @@ public class LoginScreen extends JFrame {
     private void toggleDarkMode() {
         isDarkMode = darkModeToggle.isSelected();
         // Save preference
-        prefs.putBoolean("darkMode", isDarkMode);
+        WriteBehindQueue.get().enqueuePreference(prefs, "darkMode", isDarkMode);
         applyTheme();
     }
 
@@ -157,27 +160,20 @@ public class LoginScreen extends JFrame {
         String password = String.valueOf(passwordField.getPassword());
         String role = (String) roleBox.getSelectedItem();
 
-        try (Connection conn = DBConnection.getConnection()) {
-            String query = "SELECT * FROM users WHERE username=? AND password=? AND role=? AND active=1";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setString(1, username);
-            stmt.setString(2, password);
-            stmt.setString(3, role);
-            ResultSet rs = stmt.executeQuery();
+        DashboardActionEvent action = DashboardActionEvent.begin("Login", "login");
+        try {
+            User user = LibraryService.login(username, password, role);
+
+            if (user != null) {
+                action.succeeded(1);
+                // Circulation events from this desk are recorded under this user
+                EventJournal.setDefaultActor(role + ":" + username);
 
-            if (rs.next()) {
-                int id = rs.getInt("id");
-                String name = rs.getString("name");
-                User user;
-                switch (role) {
-                    case "Admin": user = new Admin(id, name, username, password); break;
-                    case "Librarian": user = new Librarian(id, name, username, password); break;
-                    default: user = new Student(id, name, username, password); break;
-                }
-                
                 // Set dark mode preference in the User class
-                prefs.putBoolean("darkMode", isDarkMode);
+                WriteBehindQueue.get().enqueuePreference(prefs, "darkMode", isDarkMode);
                 
+                // The dashboard reads the preference back, so write it now
+                WriteBehindQueue.get().flush();
                 dispose();
                 
                 // Call the original openDashboard() method to maintain backward compatibility
@@ -188,6 +184,8 @@ public class LoginScreen extends JFrame {
         } catch (Exception ex) {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this, "Database error: " + ex.getMessage());
+        } finally {
+            action.finish();
         }
     }
 
@@ -273,26 +271,12 @@ public class LoginScreen extends JFrame {
                 return;
             }
 
-            try (Connection conn = DBConnection.getConnection()) {
-                String checkQuery = "SELECT * FROM users WHERE username=?";
-                PreparedStatement checkStmt = conn.prepareStatement(checkQuery);
-                checkStmt.setString(1, username);
-                ResultSet rs = checkStmt.executeQuery();
-
-                if (rs.next()) {
+            try {
+                if (!LibraryService.register(name, username, password, role)) {
                     JOptionPane.showMessageDialog(this, "Username already exists!");
                     return;
                 }
 
-                String insertQuery = "INSERT INTO users (name, username, password, role, active) VALUES (?, ?, ?, ?, ?)";
-                PreparedStatement insertStmt = conn.prepareStatement(insertQuery);
-                insertStmt.setString(1, name);
-                insertStmt.setString(2, username);
-                insertStmt.setString(3, password);
-                insertStmt.setString(4, role);
-                insertStmt.setBoolean(5, true);
-                insertStmt.executeUpdate();
-
                 JOptionPane.showMessageDialog(this, "Registration successful! You can now login.");
             } catch (Exception ex) {
                 ex.printStackTrace();
@@ -0,0 +1,299 @@
+// OfflineReplayCheck.java
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Offline queue check without a database: a fake JDBC driver (registered for
+// jdbc:fake:) stands in for MySQL, keeping just enough state to judge a
+// replay - the processed_operations ids and each title's free copies, both
+// only changed on commit. The check then:
+//
+//   - queues --ops issues while the driver refuses to connect
+//   - marks the first one as already applied, as if the desk crashed after
+//     its replay committed but before the log recorded it
+//   - leaves one title without a free copy, so its issue is a conflict
+//   - breaks the connection at the commit of one replay, so it is retried
+//
+// and brings the database back. Every operation must be reported once, in
+// the order queued (the crashed one as ALREADY_APPLIED, the one without a copy
+// as CONFLICT, the rest APPLIED), each title must lose exactly one copy, and
+// the log must be empty afterwards. Exits 1 otherwise.
+//
+// Usage:
+//   java OfflineReplayCheck [--ops 10]
+public class OfflineReplayCheck {
+    private static final int FIRST_BOOK = 100;
+
+    private static volatile boolean up;
+    private static final Set<String> processed = new HashSet<>();        // committed op ids
+    private static final Map<Integer, Integer> freeCopies = new HashMap<>(); // committed, per title
+    private static volatile int failCommitOfBook = -1;                    // once, then reset
+
+    public static void main(String[] args) throws Exception {
+        int ops = 10;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--ops")) ops = Integer.parseInt(args[++i]);
+        }
+        Path dir = Files.createTempDirectory("offline-replay-check");
+        Path log = dir.resolve("operations.log");
+        // Before DBConnection, EventJournal or OperationQueue load
+        System.setProperty("library.db.url", "jdbc:fake:library");
+        System.setProperty("library.offline.log", log.toString());
+        System.setProperty("library.offline.retryMs", "200");
+        System.setProperty("library.journal.dir", dir.resolve("journal").toString());
+        DriverManager.registerDriver(driver());
+
+        int noCopyBook = FIRST_BOOK + ops / 2;
+        int brokenBook = FIRST_BOOK + ops - 2;
+        for (int i = 0; i < ops; i++) {
+            freeCopies.put(FIRST_BOOK + i, FIRST_BOOK + i == noCopyBook ? 0 : 1);
+        }
+
+        List<OperationQueue.Result> results = new CopyOnWriteArrayList<>();
+        OperationQueue.get().addListener(results::add);
+        List<String> violations = new ArrayList<>();
+        for (int i = 0; i < ops; i++) {
+            try {
+                LibraryService.issueBook(i + 1, FIRST_BOOK + i);
+                violations.add("issue " + i + " went through with the database down");
+            } catch (OperationQueue.QueuedException ex) {
+                // expected
+            }
+        }
+        List<OperationQueue.Operation> queued = OperationQueue.get().getPending();
+        System.out.println("Queued: " + OperationQueue.get().summary());
+
+        // The crash: the first replay committed, its DONE record was never written
+        synchronized (OfflineReplayCheck.class) {
+            processed.add(queued.get(0).id);
+            freeCopies.merge(queued.get(0).bookId, -1, Integer::sum);
+        }
+        failCommitOfBook = brokenBook;
+        up = true;
+        OperationQueue.get().retryNow();
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (OperationQueue.get().getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        Thread.sleep(300); // let the drain that emptied the queue truncate the log
+        System.out.println("Drained: " + OperationQueue.get().summary());
+
+        Map<OperationQueue.Outcome, Integer> outcomes = new EnumMap<>(OperationQueue.Outcome.class);
+        for (OperationQueue.Result result : results) {
+            outcomes.merge(result.outcome, 1, Integer::sum);
+        }
+        System.out.println("Outcomes: " + outcomes);
+
+        if (results.size() != queued.size()) {
+            violations.add(results.size() + " results for " + queued.size() + " queued operations");
+        }
+        for (int i = 0; i < Math.min(results.size(), queued.size()); i++) {
+            OperationQueue.Result result = results.get(i);
+            OperationQueue.Operation op = queued.get(i);
+            OperationQueue.Outcome want = i == 0 ? OperationQueue.Outcome.ALREADY_APPLIED
+                : op.bookId == noCopyBook ? OperationQueue.Outcome.CONFLICT : OperationQueue.Outcome.APPLIED;
+            if (!result.op.id.equals(op.id)) {
+                violations.add("result " + i + " is for " + result.op.describe() + ", expected " + op.describe());
+            } else if (result.outcome != want) {
+                violations.add(op.describe() + " was " + result.outcome + ", expected " + want);
+            }
+        }
+        synchronized (OfflineReplayCheck.class) {
+            for (OperationQueue.Operation op : queued) {
+                if (!processed.contains(op.id)) {
+                    violations.add(op.describe() + " has no processed_operations row");
+                }
+                int left = freeCopies.get(op.bookId);
+                if (left != 0) {
+                    violations.add("book " + op.bookId + " has " + left + " free copies, expected 0");
+                }
+            }
+        }
+        if (failCommitOfBook != -1) {
+            violations.add("the broken commit was never attempted");
+        }
+        if (OperationQueue.get().getQueueDepth() != 0) {
+            violations.add(OperationQueue.get().getQueueDepth() + " operations still pending");
+        }
+        if (Files.size(log) != 0) {
+            violations.add("the operation log was not emptied (" + Files.size(log) + " bytes)");
+        }
+
+        violations.forEach(v -> System.out.println("VIOLATION: " + v));
+        System.out.println(violations.isEmpty() ? "PASS" : "FAIL (" + violations.size() + " violations)");
+        deleteQuietly(dir);
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+
+    // ---- The fake driver ----
+
+    private static Object proxy(Class<?> type, InvocationHandler handler) {
+        return Proxy.newProxyInstance(OfflineReplayCheck.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Driver driver() {
+        return (Driver) proxy(Driver.class, (p, m, a) -> {
+            switch (m.getName()) {
+                case "acceptsURL":
+                    return ((String) a[0]).startsWith("jdbc:fake:");
+                case "connect":
+                    if (!((String) a[0]).startsWith("jdbc:fake:")) return null;
+                    if (!up) throw new SQLNonTransientConnectionException("Connection refused", "08S01");
+                    return new FakeConnection().proxy();
+                case "getMajorVersion":
+                case "getMinorVersion":
+                    return 1;
+                case "getPropertyInfo":
+                    return new DriverPropertyInfo[0];
+                default:
+                    return m.getReturnType() == boolean.class ? false : null;
+            }
+        });
+    }
+
+    // One session: writes are held until commit when autocommit is off
+    private static class FakeConnection {
+        boolean autoCommit = true;
+        boolean broken;
+        final Set<String> pendingProcessed = new HashSet<>();
+        final List<Integer> pendingClaims = new ArrayList<>();
+
+        Connection proxy() {
+            return (Connection) OfflineReplayCheck.proxy(Connection.class, (p, m, a) -> {
+                switch (m.getName()) {
+                    case "prepareStatement":
+                        return statement((String) a[0]);
+                    case "createStatement":
+                        return statement("");
+                    case "getAutoCommit":
+                        return autoCommit;
+                    case "setAutoCommit":
+                        if (!autoCommit && (Boolean) a[0]) commit();
+                        autoCommit = (Boolean) a[0];
+                        return null;
+                    case "commit":
+                        commit();
+                        return null;
+                    case "rollback":
+                        pendingProcessed.clear();
+                        pendingClaims.clear();
+                        return null;
+                    case "isValid":
+                        return !broken && up;
+                    case "isClosed":
+                        return broken;
+                    default:
+                        return m.getReturnType() == boolean.class ? false : null;
+                }
+            });
+        }
+
+        void commit() throws SQLException {
+            if (broken) {
+                throw new SQLRecoverableException("Connection is broken", "08S01");
+            }
+            if (!pendingClaims.isEmpty() && pendingClaims.contains(failCommitOfBook)) {
+                failCommitOfBook = -1;
+                broken = true;
+                pendingProcessed.clear();
+                pendingClaims.clear();
+                throw new SQLRecoverableException("Communications link failure during commit", "08S01");
+            }
+            synchronized (OfflineReplayCheck.class) {
+                processed.addAll(pendingProcessed);
+                for (int bookId : pendingClaims) {
+                    freeCopies.merge(bookId, -1, Integer::sum);
+                }
+            }
+            pendingProcessed.clear();
+            pendingClaims.clear();
+        }
+
+        PreparedStatement statement(String sql) {
+            List<Object> params = new ArrayList<>();
+            return (PreparedStatement) OfflineReplayCheck.proxy(PreparedStatement.class, (p, m, a) -> {
+                if (broken && m.getName().startsWith("execute")) {
+                    throw new SQLRecoverableException("Connection is broken", "08S01");
+                }
+                switch (m.getName()) {
+                    case "setString": case "setInt": case "setLong": case "setDouble":
+                    case "setDate": case "setTimestamp": case "setObject": case "setBoolean":
+                        while (params.size() < (Integer) a[0]) params.add(null);
+                        params.set((Integer) a[0] - 1, a[1]);
+                        return null;
+                    case "executeQuery":
+                        return rows(sql.contains("FROM borrowed_books bb JOIN books") ? 0 : 1);
+                    case "executeUpdate":
+                        return update(sql, params);
+                    case "executeBatch":
+                        return new int[0];
+                    case "getGeneratedKeys":
+                        return rows(1);
+                    default:
+                        return m.getReturnType() == boolean.class ? false : null;
+                }
+            });
+        }
+
+        int update(String sql, List<Object> params) throws SQLException {
+            if (sql.startsWith("INSERT INTO processed_operations")) {
+                String id = (String) params.get(0);
+                synchronized (OfflineReplayCheck.class) {
+                    if (processed.contains(id) || !pendingProcessed.add(id)) {
+                        throw new SQLIntegrityConstraintViolationException("Duplicate entry '" + id + "'", "23000");
+                    }
+                }
+            } else if (sql.startsWith("UPDATE books SET available_copies = available_copies - 1")) {
+                int bookId = (Integer) params.get(0);
+                synchronized (OfflineReplayCheck.class) {
+                    if (freeCopies.getOrDefault(bookId, 0) - (pendingClaims.contains(bookId) ? 1 : 0) <= 0) {
+                        return 0;
+                    }
+                }
+                pendingClaims.add(bookId);
+            }
+            if (autoCommit) {
+                commit();
+            }
+            return 1;
+        }
+    }
+
+    // n rows in which every column reads as 1, "" or today
+    private static ResultSet rows(int n) {
+        int[] left = { n };
+        return (ResultSet) proxy(ResultSet.class, (p, m, a) -> {
+            switch (m.getName()) {
+                case "next": return left[0]-- > 0;
+                case "getInt": return 1;
+                case "getLong": return 1L;
+                case "getDouble": return 0.0;
+                case "getBoolean": return true;
+                case "getString": return "";
+                case "getDate": return new Date(System.currentTimeMillis());
+                case "getTimestamp": return new Timestamp(System.currentTimeMillis());
+                case "findColumn": return 1;
+                default: return m.getReturnType() == boolean.class ? false : null;
+            }
+        });
+    }
+
+    private static void deleteQuietly(Path dir) {
+        try (java.util.stream.Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(java.util.Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException ex) {
+            // A temp directory; leave it
+        }
+    }
+}
@@ -0,0 +1,143 @@
+// OperationLog.java
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Append-only text log, one record per line, for OperationQueue. append()
+// returns only once the record has been forced to disk. Appends that arrive
+// while a force is running are written and forced together by the next caller
+// (group commit), so a burst of scans costs a few fsyncs, not one each.
+//
+// A crash can leave a torn last line without its newline; readAll() drops it.
+// A failed write or force leaves the file in an unknown state, so every later
+// append fails too rather than reporting records durable that may not be.
+public class OperationLog {
+    private final Path path;
+    private final FileChannel channel;
+
+    private List<String> pending = new ArrayList<>();
+    private long appended;   // records handed to append()
+    private long durable;    // records known to be on disk
+    private boolean forcing;
+    private IOException failure;
+
+    private long forces;
+    private long forcedRecords;
+
+    public OperationLog(Path path) throws IOException {
+        this.path = path;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    // Every complete record in the file, oldest first
+    public synchronized List<String> readAll() throws IOException {
+        String text = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        int end = text.lastIndexOf('\n');
+        if (end < 0) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(Arrays.asList(text.substring(0, end).split("\n", -1)));
+    }
+
+    // Blocks until the record is on disk
+    public void append(String record) throws IOException {
+        List<String> batch;
+        long upTo;
+        synchronized (this) {
+            if (failure != null) {
+                throw new IOException("Operation log is unusable after an earlier failure", failure);
+            }
+            pending.add(record);
+            long mine = ++appended;
+            // The record is already queued for the file, so keep waiting
+            // through an interrupt rather than report it as not written
+            boolean interrupted = false;
+            while (durable < mine && forcing) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (durable >= mine) {
+                return;
+            }
+            if (failure != null) {
+                throw new IOException("Operation log write failed", failure);
+            }
+            // Our record is still pending: write it and everything queued with it
+            forcing = true;
+            batch = pending;
+            pending = new ArrayList<>();
+            upTo = appended;
+        }
+
+        boolean written = false;
+        try {
+            StringBuilder text = new StringBuilder();
+            for (String line : batch) {
+                text.append(line).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+            written = true;
+        } catch (IOException ex) {
+            synchronized (this) {
+                failure = ex;
+            }
+            throw ex;
+        } finally {
+            synchronized (this) {
+                forcing = false;
+                if (written) {
+                    durable = upTo;
+                    forces++;
+                    forcedRecords += batch.size();
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    // Empties the file once every record in it is settled
+    public synchronized void truncate() throws IOException {
+        while (forcing) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for the operation log", e);
+            }
+        }
+        channel.truncate(0);
+        channel.force(true);
+    }
+
+    public synchronized long getForceCount() {
+        return forces;
+    }
+
+    public synchronized double getAverageBatch() {
+        return forces == 0 ? 0 : (double) forcedRecords / forces;
+    }
+}
@@ -0,0 +1,356 @@
+// OperationQueue.java
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Offline mode for the desks. When CirculationCoordinator cannot get a
+// connection at all (nothing was sent, see UnreachableException) an issue,
+// return or renew is written to a local OperationLog instead and the caller
+// gets a QueuedException. Browse keeps working from the CatalogSnapshot.
+//
+// Once anything is queued, later operations queue behind it, so they are
+// replayed in the order the desk took them. A background thread retries every
+// RETRY_MS; each operation carries a UUID and is replayed at most once
+// (CirculationCoordinator.replay records the id in processed_operations in
+// the same transaction). An operation the database refuses on replay - the
+// last copy went to another desk meanwhile, the loan was already returned -
+// is a conflict: it is reported to listeners and kept in getConflicts() for
+// the librarian, not retried.
+//
+// Log records are tab-separated lines: OP <id> <type> <student> <book> <day>
+// <actor> when queued, DONE <id> <outcome> once replayed. The file is
+// emptied whenever the queue drains.
+public class OperationQueue {
+    private static final Path FILE = Paths.get(System.getProperty("library.offline.log",
+        System.getProperty("user.home") + "/.library/operations.log"));
+    private static final long RETRY_MS = Long.getLong("library.offline.retryMs", 5000);
+    private static final int CONFLICTS_KEPT = 100;
+    private static final OperationQueue instance = new OperationQueue();
+
+    public enum Type { ISSUE, RETURN, RENEW }
+
+    // FAILED: refused for another reason (student not active, a database error)
+    public enum Outcome { APPLIED, ALREADY_APPLIED, CONFLICT, FAILED }
+
+    public static class Operation {
+        public final String id;
+        public final Type type;
+        public final int studentId;
+        public final int bookId;
+        public final LocalDate day;     // the day the desk took it; loan dates are based on it
+        public final String actor;
+        volatile boolean durable;
+
+        Operation(String id, Type type, int studentId, int bookId, LocalDate day, String actor) {
+            this.id = id;
+            this.type = type;
+            this.studentId = studentId;
+            this.bookId = bookId;
+            this.day = day;
+            this.actor = actor;
+        }
+
+        String toRecord() {
+            return "OP\t" + id + "\t" + type + "\t" + studentId + "\t" + bookId + "\t" + day + "\t" + actor;
+        }
+
+        static Operation parse(String[] f) {
+            return new Operation(f[1], Type.valueOf(f[2]), Integer.parseInt(f[3]), Integer.parseInt(f[4]),
+                LocalDate.parse(f[5]), f.length > 6 ? f[6] : "system");
+        }
+
+        public String describe() {
+            switch (type) {
+                case ISSUE: return "issue of book " + bookId + " to student " + studentId;
+                case RETURN: return "return of book " + bookId + " from student " + studentId;
+                default: return "renewal of book " + bookId + " for student " + studentId;
+            }
+        }
+    }
+
+    public static class Result {
+        public final Operation op;
+        public final Outcome outcome;
+
+        Result(Operation op, Outcome outcome) {
+            this.op = op;
+            this.outcome = outcome;
+        }
+
+        public boolean isConflict() {
+            return outcome == Outcome.CONFLICT || outcome == Outcome.FAILED;
+        }
+
+        public String describe() {
+            if (outcome == Outcome.FAILED) {
+                return "Queued " + op.describe() + " could not be applied";
+            }
+            if (outcome != Outcome.CONFLICT) {
+                return "Queued " + op.describe() + " applied";
+            }
+            switch (op.type) {
+                case ISSUE: return "Queued " + op.describe() + " not applied: no copy was left";
+                case RETURN: return "Queued " + op.describe() + " not applied: no open loan";
+                default: return "Queued " + op.describe() + " not applied: the book is reserved";
+            }
+        }
+    }
+
+    // Thrown to the caller of a circulation write that went to the queue
+    public static class QueuedException extends SQLException {
+        public final Operation op;
+
+        QueuedException(Operation op, SQLException cause) {
+            super("Library database is unreachable; the " + op.describe()
+                + " was saved and will be applied when it is back", cause);
+            this.op = op;
+        }
+    }
+
+    private final LinkedHashMap<String, Operation> pending = new LinkedHashMap<>();
+    private final LinkedList<Result> conflicts = new LinkedList<>();
+    private final List<Consumer<Result>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService replayer;
+    private OperationLog log;
+    private volatile boolean offline;
+    private boolean logDirty;    // records written since the log was last emptied
+
+    private long enqueued;
+    private long replayed;
+    private long conflictCount;
+    private volatile double lastReplayRate;   // operations per second of the last drain
+
+    private OperationQueue() {
+        try {
+            log = new OperationLog(FILE);
+            load();
+        } catch (IOException ex) {
+            // Without the log nothing can be queued; writes fail as they did before
+            ex.printStackTrace();
+            log = null;
+        }
+        replayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "offline-replay");
+            t.setDaemon(true);
+            return t;
+        });
+        replayer.scheduleWithFixedDelay(this::drain, 0, RETRY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static OperationQueue get() {
+        return instance;
+    }
+
+    private void load() throws IOException {
+        List<String> records = log.readAll();
+        for (String line : records) {
+            String[] f = line.split("\t", -1);
+            if (f[0].equals("OP") && f.length >= 6) {
+                Operation op = Operation.parse(f);
+                op.durable = true;
+                pending.put(op.id, op);
+            } else if (f[0].equals("DONE") && f.length >= 2) {
+                pending.remove(f[1]);
+            }
+        }
+        logDirty = !records.isEmpty();
+    }
+
+    // True when a circulation write should go to the queue without trying the
+    // database: it was unreachable last time, or earlier operations are waiting
+    public synchronized boolean shouldQueue() {
+        return log != null && (offline || !pending.isEmpty());
+    }
+
+    public boolean isOffline() {
+        return offline;
+    }
+
+    // Records the operation durably and returns the exception for the caller
+    // to throw. cause is the connection failure that sent it here, if any.
+    public QueuedException enqueue(Type type, int studentId, int bookId, SQLException cause) throws SQLException {
+        Operation op = new Operation(UUID.randomUUID().toString(), type, studentId, bookId,
+            LocalDate.now(), EventJournal.currentActor());
+        synchronized (this) {
+            if (log == null) {
+                throw cause != null ? cause : new SQLException("Offline operation log is not available");
+            }
+            if (cause != null) {
+                offline = true;
+            }
+            // In the map before it is durable, so the log is not emptied under it;
+            // drain() stops at an operation that is not durable yet
+            pending.put(op.id, op);
+            logDirty = true;
+            enqueued++;
+        }
+        try {
+            log.append(op.toRecord());
+            op.durable = true;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            synchronized (this) {
+                pending.remove(op.id);
+            }
+            SQLException failure = new SQLException("Could not save the " + op.describe() + " while offline", ex);
+            if (cause != null) {
+                failure.setNextException(cause);
+            }
+            throw failure;
+        }
+        return new QueuedException(op, cause);
+    }
+
+    // Retries the queue now rather than at the next RETRY_MS
+    public void retryNow() {
+        replayer.execute(this::drain);
+    }
+
+    // Replays pending operations in order until the queue is empty or the
+    // database is still out of reach
+    private void drain() {
+        if (log == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        int done = 0;
+        try {
+            while (true) {
+                Operation op;
+                synchronized (this) {
+                    if (pending.isEmpty()) {
+                        offline = false;
+                        if (logDirty) {
+                            log.truncate();
+                            logDirty = false;
+                        }
+                        break;
+                    }
+                    op = pending.values().iterator().next();
+                }
+                if (!op.durable) {
+                    break;
+                }
+
+                Outcome outcome;
+                EventJournal.setThreadActor(op.actor);
+                try {
+                    outcome = LibraryService.replay(op);
+                } catch (SQLException ex) {
+                    if (isConnectionFailure(ex)) {
+                        offline = true;
+                        break;
+                    }
+                    if (ex instanceof SQLTransientException) {
+                        // Busy (admission, pool timeout): try again next run
+                        break;
+                    }
+                    ex.printStackTrace();
+                    outcome = Outcome.FAILED;
+                } finally {
+                    EventJournal.setThreadActor(null);
+                }
+
+                // A crash before this line replays the operation again, which
+                // processed_operations turns into ALREADY_APPLIED
+                log.append("DONE\t" + op.id + "\t" + outcome);
+                Result result = new Result(op, outcome);
+                synchronized (this) {
+                    pending.remove(op.id);
+                    replayed++;
+                    if (result.isConflict()) {
+                        conflictCount++;
+                        conflicts.addFirst(result);
+                        if (conflicts.size() > CONFLICTS_KEPT) {
+                            conflicts.removeLast();
+                        }
+                    }
+                }
+                done++;
+                for (Consumer<Result> listener : listeners) {
+                    listener.accept(result);
+                }
+            }
+        } catch (Exception ex) {
+            // The next run tries again
+            ex.printStackTrace();
+        }
+        if (done > 0) {
+            long nanos = Math.max(1, System.nanoTime() - start);
+            lastReplayRate = done * 1e9 / nanos;
+        }
+    }
+
+    // The database could not be reached, or the connection broke mid-way
+    private static boolean isConnectionFailure(SQLException ex) {
+        String state = ex.getSQLState();
+        return ex instanceof CirculationCoordinator.UnreachableException || ex instanceof SQLRecoverableException
+            || (state != null && state.startsWith("08"));
+    }
+
+    // ---- Listeners ----
+
+    // Called on the replay thread for every replayed operation
+    public void addListener(Consumer<Result> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Result> listener) {
+        listeners.remove(listener);
+    }
+
+    // Most recent first
+    public synchronized List<Result> getConflicts() {
+        return new ArrayList<>(conflicts);
+    }
+
+    // Oldest first
+    public synchronized List<Operation> getPending() {
+        return Collections.unmodifiableList(new ArrayList<>(pending.values()));
+    }
+
+    // ---- Metrics ----
+
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    public synchronized long getEnqueuedCount() {
+        return enqueued;
+    }
+
+    public synchronized long getReplayedCount() {
+        return replayed;
+    }
+
+    public synchronized long getConflictCount() {
+        return conflictCount;
+    }
+
+    public double getLastReplayRate() {
+        return lastReplayRate;
+    }
+
+    public String summary() {
+        OperationLog l = log;
+        return String.format("Offline queue: %s, %d pending, %d queued, %d replayed (%d conflicts), "
+                + "last replay %.1f ops/s, %d log syncs averaging %.1f records",
+            offline ? "OFFLINE" : "online", getQueueDepth(), getEnqueuedCount(), getReplayedCount(),
+            getConflictCount(), lastReplayRate, l == null ? 0 : l.getForceCount(), l == null ? 0 : l.getAverageBatch());
+    }
+}
@@ -0,0 +1,159 @@
+// OverdueScanner.java
+import java.sql.*;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Library-wide overdue view. Open loans are read in due_date order a page at a
+// time with keyset pagination on (due_date, id), and the range ends at today,
+// so a run only touches overdue rows (see idx_borrowed_open_due in schema.sql).
+// Runs on a background thread at a fixed period and hands the per-student
+// digests to listeners.
+public class OverdueScanner {
+    private static final int PAGE_SIZE = 500;
+    private static final long PERIOD_MINUTES = Long.getLong("library.overdue.periodMinutes", 60);
+    private static final OverdueScanner instance = new OverdueScanner();
+
+    private final ScheduledExecutorService scheduler;
+    private final List<Consumer<List<StudentDigest>>> listeners = new CopyOnWriteArrayList<>();
+    private volatile List<StudentDigest> latest = Collections.emptyList();
+
+    public static class OverdueLoan {
+        public final int bookId;
+        public final String title;
+        public final LocalDate dueDate;
+        public final long daysLate;
+
+        OverdueLoan(int bookId, String title, LocalDate dueDate, long daysLate) {
+            this.bookId = bookId;
+            this.title = title;
+            this.dueDate = dueDate;
+            this.daysLate = daysLate;
+        }
+
+        public double getFine() {
+            return daysLate * BookInventory.FINE_PER_DAY;
+        }
+    }
+
+    // Every overdue loan of one student, oldest due date first
+    public static class StudentDigest {
+        public final int studentId;
+        public final String studentName;
+        public final List<OverdueLoan> loans = new ArrayList<>();
+
+        StudentDigest(int studentId, String studentName) {
+            this.studentId = studentId;
+            this.studentName = studentName;
+        }
+
+        public double getTotalFine() {
+            double total = 0;
+            for (OverdueLoan loan : loans) {
+                total += loan.getFine();
+            }
+            return total;
+        }
+    }
+
+    private OverdueScanner() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "overdue-scanner");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::runScan, 0, PERIOD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public static OverdueScanner get() {
+        return instance;
+    }
+
+    public void addListener(Consumer<List<StudentDigest>> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<List<StudentDigest>> listener) {
+        listeners.remove(listener);
+    }
+
+    // Result of the last completed run
+    public List<StudentDigest> getLatest() {
+        return latest;
+    }
+
+    // Runs a scan now on the scanner thread
+    public void scanNow() {
+        scheduler.execute(this::runScan);
+    }
+
+    private void runScan() {
+        try {
+            latest = Collections.unmodifiableList(scan(LocalDate.now()));
+            for (Consumer<List<StudentDigest>> listener : listeners) {
+                listener.accept(latest);
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    // Students ordered by their oldest overdue loan
+    public static List<StudentDigest> scan(LocalDate today) throws SQLException {
+        Map<Integer, StudentDigest> digests = new LinkedHashMap<>();
+        String query = "SELECT bb.id, bb.student_id, bb.book_id, bb.due_date, b.title, u.name " +
+                       "FROM borrowed_books bb " +
+                       "JOIN books b ON b.id = bb.book_id " +
+                       "JOIN users u ON u.id = bb.student_id " +
+                       "WHERE bb.return_date IS NULL AND bb.due_date < ? " +
+                       "AND (bb.due_date > ? OR (bb.due_date = ? AND bb.id > ?)) " +
+                       "ORDER BY bb.due_date, bb.id LIMIT ?";
+
+        // Background batch work: waits out congestion instead of being shed
+        try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.BATCH)) {
+            PreparedStatement stmt = conn.prepareStatement(query);
+            Date lastDue = Date.valueOf(LocalDate.of(1000, 1, 1));
+            int lastId = 0;
+            int rows;
+            do {
+                stmt.setDate(1, Date.valueOf(today));
+                stmt.setDate(2, lastDue);
+                stmt.setDate(3, lastDue);
+                stmt.setInt(4, lastId);
+                stmt.setInt(5, PAGE_SIZE);
+                ResultSet rs = stmt.executeQuery();
+
+                rows = 0;
+                while (rs.next()) {
+                    rows++;
+                    lastId = rs.getInt("id");
+                    lastDue = rs.getDate("due_date");
+
+                    int studentId = rs.getInt("student_id");
+                    StudentDigest digest = digests.get(studentId);
+                    if (digest == null) {
+                        digest = new StudentDigest(studentId, rs.getString("name"));
+                        digests.put(studentId, digest);
+                    }
+                    LocalDate due = lastDue.toLocalDate();
+                    digest.loans.add(new OverdueLoan(
+                        rs.getInt("book_id"),
+                        rs.getString("title"),
+                        due,
+                        today.toEpochDay() - due.toEpochDay()
+                    ));
+                }
+                rs.close();
+            } while (rows == PAGE_SIZE);
+        }
+        return new ArrayList<>(digests.values());
+    }
+}
@@ -0,0 +1,118 @@
+// PopularitySketchCheck.java
+import java.util.Random;
+
+// Checks the sketches behind PopularityTracker against exact counts:
+//
+//   - CountMinSketch never undercounts, alone or summed over window buckets
+//     (CountMinSketch.estimate(sketches, key)), and few keys overcount by more
+//     than 2N/width (at most 1 in 2^DEPTH = 1/16 is expected)
+//   - HyperLogLog stays near its 1.04 / sqrt(2^p) standard error, and a merge
+//     equals one counter fed the union
+//
+// The stream is skewed like loans: a few titles take most of them. Needs no
+// database; exits 1 on an undercount, a merge mismatch or errors well past
+// the expected bounds.
+//
+// Usage:
+//   java PopularitySketchCheck [--adds 1000000] [--keys 50000] [--width 4096] [--seed 1]
+public class PopularitySketchCheck {
+    public static void main(String[] args) {
+        int adds = 1_000_000;
+        int keys = 50_000;
+        int width = 4096;
+        long seed = 1;
+        for (int i = 0; i + 1 < args.length; i++) {
+            switch (args[i]) {
+                case "--adds": adds = Integer.parseInt(args[++i]); break;
+                case "--keys": keys = Integer.parseInt(args[++i]); break;
+                case "--width": width = Integer.parseInt(args[++i]); break;
+                case "--seed": seed = Long.parseLong(args[++i]); break;
+                default: break;
+            }
+        }
+        Random random = new Random(seed);
+        boolean passed = true;
+
+        // ---- Count-Min ----
+        int buckets = 7;
+        CountMinSketch whole = new CountMinSketch(width);
+        CountMinSketch[] parts = new CountMinSketch[buckets];
+        for (int b = 0; b < buckets; b++) {
+            parts[b] = new CountMinSketch(width);
+        }
+        int[] truth = new int[keys];
+        long total = 0;
+        for (int i = 0; i < adds; i++) {
+            // Roughly Zipf: key k drawn with weight about 1/k
+            int k = (int) Math.min(keys - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(keys))) - 1);
+            int count = 1 + (random.nextInt(20) == 0 ? random.nextInt(5) : 0);
+            int key = k * 7919 + 13; // ids are not dense in practice
+            whole.add(key, count);
+            parts[random.nextInt(buckets)].add(key, count);
+            truth[k] += count;
+            total += count;
+        }
+        // The sketch rounds width up to a power of two
+        int realWidth = Integer.highestOneBit(Math.max(16, width - 1)) << 1;
+        long bound = 2 * total / realWidth;
+        int under = 0;
+        int mergedUnder = 0;
+        int overBound = 0;
+        long maxError = 0;
+        for (int k = 0; k < keys; k++) {
+            int key = k * 7919 + 13;
+            long error = whole.estimate(key) - truth[k];
+            if (error < 0) under++;
+            if (CountMinSketch.estimate(parts, key) < truth[k]) mergedUnder++;
+            if (error > bound) overBound++;
+            maxError = Math.max(maxError, error);
+        }
+        double overFraction = (double) overBound / keys;
+        System.out.printf("Count-Min: %d adds (N=%d) over %d keys, width %d: %d undercounts, %d merged undercounts, "
+            + "max overcount %d, %.2f%% of keys over 2N/width=%d (expected <= 6.25%%)%n",
+            adds, total, keys, realWidth, under, mergedUnder, maxError, overFraction * 100, bound);
+        if (under > 0 || mergedUnder > 0 || overFraction > 0.125) {
+            passed = false;
+        }
+
+        // ---- HyperLogLog ----
+        int p = 8;
+        double standardError = 1.04 / Math.sqrt(1 << p);
+        for (int n : new int[] { 10, 100, 1_000, 10_000, 100_000 }) {
+            int trials = 20;
+            double sumError = 0;
+            double worst = 0;
+            for (int t = 0; t < trials; t++) {
+                HyperLogLog hll = new HyperLogLog(p);
+                long base = random.nextLong();
+                for (int i = 0; i < n; i++) {
+                    hll.add(base + i * 2654435761L);
+                }
+                double error = Math.abs(hll.estimate() - n) / (double) n;
+                sumError += error;
+                worst = Math.max(worst, error);
+            }
+            System.out.printf("HyperLogLog p=%d n=%d: mean error %.1f%%, worst %.1f%% (standard error %.1f%%)%n",
+                p, n, sumError / trials * 100, worst * 100, standardError * 100);
+            if (sumError / trials > 2 * standardError || worst > 5 * standardError) {
+                passed = false;
+            }
+        }
+        HyperLogLog a = new HyperLogLog(p);
+        HyperLogLog b = new HyperLogLog(p);
+        HyperLogLog union = new HyperLogLog(p);
+        for (int i = 0; i < 20_000; i++) {
+            long value = random.nextInt(30_000);
+            (i % 2 == 0 ? a : b).add(value);
+            union.add(value);
+        }
+        a.merge(b);
+        System.out.printf("HyperLogLog merge: %d, union counted directly: %d%n", a.estimate(), union.estimate());
+        if (a.estimate() != union.estimate()) {
+            passed = false;
+        }
+
+        System.out.println(passed ? "PASS" : "FAIL");
+        System.exit(passed ? 0 : 1);
+    }
+}
@@ -0,0 +1,320 @@
+// PopularityTracker.java
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Most-borrowed titles today, this week and this term, kept from the stream
+// of issues instead of a GROUP BY over borrowed_books.
+//
+// Each window is a ring of time buckets (day: 6 x 4 h, week: 7 x 1 day,
+// term: 12 x TERM_DAYS/12) so old loans age out a bucket at a time. A bucket
+// holds a CountMinSketch of loans per title; a window's count for a title is
+// the sketch sum over its live buckets. A min-heap keeps each window's TOP_K
+// leaders: a title is offered on every loan and enters when it beats the
+// smallest entry; when a bucket expires the heap is rescored.
+//
+// Distinct borrowers are HyperLogLogs kept per bucket for heap members only,
+// so a title counts the borrowers it had since it joined the leaderboard.
+// Memory is fixed (sketch width x buckets + TOP_K x buckets registers per
+// window) however long the history.
+//
+// Loans arrive from ChangeFeed (every desk). On startup the current term is
+// loaded from borrowed_books in one snapshot together with the outbox
+// position, so feed events already in the snapshot are not counted twice.
+// Until that load succeeds (it is retried after LOAD_RETRY_MS, doubling up to
+// MAX_LOAD_RETRY_MS) feed events are held back.
+public class PopularityTracker {
+    public static final String TODAY = "Today";
+    public static final String WEEK = "This Week";
+    public static final String TERM = "This Term";
+    public static final String[] WINDOWS = {TODAY, WEEK, TERM};
+
+    private static final int TOP_K = Integer.getInteger("library.popularity.topK", 20);
+    private static final int SKETCH_WIDTH = Integer.getInteger("library.popularity.sketchWidth", 2048);
+    private static final int HLL_PRECISION = 8;
+    private static final long TERM_DAYS = Long.getLong("library.popularity.termDays", 120);
+    private static final long HOUR = 3_600_000L;
+    private static final long DAY = 24 * HOUR;
+    private static final long LOAD_RETRY_MS = 5000;
+    private static final long MAX_LOAD_RETRY_MS = 10 * 60_000;
+    private static final PopularityTracker instance = new PopularityTracker();
+
+    private final Window[] windows = {
+        new Window(TODAY, 6, 4 * HOUR),
+        new Window(WEEK, 7, DAY),
+        new Window(TERM, 12, TERM_DAYS * DAY / 12)
+    };
+    // Guarded by this
+    private long loadedSeq = -1;                 // outbox position of the startup snapshot
+    private List<CirculationEvent> beforeLoad = new ArrayList<>();
+
+    private final ScheduledExecutorService loader;
+    private long loadRetryMs = LOAD_RETRY_MS; // loader thread only
+
+    public static class Entry {
+        public final int bookId;
+        public final int loans;
+        public final long borrowers;
+
+        Entry(int bookId, int loans, long borrowers) {
+            this.bookId = bookId;
+            this.loans = loans;
+            this.borrowers = borrowers;
+        }
+    }
+
+    private static class Window {
+        final String name;
+        final long bucketMillis;
+        final CountMinSketch[] sketches;
+        final long[] bucketOf;              // absolute bucket number held by each slot
+        final int[] heapIds = new int[TOP_K];
+        final int[] heapCounts = new int[TOP_K];
+        final HyperLogLog[][] borrowers = new HyperLogLog[TOP_K][]; // per heap entry, per slot
+        int heapSize;
+
+        Window(String name, int buckets, long bucketMillis) {
+            this.name = name;
+            this.bucketMillis = bucketMillis;
+            sketches = new CountMinSketch[buckets];
+            bucketOf = new long[buckets];
+            for (int i = 0; i < buckets; i++) {
+                sketches[i] = new CountMinSketch(SKETCH_WIDTH);
+                bucketOf[i] = -1;
+            }
+        }
+
+        // Moves the ring forward to the bucket of time, clearing expired slots
+        void advance(long time) {
+            long bucket = time / bucketMillis;
+            boolean expired = false;
+            for (int slot = 0; slot < sketches.length; slot++) {
+                if (bucketOf[slot] >= 0 && bucketOf[slot] <= bucket - sketches.length) {
+                    sketches[slot].clear();
+                    for (int i = 0; i < heapSize; i++) {
+                        if (borrowers[i][slot] != null) borrowers[i][slot].clear();
+                    }
+                    bucketOf[slot] = -1;
+                    expired = true;
+                }
+            }
+            if (expired) {
+                rescore();
+            }
+        }
+
+        void add(long time, int studentId, int bookId) {
+            advance(time);
+            long bucket = time / bucketMillis;
+            int slot = (int) (bucket % sketches.length);
+            if (bucketOf[slot] == -1) {
+                bucketOf[slot] = bucket;
+            } else if (bucketOf[slot] != bucket) {
+                return; // older than the window
+            }
+            sketches[slot].add(bookId, 1);
+            offer(bookId, CountMinSketch.estimate(sketches, bookId));
+
+            int i = indexOf(bookId);
+            if (i >= 0) {
+                if (borrowers[i][slot] == null) borrowers[i][slot] = new HyperLogLog(HLL_PRECISION);
+                borrowers[i][slot].add(studentId);
+            }
+        }
+
+        int indexOf(int bookId) {
+            for (int i = 0; i < heapSize; i++) {
+                if (heapIds[i] == bookId) return i;
+            }
+            return -1;
+        }
+
+        void offer(int bookId, int count) {
+            int i = indexOf(bookId);
+            if (i >= 0) {
+                heapCounts[i] = count;
+                siftDown(i);
+            } else if (heapSize < TOP_K) {
+                heapIds[heapSize] = bookId;
+                heapCounts[heapSize] = count;
+                borrowers[heapSize] = new HyperLogLog[sketches.length];
+                siftUp(heapSize++);
+            } else if (count > heapCounts[0]) {
+                heapIds[0] = bookId;
+                heapCounts[0] = count;
+                borrowers[0] = new HyperLogLog[sketches.length];
+                siftDown(0);
+            }
+        }
+
+        void rescore() {
+            int kept = 0;
+            for (int i = 0; i < heapSize; i++) {
+                int count = CountMinSketch.estimate(sketches, heapIds[i]);
+                if (count > 0) {
+                    heapIds[kept] = heapIds[i];
+                    heapCounts[kept] = count;
+                    borrowers[kept] = borrowers[i];
+                    kept++;
+                }
+            }
+            for (int i = kept; i < heapSize; i++) borrowers[i] = null;
+            heapSize = kept;
+            for (int i = heapSize / 2 - 1; i >= 0; i--) siftDown(i);
+        }
+
+        List<Entry> top(int limit) {
+            List<Entry> entries = new ArrayList<>(heapSize);
+            for (int i = 0; i < heapSize; i++) {
+                HyperLogLog merged = new HyperLogLog(HLL_PRECISION);
+                for (HyperLogLog hll : borrowers[i]) {
+                    if (hll != null) merged.merge(hll);
+                }
+                // Borrowers cannot outnumber loans
+                entries.add(new Entry(heapIds[i], heapCounts[i], Math.min(merged.estimate(), heapCounts[i])));
+            }
+            entries.sort((a, b) -> a.loans != b.loans ? Integer.compare(b.loans, a.loans) : Integer.compare(a.bookId, b.bookId));
+            return entries.subList(0, Math.min(limit, entries.size()));
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heapCounts[parent] <= heapCounts[i]) break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                int smallest = i;
+                if (left < heapSize && heapCounts[left] < heapCounts[smallest]) smallest = left;
+                if (left + 1 < heapSize && heapCounts[left + 1] < heapCounts[smallest]) smallest = left + 1;
+                if (smallest == i) return;
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int id = heapIds[a];
+            int count = heapCounts[a];
+            HyperLogLog[] hll = borrowers[a];
+            heapIds[a] = heapIds[b];
+            heapCounts[a] = heapCounts[b];
+            borrowers[a] = borrowers[b];
+            heapIds[b] = id;
+            heapCounts[b] = count;
+            borrowers[b] = hll;
+        }
+    }
+
+    private PopularityTracker() {
+        ChangeFeed.get().addListener(event -> {
+            if (event.getType() == CirculationEvent.Type.ISSUE) {
+                onIssue(event);
+            }
+        });
+        loader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "popularity-load");
+            t.setDaemon(true);
+            return t;
+        });
+        loader.execute(this::runLoad);
+    }
+
+    public static PopularityTracker get() {
+        return instance;
+    }
+
+    private synchronized void onIssue(CirculationEvent event) {
+        if (beforeLoad != null) {
+            beforeLoad.add(event);
+        } else if (event.getSeq() > loadedSeq) {
+            record(event.getStudentId(), event.getBookId(), event.getTimeMillis());
+        }
+    }
+
+    // Counts one loan in every window
+    public synchronized void record(int studentId, int bookId, long timeMillis) {
+        for (Window window : windows) {
+            window.add(timeMillis, studentId, bookId);
+        }
+    }
+
+    // The window's most borrowed titles, most loans first
+    public synchronized List<Entry> top(String window, int limit) {
+        long now = System.currentTimeMillis();
+        for (Window w : windows) {
+            if (w.name.equals(window)) {
+                w.advance(now);
+                return new ArrayList<>(w.top(limit));
+            }
+        }
+        throw new IllegalArgumentException("Unknown window: " + window);
+    }
+
+    public synchronized long estimateBytes() {
+        long bytes = 0;
+        for (Window w : windows) {
+            bytes += w.sketches.length * (w.sketches[0].estimateBytes() + (long) TOP_K * (1 << HLL_PRECISION));
+        }
+        return bytes;
+    }
+
+    private void runLoad() {
+        try {
+            loadTerm();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            loader.schedule(this::runLoad, loadRetryMs, TimeUnit.MILLISECONDS);
+            loadRetryMs = Math.min(loadRetryMs * 2, MAX_LOAD_RETRY_MS);
+        }
+    }
+
+    private void loadTerm() throws SQLException {
+        long seq;
+        List<long[]> loans = new ArrayList<>();
+        // Background batch work: waits out congestion instead of being shed
+        try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.BATCH)) {
+            // One snapshot for the outbox position and the loans
+            conn.setAutoCommit(false);
+            conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            ResultSet rs = conn.createStatement().executeQuery("SELECT IFNULL(MAX(seq), 0) FROM circulation_events");
+            rs.next();
+            seq = rs.getLong(1);
+            PreparedStatement stmt = conn.prepareStatement(
+                "SELECT student_id, book_id, borrow_date FROM borrowed_books WHERE borrow_date >= ?"
+            );
+            stmt.setDate(1, Date.valueOf(LocalDate.now().minusDays(TERM_DAYS)));
+            stmt.setFetchSize(1000);
+            rs = stmt.executeQuery();
+            ZoneId zone = ZoneId.systemDefault();
+            while (rs.next()) {
+                long time = rs.getDate(3).toLocalDate().atStartOfDay(zone).toInstant().toEpochMilli();
+                loans.add(new long[]{rs.getInt(1), rs.getInt(2), time});
+            }
+            conn.commit();
+        }
+
+        synchronized (this) {
+            loans.sort((a, b) -> Long.compare(a[2], b[2]));
+            for (long[] loan : loans) {
+                record((int) loan[0], (int) loan[1], loan[2]);
+            }
+            loadedSeq = seq;
+            List<CirculationEvent> pending = beforeLoad;
+            beforeLoad = null;
+            for (CirculationEvent event : pending) {
+                onIssue(event);
+            }
+        }
+    }
+}
@@ -0,0 +1,178 @@
+// QueryCache.java
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Result cache for read-mostly admin queries. Entries are keyed by the
+// normalized SQL plus its parameters (or by a caller-chosen key for computed
+// results such as reports), expire after TTL_MS and are evicted least
+// recently used beyond MAX_ENTRIES.
+//
+// Each entry is tagged with the tables it read. Write paths call
+// invalidate() with the tables they touch; circulation changes published to
+// EventJournal invalidate the catalog and loan tables. Writes from other
+// processes are only bounded by the TTL.
+public class QueryCache {
+    private static final long TTL_MS = Long.getLong("library.queryCache.ttlMs", 30000);
+    private static final int MAX_ENTRIES = Integer.getInteger("library.queryCache.maxEntries", 256);
+    private static final Pattern TABLE = Pattern.compile("\\b(?:from|join|update|into)\\s+`?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final QueryCache instance = new QueryCache();
+
+    private static class Entry {
+        final Object value;
+        final Set<String> tags;
+        final long expiresAt;
+
+        Entry(Object value, Set<String> tags) {
+            this.value = value;
+            this.tags = tags;
+            this.expiresAt = System.currentTimeMillis() + TTL_MS;
+        }
+    }
+
+    // Guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // Generation at which each table was last invalidated, so a load that
+    // overlapped an invalidation is not stored
+    private final Map<String, Long> invalidatedAt = new HashMap<>();
+    private long generation;
+    private long hits, misses;
+
+    private QueryCache() {
+        EventJournal.get().subscribe(event -> invalidate("books", "book_copies", "borrowed_books"));
+    }
+
+    public static QueryCache get() {
+        return instance;
+    }
+
+    // Rows of a SELECT as Object[] in column order. The list is shared and read-only.
+    public List<Object[]> rows(String sql, Object... params) throws SQLException {
+        String key = normalize(sql) + " |" + Arrays.deepToString(params);
+        return compute(key, tablesOf(sql), () -> {
+            try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.READ)) {
+                PreparedStatement stmt = conn.prepareStatement(sql);
+                for (int i = 0; i < params.length; i++) {
+                    stmt.setObject(i + 1, params[i]);
+                }
+                ResultSet rs = stmt.executeQuery();
+                int columns = rs.getMetaData().getColumnCount();
+                List<Object[]> rows = new ArrayList<>();
+                while (rs.next()) {
+                    Object[] row = new Object[columns];
+                    for (int c = 0; c < columns; c++) {
+                        row[c] = rs.getObject(c + 1);
+                    }
+                    rows.add(row);
+                }
+                return Collections.unmodifiableList(rows);
+            }
+        });
+    }
+
+    // Returns the cached value for key, or runs loader and caches its result
+    // under the given table tags
+    @SuppressWarnings("unchecked")
+    public <T> T compute(String key, Set<String> tables, Callable<T> loader) throws SQLException {
+        long startGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits++;
+                return (T) entry.value;
+            }
+            misses++;
+            startGeneration = generation;
+        }
+
+        T value;
+        try {
+            value = loader.call();
+        } catch (SQLException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new SQLException(ex);
+        }
+
+        synchronized (this) {
+            for (String table : tables) {
+                if (invalidatedAt.getOrDefault(table, -1L) > startGeneration) {
+                    return value; // a write landed while we were loading
+                }
+            }
+            entries.put(key, new Entry(value, tables));
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(String... tables) {
+        generation++;
+        Set<String> dropped = new HashSet<>();
+        for (String table : tables) {
+            String name = table.toLowerCase(Locale.ROOT);
+            invalidatedAt.put(name, generation);
+            dropped.add(name);
+        }
+        entries.values().removeIf(entry -> !Collections.disjoint(entry.tags, dropped));
+    }
+
+    // Invalidates the tables a write statement touches
+    public void invalidateWrite(String sql) {
+        invalidate(tablesOf(sql).toArray(new String[0]));
+    }
+
+    public static Set<String> tablesOf(String sql) {
+        Set<String> tables = new HashSet<>();
+        Matcher m = TABLE.matcher(sql);
+        while (m.find()) {
+            tables.add(m.group(1).toLowerCase(Locale.ROOT));
+        }
+        return tables;
+    }
+
+    // Collapses whitespace and lower-cases everything outside string literals
+    static String normalize(String sql) {
+        StringBuilder sb = new StringBuilder(sql.length());
+        boolean quoted = false;
+        boolean space = false;
+        String text = sql.trim();
+        while (text.endsWith(";")) {
+            text = text.substring(0, text.length() - 1).trim();
+        }
+        for (char ch : text.toCharArray()) {
+            if (ch == '\'') {
+                quoted = !quoted;
+            }
+            if (!quoted && Character.isWhitespace(ch)) {
+                space = true;
+                continue;
+            }
+            if (space && sb.length() > 0) {
+                sb.append(' ');
+            }
+            space = false;
+            sb.append(quoted ? ch : Character.toLowerCase(ch));
+        }
+        return sb.toString();
+    }
+
+    public synchronized String summary() {
+        return String.format("entries=%d hits=%d misses=%d", entries.size(), hits, misses);
+    }
+}
@@ -0,0 +1,370 @@
+// RecommendationEngine.java
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// "Students who borrowed this also borrowed". Keeps a sparse item-item
+// co-occurrence matrix: for every pair of titles borrowed by the same student
+// the count goes up by one. Each title also keeps its best TOP_K neighbours in
+// a bounded min-heap, so a lookup only copies K entries.
+//
+// Issues are picked up from ChangeFeed as they commit, at this desk or any
+// other. A full rebuild from borrowed_books runs on a background thread at a
+// fixed period (fork/join over the students). Counts only ever go up, so the
+// heaps stay exact between rebuilds. A rebuild that
+// fails (the first one included, which would leave recommendations empty) is
+// retried after RETRY_MS, doubling up to MAX_RETRY_MS, rather than a period
+// later.
+public class RecommendationEngine {
+    private static final int TOP_K = Integer.getInteger("library.recommend.topK", 10);
+    private static final long REBUILD_HOURS = Long.getLong("library.recommend.rebuildHours", 24);
+    private static final long RETRY_MS = 30_000;
+    private static final long MAX_RETRY_MS = 30 * 60_000;
+    private static final int SPLIT_THRESHOLD = 256; // students per fork/join leaf
+    private static final RecommendationEngine instance = new RecommendationEngine();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService scheduler;
+
+    // Guarded by lock
+    private Matrix matrix = new Matrix();
+    private List<int[]> sinceRebuild; // loans recorded while a rebuild is running
+
+    // Scheduler thread only
+    private long retryMs = RETRY_MS;
+
+    // Co-occurrence counts, the top neighbours of each title and every
+    // student's distinct titles (so re-borrowing a title counts once)
+    private static class Matrix {
+        final IntObjectHashMap<IntIntHashMap> counts = new IntObjectHashMap<>();
+        final IntObjectHashMap<Neighbours> top = new IntObjectHashMap<>();
+        final IntObjectHashMap<IntIntHashMap> history = new IntObjectHashMap<>();
+
+        void record(int studentId, int bookId) {
+            IntIntHashMap books = history.computeIfAbsent(studentId, k -> new IntIntHashMap());
+            if (books.containsKey(bookId)) {
+                return;
+            }
+            books.forEach((other, ignored) -> {
+                bump(bookId, other);
+                bump(other, bookId);
+            });
+            books.put(bookId, 1);
+        }
+
+        private void bump(int bookId, int other) {
+            int count = counts.computeIfAbsent(bookId, k -> new IntIntHashMap()).addTo(other, 1);
+            top.computeIfAbsent(bookId, k -> new Neighbours(TOP_K)).offer(other, count);
+        }
+    }
+
+    // Bounded min-heap on count; the root is the weakest of the kept neighbours
+    private static class Neighbours {
+        final int[] ids;
+        final int[] counts;
+        int size;
+
+        Neighbours(int capacity) {
+            ids = new int[capacity];
+            counts = new int[capacity];
+        }
+
+        void offer(int id, int count) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    counts[i] = count;
+                    siftDown(i);
+                    return;
+                }
+            }
+            if (size < ids.length) {
+                ids[size] = id;
+                counts[size] = count;
+                siftUp(size++);
+            } else if (count > counts[0]) {
+                ids[0] = id;
+                counts[0] = count;
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (counts[parent] <= counts[i]) break;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int left = 2 * i + 1;
+                int smallest = i;
+                if (left < size && counts[left] < counts[smallest]) smallest = left;
+                if (left + 1 < size && counts[left + 1] < counts[smallest]) smallest = left + 1;
+                if (smallest == i) return;
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            int count = counts[a];
+            ids[a] = ids[b];
+            counts[a] = counts[b];
+            ids[b] = id;
+            counts[b] = count;
+        }
+    }
+
+    private RecommendationEngine() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "recommendation-rebuild");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.execute(this::runScheduled);
+        ChangeFeed.get().addListener(event -> {
+            if (event.getType() == CirculationEvent.Type.ISSUE) {
+                recordLoan(event.getStudentId(), event.getBookId());
+            }
+        });
+    }
+
+    public static RecommendationEngine get() {
+        return instance;
+    }
+
+    // Called once an issue has committed (see the ChangeFeed listener above);
+    // a loan already counted for the student is ignored, so repeats are harmless
+    public void recordLoan(int studentId, int bookId) {
+        lock.writeLock().lock();
+        try {
+            matrix.record(studentId, bookId);
+            if (sinceRebuild != null) {
+                sinceRebuild.add(new int[]{studentId, bookId});
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Titles most often borrowed together with the given one, best first
+    public int[] alsoBorrowed(int bookId, int limit) {
+        lock.readLock().lock();
+        try {
+            Neighbours n = matrix.top.get(bookId);
+            if (n == null) {
+                return new int[0];
+            }
+            long[] ranked = new long[n.size];
+            for (int i = 0; i < n.size; i++) {
+                ranked[i] = rank(n.ids[i], n.counts[i]);
+            }
+            return best(ranked, ranked.length, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Sums the neighbours of every seed title and returns the best ones that
+    // are not in exclude (typically the student's loans and wishlist)
+    public int[] recommend(Collection<Integer> seeds, Collection<Integer> exclude, int limit) {
+        IntIntHashMap scores = new IntIntHashMap();
+        lock.readLock().lock();
+        try {
+            for (int seed : seeds) {
+                Neighbours n = matrix.top.get(seed);
+                if (n == null) continue;
+                for (int i = 0; i < n.size; i++) {
+                    scores.addTo(n.ids[i], n.counts[i]);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int id : exclude) {
+            scores.put(id, 0);
+        }
+
+        long[] ranked = new long[scores.size()];
+        int[] n = {0};
+        scores.forEach((id, score) -> {
+            if (score > 0) ranked[n[0]++] = rank(id, score);
+        });
+        return best(ranked, n[0], limit);
+    }
+
+    // Higher score sorts first, then lower id
+    private static long rank(int id, int score) {
+        return ((long) -score << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static int[] best(long[] ranked, int length, int limit) {
+        Arrays.sort(ranked, 0, length);
+        int[] result = new int[Math.min(length, limit)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (int) ranked[i];
+        }
+        return result;
+    }
+
+    // ---- Full rebuild ----
+
+    public void rebuildNow() {
+        scheduler.execute(this::runRebuild);
+    }
+
+    // The periodic rebuild; schedules the next one, sooner after a failure
+    private void runScheduled() {
+        if (runRebuild()) {
+            retryMs = RETRY_MS;
+            scheduler.schedule(this::runScheduled, REBUILD_HOURS, TimeUnit.HOURS);
+        } else {
+            scheduler.schedule(this::runScheduled, retryMs, TimeUnit.MILLISECONDS);
+            retryMs = Math.min(retryMs * 2, MAX_RETRY_MS);
+        }
+    }
+
+    private boolean runRebuild() {
+        lock.writeLock().lock();
+        try {
+            sinceRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        Matrix rebuilt = null;
+        try {
+            rebuilt = rebuild();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (rebuilt != null) {
+                // Loans that committed after our read; history makes replays harmless
+                for (int[] loan : sinceRebuild) {
+                    rebuilt.record(loan[0], loan[1]);
+                }
+                matrix = rebuilt;
+            }
+            sinceRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return rebuilt != null;
+    }
+
+    private static Matrix rebuild() throws SQLException {
+        List<int[]> students = new ArrayList<>();
+        List<Integer> studentIds = new ArrayList<>();
+        // Background batch work: waits out congestion instead of being shed
+        try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.BATCH)) {
+            PreparedStatement stmt = conn.prepareStatement(
+                "SELECT student_id, book_id FROM borrowed_books " +
+                "UNION SELECT student_id, book_id FROM borrowed_books_archive ORDER BY student_id"
+            );
+            stmt.setFetchSize(1000);
+            ResultSet rs = stmt.executeQuery();
+            int current = 0;
+            int[] books = new int[8];
+            int n = 0;
+            while (rs.next()) {
+                int studentId = rs.getInt("student_id");
+                if (studentId != current && n > 0) {
+                    students.add(Arrays.copyOf(books, n));
+                    studentIds.add(current);
+                    n = 0;
+                }
+                current = studentId;
+                if (n == books.length) books = Arrays.copyOf(books, n * 2);
+                books[n++] = rs.getInt("book_id");
+            }
+            if (n > 0) {
+                students.add(Arrays.copyOf(books, n));
+                studentIds.add(current);
+            }
+        }
+
+        IntObjectHashMap<IntIntHashMap> counts =
+            ForkJoinPool.commonPool().invoke(new CountTask(students, 0, students.size()));
+
+        Matrix rebuilt = new Matrix();
+        for (int bookId : counts.keys()) {
+            IntIntHashMap row = counts.get(bookId);
+            Neighbours top = new Neighbours(TOP_K);
+            row.forEach(top::offer);
+            rebuilt.counts.put(bookId, row);
+            rebuilt.top.put(bookId, top);
+        }
+        for (int i = 0; i < students.size(); i++) {
+            int[] books = students.get(i);
+            IntIntHashMap set = new IntIntHashMap(books.length);
+            for (int book : books) {
+                set.put(book, 1);
+            }
+            rebuilt.history.put(studentIds.get(i), set);
+        }
+        return rebuilt;
+    }
+
+    // Counts the pairs of a range of students, splitting until the range is small
+    private static class CountTask extends RecursiveTask<IntObjectHashMap<IntIntHashMap>> {
+        private final List<int[]> students;
+        private final int from, to;
+
+        CountTask(List<int[]> students, int from, int to) {
+            this.students = students;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected IntObjectHashMap<IntIntHashMap> compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                IntObjectHashMap<IntIntHashMap> counts = new IntObjectHashMap<>();
+                for (int s = from; s < to; s++) {
+                    int[] books = students.get(s);
+                    for (int i = 0; i < books.length; i++) {
+                        IntIntHashMap row = counts.computeIfAbsent(books[i], k -> new IntIntHashMap());
+                        for (int j = 0; j < books.length; j++) {
+                            if (i != j) row.addTo(books[j], 1);
+                        }
+                    }
+                }
+                return counts;
+            }
+            int mid = (from + to) >>> 1;
+            CountTask left = new CountTask(students, from, mid);
+            left.fork();
+            IntObjectHashMap<IntIntHashMap> right = new CountTask(students, mid, to).compute();
+            return merge(left.join(), right);
+        }
+
+        private static IntObjectHashMap<IntIntHashMap> merge(IntObjectHashMap<IntIntHashMap> into,
+                                                             IntObjectHashMap<IntIntHashMap> from) {
+            for (int bookId : from.keys()) {
+                IntIntHashMap source = from.get(bookId);
+                IntIntHashMap target = into.get(bookId);
+                if (target == null) {
+                    into.put(bookId, source);
+                } else {
+                    source.forEach(target::addTo);
+                }
+            }
+            return into;
+        }
+    }
+}
@@ -0,0 +1,298 @@
+// ReminderScheduler.java
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Due-date reminders for every open loan: two days before the due date, on
+// the due date and the day after it (overdue), each at REMINDER_HOUR local
+// time. Each loan has exactly one timer in a TimingWheel, for its next
+// reminder; when it fires the reminder is queued for the student and the
+// loan's following reminder is scheduled. Nothing scans the open loans after
+// startup, and scheduling or cancelling a loan's timer is O(1).
+//
+// Open loans are loaded at startup a page at a time in due_date order (keyset
+// pagination on idx_borrowed_open_due, like OverdueScanner), on one
+// connection. A load that fails part-way is retried with backoff from the
+// last page it finished. Issues, renewals and returns from every desk arrive
+// from ChangeFeed and schedule, move or cancel the loan's timer.
+//
+// A reminder that was due less than a day ago when its loan is loaded (the
+// desk was started late) still fires; older ones are skipped, the overdue
+// view covers those loans.
+public class ReminderScheduler {
+    private static final long TICK_MS = Long.getLong("library.reminder.tickMs", 60_000);
+    private static final int REMINDER_HOUR = Integer.getInteger("library.reminder.hour", 9);
+    private static final int PAGE_SIZE = 5000;
+    private static final int QUEUE_PER_STUDENT = 20;
+    private static final long DAY = 24 * 3_600_000L;
+    private static final long LOAD_RETRY_MS = 5000;
+    private static final long MAX_LOAD_RETRY_MS = 10 * 60_000;
+    private static final ReminderScheduler instance = new ReminderScheduler();
+
+    public enum Stage {
+        DUE_SOON(-2), DUE_TODAY(0), OVERDUE(1);
+
+        final int daysFromDue;
+
+        Stage(int daysFromDue) {
+            this.daysFromDue = daysFromDue;
+        }
+    }
+
+    public static class Reminder {
+        public final int studentId;
+        public final int bookId;
+        public final LocalDate dueDate;
+        public final Stage stage;
+
+        Reminder(int studentId, int bookId, LocalDate dueDate, Stage stage) {
+            this.studentId = studentId;
+            this.bookId = bookId;
+            this.dueDate = dueDate;
+            this.stage = stage;
+        }
+    }
+
+    // Payload of a loan's timer
+    private static final class Tracked {
+        final int studentId;
+        final int bookId;
+        final LocalDate dueDate;
+        final Stage stage;
+
+        Tracked(int studentId, int bookId, LocalDate dueDate, Stage stage) {
+            this.studentId = studentId;
+            this.bookId = bookId;
+            this.dueDate = dueDate;
+            this.stage = stage;
+        }
+    }
+
+    private final ScheduledExecutorService scheduler;
+    private final List<Consumer<Reminder>> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this
+    private final TimingWheel<Tracked> wheel = new TimingWheel<>(TICK_MS, System.currentTimeMillis());
+    private final Map<Long, TimingWheel.Timer<Tracked>> timers = new HashMap<>(); // (student, book) -> next reminder
+    private final Map<Integer, ArrayDeque<Reminder>> queued = new HashMap<>();
+    private Set<Long> returnedDuringLoad = new HashSet<>(); // null once the startup load is done
+    private List<Reminder> fired = new ArrayList<>();
+
+    // Startup load position and backoff; scheduler thread only
+    private Date loadDue;
+    private int loadId;
+    private long loadRetryMs = LOAD_RETRY_MS;
+
+    private ReminderScheduler() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "reminder-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        ChangeFeed.get().addListener(this::apply);
+        scheduler.execute(this::runLoad);
+        scheduler.scheduleAtFixedRate(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static ReminderScheduler get() {
+        return instance;
+    }
+
+    // Called on the scheduler thread for every reminder as it fires
+    public void addListener(Consumer<Reminder> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Reminder> listener) {
+        listeners.remove(listener);
+    }
+
+    // Reminders fired for the student that are not yet taken, oldest first
+    public synchronized List<Reminder> pending(int studentId) {
+        ArrayDeque<Reminder> queue = queued.get(studentId);
+        return queue == null ? Collections.emptyList() : new ArrayList<>(queue);
+    }
+
+    // Drops the student's queued reminders once they have been shown
+    public synchronized void acknowledge(int studentId) {
+        queued.remove(studentId);
+    }
+
+    public synchronized int scheduledCount() {
+        return wheel.size();
+    }
+
+    // Runs on the change-feed thread
+    private void apply(CirculationEvent event) {
+        long key = key(event.getStudentId(), event.getBookId());
+        synchronized (this) {
+            switch (event.getType()) {
+                case ISSUE:
+                case RENEW:
+                    if (event.getDueDate() != null) {
+                        schedule(event.getStudentId(), event.getBookId(), event.getDueDate(), System.currentTimeMillis());
+                    }
+                    break;
+                case RETURN:
+                    cancel(key);
+                    if (returnedDuringLoad != null) {
+                        returnedDuringLoad.add(key);
+                    }
+                    ArrayDeque<Reminder> queue = queued.get(event.getStudentId());
+                    if (queue != null) {
+                        queue.removeIf(r -> r.bookId == event.getBookId());
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void tick() {
+        List<Reminder> due;
+        synchronized (this) {
+            wheel.advance(System.currentTimeMillis(), this::fire);
+            if (fired.isEmpty()) {
+                return;
+            }
+            due = fired;
+            fired = new ArrayList<>();
+        }
+        for (Reminder reminder : due) {
+            for (Consumer<Reminder> listener : listeners) {
+                try {
+                    listener.accept(reminder);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // Called from wheel.advance() with the lock held
+    private void fire(Tracked loan) {
+        long key = key(loan.studentId, loan.bookId);
+        timers.remove(key);
+        Reminder reminder = new Reminder(loan.studentId, loan.bookId, loan.dueDate, loan.stage);
+        ArrayDeque<Reminder> queue = queued.computeIfAbsent(loan.studentId, id -> new ArrayDeque<>());
+        if (queue.size() == QUEUE_PER_STUDENT) {
+            queue.removeFirst();
+        }
+        queue.addLast(reminder);
+        fired.add(reminder);
+
+        int next = loan.stage.ordinal() + 1;
+        if (next < Stage.values().length) {
+            Stage stage = Stage.values()[next];
+            timers.put(key, wheel.schedule(timeOf(loan.dueDate, stage),
+                new Tracked(loan.studentId, loan.bookId, loan.dueDate, stage)));
+        }
+    }
+
+    // Replaces the loan's timer with one for its next reminder after now
+    private void schedule(int studentId, int bookId, LocalDate dueDate, long now) {
+        long key = key(studentId, bookId);
+        cancel(key);
+        for (Stage stage : Stage.values()) {
+            long at = timeOf(dueDate, stage);
+            if (at > now - DAY) {
+                timers.put(key, wheel.schedule(at, new Tracked(studentId, bookId, dueDate, stage)));
+                return;
+            }
+        }
+    }
+
+    private void cancel(long key) {
+        TimingWheel.Timer<Tracked> timer = timers.remove(key);
+        if (timer != null) {
+            wheel.cancel(timer);
+        }
+    }
+
+    // A failed load resumes from the last page it finished, after a backoff
+    private void runLoad() {
+        try {
+            load();
+            synchronized (this) {
+                returnedDuringLoad = null;
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            scheduler.schedule(this::runLoad, loadRetryMs, TimeUnit.MILLISECONDS);
+            loadRetryMs = Math.min(loadRetryMs * 2, MAX_LOAD_RETRY_MS);
+        }
+    }
+
+    // Open loans in (due_date, id) order, one page per query and per lock
+    // hold, all on one connection and one admission
+    private void load() throws SQLException {
+        String query = "SELECT id, student_id, book_id, due_date FROM borrowed_books " +
+                       "WHERE return_date IS NULL AND (due_date > ? OR (due_date = ? AND id > ?)) " +
+                       "ORDER BY due_date, id LIMIT ?";
+        if (loadDue == null) {
+            // Loans due before this have had all their reminders
+            loadDue = Date.valueOf(LocalDate.now().minusDays(Stage.OVERDUE.daysFromDue + 1));
+        }
+        try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.BATCH)) {
+            PreparedStatement stmt = conn.prepareStatement(query);
+            int rows;
+            do {
+                List<Object[]> page = new ArrayList<>(PAGE_SIZE);
+                Date lastDue = loadDue;
+                int lastId = loadId;
+                stmt.setDate(1, lastDue);
+                stmt.setDate(2, lastDue);
+                stmt.setInt(3, lastId);
+                stmt.setInt(4, PAGE_SIZE);
+                ResultSet rs = stmt.executeQuery();
+                while (rs.next()) {
+                    lastId = rs.getInt("id");
+                    lastDue = rs.getDate("due_date");
+                    page.add(new Object[]{rs.getInt("student_id"), rs.getInt("book_id"), lastDue.toLocalDate()});
+                }
+                rs.close();
+                rows = page.size();
+
+                long now = System.currentTimeMillis();
+                synchronized (this) {
+                    for (Object[] row : page) {
+                        int studentId = (Integer) row[0];
+                        int bookId = (Integer) row[1];
+                        long key = key(studentId, bookId);
+                        // The feed already has a newer state for this loan
+                        if (timers.containsKey(key) || returnedDuringLoad.contains(key)) {
+                            continue;
+                        }
+                        schedule(studentId, bookId, (LocalDate) row[2], now);
+                    }
+                }
+                // Only a page that is fully scheduled moves the resume point
+                loadDue = lastDue;
+                loadId = lastId;
+            } while (rows == PAGE_SIZE);
+        }
+    }
+
+    private static long timeOf(LocalDate dueDate, Stage stage) {
+        return dueDate.plusDays(stage.daysFromDue).atTime(REMINDER_HOUR, 0)
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static long key(int studentId, int bookId) {
+        return ((long) studentId << 32) | (bookId & 0xffffffffL);
+    }
+}
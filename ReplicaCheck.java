@@ -0,0 +1,122 @@
+// ReplicaCheck.java
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+
+// Read-your-writes and routing check for ReplicaRouter against a primary and
+// at least one replica (see "Read Replicas" in the README for two local
+// instances). Two actors run side by side:
+//
+//   - a writer renames a probe user (a write with no circulation event) and
+//     reads the name straight back through getReadConnection; it must always
+//     see its own write
+//   - a reader only reads, and should be served by a replica while the
+//     replica keeps up
+//
+// Stop the replica's SQL thread during a run to watch lag grow and reads fall
+// back to the primary. Exits 1 if the writer ever reads a stale name or no
+// read is ever served by a replica.
+//
+// Usage:
+//   java -Dlibrary.db.url=jdbc:mysql://localhost:3306/library_db \
+//        -Dlibrary.db.replicas=jdbc:mysql://localhost:3307/library_db ReplicaCheck [--seconds 30]
+public class ReplicaCheck {
+    private static final String WRITER = "replica-check:writer";
+    private static final String READER = "replica-check:reader";
+
+    public static void main(String[] args) throws Exception {
+        long seconds = 30;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--seconds")) seconds = Long.parseLong(args[++i]);
+        }
+        if (ReplicaRouter.get().getReplicas().isEmpty()) {
+            System.out.println("No replicas configured (-Dlibrary.db.replicas)");
+            System.exit(1);
+        }
+
+        int primaryServer;
+        int userId;
+        try (Connection conn = DBConnection.getPool().getConnection()) {
+            primaryServer = serverId(conn);
+            PreparedStatement stmt = conn.prepareStatement(
+                "INSERT INTO users (name, username, password, role, active) VALUES ('probe 0', ?, 'probe', 'Student', FALSE)",
+                Statement.RETURN_GENERATED_KEYS
+            );
+            stmt.setString(1, "replica_check_" + System.currentTimeMillis());
+            stmt.executeUpdate();
+            ResultSet keys = stmt.getGeneratedKeys();
+            keys.next();
+            userId = keys.getInt(1);
+        }
+        // Let the monitor judge the replicas once
+        Thread.sleep(2 * Long.getLong("library.db.replicaCheckMs", 1000));
+
+        Map<String, long[]> reads = new HashMap<>();   // actor -> {primary, replica}
+        reads.put(WRITER, new long[2]);
+        reads.put(READER, new long[2]);
+        long stale = 0;
+        long deadline = System.currentTimeMillis() + seconds * 1000;
+        long nextSummary = 0;
+        try {
+            for (int round = 1; System.currentTimeMillis() < deadline; round++) {
+                String name = "probe " + round;
+                EventJournal.setThreadActor(WRITER);
+                try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.WRITE)) {
+                    PreparedStatement stmt = conn.prepareStatement("UPDATE users SET name = ? WHERE id = ?");
+                    stmt.setString(1, name);
+                    stmt.setInt(2, userId);
+                    stmt.executeUpdate();
+                }
+                try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.READ)) {
+                    PreparedStatement stmt = conn.prepareStatement("SELECT name, @@server_id FROM users WHERE id = ?");
+                    stmt.setInt(1, userId);
+                    ResultSet rs = stmt.executeQuery();
+                    rs.next();
+                    reads.get(WRITER)[rs.getInt(2) == primaryServer ? 0 : 1]++;
+                    if (!name.equals(rs.getString(1))) {
+                        stale++;
+                        System.out.println("STALE: wrote '" + name + "', read '" + rs.getString(1)
+                            + "' from server " + rs.getInt(2));
+                    }
+                }
+
+                EventJournal.setThreadActor(READER);
+                try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.READ)) {
+                    reads.get(READER)[serverId(conn) == primaryServer ? 0 : 1]++;
+                }
+                EventJournal.setThreadActor(null);
+
+                if (System.currentTimeMillis() >= nextSummary) {
+                    System.out.print(ReplicaRouter.get().summary());
+                    nextSummary = System.currentTimeMillis() + 1000;
+                }
+                Thread.sleep(50);
+            }
+        } finally {
+            EventJournal.setThreadActor(null);
+            try (Connection conn = DBConnection.getPool().getConnection()) {
+                PreparedStatement stmt = conn.prepareStatement("DELETE FROM users WHERE id = ?");
+                stmt.setInt(1, userId);
+                stmt.executeUpdate();
+            }
+        }
+
+        for (Map.Entry<String, long[]> entry : reads.entrySet()) {
+            System.out.printf("%s: %d reads on the primary, %d on a replica%n",
+                entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+        }
+        boolean replicaUsed = reads.get(WRITER)[1] + reads.get(READER)[1] > 0;
+        if (!replicaUsed) {
+            System.out.println("No read went to a replica: is it replicating, and is replica_heartbeat there?");
+        }
+        boolean passed = stale == 0 && replicaUsed;
+        System.out.println(passed ? "PASS" : "FAIL (" + stale + " stale reads)");
+        System.exit(passed ? 0 : 1);
+    }
+
+    private static int serverId(Connection conn) throws SQLException {
+        ResultSet rs = conn.createStatement().executeQuery("SELECT @@server_id");
+        rs.next();
+        return rs.getInt(1);
+    }
+}
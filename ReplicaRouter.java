@@ -0,0 +1,224 @@
+// ReplicaRouter.java
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Picks a read replica for browse and report reads (DBConnection.getReadConnection).
+// Replicas are listed in -Dlibrary.db.replicas as comma-separated JDBC URLs
+// with the primary's credentials; with none listed every read stays on the
+// primary.
+//
+// A monitor thread runs every CHECK_MS. It writes a heartbeat (the primary's
+// NOW(3)) into replica_heartbeat on the primary, then reads the heartbeat
+// each replica has applied, timing the round trip for a smoothed latency
+// figure. Every write replicates behind the heartbeats, whatever table it
+// touches, so lag is how long the oldest heartbeat the replica is missing has
+// existed. It needs no replication privileges and works with any replication
+// setup. A replica is used only while it is healthy and lags by at most
+// MAX_LAG_MS.
+//
+// Read-your-writes is per actor (EventJournal.currentActor: the desk user,
+// or the HTTP session's user). After an actor writes, its reads stay on the
+// primary for at least STICKY_MS and until a replica has applied a heartbeat
+// written after the write. Other actors keep reading from the replicas.
+public class ReplicaRouter {
+    private static final long CHECK_MS = Long.getLong("library.db.replicaCheckMs", 1000);
+    private static final long MAX_LAG_MS = Long.getLong("library.db.replicaMaxLagMs", 2000);
+    private static final long STICKY_MS = Long.getLong("library.db.stickyMs", 2000);
+    private static final int REPLICA_POOL_SIZE = Integer.getInteger("library.db.replicaPoolSize", 10);
+    private static final boolean ROUND_ROBIN = "roundRobin".equals(System.getProperty("library.db.replicaSelect", "leastLatency"));
+    // Heartbeats and writes older than this no longer matter: a replica that
+    // has not applied them lags too much to be used anyway
+    private static final long HISTORY_MS = MAX_LAG_MS + STICKY_MS + 2 * CHECK_MS;
+    private static final ReplicaRouter instance = new ReplicaRouter();
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    // Heartbeats this process wrote, oldest first: {primary time, local time}
+    private final Deque<long[]> beats = new ArrayDeque<>();
+
+    public static class Replica {
+        final String url;
+        final ConnectionPool pool;
+        volatile boolean healthy;
+        volatile double latencyMillis;
+        volatile long lagMillis = Long.MAX_VALUE;
+        volatile long appliedAsOf;   // local time before which every write is on the replica
+        long behindSince;            // local time of the first heartbeat it is missing, 0 when caught up
+
+        Replica(String url, ConnectionPool pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+
+        public String getUrl() { return url; }
+        public boolean isHealthy() { return healthy; }
+        public double getLatencyMillis() { return latencyMillis; }
+        public long getLagMillis() { return lagMillis; }
+    }
+
+    private ReplicaRouter() {
+        for (String url : System.getProperty("library.db.replicas", "").split(",")) {
+            if (!url.isBlank()) {
+                replicas.add(new Replica(url.trim(), DBConnection.newPool(url.trim(), REPLICA_POOL_SIZE)));
+            }
+        }
+        if (!replicas.isEmpty()) {
+            ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "replica-monitor");
+                t.setDaemon(true);
+                return t;
+            });
+            monitor.scheduleWithFixedDelay(this::checkAll, 0, CHECK_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public static ReplicaRouter get() {
+        return instance;
+    }
+
+    public List<Replica> getReplicas() {
+        return Collections.unmodifiableList(replicas);
+    }
+
+    // Called for every connection that may write
+    public void noteWrite() {
+        if (!replicas.isEmpty()) {
+            lastWrites.put(EventJournal.currentActor(), System.currentTimeMillis());
+        }
+    }
+
+    // A replica fit to serve a read for the current actor now, or null for the primary
+    public Replica pick() {
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        Long lastWrite = lastWrites.get(EventJournal.currentActor());
+        if (lastWrite != null && System.currentTimeMillis() - lastWrite < STICKY_MS) {
+            return null;
+        }
+        List<Replica> eligible = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.healthy && replica.lagMillis <= MAX_LAG_MS
+                    && (lastWrite == null || replica.appliedAsOf > lastWrite)) {
+                eligible.add(replica);
+            }
+        }
+        if (eligible.isEmpty()) {
+            return null;
+        }
+        if (ROUND_ROBIN) {
+            return eligible.get(Math.floorMod(next.getAndIncrement(), eligible.size()));
+        }
+        Replica best = eligible.get(0);
+        for (Replica replica : eligible) {
+            if (replica.latencyMillis < best.latencyMillis) best = replica;
+        }
+        return best;
+    }
+
+    // The replica failed to hand out a connection; skip it until the next check
+    public void markDown(Replica replica) {
+        replica.healthy = false;
+    }
+
+    private void checkAll() {
+        try (Connection conn = DBConnection.getPool().getConnection()) {
+            beat(conn);
+        } catch (Exception ex) {
+            // Without a new heartbeat we cannot judge lag; keep the last verdicts
+            ex.printStackTrace();
+            return;
+        }
+        for (Replica replica : replicas) {
+            check(replica);
+        }
+        long cutoff = System.currentTimeMillis() - HISTORY_MS;
+        lastWrites.values().removeIf(at -> at < cutoff);
+    }
+
+    private void beat(Connection primary) throws SQLException {
+        ResultSet rs = primary.createStatement().executeQuery("SELECT NOW(3)");
+        rs.next();
+        Timestamp now = rs.getTimestamp(1);
+        PreparedStatement stmt = primary.prepareStatement(
+            "INSERT INTO replica_heartbeat (id, beat) VALUES (1, ?) " +
+            "ON DUPLICATE KEY UPDATE beat = GREATEST(beat, VALUES(beat))"
+        );
+        stmt.setTimestamp(1, now);
+        stmt.executeUpdate();
+        if (!primary.getAutoCommit()) {
+            primary.commit();
+        }
+        long local = System.currentTimeMillis();
+        synchronized (beats) {
+            beats.addLast(new long[] { now.getTime(), local });
+            while (beats.size() > 2 && beats.peekFirst()[1] < local - HISTORY_MS) {
+                beats.removeFirst();
+            }
+        }
+    }
+
+    private void check(Replica replica) {
+        long start = System.nanoTime();
+        try (Connection conn = replica.pool.getConnection()) {
+            ResultSet rs = conn.createStatement().executeQuery("SELECT beat FROM replica_heartbeat WHERE id = 1");
+            long applied = rs.next() ? rs.getTimestamp(1).getTime() : 0;
+            double millis = (System.nanoTime() - start) / 1_000_000.0;
+            replica.latencyMillis = replica.latencyMillis == 0 ? millis : replica.latencyMillis * 0.8 + millis * 0.2;
+            judge(replica, applied);
+            replica.healthy = true;
+        } catch (Exception ex) {
+            replica.healthy = false;
+        }
+    }
+
+    // Lag is the age of the first heartbeat after applied; every write made
+    // before the last heartbeat at or before applied is on the replica. When
+    // that heartbeat is the oldest one kept, older ones it is also missing may
+    // have been trimmed, so a replica that was already behind keeps the time
+    // it fell behind instead of the lag stopping at HISTORY_MS.
+    private void judge(Replica replica, long applied) {
+        long now = System.currentTimeMillis();
+        long appliedAsOf = 0;
+        long behindSince = 0;
+        synchronized (beats) {
+            Iterator<long[]> it = beats.iterator();
+            while (it.hasNext()) {
+                long[] beat = it.next();
+                if (beat[0] <= applied) {
+                    appliedAsOf = beat[1];
+                } else {
+                    behindSince = beat[1];
+                    if (appliedAsOf == 0 && replica.behindSince != 0) {
+                        behindSince = Math.min(behindSince, replica.behindSince);
+                    }
+                    break;
+                }
+            }
+        }
+        replica.behindSince = behindSince;
+        replica.appliedAsOf = appliedAsOf;
+        replica.lagMillis = behindSince == 0 ? 0 : now - behindSince;
+    }
+
+    public String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Replica replica : replicas) {
+            sb.append(String.format("%s healthy=%b latency=%.1fms lag=%dms%n",
+                replica.url, replica.healthy, replica.latencyMillis, replica.lagMillis));
+        }
+        return sb.toString();
+    }
+}
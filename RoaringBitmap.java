@@ -0,0 +1,282 @@
+// RoaringBitmap.java
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Compressed set of non-negative ints in the style of Roaring bitmaps. Values
+// are split on their high 16 bits into chunks of 65536; a chunk is a sorted
+// char[] while it holds up to ARRAY_MAX values and a 1024-word bitmap beyond
+// that, so sparse and dense id ranges both stay small (at most 8 KB a chunk).
+// and() works chunk by chunk: two bitmaps are ANDed a word at a time, an
+// array is probed against the other side.
+//
+// Not thread-safe; AvailabilityIndex guards its instance.
+public class RoaringBitmap {
+    private static final int ARRAY_MAX = 4096;
+
+    private char[] keys = new char[4];
+    private Chunk[] chunks = new Chunk[4];
+    private int size;
+
+    private abstract static class Chunk {
+        abstract boolean contains(char low);
+        abstract Chunk add(char low);
+        abstract Chunk remove(char low);
+        abstract int cardinality();
+        abstract Chunk and(Chunk other);
+        abstract void forEach(int high, IntConsumer action);
+        abstract Chunk copy();
+    }
+
+    private static final class ArrayChunk extends Chunk {
+        char[] values;
+        int cardinality;
+
+        ArrayChunk(int capacity) {
+            values = new char[capacity];
+        }
+
+        boolean contains(char low) {
+            return Arrays.binarySearch(values, 0, cardinality, low) >= 0;
+        }
+
+        Chunk add(char low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if (i >= 0) return this;
+            if (cardinality == ARRAY_MAX) {
+                return toBitmap().add(low);
+            }
+            i = -i - 1;
+            if (cardinality == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX, Math.max(4, cardinality * 2)));
+            }
+            System.arraycopy(values, i, values, i + 1, cardinality - i);
+            values[i] = low;
+            cardinality++;
+            return this;
+        }
+
+        Chunk remove(char low) {
+            int i = Arrays.binarySearch(values, 0, cardinality, low);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, cardinality - i - 1);
+                cardinality--;
+            }
+            return this;
+        }
+
+        int cardinality() {
+            return cardinality;
+        }
+
+        Chunk and(Chunk other) {
+            ArrayChunk result = new ArrayChunk(cardinality);
+            for (int i = 0; i < cardinality; i++) {
+                if (other.contains(values[i])) {
+                    result.values[result.cardinality++] = values[i];
+                }
+            }
+            return result;
+        }
+
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < cardinality; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        Chunk copy() {
+            ArrayChunk copy = new ArrayChunk(0);
+            copy.values = Arrays.copyOf(values, cardinality);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        BitmapChunk toBitmap() {
+            BitmapChunk bitmap = new BitmapChunk();
+            for (int i = 0; i < cardinality; i++) {
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitmap.cardinality = cardinality;
+            return bitmap;
+        }
+    }
+
+    private static final class BitmapChunk extends Chunk {
+        final long[] words = new long[1024];
+        int cardinality;
+
+        boolean contains(char low) {
+            return (words[low >>> 6] & (1L << low)) != 0;
+        }
+
+        Chunk add(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before | (1L << low);
+            if (before != words[low >>> 6]) cardinality++;
+            return this;
+        }
+
+        Chunk remove(char low) {
+            long before = words[low >>> 6];
+            words[low >>> 6] = before & ~(1L << low);
+            if (before != words[low >>> 6]) cardinality--;
+            return cardinality <= ARRAY_MAX ? toArray() : this;
+        }
+
+        int cardinality() {
+            return cardinality;
+        }
+
+        Chunk and(Chunk other) {
+            if (other instanceof ArrayChunk) {
+                return other.and(this);
+            }
+            BitmapChunk result = new BitmapChunk();
+            long[] theirs = ((BitmapChunk) other).words;
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] = words[i] & theirs[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result.cardinality <= ARRAY_MAX ? result.toArray() : result;
+        }
+
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        Chunk copy() {
+            BitmapChunk copy = new BitmapChunk();
+            System.arraycopy(words, 0, copy.words, 0, words.length);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        ArrayChunk toArray() {
+            ArrayChunk array = new ArrayChunk(Math.max(4, cardinality));
+            forEach(0, v -> array.values[array.cardinality++] = (char) v);
+            return array;
+        }
+    }
+
+    public static RoaringBitmap of(int... values) {
+        int[] sorted = values.clone();
+        Arrays.sort(sorted);
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int value : sorted) {
+            bitmap.add(value);
+        }
+        return bitmap;
+    }
+
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    public boolean contains(int value) {
+        int i = find((char) (value >>> 16));
+        return i >= 0 && chunks[i].contains((char) value);
+    }
+
+    public void add(int value) {
+        char key = (char) (value >>> 16);
+        int i = find(key);
+        if (i >= 0) {
+            chunks[i] = chunks[i].add((char) value);
+            return;
+        }
+        i = -i - 1;
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            chunks = Arrays.copyOf(chunks, size * 2);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(chunks, i, chunks, i + 1, size - i);
+        keys[i] = key;
+        chunks[i] = new ArrayChunk(4).add((char) value);
+        size++;
+    }
+
+    public void remove(int value) {
+        int i = find((char) (value >>> 16));
+        if (i < 0) return;
+        chunks[i] = chunks[i].remove((char) value);
+        if (chunks[i].cardinality() == 0) {
+            System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+            System.arraycopy(chunks, i + 1, chunks, i, size - i - 1);
+            chunks[--size] = null;
+        }
+    }
+
+    public int getCardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += chunks[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    // Values in both bitmaps, as a new bitmap
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap result = new RoaringBitmap();
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            if (a.keys[i] < b.keys[j]) {
+                i++;
+            } else if (a.keys[i] > b.keys[j]) {
+                j++;
+            } else {
+                Chunk chunk = a.chunks[i].and(b.chunks[j]);
+                if (chunk.cardinality() > 0) {
+                    if (result.size == result.keys.length) {
+                        result.keys = Arrays.copyOf(result.keys, result.size * 2);
+                        result.chunks = Arrays.copyOf(result.chunks, result.size * 2);
+                    }
+                    result.keys[result.size] = a.keys[i];
+                    result.chunks[result.size++] = chunk;
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    // Ascending order
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            chunks[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    public int[] toArray() {
+        int[] values = new int[getCardinality()];
+        int[] n = {0};
+        forEach(v -> values[n[0]++] = v);
+        return values;
+    }
+
+    public RoaringBitmap copy() {
+        RoaringBitmap copy = new RoaringBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(4, size));
+        copy.chunks = new Chunk[copy.keys.length];
+        for (int i = 0; i < size; i++) {
+            copy.chunks[i] = chunks[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    public long estimateBytes() {
+        long bytes = 16 + keys.length * 2L + chunks.length * 8L;
+        for (int i = 0; i < size; i++) {
+            bytes += chunks[i] instanceof BitmapChunk ? 8192 : 2L * ((ArrayChunk) chunks[i]).values.length;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,209 @@
+// ScannerPanel.java
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.IntUnaryOperator;
+
+// Persistent issue/return strip for the librarian desk, built for barcode
+// scanners, which type the id followed by Enter. Enter in the student field
+// moves to the book field; Enter in the book field submits and clears it but
+// keeps the student, so a stack of books is one scan each. Escape starts over
+// with the next student.
+//
+// An issue is first checked against the dashboard's cached copy counts, so a
+// title with no copy left is refused without a database round-trip. The
+// transactions run in scan order on one background thread; the EDT never
+// waits for the database and results land in the recent list and StatusBar.
+// While the database is unreachable scans are queued in OperationQueue; the
+// outcome of each replayed operation, conflicts included, is added to the
+// recent list when it is applied.
+public class ScannerPanel extends JPanel {
+    private static final int RECENT_LIMIT = 200;
+    // How long a successful "student is active" check is trusted, so a stack
+    // of scans for one student costs one lookup; 0 checks on every scan
+    private static final long ACTIVE_TTL_MS = Long.getLong("library.scanner.activeTtlMs", 30_000);
+
+    private final JRadioButton issueMode = new JRadioButton("Issue", true);
+    private final JRadioButton returnMode = new JRadioButton("Return");
+    private final JTextField studentField = new JTextField(8);
+    private final JTextField bookField = new JTextField(8);
+    private final DefaultListModel<String> recent = new DefaultListModel<>();
+    private final StatusBar statusBar;
+    private final IntUnaryOperator cachedAvailability; // book id -> copies left, -1 when unknown
+    private final Map<Integer, Long> activeStudents = new ConcurrentHashMap<>(); // student id -> checked at
+    private final ExecutorService worker;
+    private final Consumer<OperationQueue.Result> replayListener;
+
+    public ScannerPanel(StatusBar statusBar, IntUnaryOperator cachedAvailability) {
+        super(new BorderLayout(5, 5));
+        this.statusBar = statusBar;
+        this.cachedAvailability = cachedAvailability;
+        worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "desk-circulation");
+            t.setDaemon(true);
+            return t;
+        });
+        setBorder(BorderFactory.createTitledBorder("Scanner"));
+
+        ButtonGroup modes = new ButtonGroup();
+        modes.add(issueMode);
+        modes.add(returnMode);
+        issueMode.setMnemonic(KeyEvent.VK_I);
+        returnMode.setMnemonic(KeyEvent.VK_R);
+        issueMode.addActionListener(e -> bookField.requestFocusInWindow());
+        returnMode.addActionListener(e -> bookField.requestFocusInWindow());
+
+        studentField.addActionListener(e -> bookField.requestFocusInWindow());
+        bookField.addActionListener(e -> submit());
+        Action nextStudent = new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                // The next student is checked afresh
+                activeStudents.clear();
+                studentField.setText("");
+                bookField.setText("");
+                studentField.requestFocusInWindow();
+            }
+        };
+        for (JTextField field : new JTextField[]{studentField, bookField}) {
+            field.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ESCAPE, 0), "nextStudent");
+            field.getActionMap().put("nextStudent", nextStudent);
+        }
+
+        JPanel row = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        row.add(issueMode);
+        row.add(returnMode);
+        row.add(new JLabel("Student ID:"));
+        row.add(studentField);
+        row.add(new JLabel("Book ID:"));
+        row.add(bookField);
+        add(row, BorderLayout.NORTH);
+
+        JList<String> recentList = new JList<>(recent);
+        recentList.setVisibleRowCount(4);
+        recentList.setFocusable(false);
+        add(new JScrollPane(recentList), BorderLayout.CENTER);
+
+        replayListener = result -> SwingUtilities.invokeLater(() -> {
+            addRecent(result.describe());
+            if (result.isConflict()) {
+                statusBar.warn(result.describe());
+            }
+        });
+        OperationQueue.get().addListener(replayListener);
+    }
+
+    // Used by the Issue/Return buttons
+    public void focus(boolean issue) {
+        (issue ? issueMode : returnMode).setSelected(true);
+        if (studentField.getText().trim().isEmpty()) {
+            studentField.requestFocusInWindow();
+        } else {
+            bookField.requestFocusInWindow();
+        }
+    }
+
+    public void shutdown() {
+        OperationQueue.get().removeListener(replayListener);
+        worker.shutdown();
+    }
+
+    private void submit() {
+        int studentId;
+        int bookId;
+        try {
+            studentId = Integer.parseInt(studentField.getText().trim());
+            bookId = Integer.parseInt(bookField.getText().trim());
+        } catch (NumberFormatException ex) {
+            statusBar.warn("Please enter valid IDs (numbers only)");
+            (studentField.getText().trim().isEmpty() ? studentField : bookField).requestFocusInWindow();
+            return;
+        }
+        bookField.setText("");
+        bookField.requestFocusInWindow();
+
+        boolean issue = issueMode.isSelected();
+        if (issue && cachedAvailability.applyAsInt(bookId) == 0) {
+            addRecent("Refused: no copy of book " + bookId + " left");
+            statusBar.warn("No copy of book " + bookId + " is available.");
+            return;
+        }
+        worker.execute(() -> {
+            String result = issue ? issue(studentId, bookId) : returnBook(studentId, bookId);
+            SwingUtilities.invokeLater(() -> addRecent(result));
+        });
+    }
+
+    // Runs on the worker; returns the line for the recent list
+    private String issue(int studentId, int bookId) {
+        DashboardActionEvent action = DashboardActionEvent.begin("Librarian", "scanIssue");
+        try {
+            // Offline the student cannot be checked; the replay checks instead
+            Long checkedAt = activeStudents.get(studentId);
+            boolean recentlyChecked = checkedAt != null && System.currentTimeMillis() - checkedAt < ACTIVE_TTL_MS;
+            if (!recentlyChecked && !OperationQueue.get().shouldQueue()) {
+                if (!LibraryService.isActiveStudent(studentId)) {
+                    statusBar.warn("Invalid student ID or student not active!");
+                    return "Refused: student " + studentId + " not active";
+                }
+                activeStudents.put(studentId, System.currentTimeMillis());
+            }
+            LocalDate dueDate = LibraryService.issueBook(studentId, bookId);
+            if (dueDate == null) {
+                statusBar.warn("Invalid book ID or book not available!");
+                return "Refused: book " + bookId + " not available";
+            }
+            action.succeeded(1);
+            statusBar.info("Book " + bookId + " issued to student " + studentId + ", due " + dueDate);
+            return "Issued book " + bookId + " to student " + studentId + ", due " + dueDate;
+        } catch (OperationQueue.QueuedException ex) {
+            statusBar.warn(ex.getMessage());
+            return "Queued (offline): issue of book " + bookId + " to student " + studentId;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            statusBar.error("Error issuing book: " + ex.getMessage());
+            return "Failed: issue of book " + bookId + " to student " + studentId;
+        } finally {
+            action.finish();
+        }
+    }
+
+    private String returnBook(int studentId, int bookId) {
+        DashboardActionEvent action = DashboardActionEvent.begin("Librarian", "scanReturn");
+        try {
+            double fine = LibraryService.returnBook(studentId, bookId);
+            if (fine < 0) {
+                statusBar.warn("No active borrowing record found for this student and book.");
+                return "Refused: student " + studentId + " has no open loan of book " + bookId;
+            }
+            action.succeeded(1);
+            String line = String.format("Returned book %d from student %d, fine Rs. %.2f", bookId, studentId, fine);
+            statusBar.info(line);
+            return line;
+        } catch (OperationQueue.QueuedException ex) {
+            statusBar.warn(ex.getMessage());
+            return "Queued (offline): return of book " + bookId + " from student " + studentId;
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            statusBar.error("Error returning book: " + ex.getMessage());
+            return "Failed: return of book " + bookId + " from student " + studentId;
+        } finally {
+            action.finish();
+        }
+    }
+
+    private void addRecent(String line) {
+        recent.add(0, LocalTime.now().withNano(0) + "  " + line);
+        if (recent.size() > RECENT_LIMIT) {
+            recent.remove(recent.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+// StatusBar.java
+import javax.swing.*;
+import java.awt.*;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+// Non-blocking feedback strip for the bottom of a dashboard, used instead of
+// a modal dialog after every desk action. Messages are queued and shown one
+// at a time; a repeat of the message already showing or last queued is
+// coalesced into a counter, and the display time shrinks while the queue is
+// backed up so the bar keeps pace with the desk. Errors are not shown one by
+// one: they are counted on a badge and listed together when it is clicked.
+//
+// Safe to call from any thread; work is moved to the EDT.
+public class StatusBar extends JPanel {
+    private static final String IDLE = "Ready";
+    private static final int SHOW_MS = 2500;
+    private static final int MIN_SHOW_MS = 400;
+    private static final int MAX_QUEUE = 50;
+
+    private final JLabel message = new JLabel(IDLE);
+    private final JButton errorBadge = new JButton();
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private final List<String> errors = new ArrayList<>();
+    private final Timer timer;
+    private Entry showing;
+
+    private static class Entry {
+        final String text;
+        final boolean warning;
+        int count = 1;
+
+        Entry(String text, boolean warning) {
+            this.text = text;
+            this.warning = warning;
+        }
+    }
+
+    public StatusBar() {
+        super(new BorderLayout(10, 0));
+        setBorder(BorderFactory.createEmptyBorder(2, 8, 2, 8));
+        add(message, BorderLayout.CENTER);
+
+        errorBadge.setVisible(false);
+        errorBadge.setForeground(Color.RED);
+        errorBadge.addActionListener(e -> showErrors());
+        add(errorBadge, BorderLayout.EAST);
+
+        timer = new Timer(SHOW_MS, e -> next());
+        timer.setRepeats(false);
+    }
+
+    public void info(String text) {
+        post(text, false);
+    }
+
+    // Something the operator has to act on, e.g. no row selected
+    public void warn(String text) {
+        post(text, true);
+    }
+
+    public void error(String text) {
+        onEdt(() -> {
+            errors.add(LocalTime.now().withNano(0) + "  " + text);
+            errorBadge.setText(errors.size() == 1 ? "1 error" : errors.size() + " errors");
+            errorBadge.setVisible(true);
+            revalidate();
+        });
+    }
+
+    private void post(String text, boolean warning) {
+        onEdt(() -> {
+            if (showing != null && showing.text.equals(text)) {
+                showing.count++;
+                render();
+                timer.restart();
+                return;
+            }
+            Entry last = queue.peekLast();
+            if (last != null && last.text.equals(text)) {
+                last.count++;
+                return;
+            }
+            if (queue.size() == MAX_QUEUE) {
+                queue.pollFirst(); // the oldest is the least useful
+            }
+            queue.addLast(new Entry(text, warning));
+            if (showing == null) {
+                next();
+            } else {
+                render(); // the "+N more" count
+            }
+        });
+    }
+
+    private void next() {
+        showing = queue.pollFirst();
+        if (showing == null) {
+            message.setText(IDLE);
+            return;
+        }
+        render();
+        timer.setInitialDelay(Math.max(MIN_SHOW_MS, SHOW_MS / (1 + queue.size())));
+        timer.restart();
+    }
+
+    private void render() {
+        String text = escape(showing.text) + (showing.count > 1 ? " (x" + showing.count + ")" : "");
+        if (!queue.isEmpty()) {
+            text += " &nbsp; +" + queue.size() + " more";
+        }
+        message.setText("<html>" + (showing.warning ? "<font color='#d08000'>" + text + "</font>" : text) + "</html>");
+    }
+
+    private void showErrors() {
+        JTextArea area = new JTextArea(String.join("\n", errors), Math.min(errors.size(), 15), 60);
+        area.setEditable(false);
+        JOptionPane.showMessageDialog(SwingUtilities.getWindowAncestor(this), new JScrollPane(area),
+            "Errors", JOptionPane.ERROR_MESSAGE);
+        errors.clear();
+        errorBadge.setVisible(false);
+        revalidate();
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    private static void onEdt(Runnable action) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            action.run();
+        } else {
+            SwingUtilities.invokeLater(action);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+// StringDictionary.java
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Maps repeated strings to small int codes so columns can hold ints.
+// Codes are dense and start at 0; null is stored as code -1.
+public class StringDictionary {
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    public synchronized int encode(String value) {
+        if (value == null) return -1;
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    public synchronized String decode(int code) {
+        return code < 0 ? null : values.get(code);
+    }
+
+    public synchronized int size() {
+        return values.size();
+    }
+
+    // Rough heap estimate: the string chars plus map and list overhead
+    public synchronized long estimateBytes() {
+        long bytes = 0;
+        for (String value : values) {
+            bytes += 40 + value.length() + 48;
+        }
+        return bytes;
+    }
+}
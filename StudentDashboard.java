@@ -1,4 +1,6 @@
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableRowSorter;
 import java.awt.*;
@@ -6,7 +8,11 @@ import java.awt.event.*;
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.prefs.*;
 import java.util.Collections;
 import java.util.stream.Collectors;
@@ -14,12 +20,14 @@ import java.util.stream.Collectors;
 public class StudentDashboard extends JFrame {
     private JTable borrowTable;
     private DefaultTableModel tableModel;
+    private TableRowSorter<DefaultTableModel> borrowSorter;
+    private final BorrowedLoanFilter borrowFilter = new BorrowedLoanFilter();
     private int studentId;
-    private JButton issueBookBtn, returnBookBtn, wishlistBtn, renewBtn;
+    private JButton issueBookBtn, returnBookBtn, wishlistBtn, renewBtn, olderHistoryBtn;
     private JTabbedPane tabbedPane;
     private JComboBox<String> filterCombo;
     private JTextField searchField;
-    private List<Integer> wishlist = new ArrayList<>();
+    private final StudentSession session;
     private boolean isDarkMode = false;
     private JToggleButton darkModeToggle;
     private static final Preferences prefs = Preferences.userNodeForPackage(StudentDashboard.class);
@@ -28,6 +36,15 @@ public class StudentDashboard extends JFrame {
     private DefaultTableModel availableBooksModel;
     private JTable wishlistTable;
     private DefaultTableModel wishlistModel;
+    private final DefaultListModel<String> issueRecommendations = new DefaultListModel<>();
+    private final DefaultListModel<String> wishlistRecommendations = new DefaultListModel<>();
+    private final DefaultListModel<String> popularNow = new DefaultListModel<>();
+    private static final int RECOMMENDATIONS = 5;
+    private static final int HISTORY_PAGE = 50;
+    private Consumer<CirculationEvent> changeListener;
+    private Consumer<ReminderScheduler.Reminder> reminderListener;
+    private Consumer<OperationQueue.Result> replayListener;
+    private final StatusBar statusBar = new StatusBar();
 
     private final Color LIGHT_BG = new Color(240, 240, 240);
     private final Color LIGHT_FG = Color.BLACK;
@@ -40,20 +57,81 @@ public class StudentDashboard extends JFrame {
 
     public StudentDashboard(int studentId) {
         this.studentId = studentId;
+        this.session = new StudentSession(studentId);
         setTitle("Student Dashboard - Library System");
         setSize(1000, 600);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setLayout(new BorderLayout(10, 10));
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                WriteBehindQueue.get().flush();
+            }
+
+            @Override
+            public void windowClosed(WindowEvent e) {
+                ChangeFeed.get().removeListener(changeListener);
+                ReminderScheduler.get().removeListener(reminderListener);
+                OperationQueue.get().removeListener(replayListener);
+            }
+        });
 
         // Load dark mode preference
         isDarkMode = prefs.getBoolean("darkMode", false);
 
-        // Initialize components first
+        // Load the session once, then build the tabs from it. The catalog comes
+        // from the last run's snapshot when there is one; the reconcile below
+        // patches it, or without a snapshot reads it in full and fills it.
+        CatalogSnapshot snapshot = CatalogSync.get().getSnapshot();
+        try {
+            session.refresh(snapshot);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error loading your library data: " + ex.getMessage());
+        }
         initializeComponents();
-
-        // Then load data
-        loadWishlist();
         refreshAllTabs();
+        if (snapshot == null) {
+            statusBar.info("Loading the catalog...");
+        }
+        CatalogSync.get().reconcile(delta -> SwingUtilities.invokeLater(() -> {
+            session.applyCatalog(delta);
+            loadAvailableBooks(availableBooksModel);
+            loadWishlistBooks(wishlistModel);
+            if (snapshot == null) {
+                statusBar.info("Catalog loaded.");
+            }
+        }), ex -> SwingUtilities.invokeLater(() -> statusBar.error("Error loading the catalog, retrying: " + ex.getMessage())));
+
+        // Changes from other desks patch the affected rows only
+        changeListener = event -> {
+            boolean current = ChangeFeed.get().isCurrent(event);
+            SwingUtilities.invokeLater(() -> applyChange(event, current));
+        };
+        ChangeFeed.get().addListener(changeListener);
+
+        // Due-date reminders for this student as they fire
+        reminderListener = reminder -> {
+            if (reminder.studentId == studentId) {
+                SwingUtilities.invokeLater(() -> statusBar.warn(reminderText(reminder) + " - see Notifications."));
+            }
+        };
+        ReminderScheduler.get().addListener(reminderListener);
+
+        // Operations this student made while offline, as they are replayed;
+        // the rows themselves arrive through ChangeFeed
+        replayListener = result -> {
+            if (result.op.studentId == studentId) {
+                SwingUtilities.invokeLater(() -> {
+                    if (result.isConflict()) {
+                        statusBar.warn(result.describe());
+                    } else {
+                        statusBar.info(result.describe());
+                    }
+                });
+            }
+        };
+        OperationQueue.get().addListener(replayListener);
 
         // Apply theme
         applyTheme();
@@ -92,13 +170,14 @@ public class StudentDashboard extends JFrame {
         // Button Panel
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 10));
         JButton refreshBtn = new JButton("Refresh");
-        refreshBtn.addActionListener(e -> refreshAllTabs());
+        refreshBtn.addActionListener(e -> reloadSession());
         
         JButton notifyBtn = new JButton("View Notifications");
         notifyBtn.addActionListener(e -> showNotifications());
         
         JButton logoutBtn = new JButton("Logout");
         logoutBtn.addActionListener(e -> {
+            WriteBehindQueue.get().flush();
             dispose();
             new LoginScreen();
         });
@@ -115,11 +194,12 @@ public class StudentDashboard extends JFrame {
 
         contentPanel.add(buttonPanel, BorderLayout.SOUTH);
         add(contentPanel, BorderLayout.CENTER);
+        add(statusBar, BorderLayout.SOUTH);
     }
 
     private void toggleDarkMode() {
         isDarkMode = darkModeToggle.isSelected();
-        prefs.putBoolean("darkMode", isDarkMode);
+        WriteBehindQueue.get().enqueuePreference(prefs, "darkMode", isDarkMode);
         applyTheme();
     }
 
@@ -161,8 +241,17 @@ public class StudentDashboard extends JFrame {
         searchField.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
         searchField.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
         searchField.setCaretColor(isDarkMode ? DARK_FG : LIGHT_FG);
-        searchField.addKeyListener(new KeyAdapter() {
-            public void keyReleased(KeyEvent e) {
+        // Re-filters on every edit, typed or pasted
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            public void insertUpdate(DocumentEvent e) {
+                filterBorrowedBooks();
+            }
+
+            public void removeUpdate(DocumentEvent e) {
+                filterBorrowedBooks();
+            }
+
+            public void changedUpdate(DocumentEvent e) {
                 filterBorrowedBooks();
             }
         });
@@ -188,6 +277,9 @@ public class StudentDashboard extends JFrame {
             }
         };
         borrowTable = new JTable(tableModel);
+        // One sorter for the table's lifetime; filterBorrowedBooks() only recompiles its filter
+        borrowSorter = new TableRowSorter<>(tableModel);
+        borrowTable.setRowSorter(borrowSorter);
         borrowTable.setRowHeight(25);
         borrowTable.getTableHeader().setFont(new Font("Arial", Font.BOLD, 12));
         borrowTable.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
@@ -209,8 +301,15 @@ public class StudentDashboard extends JFrame {
         renewBtn.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
         renewBtn.addActionListener(e -> renewSelectedBook());
 
+        // Loans older than the retention window live in the archive and are paged in on request
+        olderHistoryBtn = new JButton("Show Older History");
+        olderHistoryBtn.setBackground(isDarkMode ? DARK_COMPONENT_BG : null);
+        olderHistoryBtn.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
+        olderHistoryBtn.addActionListener(e -> loadOlderHistory());
+
         actionPanel.add(returnBookBtn);
         actionPanel.add(renewBtn);
+        actionPanel.add(olderHistoryBtn);
         panel.add(actionPanel, BorderLayout.SOUTH);
 
         return panel;
@@ -242,7 +341,7 @@ public class StudentDashboard extends JFrame {
         panel.add(searchPanel, gbc);
 
         // Table for available books
-        availableBooksModel = new DefaultTableModel(new String[]{"ID", "Title", "Author", "Genre"}, 0);
+        availableBooksModel = new DefaultTableModel(new String[]{"ID", "Title", "Author", "Genre", "Copies Available"}, 0);
         availableBooksTable = new JTable(availableBooksModel);
         TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(availableBooksModel);
         availableBooksTable.setRowSorter(sorter);
@@ -267,6 +366,19 @@ public class StudentDashboard extends JFrame {
         gbc.weighty = 1;
         panel.add(availableScrollPane, gbc);
 
+        // "Also borrowed" for the selected title, or for the student's history
+        availableBooksTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showRecommendations(issueRecommendations, availableBooksTable);
+            }
+        });
+        gbc.gridy++;
+        gbc.weighty = 0;
+        JPanel listsPanel = new JPanel(new GridLayout(1, 2, 10, 0));
+        listsPanel.add(createRecommendationPanel(issueRecommendations));
+        listsPanel.add(createPopularPanel());
+        panel.add(listsPanel, gbc);
+
         // Action buttons
         issueBookBtn = new JButton("Issue Selected Book");
         issueBookBtn.setBackground(isDarkMode ? DARK_COMPONENT_BG : null);
@@ -291,6 +403,7 @@ public class StudentDashboard extends JFrame {
         panel.add(btnPanel, gbc);
 
         loadAvailableBooks(availableBooksModel);
+        showPopular();
 
         return panel;
     }
@@ -322,66 +435,43 @@ public class StudentDashboard extends JFrame {
 
         btnPanel.add(removeWishlistBtn);
         btnPanel.add(issueWishlistBtn);
-        panel.add(btnPanel, BorderLayout.SOUTH);
+
+        wishlistTable.getSelectionModel().addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting()) {
+                showRecommendations(wishlistRecommendations, wishlistTable);
+            }
+        });
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(createRecommendationPanel(wishlistRecommendations), BorderLayout.CENTER);
+        southPanel.add(btnPanel, BorderLayout.SOUTH);
+        panel.add(southPanel, BorderLayout.SOUTH);
 
         loadWishlistBooks(wishlistModel);
 
         return panel;
     }
 
-    private void loadWishlist() {
-		wishlist.clear();
-		try (Connection conn = DBConnection.getConnection()) {
-			String query = "SELECT wishlist FROM users WHERE id=?";
-			PreparedStatement stmt = conn.prepareStatement(query);
-			stmt.setInt(1, studentId);
-			ResultSet rs = stmt.executeQuery();
-			if (rs.next()) {
-				String wishlistStr = rs.getString("wishlist");
-				if (wishlistStr != null && !wishlistStr.isEmpty()) {
-					String[] ids = wishlistStr.split(",");
-					for (String id : ids) {
-						if (!id.isEmpty()) {
-							wishlist.add(Integer.parseInt(id.trim()));
-						}
-					}
-				}
-			}
-		} catch (Exception ex) {
-			ex.printStackTrace();
-			JOptionPane.showMessageDialog(this, "Error loading wishlist: " + ex.getMessage());
-		}
-		
-		// Refresh wishlist display if the table exists
-		if (wishlistTable != null && wishlistModel != null) {
-			loadWishlistBooks(wishlistModel);
-		}
-	} 
-
     private void loadBorrowedBooks() {
-        tableModel.setRowCount(0);
-        try (Connection conn = DBConnection.getConnection()) {
-            String query = "SELECT b.id, b.title, b.author, bb.borrow_date, bb.due_date, " +
-                         "CASE WHEN bb.return_date IS NULL THEN 'Borrowed' ELSE 'Returned' END AS status, " +
-                         "IFNULL(bb.fine, 0) as fine " +
-                         "FROM books b JOIN borrowed_books bb ON b.id = bb.book_id " +
-                         "WHERE bb.student_id = ? ORDER BY bb.borrow_date DESC";
-            PreparedStatement stmt = conn.prepareStatement(query);
-            stmt.setInt(1, studentId);
-            ResultSet rs = stmt.executeQuery();
-    
-            while (rs.next()) {
-                tableModel.addRow(new Object[]{
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getDate("borrow_date"),
-                    rs.getDate("due_date"),
-                    rs.getString("status"),
-                    rs.getDouble("fine")
+        try {
+            // Indexed before the model changes, so the filter never sees a row it has not indexed
+            List<Loan> loans = session.getLoans();
+            List<Object[]> rows = new ArrayList<>(loans.size());
+            for (Loan loan : loans) {
+                rows.add(new Object[] {
+                    loan.getBookId(),
+                    loan.getTitle(),
+                    loan.getAuthor(),
+                    Date.valueOf(loan.getBorrowDate()),
+                    Date.valueOf(loan.getDueDate()),
+                    loan.getStatus(),
+                    loan.getFine()
                 });
             }
+            borrowFilter.index(loans);
+            fillRows(tableModel, rows);
             
+            olderHistoryBtn.setEnabled(session.hasOlderLoans());
+
             // Reapply dark mode for table rows after loading data (if theme is switched dynamically)
             borrowTable.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
             borrowTable.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
@@ -391,20 +481,33 @@ public class StudentDashboard extends JFrame {
         }
     }    
 	
+    private void loadOlderHistory() {
+        try {
+            int loaded = session.loadOlderLoans(HISTORY_PAGE);
+            loadBorrowedBooks();
+            filterBorrowedBooks();
+            statusBar.info(loaded == 0 ? "No older loans." : "Loaded " + loaded + " older loans.");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            statusBar.error("Error loading older history: " + ex.getMessage());
+        }
+    }
+
     private void loadAvailableBooks(DefaultTableModel model) {
-        model.setRowCount(0);
-        try (Connection conn = DBConnection.getConnection()) {
-            String query = "SELECT id, title, author, genre FROM books WHERE isAvailable=TRUE";
-            ResultSet rs = conn.createStatement().executeQuery(query);
-            while (rs.next()) {
-                model.addRow(new Object[]{
-                    rs.getInt("id"),
-                    rs.getString("title"),
-                    rs.getString("author"),
-                    rs.getString("genre")
+        try {
+            // One row per title with its live copy count
+            List<Object[]> rows = new ArrayList<>();
+            for (Book book : session.getAvailableBooks()) {
+                rows.add(new Object[] {
+                    book.getId(),
+                    book.getTitle(),
+                    book.getAuthor(),
+                    book.getGenre(),
+                    book.getAvailableCopies()
                 });
             }
-    
+            fillRows(model, rows);
+
             // Reapply dark mode for table rows after loading data (if theme is switched dynamically)
             availableBooksTable.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
             availableBooksTable.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
@@ -414,29 +517,32 @@ public class StudentDashboard extends JFrame {
         }
     }
     
+    // Makes the model hold rows, setting only the cells that differ, then
+    // fires one data change so the sorter filters and sorts once
+    private static void fillRows(DefaultTableModel model, List<Object[]> rows) {
+        model.setRowCount(rows.size());
+        for (int r = 0; r < rows.size(); r++) {
+            Object[] row = rows.get(r);
+            for (int c = 0; c < row.length; c++) {
+                if (!Objects.equals(model.getValueAt(r, c), row[c])) {
+                    model.setValueAt(row[c], r, c);
+                }
+            }
+        }
+        model.fireTableDataChanged();
+    }
+
     private void loadWishlistBooks(DefaultTableModel model) {
 		model.setRowCount(0); // Clear existing data
-		if (wishlist.isEmpty()) return;
 
-		try (Connection conn = DBConnection.getConnection()) {
-			// Create comma-separated placeholders for the SQL IN clause
-			String placeholders = String.join(",", java.util.Collections.nCopies(wishlist.size(), "?"));
-			
-			String query = "SELECT id, title, author, isAvailable FROM books WHERE id IN (" + placeholders + ")";
-			PreparedStatement stmt = conn.prepareStatement(query);
-			
-			// Set each book ID parameter
-			for (int i = 0; i < wishlist.size(); i++) {
-				stmt.setInt(i + 1, wishlist.get(i));
-			}
-			
-			ResultSet rs = stmt.executeQuery();
-			while (rs.next()) {
+		try {
+			Set<Integer> onShelf = availableWishlist();
+			for (Book book : session.getWishlistBooks()) {
 				model.addRow(new Object[]{
-					rs.getInt("id"),
-					rs.getString("title"),
-					rs.getString("author"),
-					rs.getBoolean("isAvailable") ? "Available" : "Borrowed"
+					book.getId(),
+					book.getTitle(),
+					book.getAuthor(),
+					onShelf.contains(book.getId()) ? "Available" : "Borrowed"
 				});
 			}
 			
@@ -457,191 +563,157 @@ public class StudentDashboard extends JFrame {
     private void issueBook(JTable availableBooksTable) {
         int selectedRow = availableBooksTable.getSelectedRow();
         if (selectedRow == -1) {
-            JOptionPane.showMessageDialog(this, "Please select a book to issue.");
+            statusBar.warn("Please select a book to issue.");
             return;
         }
     
         int bookId = (int) availableBooksTable.getValueAt(selectedRow, 0);
     
-        try (Connection conn = DBConnection.getConnection()) {
-            LocalDate today = LocalDate.now();
-            LocalDate dueDate = today.plusDays(14);
-    
-            // Insert the borrowed book record
-            PreparedStatement stmt = conn.prepareStatement(
-                "INSERT INTO borrowed_books (student_id, book_id, borrow_date, due_date) VALUES (?, ?, ?, ?)"
-            );
-            stmt.setInt(1, studentId);
-            stmt.setInt(2, bookId);
-            stmt.setDate(3, Date.valueOf(today));
-            stmt.setDate(4, Date.valueOf(dueDate));
-            stmt.executeUpdate();
-    
-            // Update the book status to not available
-            PreparedStatement updateBook = conn.prepareStatement("UPDATE books SET isAvailable=FALSE WHERE id=?");
-            updateBook.setInt(1, bookId);
-            updateBook.executeUpdate();
-    
-            // Remove from wishlist if it was there
-            if (wishlist.contains(bookId)) {
-                wishlist.remove(Integer.valueOf(bookId));
-                updateWishlistInDB();
+        DashboardActionEvent action = DashboardActionEvent.begin("Student", "issue");
+        try {
+            // Claim a free copy and record the loan in one transaction
+            LocalDate dueDate = session.issue(bookId);
+            if (dueDate == null) {
+                statusBar.warn("No copies of this book are currently available.");
+                refreshAllTabs();
+                return;
             }
+            action.succeeded(1);
     
             // Refresh the UI to reflect changes
             refreshAllTabs();
-            JOptionPane.showMessageDialog(this, "Book issued successfully! Due date: " + dueDate);
+            statusBar.info("Book issued, due " + dueDate);
     
             // Apply dark mode styling to the components after issuing
             availableBooksTable.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
             availableBooksTable.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
-            refreshAllTabs();
     
+        } catch (OperationQueue.QueuedException ex) {
+            // Offline: saved locally, shows up in the tabs once it is replayed
+            statusBar.warn(ex.getMessage());
         } catch (Exception ex) {
             ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error issuing book: " + ex.getMessage());
+            statusBar.error("Error issuing book: " + ex.getMessage());
+        } finally {
+            action.finish();
         }
     }    
 
     private void returnSelectedBook() {
         int selectedRow = borrowTable.getSelectedRow();
         if (selectedRow == -1) {
-            JOptionPane.showMessageDialog(this, "Please select a book to return.");
+            statusBar.warn("Please select a book to return.");
             return;
         }
+        selectedRow = borrowTable.convertRowIndexToModel(selectedRow);
     
         int bookId = (int) tableModel.getValueAt(selectedRow, 0);
         String status = (String) tableModel.getValueAt(selectedRow, 5);
     
         if ("Returned".equals(status)) {
-            JOptionPane.showMessageDialog(this, "This book is already returned.");
+            statusBar.warn("This book is already returned.");
             return;
         }
     
-        try (Connection conn = DBConnection.getConnection()) {
-            LocalDate today = LocalDate.now();
-            Date dueDate = (Date) tableModel.getValueAt(selectedRow, 4);
-            double fine = 0;
-    
-            // Calculate fine if overdue
-            if (today.isAfter(dueDate.toLocalDate())) {
-                long daysLate = today.toEpochDay() - dueDate.toLocalDate().toEpochDay();
-                fine = daysLate * 5; // Rs. 5 per day
+        DashboardActionEvent action = DashboardActionEvent.begin("Student", "return");
+        try {
+            double fine = session.returnBook(bookId);
+            if (fine < 0) {
+                statusBar.warn("No active borrowing record found for this book.");
+                refreshAllTabs();
+                return;
             }
-    
-            PreparedStatement stmt = conn.prepareStatement(
-                "UPDATE borrowed_books SET return_date=?, fine=? WHERE student_id=? AND book_id=? AND return_date IS NULL"
-            );
-            stmt.setDate(1, Date.valueOf(today));
-            stmt.setDouble(2, fine);
-            stmt.setInt(3, studentId);
-            stmt.setInt(4, bookId);
-            stmt.executeUpdate();
-    
-            PreparedStatement updateBook = conn.prepareStatement("UPDATE books SET isAvailable=TRUE WHERE id=?");
-            updateBook.setInt(1, bookId);
-            updateBook.executeUpdate();
+            action.succeeded(1);
     
             refreshAllTabs();
     
             if (fine > 0) {
-                JOptionPane.showMessageDialog(this, 
-                    String.format("Book returned successfully! Fine: Rs. %.2f", fine));
+                statusBar.info(String.format("Book returned. Fine: Rs. %.2f", fine));
             } else {
-                JOptionPane.showMessageDialog(this, "Book returned successfully with no fine.");
+                statusBar.info("Book returned with no fine.");
             }
     
-            // Apply dark mode styling to dialogs and components after return
-            JOptionPane.getRootFrame().setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
-    
-            // Optionally, update the table background and text colors
             borrowTable.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
             borrowTable.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
     
-            // Refresh the table after styling
-            refreshAllTabs();
-    
+        } catch (OperationQueue.QueuedException ex) {
+            // Offline: saved locally, shows up in the tabs once it is replayed
+            statusBar.warn(ex.getMessage());
         } catch (Exception ex) {
             ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error returning book: " + ex.getMessage());
+            statusBar.error("Error returning book: " + ex.getMessage());
+        } finally {
+            action.finish();
         }
     }    
     private void renewSelectedBook() {
         int selectedRow = borrowTable.getSelectedRow();
         if (selectedRow == -1) {
-            JOptionPane.showMessageDialog(this, "Please select a book to renew.");
+            statusBar.warn("Please select a book to renew.");
             return;
         }
+        selectedRow = borrowTable.convertRowIndexToModel(selectedRow);
     
         int bookId = (int) tableModel.getValueAt(selectedRow, 0);
         String status = (String) tableModel.getValueAt(selectedRow, 5);
     
         if ("Returned".equals(status)) {
-            JOptionPane.showMessageDialog(this, "Cannot renew a returned book.");
+            statusBar.warn("Cannot renew a returned book.");
             return;
         }
     
-        try (Connection conn = DBConnection.getConnection()) {
-            // Check if book is reserved by someone else
-            String checkQuery = "SELECT * FROM borrowed_books WHERE book_id=? AND return_date IS NULL AND student_id != ?";
-            PreparedStatement checkStmt = conn.prepareStatement(checkQuery);
-            checkStmt.setInt(1, bookId);
-            checkStmt.setInt(2, studentId);
-            ResultSet rs = checkStmt.executeQuery();
-    
-            if (rs.next()) {
-                JOptionPane.showMessageDialog(this, "Cannot renew - this book has been reserved by another student.");
+        DashboardActionEvent action = DashboardActionEvent.begin("Student", "renew");
+        try {
+            // Refused when the book is reserved by someone else
+            LocalDate newDueDate = session.renew(bookId);
+            if (newDueDate == null) {
+                statusBar.warn("Cannot renew - this book has been reserved by another student.");
                 return;
             }
-    
-            LocalDate newDueDate = LocalDate.now().plusDays(14);
-            PreparedStatement stmt = conn.prepareStatement(
-                "UPDATE borrowed_books SET due_date=? WHERE student_id=? AND book_id=? AND return_date IS NULL"
-            );
-            stmt.setDate(1, Date.valueOf(newDueDate));
-            stmt.setInt(2, studentId);
-            stmt.setInt(3, bookId);
-            stmt.executeUpdate();
+            action.succeeded(1);
     
             refreshAllTabs();
-            JOptionPane.showMessageDialog(this, "Book renewed successfully! New due date: " + newDueDate);
+            statusBar.info("Book renewed, due " + newDueDate);
     
-            // Apply dark mode styling to dialogs and components after renewal
-            JOptionPane.getRootFrame().setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
-    
-            // Optionally, update the table background and text colors
             borrowTable.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
             borrowTable.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
     
-            // Refresh the table after styling
-            refreshAllTabs();
-    
+        } catch (OperationQueue.QueuedException ex) {
+            // Offline: saved locally, shows up in the tabs once it is replayed
+            statusBar.warn(ex.getMessage());
         } catch (Exception ex) {
             ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error renewing book: " + ex.getMessage());
+            statusBar.error("Error renewing book: " + ex.getMessage());
+        } finally {
+            action.finish();
         }
     }    
 
     private void addToWishlist(JTable availableBooksTable) {
         int selectedRow = availableBooksTable.getSelectedRow();
         if (selectedRow == -1) {
-            JOptionPane.showMessageDialog(this, "Please select a book to add to wishlist.");
+            statusBar.warn("Please select a book to add to wishlist.");
             return;
         }
     
         int bookId = (int) availableBooksTable.getValueAt(selectedRow, 0);
     
-        if (wishlist.contains(bookId)) {
-            JOptionPane.showMessageDialog(this, "This book is already in your wishlist.");
+        try {
+            if (!session.addToWishlist(bookId)) {
+                statusBar.warn(session.getWishlist().contains(bookId)
+                    ? "This book is already in your wishlist."
+                    : "This book is no longer in the catalog.");
+                return;
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            statusBar.error("Error updating wishlist: " + ex.getMessage());
             return;
         }
+        loadWishlistBooks(wishlistModel);
+        statusBar.info("Book added to wishlist.");
     
-        wishlist.add(bookId);
-        updateWishlistInDB();
-        JOptionPane.showMessageDialog(this, "Book added to wishlist!");
-    
-        // Apply dark mode styling to dialog and table
-        JOptionPane.getRootFrame().setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
+        // Apply dark mode styling to the table
         availableBooksTable.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
         availableBooksTable.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
     }
@@ -649,18 +721,16 @@ public class StudentDashboard extends JFrame {
     private void removeFromWishlist(JTable wishlistTable, DefaultTableModel model) {
         int selectedRow = wishlistTable.getSelectedRow();
         if (selectedRow == -1) {
-            JOptionPane.showMessageDialog(this, "Please select a book to remove from wishlist.");
+            statusBar.warn("Please select a book to remove from wishlist.");
             return;
         }
     
         int bookId = (int) wishlistTable.getValueAt(selectedRow, 0);
-        wishlist.remove(Integer.valueOf(bookId));
-        updateWishlistInDB();
+        session.removeFromWishlist(bookId);
         model.removeRow(selectedRow);
-        JOptionPane.showMessageDialog(this, "Book removed from wishlist.");
+        statusBar.info("Book removed from wishlist.");
     
-        // Apply dark mode styling to dialog and table
-        JOptionPane.getRootFrame().setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
+        // Apply dark mode styling to the table
         wishlistTable.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
         wishlistTable.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
     }
@@ -668,124 +738,53 @@ public class StudentDashboard extends JFrame {
     private void issueFromWishlist(JTable wishlistTable) {
         int selectedRow = wishlistTable.getSelectedRow();
         if (selectedRow == -1) {
-            JOptionPane.showMessageDialog(this, "Please select a book to issue.");
+            statusBar.warn("Please select a book to issue.");
             return;
         }
     
         String status = (String) wishlistTable.getValueAt(selectedRow, 3);
         if (!"Available".equals(status)) {
-            JOptionPane.showMessageDialog(this, "This book is not currently available.");
+            statusBar.warn("This book is not currently available.");
             return;
         }
     
         int bookId = (int) wishlistTable.getValueAt(selectedRow, 0);
     
-        try (Connection conn = DBConnection.getConnection()) {
-            // Verify availability again
-            PreparedStatement checkStmt = conn.prepareStatement(
-                "SELECT isAvailable FROM books WHERE id=?"
-            );
-            checkStmt.setInt(1, bookId);
-            ResultSet rs = checkStmt.executeQuery();
-            if (rs.next() && !rs.getBoolean("isAvailable")) {
-                JOptionPane.showMessageDialog(this, "This book was just borrowed by someone else.");
+        DashboardActionEvent action = DashboardActionEvent.begin("Student", "issueFromWishlist");
+        try {
+            // Proceed with issuing - the copy counter is checked inside the transaction
+            // Also drops it from the wishlist
+            LocalDate dueDate = session.issue(bookId);
+            if (dueDate == null) {
+                statusBar.warn("This book was just borrowed by someone else.");
                 refreshAllTabs();
                 return;
             }
-    
-            // Proceed with issuing
-            LocalDate today = LocalDate.now();
-            LocalDate dueDate = today.plusDays(14);
-    
-            PreparedStatement stmt = conn.prepareStatement(
-                "INSERT INTO borrowed_books (student_id, book_id, borrow_date, due_date) VALUES (?, ?, ?, ?)"
-            );
-            stmt.setInt(1, studentId);
-            stmt.setInt(2, bookId);
-            stmt.setDate(3, Date.valueOf(today));
-            stmt.setDate(4, Date.valueOf(dueDate));
-            stmt.executeUpdate();
-    
-            PreparedStatement updateBook = conn.prepareStatement("UPDATE books SET isAvailable=FALSE WHERE id=?");
-            updateBook.setInt(1, bookId);
-            updateBook.executeUpdate();
-    
-            // Remove from wishlist
-            wishlist.remove(Integer.valueOf(bookId));
-            updateWishlistInDB();
+            action.succeeded(1);
     
             refreshAllTabs();
             tabbedPane.setSelectedIndex(0); // Switch to borrowed books tab
-            JOptionPane.showMessageDialog(this, "Book issued successfully! Due date: " + dueDate);
+            statusBar.info("Book issued, due " + dueDate);
             
-            // Apply dark mode styling to dialog and table
-            JOptionPane.getRootFrame().setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
+            // Apply dark mode styling to the table
             wishlistTable.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
             wishlistTable.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
+        } catch (OperationQueue.QueuedException ex) {
+            // Offline: saved locally, shows up in the tabs once it is replayed
+            statusBar.warn(ex.getMessage());
         } catch (Exception ex) {
             ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Error issuing book: " + ex.getMessage());
+            statusBar.error("Error issuing book: " + ex.getMessage());
+        } finally {
+            action.finish();
         }
     }    
-    private void updateWishlistInDB() {
-		try (Connection conn = DBConnection.getConnection()) {
-			// Convert wishlist to comma-separated string
-			String wishlistStr = wishlist.stream()
-				.map(String::valueOf)
-				.collect(java.util.stream.Collectors.joining(","));
-			
-			// Update database
-			String query = "UPDATE users SET wishlist=? WHERE id=?";
-			PreparedStatement stmt = conn.prepareStatement(query);
-			stmt.setString(1, wishlistStr);
-			stmt.setInt(2, studentId);
-			stmt.executeUpdate();
-			
-			// Refresh the display
-			loadWishlistBooks(wishlistModel);
-		} catch (Exception ex) {
-			ex.printStackTrace();
-			JOptionPane.showMessageDialog(this, "Error updating wishlist: " + ex.getMessage());
-		}
-	} 
-
     private void filterBorrowedBooks() {
-        String searchText = searchField.getText().toLowerCase();
         String filter = (String) filterCombo.getSelectedItem();
-        
-        // Set up row sorter for the borrowed books table
-        TableRowSorter<DefaultTableModel> sorter = new TableRowSorter<>(tableModel);
-        borrowTable.setRowSorter(sorter);
-        
-        List<RowFilter<Object, Object>> filters = new ArrayList<>();
-        
-        // Apply search filter
-        if (!searchText.isEmpty()) {
-            filters.add(RowFilter.regexFilter("(?i)" + searchText));
-        }
-        
-        // Apply status filter
-        if (!"All".equals(filter)) {
-            if ("Overdue".equals(filter)) {
-                filters.add(new RowFilter<Object, Object>() {
-                    public boolean include(Entry<? extends Object, ? extends Object> entry) {
-                        String status = (String) entry.getValue(5);
-                        Date dueDate = (Date) entry.getValue(4);
-                        return "Borrowed".equals(status) && 
-                               LocalDate.now().isAfter(dueDate.toLocalDate());
-                    }
-                });
-            } else {
-                filters.add(RowFilter.regexFilter("^" + filter + "$", 5));
-            }
-        }
-        
-        // Apply combined filters to the row sorter
-        if (!filters.isEmpty()) {
-            sorter.setRowFilter(RowFilter.andFilter(filters));
-        } else {
-            sorter.setRowFilter(null);
-        }
+        borrowFilter.compile(searchField.getText(), BorrowedLoanFilter.Status.valueOf(filter.toUpperCase()));
+
+        // Setting the filter re-runs it over the cached rows
+        borrowSorter.setRowFilter(borrowFilter.isEmpty() ? null : borrowFilter);
     
         // Dark mode styling for search field and filter combo
         if (isDarkMode) {
@@ -805,50 +804,68 @@ public class StudentDashboard extends JFrame {
         }
     }
     
+    // Wishlisted titles with a copy on the shelf: wishlist AND the shared
+    // availability bitmap, or the session's copy counts until that has loaded
+    private Set<Integer> availableWishlist() {
+        Set<Integer> onShelf = new HashSet<>();
+        if (AvailabilityIndex.get().isReady()) {
+            for (int id : AvailabilityIndex.get().availableOf(session.getWishlist())) {
+                onShelf.add(id);
+            }
+        } else {
+            for (Book book : session.getWishlistBooks()) {
+                if (book.isAvailable()) onShelf.add(book.getId());
+            }
+        }
+        return onShelf;
+    }
+
     private void showNotifications() {
         StringBuilder notifications = new StringBuilder();
-        try (Connection conn = DBConnection.getConnection()) {
+        try {
+            // Reminders queued since the last time this was opened
+            List<ReminderScheduler.Reminder> reminders = ReminderScheduler.get().pending(studentId);
+            if (!reminders.isEmpty()) {
+                notifications.append("=== Reminders ===\n");
+                for (ReminderScheduler.Reminder reminder : reminders) {
+                    notifications.append(reminderText(reminder)).append("\n");
+                }
+                notifications.append("\n");
+                ReminderScheduler.get().acknowledge(studentId);
+            }
+
             // Current borrowed books
-            String currentSql = "SELECT b.title, bb.due_date FROM books b " +
-                                 "JOIN borrowed_books bb ON b.id = bb.book_id " +
-                                 "WHERE bb.student_id = ? AND bb.return_date IS NULL";
-            PreparedStatement currentStmt = conn.prepareStatement(currentSql);
-            currentStmt.setInt(1, studentId);
-            ResultSet currentRs = currentStmt.executeQuery();
-    
-            if (!currentRs.next()) {
+            List<Loan> current = session.getLoans().stream()
+                .filter(loan -> !loan.isReturned())
+                .collect(Collectors.toList());
+    
+            if (current.isEmpty()) {
                 notifications.append("You have no currently borrowed books.\n");
             } else {
                 notifications.append("=== Currently Borrowed Books ===\n");
-                do {
-                    Date dueDate = currentRs.getDate("due_date");
-                    notifications.append("Book: ").append(currentRs.getString("title"))
+                for (Loan loan : current) {
+                    LocalDate dueDate = loan.getDueDate();
+                    notifications.append("Book: ").append(loan.getTitle())
                                  .append("\nDue Date: ").append(dueDate);
                     
-                    if (LocalDate.now().isAfter(dueDate.toLocalDate())) {
-                        long daysLate = LocalDate.now().toEpochDay() - dueDate.toLocalDate().toEpochDay();
+                    if (LocalDate.now().isAfter(dueDate)) {
+                        long daysLate = LocalDate.now().toEpochDay() - dueDate.toEpochDay();
                         notifications.append(" (OVERDUE by ").append(daysLate).append(" days)");
                     }
                     notifications.append("\n--------------------------\n");
-                } while (currentRs.next());
+                }
             }
     
             // Wishlist availability
-            if (!wishlist.isEmpty()) {
-                String placeholders = String.join(",", java.util.Collections.nCopies(wishlist.size(), "?"));
-                String wishlistSql = "SELECT id, title FROM books WHERE id IN (" + placeholders + ") AND isAvailable=TRUE";
-                PreparedStatement wishlistStmt = conn.prepareStatement(wishlistSql);
-                for (int i = 0; i < wishlist.size(); i++) {
-                    wishlistStmt.setInt(i + 1, wishlist.get(i));
-                }
-                ResultSet wishlistRs = wishlistStmt.executeQuery();
-                
-                if (wishlistRs.next()) {
-                    notifications.append("\n=== Wishlist Books Now Available ===\n");
-                    do {
-                        notifications.append("Book: ").append(wishlistRs.getString("title"))
-                                     .append("\n--------------------------\n");
-                    } while (wishlistRs.next());
+            Set<Integer> onShelf = availableWishlist();
+            List<Book> availableWishlist = session.getWishlistBooks().stream()
+                .filter(book -> onShelf.contains(book.getId()))
+                .collect(Collectors.toList());
+            if (!availableWishlist.isEmpty()) {
+                notifications.append("\n=== Wishlist Books Now Available ===\n");
+                for (Book book : availableWishlist) {
+                    notifications.append("Book: ").append(book.getTitle())
+                                 .append("\n--------------------------\n");
                 }
             }
     
@@ -867,49 +884,167 @@ public class StudentDashboard extends JFrame {
     }
     
 
-    private void refreshAllTabs() {
-        loadBorrowedBooks();
-        loadWishlist();
-        
-        // Refresh each tab's content with dark mode consideration
-        if (tabbedPane.getTabCount() > 0) {
-            Component borrowedTab = tabbedPane.getComponentAt(0);
-            if (borrowedTab instanceof JScrollPane) {
-                JTable table = (JTable) ((JScrollPane) borrowedTab).getViewport().getView();
-                ((DefaultTableModel) table.getModel()).fireTableDataChanged();
-                if (isDarkMode) {
-                    table.setBackground(DARK_TABLE_BG);
-                    table.setForeground(Color.WHITE);
+    private String reminderText(ReminderScheduler.Reminder reminder) {
+        String title = "Book #" + reminder.bookId;
+        for (Loan loan : session.getLoans()) {
+            if (loan.getBookId() == reminder.bookId) {
+                title = loan.getTitle();
+                break;
+            }
+        }
+        switch (reminder.stage) {
+            case DUE_SOON:
+                return title + " is due on " + reminder.dueDate;
+            case DUE_TODAY:
+                return title + " is due today";
+            default:
+                return title + " is overdue since " + reminder.dueDate;
+        }
+    }
+
+    private JPanel createRecommendationPanel(DefaultListModel<String> model) {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JLabel("Students who borrowed this also borrowed:"), BorderLayout.NORTH);
+        JList<String> list = new JList<>(model);
+        list.setVisibleRowCount(RECOMMENDATIONS);
+        list.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
+        list.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
+        panel.add(new JScrollPane(list), BorderLayout.CENTER);
+        return panel;
+    }
+
+    private JPanel createPopularPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JLabel("Popular now (this week):"), BorderLayout.NORTH);
+        JList<String> list = new JList<>(popularNow);
+        list.setVisibleRowCount(RECOMMENDATIONS);
+        list.setBackground(isDarkMode ? DARK_COMPONENT_BG : Color.WHITE);
+        list.setForeground(isDarkMode ? DARK_FG : LIGHT_FG);
+        panel.add(new JScrollPane(list), BorderLayout.CENTER);
+        return panel;
+    }
+
+    // This week's most borrowed titles that can be issued now, from
+    // PopularityTracker's memory - no database access
+    private void showPopular() {
+        popularNow.clear();
+        for (PopularityTracker.Entry entry : PopularityTracker.get().top(PopularityTracker.WEEK, RECOMMENDATIONS * 4)) {
+            for (Book book : session.getAvailableBooks()) {
+                if (book.getId() == entry.bookId) {
+                    popularNow.addElement(book.getTitle() + " (" + entry.loans + " loans)");
+                    break;
                 }
             }
+            if (popularNow.size() == RECOMMENDATIONS) break;
         }
-        
-        if (tabbedPane.getTabCount() > 1) {
-            Component issueTab = tabbedPane.getComponentAt(1);
-            if (issueTab instanceof JPanel) {
-                for (Component comp : ((JPanel) issueTab).getComponents()) {
-                    if (comp instanceof JScrollPane) {
-                        JTable table = (JTable) ((JScrollPane) comp).getViewport().getView();
-                        loadAvailableBooks((DefaultTableModel) table.getModel());
-                        if (isDarkMode) {
-                            table.setBackground(DARK_TABLE_BG);
-                            table.setForeground(Color.WHITE);
-                        }
-                    }
+    }
+
+    // Fills the list with titles that can be issued now. The selected row is
+    // the seed; with nothing selected the student's loans and wishlist are.
+    // Served from RecommendationEngine's memory, no database access.
+    private void showRecommendations(DefaultListModel<String> model, JTable table) {
+        List<Integer> seeds = new ArrayList<>();
+        Set<Integer> exclude = new HashSet<>(session.getWishlist());
+        for (Loan loan : session.getLoans()) {
+            exclude.add(loan.getBookId());
+        }
+        int selectedRow = table.getSelectedRow();
+        if (selectedRow != -1) {
+            seeds.add((Integer) table.getValueAt(selectedRow, 0));
+        } else {
+            seeds.addAll(exclude);
+        }
+        exclude.addAll(seeds);
+
+        int[] ids = RecommendationEngine.get().recommend(seeds, exclude, RECOMMENDATIONS * 4);
+        model.clear();
+        for (int id : ids) {
+            for (Book book : session.getAvailableBooks()) {
+                if (book.getId() == id) {
+                    model.addElement(book.getTitle() + " by " + book.getAuthor());
+                    break;
                 }
             }
+            if (model.size() == RECOMMENDATIONS) break;
         }
-        
-        if (tabbedPane.getTabCount() > 2) {
-            Component wishlistTab = tabbedPane.getComponentAt(2);
-            if (wishlistTab instanceof JScrollPane) {
-                JTable table = (JTable) ((JScrollPane) wishlistTab).getViewport().getView();
-                loadWishlistBooks((DefaultTableModel) table.getModel());
-                if (isDarkMode) {
-                    table.setBackground(DARK_TABLE_BG);
-                    table.setForeground(Color.WHITE);
+    }
+
+    private void applyChange(CirculationEvent event, boolean current) {
+        try {
+            if (session.apply(event, current)) {
+                loadBorrowedBooks();
+                loadWishlistBooks(wishlistModel);
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            statusBar.error("Error applying a change from another desk: " + ex.getMessage());
+            return;
+        }
+
+        // Catalog row: update, add or drop according to the session
+        int bookId = event.getBookId();
+        Book book = null;
+        for (Book b : session.getAvailableBooks()) {
+            if (b.getId() == bookId) book = b;
+        }
+        int row = findRow(availableBooksModel, bookId);
+        if (book == null) {
+            if (row >= 0) availableBooksModel.removeRow(row);
+        } else if (row < 0) {
+            availableBooksModel.addRow(new Object[]{
+                book.getId(), book.getTitle(), book.getAuthor(), book.getGenre(), book.getAvailableCopies()
+            });
+        } else {
+            availableBooksModel.setValueAt(book.getAvailableCopies(), row, 4);
+        }
+
+        // Wishlist row status
+        row = findRow(wishlistModel, bookId);
+        if (row >= 0) {
+            for (Book b : session.getWishlistBooks()) {
+                if (b.getId() == bookId) {
+                    wishlistModel.setValueAt(b.isAvailable() ? "Available" : "Borrowed", row, 3);
                 }
             }
         }
     }
+
+    private static int findRow(DefaultTableModel model, int bookId) {
+        for (int row = 0; row < model.getRowCount(); row++) {
+            if ((int) model.getValueAt(row, 0) == bookId) return row;
+        }
+        return -1;
+    }
+
+    // Re-reads the session from the database (Refresh button)
+    private void reloadSession() {
+        DashboardActionEvent action = DashboardActionEvent.begin("Student", "refresh");
+        try {
+            session.refresh();
+            action.succeeded(session.getLoans().size() + session.getAvailableBooks().size());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            JOptionPane.showMessageDialog(this, "Error refreshing: " + ex.getMessage());
+        } finally {
+            action.finish();
+        }
+        refreshAllTabs();
+    }
+
+    // Redraws every tab from the session cache - no database access
+    private void refreshAllTabs() {
+        loadBorrowedBooks();
+        loadAvailableBooks(availableBooksModel);
+        loadWishlistBooks(wishlistModel);
+        showRecommendations(issueRecommendations, availableBooksTable);
+        showRecommendations(wishlistRecommendations, wishlistTable);
+        showPopular();
+        
+        if (isDarkMode) {
+            for (JTable table : new JTable[]{borrowTable, availableBooksTable, wishlistTable}) {
+                table.setBackground(DARK_TABLE_BG);
+                table.setForeground(Color.WHITE);
+            }
+        }
+    }
 }
\ No newline at end of file
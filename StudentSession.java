@@ -0,0 +1,351 @@
+// StudentSession.java
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Read model for one StudentDashboard session: the student's loans, wishlist,
+// the wishlisted titles and the available catalog. It is loaded once by
+// refresh(); after that each write goes to the database and then patches the
+// cached lists in place, so rendering a tab costs no queries. When a write
+// shows the cache was behind the database (the copy was gone, the loan was
+// already closed) the affected part is reloaded. Changes made at other desks
+// arrive through apply(), fed from ChangeFeed.
+//
+// Not thread-safe; used from the EDT.
+public class StudentSession {
+    private final int studentId;
+    private final List<Loan> loans = new ArrayList<>();        // newest first
+    private final List<Integer> wishlist = new ArrayList<>();
+    private final List<Book> wishlistBooks = new ArrayList<>();
+    private final List<Book> availableBooks = new ArrayList<>();
+    private LibraryService.LoanPage archivePage; // last archived page appended to loans
+    private boolean archiveDone = true;          // until reloadLoans() has looked
+
+    public StudentSession(int studentId) {
+        this.studentId = studentId;
+    }
+
+    // Reloads everything; used on startup and for the explicit Refresh
+    public void refresh() throws SQLException {
+        reloadLoans();
+        reloadWishlist();
+        reloadCatalog();
+    }
+
+    // Startup: only the student's own rows are queried. The catalog starts
+    // from the local snapshot, or empty when there is none, and applyCatalog()
+    // brings it up to date from CatalogSync's reconcile. It is filled first so
+    // browse still works when the database is unreachable and the queries
+    // below fail.
+    public void refresh(CatalogSnapshot snapshot) throws SQLException {
+        availableBooks.clear();
+        if (snapshot != null) {
+            availableBooks.addAll(snapshot.availableBooks());
+        }
+        reloadLoans();
+        reloadWishlist();
+    }
+
+    private void reloadLoans() throws SQLException {
+        archiveDone = true;
+        loans.clear();
+        loans.addAll(LibraryService.getLoans(studentId));
+        archivePage = null;
+        archiveDone = !LibraryService.hasArchivedLoans(studentId);
+    }
+
+    // Appends the next page of archived history to the loans, returns how many
+    public int loadOlderLoans(int pageSize) throws SQLException {
+        if (archiveDone) {
+            return 0;
+        }
+        LibraryService.LoanPage page = LibraryService.getArchivedLoans(studentId, archivePage, pageSize);
+        loans.addAll(page.loans);
+        archivePage = page;
+        archiveDone = !page.more;
+        return page.loans.size();
+    }
+
+    public boolean hasOlderLoans() {
+        return !archiveDone;
+    }
+
+    private void reloadWishlist() throws SQLException {
+        wishlist.clear();
+        wishlist.addAll(LibraryService.getWishlist(studentId));
+        wishlistBooks.clear();
+        wishlistBooks.addAll(LibraryService.getBooks(wishlist));
+    }
+
+    private void reloadCatalog() throws SQLException {
+        availableBooks.clear();
+        availableBooks.addAll(LibraryService.getAvailableBooks());
+    }
+
+    public List<Loan> getLoans() {
+        return Collections.unmodifiableList(loans);
+    }
+
+    public List<Integer> getWishlist() {
+        return Collections.unmodifiableList(wishlist);
+    }
+
+    public List<Book> getWishlistBooks() {
+        return Collections.unmodifiableList(wishlistBooks);
+    }
+
+    public List<Book> getAvailableBooks() {
+        return Collections.unmodifiableList(availableBooks);
+    }
+
+    // ---- Writes ----
+
+    // Returns the due date, or null when no copy was left
+    public LocalDate issue(int bookId) throws SQLException {
+        LocalDate dueDate = LibraryService.issueBook(studentId, bookId);
+        if (dueDate == null) {
+            // Someone else took the last copy; our availability was stale
+            reloadCatalog();
+            wishlistBooks.clear();
+            wishlistBooks.addAll(LibraryService.getBooks(wishlist));
+            return null;
+        }
+
+        Book book = findBook(bookId);
+        if (book == null) {
+            List<Book> fetched = LibraryService.getBooks(Collections.singletonList(bookId));
+            book = fetched.isEmpty() ? null : fetched.get(0);
+        }
+        if (book != null) {
+            loans.add(0, new Loan(bookId, book.getTitle(), book.getAuthor(), LocalDate.now(), dueDate, null, 0));
+            updateCopies(book, book.getAvailableCopies() - 1);
+        } else {
+            // The title was deleted meanwhile; the loan has committed, so read the loans back
+            reloadLoans();
+        }
+
+        // The service also dropped it from the stored wishlist
+        wishlist.remove(Integer.valueOf(bookId));
+        wishlistBooks.removeIf(b -> b.getId() == bookId);
+        return dueDate;
+    }
+
+    // Returns the fine charged, or -1 when there was no open loan
+    public double returnBook(int bookId) throws SQLException {
+        double fine = LibraryService.returnBook(studentId, bookId);
+        if (fine < 0) {
+            reloadLoans();
+            return fine;
+        }
+
+        for (int i = 0; i < loans.size(); i++) {
+            Loan loan = loans.get(i);
+            if (loan.getBookId() == bookId && !loan.isReturned()) {
+                loans.set(i, loan.returned(LocalDate.now(), fine));
+                break;
+            }
+        }
+
+        Book book = findBook(bookId);
+        if (book != null) {
+            updateCopies(book, book.getAvailableCopies() + 1);
+        } else {
+            // Title was not on the shelf before, fetch its current row
+            List<Book> fetched = LibraryService.getBooks(Collections.singletonList(bookId));
+            if (!fetched.isEmpty()) {
+                updateCopies(fetched.get(0), fetched.get(0).getAvailableCopies());
+            }
+        }
+        return fine;
+    }
+
+    // Returns the new due date, or null when the loan cannot be renewed
+    public LocalDate renew(int bookId) throws SQLException {
+        LocalDate newDueDate = LibraryService.renewBook(studentId, bookId);
+        if (newDueDate == null) {
+            return null;
+        }
+        for (int i = 0; i < loans.size(); i++) {
+            Loan loan = loans.get(i);
+            if (loan.getBookId() == bookId && !loan.isReturned()) {
+                loans.set(i, loan.withDueDate(newDueDate));
+                break;
+            }
+        }
+        return newDueDate;
+    }
+
+    // Returns false when the book is already on the wishlist or no longer in the catalog
+    public boolean addToWishlist(int bookId) throws SQLException {
+        if (wishlist.contains(bookId)) {
+            return false;
+        }
+        Book book = findBook(bookId);
+        if (book == null) {
+            List<Book> fetched = LibraryService.getBooks(Collections.singletonList(bookId));
+            if (fetched.isEmpty()) {
+                return false;
+            }
+            book = fetched.get(0);
+        }
+
+        wishlist.add(bookId);
+        LibraryService.queueWishlistAdd(studentId, bookId);
+        wishlistBooks.add(book);
+        return true;
+    }
+
+    public void removeFromWishlist(int bookId) {
+        wishlist.remove(Integer.valueOf(bookId));
+        wishlistBooks.removeIf(b -> b.getId() == bookId);
+        LibraryService.queueWishlistRemove(studentId, bookId);
+    }
+
+    // Applies a change from this or another desk. The copy counters are taken
+    // only when current (no later event for the title was seen). Loan changes
+    // are applied only when the cached loans do not already reflect them, so
+    // echoes of our own writes are no-ops. Returns true when the student's
+    // loans changed.
+    public boolean apply(CirculationEvent event, boolean current) throws SQLException {
+        int bookId = event.getBookId();
+        if (event.getType() == CirculationEvent.Type.DELETE_TITLE) {
+            availableBooks.removeIf(b -> b.getId() == bookId);
+            wishlistBooks.removeIf(b -> b.getId() == bookId);
+            return false;
+        }
+
+        Book book = findBook(bookId);
+        if (current) {
+            if (book == null && event.getAvailableCopies() > 0) {
+                List<Book> fetched = LibraryService.getBooks(Collections.singletonList(bookId));
+                book = fetched.isEmpty() ? null : fetched.get(0);
+            }
+            if (book != null) {
+                updateCopies(book, event.getAvailableCopies());
+            }
+        }
+        if (event.getStudentId() != studentId) {
+            return false;
+        }
+
+        int open = -1;
+        for (int i = 0; i < loans.size(); i++) {
+            if (loans.get(i).getBookId() == bookId && !loans.get(i).isReturned()) {
+                open = i;
+                break;
+            }
+        }
+        switch (event.getType()) {
+            case ISSUE:
+                if (open >= 0) return false;
+                if (book == null) {
+                    List<Book> fetched = LibraryService.getBooks(Collections.singletonList(bookId));
+                    if (fetched.isEmpty()) return false;
+                    book = fetched.get(0);
+                }
+                loans.add(0, new Loan(bookId, book.getTitle(), book.getAuthor(), LocalDate.now(), event.getDueDate(), null, 0));
+                wishlist.remove(Integer.valueOf(bookId));
+                wishlistBooks.removeIf(b -> b.getId() == bookId);
+                return true;
+            case RETURN:
+                if (open < 0) return false;
+                loans.set(open, loans.get(open).returned(LocalDate.now(), event.getFine()));
+                return true;
+            case RENEW:
+                if (open < 0 || loans.get(open).getDueDate().equals(event.getDueDate())) return false;
+                loans.set(open, loans.get(open).withDueDate(event.getDueDate()));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    // Applies what changed in the catalog since the snapshot refresh() started
+    // from, or the whole catalog when it was read in full
+    public void applyCatalog(CatalogSync.Delta delta) {
+        if (delta.all != null) {
+            // Titles the change feed has already moved past the read keep their cached copy
+            Map<Integer, Book> cached = new HashMap<>();
+            for (Book book : availableBooks) {
+                cached.put(book.getId(), book);
+            }
+            availableBooks.clear();
+            for (Book book : delta.all) {
+                Book latest = delta.isCurrent(book) ? book : cached.get(book.getId());
+                if (latest != null && latest.isAvailable()) availableBooks.add(latest);
+            }
+        }
+        Map<Integer, Book> changed = new HashMap<>();
+        for (Book book : delta.changed) {
+            if (delta.isCurrent(book)) changed.put(book.getId(), book);
+        }
+        if (changed.isEmpty() && delta.deleted.isEmpty()) {
+            return;
+        }
+
+        // One pass over the catalog rather than a lookup per changed title
+        List<Book> kept = new ArrayList<>(availableBooks.size() + changed.size());
+        Set<Integer> listed = new HashSet<>();
+        for (Book book : availableBooks) {
+            if (delta.deleted.contains(book.getId())) continue;
+            Book update = changed.get(book.getId());
+            if (update == null) {
+                kept.add(book);
+            } else {
+                listed.add(book.getId());
+                if (update.isAvailable()) kept.add(update);
+            }
+        }
+        for (Book update : changed.values()) {
+            if (!listed.contains(update.getId()) && update.isAvailable()) kept.add(update);
+        }
+        availableBooks.clear();
+        availableBooks.addAll(kept);
+
+        wishlistBooks.removeIf(b -> delta.deleted.contains(b.getId()));
+        wishlistBooks.replaceAll(b -> changed.getOrDefault(b.getId(), b));
+    }
+
+    // ---- Helpers ----
+
+    private Book findBook(int bookId) {
+        for (Book book : availableBooks) {
+            if (book.getId() == bookId) return book;
+        }
+        for (Book book : wishlistBooks) {
+            if (book.getId() == bookId) return book;
+        }
+        return null;
+    }
+
+    // Applies a new copy count to the catalog and wishlist views of a title
+    private void updateCopies(Book book, int copies) {
+        Book updated = book.withAvailableCopies(copies);
+        boolean listed = false;
+        for (int i = 0; i < availableBooks.size(); i++) {
+            if (availableBooks.get(i).getId() == book.getId()) {
+                listed = true;
+                if (updated.isAvailable()) {
+                    availableBooks.set(i, updated);
+                } else {
+                    availableBooks.remove(i);
+                }
+                break;
+            }
+        }
+        if (!listed && updated.isAvailable()) {
+            availableBooks.add(updated);
+        }
+        for (int i = 0; i < wishlistBooks.size(); i++) {
+            if (wishlistBooks.get(i).getId() == book.getId()) {
+                wishlistBooks.set(i, updated);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+// TableAllocationBenchmark.java
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import javax.swing.table.DefaultTableModel;
+
+// Compares the librarian catalog table filled the old way (a Book per row, then
+// DefaultTableModel.addRow with an Object[] of boxed cells) against
+// ColumnarTableModel.load(). Reports bytes allocated by the loading thread and
+// heap still held by the model after a GC. The "read only" line is the cost of
+// walking the ResultSet itself, common to both.
+//
+// By default the catalog is synthetic (--rows titles, --authors distinct
+// authors) served by an in-memory ResultSet that makes a new String per
+// getString call like a driver does. With --db the books table is read instead.
+//
+// Usage:
+//   java TableAllocationBenchmark [--rows 200000] [--authors 5000] [--rounds 5] [--db]
+public class TableAllocationBenchmark {
+    private static final String[] LABELS = {"id", "title", "author", "available_copies", "total_copies"};
+    private static final String QUERY = "SELECT id, title, author, available_copies, total_copies FROM books ORDER BY title";
+
+    private final int rows;
+    private final int authors;
+    private final boolean fromDb;
+    private Object[][] data;
+
+    private TableAllocationBenchmark(Map<String, String> options) {
+        rows = Integer.parseInt(options.getOrDefault("rows", "200000"));
+        authors = Integer.parseInt(options.getOrDefault("authors", "5000"));
+        fromDb = options.containsKey("db");
+    }
+
+    private interface Loader {
+        Object load(ResultSet rs) throws SQLException;
+    }
+
+    private void run(int rounds) throws Exception {
+        if (!fromDb) {
+            Random random = new Random(42);
+            data = new Object[rows][];
+            for (int i = 0; i < rows; i++) {
+                int total = 1 + random.nextInt(5);
+                data[i] = new Object[]{i + 1, "Title " + i, "Author " + random.nextInt(authors), random.nextInt(total + 1), total};
+            }
+        }
+        System.out.printf("%s, %d rounds%n", fromDb ? "books table" : rows + " synthetic titles, " + authors + " authors", rounds);
+        for (int round = 1; round <= rounds; round++) {
+            measure("read only ", TableAllocationBenchmark::readOnly);
+            measure("addRow    ", TableAllocationBenchmark::loadRows);
+            measure("columnar  ", TableAllocationBenchmark::loadColumns);
+        }
+    }
+
+    private static Object readOnly(ResultSet rs) throws SQLException {
+        long checksum = 0;
+        while (rs.next()) {
+            checksum += rs.getInt("id") + rs.getString("title").length() + rs.getString("author").length()
+                + rs.getInt("available_copies") + rs.getInt("total_copies");
+        }
+        return checksum;
+    }
+
+    // The LibrarianDashboard path before ColumnarTableModel
+    private static Object loadRows(ResultSet rs) throws SQLException {
+        List<Book> books = new ArrayList<>();
+        while (rs.next()) {
+            books.add(new Book(rs.getInt("id"), rs.getString("title"), rs.getString("author"), null,
+                rs.getInt("available_copies"), rs.getInt("total_copies")));
+        }
+        DefaultTableModel model = new DefaultTableModel(new String[]{"ID", "Title", "Author", "Available / Total"}, 0);
+        for (Book book : books) {
+            model.addRow(new Object[]{
+                book.getId(),
+                book.getTitle(),
+                book.getAuthor(),
+                book.getAvailableCopies() + " / " + book.getTotalCopies()
+            });
+        }
+        return model;
+    }
+
+    private static Object loadColumns(ResultSet rs) throws SQLException {
+        ColumnarTableModel model = new ColumnarTableModel(
+            new String[]{"ID", "Title", "Author", "Available", "Total"},
+            new ColumnarTableModel.Type[]{ColumnarTableModel.Type.INT, ColumnarTableModel.Type.STRING,
+                ColumnarTableModel.Type.DICTIONARY, ColumnarTableModel.Type.INT, ColumnarTableModel.Type.INT});
+        model.load(rs, LABELS);
+        return model;
+    }
+
+    private void measure(String name, Loader loader) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long heapBefore = usedHeap();
+
+        Object model;
+        long allocatedBefore = threads.getThreadAllocatedBytes(tid);
+        long start = System.nanoTime();
+        if (fromDb) {
+            try (Connection conn = DBConnection.getReadConnection(AdmissionController.OpClass.BATCH)) {
+                Statement stmt = conn.createStatement();
+                stmt.setFetchSize(1000);
+                model = loader.load(stmt.executeQuery(QUERY));
+            }
+        } else {
+            model = loader.load(resultSet());
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long allocated = threads.getThreadAllocatedBytes(tid) - allocatedBefore;
+        long retained = usedHeap() - heapBefore;
+
+        System.out.printf("%s %6d ms  allocated %8.1f MB  retained %7.1f MB%n", name, millis,
+            allocated / 1e6, retained / 1e6);
+        if (model == null) System.out.println(); // keeps model reachable until after usedHeap()
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // Forward-only ResultSet over data with the calls the loaders use
+    private ResultSet resultSet() {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < LABELS.length; i++) {
+            index.put(LABELS[i], i + 1);
+        }
+        int[] cursor = {-1};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        return ++cursor[0] < data.length;
+                    case "findColumn":
+                        return index.get((String) args[0]);
+                    case "getInt":
+                    case "getString":
+                        int column = args[0] instanceof String ? index.get((String) args[0]) : (Integer) args[0];
+                        Object value = data[cursor[0]][column - 1];
+                        return value instanceof String ? new String((String) value) : value;
+                    case "close":
+                        return null;
+                    default:
+                        throw new SQLFeatureNotSupportedException(method.getName());
+                }
+            });
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) continue;
+            String key = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(key, args[++i]);
+            } else {
+                options.put(key, "true");
+            }
+        }
+        new TableAllocationBenchmark(options).run(Integer.parseInt(options.getOrDefault("rounds", "5")));
+        System.exit(0);
+    }
+}
@@ -0,0 +1,134 @@
+// TimingWheel.java
+import java.util.function.Consumer;
+
+// Hierarchical hashed timing wheel: LEVELS wheels of 64 slots, each slot a
+// doubly-linked list of timers. Level 0 slots are one tick wide, level 1
+// slots 64 ticks, and so on, so four levels span 64^4 ticks (about 32 years
+// at one-minute ticks). schedule() and cancel() are O(1). When the level 0
+// index wraps, the next level's current slot is re-hashed one level down
+// (cascaded), as in the Linux kernel's timer wheel. Deadlines beyond the
+// span are parked in the farthest slot and re-hashed when it cascades.
+//
+// Not thread-safe; ReminderScheduler guards its instance.
+public class TimingWheel<T> {
+    private static final int BITS = 6;
+    private static final int SLOTS = 1 << BITS;
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    public static final class Timer<T> {
+        private final T payload;
+        private final long deadlineTick;
+        private Timer<T> prev, next;
+
+        private Timer(T payload, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+
+        public boolean isScheduled() {
+            return prev != null;
+        }
+    }
+
+    private final long tickMillis;
+    private final Timer<T>[][] heads; // sentinel of each slot's circular list
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        heads = new Timer[LEVELS][SLOTS];
+        for (Timer<T>[] level : heads) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                Timer<T> head = new Timer<>(null, 0);
+                head.prev = head;
+                head.next = head;
+                level[slot] = head;
+            }
+        }
+    }
+
+    // Runs payload at the first advance() past deadlineMillis
+    public Timer<T> schedule(long deadlineMillis, T payload) {
+        Timer<T> timer = new Timer<>(payload, Math.floorDiv(deadlineMillis, tickMillis));
+        insert(timer, currentTick + 1);
+        size++;
+        return timer;
+    }
+
+    public void cancel(Timer<T> timer) {
+        if (timer.isScheduled()) {
+            unlink(timer);
+            size--;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Fires every timer due up to nowMillis, in deadline order
+    public void advance(long nowMillis, Consumer<T> expired) {
+        long target = nowMillis / tickMillis;
+        while (currentTick < target) {
+            currentTick++;
+            for (int level = 1; level < LEVELS; level++) {
+                if (((currentTick >>> (BITS * (level - 1))) & MASK) != 0) break;
+                cascade(level, (int) ((currentTick >>> (BITS * level)) & MASK));
+            }
+            Timer<T> head = heads[0][(int) (currentTick & MASK)];
+            while (head.next != head) {
+                Timer<T> timer = head.next;
+                unlink(timer);
+                if (timer.deadlineTick <= currentTick) {
+                    size--;
+                    expired.accept(timer.payload);
+                } else {
+                    insert(timer, currentTick + 1);
+                }
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        Timer<T> head = heads[level][slot];
+        while (head.next != head) {
+            Timer<T> timer = head.next;
+            unlink(timer);
+            insert(timer, currentTick);
+        }
+    }
+
+    // earliest is the first tick whose level 0 slot has not been processed yet
+    private void insert(Timer<T> timer, long earliest) {
+        long expires = Math.max(timer.deadlineTick, earliest);
+        long delta = expires - currentTick;
+        if (delta >= 1L << (BITS * LEVELS)) {
+            expires = currentTick + (1L << (BITS * LEVELS)) - 1;
+            delta = expires - currentTick;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        Timer<T> head = heads[level][(int) ((expires >>> (BITS * level)) & MASK)];
+        timer.prev = head.prev;
+        timer.next = head;
+        head.prev.next = timer;
+        head.prev = timer;
+    }
+
+    private static <T> void unlink(Timer<T> timer) {
+        timer.prev.next = timer.next;
+        timer.next.prev = timer.prev;
+        timer.prev = null;
+        timer.next = null;
+    }
+}
@@ -0,0 +1,120 @@
+// TimingWheelCheck.java
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Randomized check of TimingWheel against the obvious model: a timer fires at
+// the first advance() whose target tick reaches its deadline tick (or the tick
+// after the one it was scheduled in, for a deadline already past). Firing
+// earlier is early, later is late. Cancelled timers never fire, every other
+// timer fires exactly once, and each advance() fires in deadline order.
+// Deadlines reach past the wheel's span so parked timers are covered too.
+// Needs nothing but the class itself; exits 1 on any violation.
+//
+// Usage:
+//   java TimingWheelCheck [--timers 200000] [--seed 1]
+public class TimingWheelCheck {
+    private static final long SPAN_TICKS = 1L << 24; // 64^4
+
+    private static class Expected {
+        final long dueTick;   // the tick of the first advance() allowed to fire it
+        final boolean cancelled;
+        int fired;
+
+        Expected(long dueTick, boolean cancelled) {
+            this.dueTick = dueTick;
+            this.cancelled = cancelled;
+        }
+    }
+
+    public static void main(String[] args) {
+        int timers = 200_000;
+        long seed = 1;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--timers")) timers = Integer.parseInt(args[++i]);
+            if (args[i].equals("--seed")) seed = Long.parseLong(args[++i]);
+        }
+        Random random = new Random(seed);
+        long tickMillis = 1000;
+        long now = 1_700_000_000_000L;
+        TimingWheel<Integer> wheel = new TimingWheel<>(tickMillis, now);
+        Map<Integer, Expected> expected = new HashMap<>();
+        List<TimingWheel.Timer<Integer>> handles = new ArrayList<>();
+        List<String> violations = new ArrayList<>();
+        long[] lastTarget = { now / tickMillis };
+        long endTick = now / tickMillis + SPAN_TICKS + SPAN_TICKS / 4;
+        int id = 0;
+        long checkedFires = 0;
+
+        while (lastTarget[0] < endTick) {
+            // Schedule a batch around the current time: some past, most within a
+            // few levels, a few beyond the span
+            long currentTick = lastTarget[0];
+            for (int i = 0; i < timers / 200 && id < timers; i++, id++) {
+                long deadlineTick;
+                int kind = random.nextInt(100);
+                if (kind < 5) {
+                    deadlineTick = currentTick - random.nextInt(100);
+                } else if (kind < 95) {
+                    deadlineTick = currentTick + (long) Math.pow(2, random.nextDouble() * 22);
+                } else {
+                    deadlineTick = currentTick + SPAN_TICKS + random.nextInt((int) (SPAN_TICKS / 8));
+                }
+                long deadline = deadlineTick * tickMillis + random.nextInt((int) tickMillis);
+                handles.add(wheel.schedule(deadline, id));
+                expected.put(id, new Expected(Math.max(deadlineTick, currentTick + 1), false));
+            }
+            // Cancel a few live timers
+            for (int i = 0; i < 20 && !handles.isEmpty(); i++) {
+                TimingWheel.Timer<Integer> handle = handles.get(random.nextInt(handles.size()));
+                if (handle.isScheduled()) {
+                    wheel.cancel(handle);
+                    expected.put(handle.getPayload(), new Expected(0, true));
+                }
+            }
+
+            long previous = lastTarget[0];
+            long target = previous + 1 + (random.nextInt(10) == 0 ? random.nextInt(200_000) : random.nextInt(500));
+            long[] lastFired = { Long.MIN_VALUE };
+            wheel.advance(target * tickMillis + random.nextInt((int) tickMillis), payload -> {
+                Expected e = expected.get(payload);
+                e.fired++;
+                if (e.cancelled) {
+                    violations.add("timer " + payload + " fired after cancel");
+                } else if (e.fired > 1) {
+                    violations.add("timer " + payload + " fired " + e.fired + " times");
+                } else if (e.dueTick > target) {
+                    violations.add("timer " + payload + " due at tick " + e.dueTick + " fired early at " + target);
+                } else if (e.dueTick <= previous) {
+                    violations.add("timer " + payload + " due at tick " + e.dueTick + " fired late at " + target);
+                }
+                if (e.dueTick < lastFired[0]) {
+                    violations.add("timer " + payload + " fired out of deadline order");
+                }
+                lastFired[0] = Math.max(lastFired[0], e.dueTick);
+            });
+            lastTarget[0] = target;
+            if (violations.size() > 20) break;
+        }
+
+        for (Map.Entry<Integer, Expected> entry : expected.entrySet()) {
+            Expected e = entry.getValue();
+            if (!e.cancelled && e.dueTick <= lastTarget[0]) {
+                checkedFires++;
+                if (e.fired == 0) violations.add("timer " + entry.getKey() + " due at tick " + e.dueTick + " never fired");
+            }
+        }
+        long pending = expected.values().stream().filter(e -> !e.cancelled && e.dueTick > lastTarget[0]).count();
+        if (wheel.size() != pending) {
+            violations.add("size() is " + wheel.size() + " but " + pending + " timers are still due");
+        }
+
+        violations.stream().limit(20).forEach(v -> System.out.println("VIOLATION: " + v));
+        System.out.printf("%d timers, %d checked fires, %d cancelled, %d still pending%n", id, checkedFires,
+            expected.values().stream().filter(e -> e.cancelled).count(), pending);
+        System.out.println(violations.isEmpty() ? "PASS" : "FAIL (" + violations.size() + " violations)");
+        System.exit(violations.isEmpty() ? 0 : 1);
+    }
+}
@@ -38,8 +38,9 @@ public abstract class User {
     // Add overloaded method for dark mode support
     public void openDashboard(boolean darkMode) {
         this.darkMode = darkMode;
-        // Save preference
-        prefs.putBoolean("darkMode", darkMode);
+        // Save preference - flushed now because the dashboard reads it back
+        WriteBehindQueue.get().enqueuePreference(prefs, "darkMode", darkMode);
+        WriteBehindQueue.get().flush();
         
         // Call the original method for backward compatibility
         openDashboard();
@@ -54,7 +55,7 @@ public abstract class User {
     public void setDarkMode(boolean darkMode) {
         this.darkMode = darkMode;
         // Save preference
-        prefs.putBoolean("darkMode", darkMode);
+        WriteBehindQueue.get().enqueuePreference(prefs, "darkMode", darkMode);
     }
     
     // Utility method to apply theme to any container
@@ -0,0 +1,261 @@
+// WriteBehindQueue.java
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.prefs.Preferences;
+
+// Deferred writes for updates that don't need to be durable before the UI moves
+// on (wishlist edits, preferences). Writes are keyed; a newer write for the same
+// key replaces the pending one. A background thread flushes everything at a
+// fixed interval, SQL writes grouped into JDBC batches in one transaction.
+// Callers flush explicitly on logout and window close; a shutdown hook covers
+// EXIT_ON_CLOSE.
+//
+// Writes run one batch at a time under writeLock, so flush(key) waits for a
+// batch already taken off the map: a read that follows sees the write, and an
+// older batch can never commit after a newer write of the same key. A failed
+// write is put back unless a newer one replaced it. Connection and other
+// transient failures are retried indefinitely; a write the database rejects
+// outright is dropped after MAX_ATTEMPTS.
+public class WriteBehindQueue {
+    private static final long FLUSH_INTERVAL_MS = Long.getLong("library.writeBehind.intervalMs", 2000);
+    private static final int MAX_ATTEMPTS = Integer.getInteger("library.writeBehind.maxAttempts", 3);
+    private static final WriteBehindQueue instance = new WriteBehindQueue(FLUSH_INTERVAL_MS);
+
+    private final LinkedHashMap<String, Object> pending = new LinkedHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final Object writeLock = new Object();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long lastFlushMillis;
+
+    private static class SqlWrite {
+        final String sql;
+        final Object[] params;
+        int attempts;     // rejected by the database (not counting connection failures)
+
+        SqlWrite(String sql, Object[] params) {
+            this.sql = sql;
+            this.params = params;
+        }
+    }
+
+    private WriteBehindQueue(long intervalMillis) {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "write-behind-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "write-behind-shutdown"));
+    }
+
+    public static WriteBehindQueue get() {
+        return instance;
+    }
+
+    // Queues a single-statement update; replaces any pending write for the key
+    public void enqueueSql(String key, String sql, Object... params) {
+        put(key, new SqlWrite(sql, params));
+    }
+
+    public void enqueuePreference(Preferences node, String key, boolean value) {
+        put("pref:" + node.absolutePath() + "/" + key, (Runnable) () -> node.putBoolean(key, value));
+    }
+
+    private synchronized void put(String key, Object write) {
+        enqueued.incrementAndGet();
+        if (pending.remove(key) != null) {
+            coalesced.incrementAndGet();
+        }
+        pending.put(key, write);
+    }
+
+    public synchronized boolean isPending(String key) {
+        return pending.containsKey(key);
+    }
+
+    // Writes one key now, so a read that follows sees it
+    public void flush(String key) {
+        synchronized (writeLock) {
+            Object write;
+            synchronized (this) {
+                write = pending.remove(key);
+            }
+            if (write != null) {
+                Map<String, Object> single = new LinkedHashMap<>();
+                single.put(key, write);
+                write(single);
+            }
+        }
+    }
+
+    // Writes every key that starts with prefix (one student's edits, say)
+    public void flushPrefix(String prefix) {
+        synchronized (writeLock) {
+            Map<String, Object> batch = new LinkedHashMap<>();
+            synchronized (this) {
+                Iterator<Map.Entry<String, Object>> it = pending.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, Object> entry = it.next();
+                    if (entry.getKey().startsWith(prefix)) {
+                        batch.put(entry.getKey(), entry.getValue());
+                        it.remove();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        }
+    }
+
+    // Writes everything that is pending
+    public void flush() {
+        synchronized (writeLock) {
+            Map<String, Object> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) return;
+                batch = new LinkedHashMap<>(pending);
+                pending.clear();
+            }
+            write(batch);
+        }
+    }
+
+    private void write(Map<String, Object> batch) {
+        long start = System.nanoTime();
+
+        Map<String, List<Map.Entry<String, SqlWrite>>> bySql = new LinkedHashMap<>();
+        List<Runnable> others = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : batch.entrySet()) {
+            if (entry.getValue() instanceof SqlWrite) {
+                SqlWrite write = (SqlWrite) entry.getValue();
+                bySql.computeIfAbsent(write.sql, k -> new ArrayList<>())
+                     .add(Map.entry(entry.getKey(), write));
+            } else {
+                others.add((Runnable) entry.getValue());
+            }
+        }
+
+        if (!bySql.isEmpty()) {
+            writeSql(bySql);
+        }
+
+        for (Runnable write : others) {
+            try {
+                write.run();
+                flushed.incrementAndGet();
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                failed.incrementAndGet();
+            }
+        }
+
+        lastFlushMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private void writeSql(Map<String, List<Map.Entry<String, SqlWrite>>> bySql) {
+        try (Connection conn = DBConnection.getConnection(AdmissionController.OpClass.WRITE)) {
+            conn.setAutoCommit(false);
+            try {
+                for (Map.Entry<String, List<Map.Entry<String, SqlWrite>>> group : bySql.entrySet()) {
+                    PreparedStatement stmt = conn.prepareStatement(group.getKey());
+                    for (Map.Entry<String, SqlWrite> write : group.getValue()) {
+                        Object[] params = write.getValue().params;
+                        for (int i = 0; i < params.length; i++) {
+                            stmt.setObject(i + 1, params[i]);
+                        }
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                conn.commit();
+            } catch (SQLException ex) {
+                conn.rollback();
+                throw ex;
+            }
+            bySql.keySet().forEach(QueryCache.get()::invalidateWrite);
+            bySql.values().forEach(group -> flushed.addAndGet(group.size()));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            boolean rejected = isRejected(ex);
+            int size = bySql.values().stream().mapToInt(List::size).sum();
+            if (rejected && size > 1) {
+                // One bad write fails the whole batch; write them one at a time to find it
+                for (Map.Entry<String, List<Map.Entry<String, SqlWrite>>> group : bySql.entrySet()) {
+                    for (Map.Entry<String, SqlWrite> write : group.getValue()) {
+                        Map<String, List<Map.Entry<String, SqlWrite>>> single = new LinkedHashMap<>();
+                        single.put(group.getKey(), new ArrayList<>(List.of(write)));
+                        writeSql(single);
+                    }
+                }
+                return;
+            }
+            requeue(bySql, rejected);
+        }
+    }
+
+    // The database refused the statement itself, so retrying cannot help
+    private static boolean isRejected(Exception ex) {
+        return ex instanceof SQLNonTransientException && !(ex instanceof SQLNonTransientConnectionException);
+    }
+
+    // Puts failed writes back unless a newer write for the key arrived meanwhile
+    private synchronized void requeue(Map<String, List<Map.Entry<String, SqlWrite>>> bySql, boolean rejected) {
+        for (List<Map.Entry<String, SqlWrite>> group : bySql.values()) {
+            for (Map.Entry<String, SqlWrite> write : group) {
+                failed.incrementAndGet();
+                if (rejected && ++write.getValue().attempts >= MAX_ATTEMPTS) {
+                    dropped.incrementAndGet();
+                    System.err.println("Dropping write-behind write " + write.getKey() + " after "
+                        + MAX_ATTEMPTS + " attempts");
+                    continue;
+                }
+                pending.putIfAbsent(write.getKey(), write.getValue());
+            }
+        }
+    }
+
+    // ---- Metrics ----
+
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getFlushedCount() {
+        return flushed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    // Writes given up on after the database rejected them MAX_ATTEMPTS times
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getLastFlushMillis() {
+        return lastFlushMillis;
+    }
+}
@@ -0,0 +1,115 @@
+-- schema.sql
+-- MySQL schema for library_db (see DBConnection.java)
+
+CREATE TABLE IF NOT EXISTS users (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    name VARCHAR(100) NOT NULL,
+    username VARCHAR(50) NOT NULL UNIQUE,
+    password VARCHAR(100) NOT NULL,
+    role VARCHAR(20) NOT NULL,
+    active BOOLEAN NOT NULL DEFAULT TRUE,
+    wishlist TEXT
+);
+
+-- One row per title. available_copies is the live circulation counter,
+-- isAvailable is kept equal to (available_copies > 0) for older queries.
+-- version is bumped on every circulation write (optimistic check).
+CREATE TABLE IF NOT EXISTS books (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    author VARCHAR(255),
+    genre VARCHAR(100),
+    isAvailable BOOLEAN NOT NULL DEFAULT TRUE,
+    total_copies INT NOT NULL DEFAULT 1,
+    available_copies INT NOT NULL DEFAULT 1,
+    version INT NOT NULL DEFAULT 0,
+    INDEX idx_books_available (available_copies)
+);
+
+-- One row per physical copy of a title
+CREATE TABLE IF NOT EXISTS book_copies (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    book_id INT NOT NULL,
+    isAvailable BOOLEAN NOT NULL DEFAULT TRUE,
+    INDEX idx_copies_book (book_id, isAvailable),
+    FOREIGN KEY (book_id) REFERENCES books(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS borrowed_books (
+    id INT AUTO_INCREMENT PRIMARY KEY,
+    student_id INT NOT NULL,
+    book_id INT NOT NULL,
+    copy_id INT,
+    borrow_date DATE NOT NULL,
+    due_date DATE NOT NULL,
+    return_date DATE,
+    fine DOUBLE DEFAULT 0,
+    INDEX idx_borrowed_student (student_id, return_date),
+    INDEX idx_borrowed_book (book_id, return_date),
+    INDEX idx_borrowed_open_due (return_date, due_date, id)
+);
+
+-- Returned loans older than the retention window, moved out of borrowed_books
+-- by LoanArchiver with their ids kept. One partition per year of return_date;
+-- LoanArchiver splits pmax as years go by.
+CREATE TABLE IF NOT EXISTS borrowed_books_archive (
+    id INT NOT NULL,
+    student_id INT NOT NULL,
+    book_id INT NOT NULL,
+    copy_id INT,
+    borrow_date DATE NOT NULL,
+    due_date DATE NOT NULL,
+    return_date DATE NOT NULL,
+    fine DOUBLE DEFAULT 0,
+    PRIMARY KEY (id, return_date),
+    INDEX idx_archive_student (student_id, borrow_date)
+)
+PARTITION BY RANGE (YEAR(return_date)) (
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
+
+-- Outbox of every circulation and catalog change, written in the same
+-- transaction as the change (see EventJournal.java). seq is the global order.
+CREATE TABLE IF NOT EXISTS circulation_events (
+    seq BIGINT AUTO_INCREMENT PRIMARY KEY,
+    type VARCHAR(20) NOT NULL,
+    student_id INT,
+    book_id INT NOT NULL,
+    copy_id INT,
+    available_copies INT NOT NULL,
+    total_copies INT NOT NULL,
+    due_date DATE,
+    fine DOUBLE NOT NULL DEFAULT 0,
+    actor VARCHAR(100),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Circulation operations a desk queued while the database was unreachable
+-- (see OperationQueue.java), by operation id, so a replay is applied once.
+-- result is APPLIED or CONFLICT.
+CREATE TABLE IF NOT EXISTS processed_operations (
+    op_id CHAR(36) PRIMARY KEY,
+    type VARCHAR(20) NOT NULL,
+    student_id INT NOT NULL,
+    book_id INT NOT NULL,
+    result VARCHAR(20) NOT NULL,
+    processed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Written every second by each process that uses read replicas (see
+-- ReplicaRouter.java); how far behind a replica's copy of it is gives its lag.
+CREATE TABLE IF NOT EXISTS replica_heartbeat (
+    id TINYINT PRIMARY KEY,
+    beat TIMESTAMP(3) NOT NULL
+);
+
+-- Migration for databases created before the title/copy split:
+-- ALTER TABLE books ADD COLUMN total_copies INT NOT NULL DEFAULT 1,
+--                   ADD COLUMN available_copies INT NOT NULL DEFAULT 1;
+-- UPDATE books SET available_copies = IF(isAvailable, 1, 0);
+-- INSERT INTO book_copies (book_id, isAvailable) SELECT id, isAvailable FROM books;
+-- ALTER TABLE books ADD COLUMN version INT NOT NULL DEFAULT 0;
+-- ALTER TABLE borrowed_books ADD COLUMN copy_id INT;
+-- UPDATE borrowed_books bb JOIN book_copies c ON c.book_id = bb.book_id
+--     SET bb.copy_id = c.id WHERE bb.return_date IS NULL;
+-- CREATE INDEX idx_borrowed_open_due ON borrowed_books (return_date, due_date, id);